@@ -0,0 +1,51 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.maven.plugin;
+
+import org.dbmaintain.launch.task.CompactExecutedScriptsTask;
+import org.dbmaintain.launch.task.DbMaintainDatabase;
+import org.dbmaintain.launch.task.DbMaintainTask;
+
+import java.util.List;
+
+/**
+ * Replaces the registered incremental scripts with a lower revision than the given checkpoint revision by a single
+ * checkpoint. These scripts no longer have to be read from the executed scripts table and compared with the scripts
+ * during an update, which keeps updates fast when the nr of scripts keeps growing. Patch scripts stay registered.
+ * Scripts with a lower revision that are changed afterwards are ignored, adding or deleting such scripts is reported
+ * as an irregular update. No scripts will be executed by this operation.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ * @goal compactExecutedScripts
+ */
+public class CompactExecutedScriptsMojo extends BaseDatabaseMojo {
+
+    /**
+     * The registered incremental scripts with a lower revision than this revision are replaced by a single checkpoint,
+     * e.g. 1.5. The revision cannot be higher than the revision of the last executed incremental script.
+     *
+     * @parameter
+     * @required
+     */
+    protected String checkpointRevision;
+
+
+    @Override
+    protected DbMaintainTask createDbMaintainTask(List<DbMaintainDatabase> dbMaintainDatabases) {
+        return new CompactExecutedScriptsTask(dbMaintainDatabases, checkpointRevision);
+    }
+}
@@ -139,13 +139,21 @@ public class CreateScriptArchiveMojo extends BaseMojo {
      * @parameter
      */
     protected String scriptFileExtensions;
+    /**
+     * Optional script archive that was created before with the same configuration. If set, a delta archive is created
+     * that only contains the scripts that are new or changed since this archive. Such an archive can only update
+     * databases that were updated with the previous archive.
+     *
+     * @parameter
+     */
+    protected String previousArchiveFileName;
 
 
     @Override
     protected DbMaintainTask createDbMaintainTask() {
         File archiveFile = getArchiveFile();
         archiveFile.getParentFile().mkdirs();
-        return new CreateScriptArchiveTask(archiveFile.getPath(), scriptLocations, scriptEncoding, postProcessingScriptDirectoryName, qualifiers, patchQualifiers, scriptFileExtensions);
+        return new CreateScriptArchiveTask(archiveFile.getPath(), scriptLocations, scriptEncoding, postProcessingScriptDirectoryName, qualifiers, patchQualifiers, scriptFileExtensions, previousArchiveFileName);
     }
 
     @Override
@@ -47,6 +47,8 @@ public class DbMaintainerFactory extends FactoryWithDatabase<DbMaintainer> {
         boolean updateSequencesEnabled = PropertyUtils.getBoolean(PROPERTY_UPDATE_SEQUENCES, getConfiguration());
         boolean ignoreDeletions = PropertyUtils.getBoolean(PROPERTY_IGNORE_DELETIONS, false, getConfiguration());
         long maxNrOfCharsWhenLoggingScriptContent = PropertyUtils.getLong(PROPERTY_MAX_NR_CHARS_WHEN_LOGGING_SCRIPT_CONTENT, getConfiguration());
+        int nrOfCheckSumThreads = PropertyUtils.getInt(PROPERTY_CHECKSUM_THREADS, 0, getConfiguration());
+        boolean registerScriptInScriptTransaction = PropertyUtils.getBoolean(PROPERTY_REGISTER_SCRIPT_IN_SCRIPT_TRANSACTION, false, getConfiguration());
         ScriptIndexes baseLineRevision = factoryWithDatabaseContext.getBaselineRevision();
 
         MainFactory mainFactory = factoryWithDatabaseContext.getMainFactory();
@@ -61,7 +63,8 @@ public class DbMaintainerFactory extends FactoryWithDatabase<DbMaintainer> {
 
         return new DefaultDbMaintainer(scriptRunner, scriptRepository, executedScriptInfoSource, fromScratchEnabled, useScriptFileLastModificationDates,
                 allowOutOfSequenceExecutionOfPatchScripts, cleanDbEnabled, disableConstraintsEnabled, updateSequencesEnabled, dbClearer, dbCleaner,
-                constraintsDisabler, sequenceUpdater, scriptUpdatesFormatter, getSqlHandler(), maxNrOfCharsWhenLoggingScriptContent, baseLineRevision, ignoreDeletions);
+                constraintsDisabler, sequenceUpdater, scriptUpdatesFormatter, getSqlHandler(), maxNrOfCharsWhenLoggingScriptContent, baseLineRevision, ignoreDeletions, nrOfCheckSumThreads,
+                registerScriptInScriptTransaction, getDatabases().getDefaultDatabase().getDataSource());
     }
 
 
@@ -20,10 +20,13 @@ import org.apache.commons.logging.LogFactory;
 import org.dbmaintain.database.SQLHandler;
 import org.dbmaintain.script.ExecutedScript;
 import org.dbmaintain.script.Script;
+import org.dbmaintain.script.ScriptCheckSumCalculator;
+import org.dbmaintain.script.ScriptContentHandle;
 import org.dbmaintain.script.analyzer.ScriptUpdate;
 import org.dbmaintain.script.analyzer.ScriptUpdates;
 import org.dbmaintain.script.analyzer.ScriptUpdatesAnalyzer;
 import org.dbmaintain.script.analyzer.ScriptUpdatesFormatter;
+import org.dbmaintain.script.checksum.CheckSumAlgorithms;
 import org.dbmaintain.script.executedscriptinfo.ExecutedScriptInfoSource;
 import org.dbmaintain.script.executedscriptinfo.ScriptIndexes;
 import org.dbmaintain.script.repository.ScriptRepository;
@@ -34,6 +37,7 @@ import org.dbmaintain.structure.constraint.ConstraintsDisabler;
 import org.dbmaintain.structure.sequence.SequenceUpdater;
 import org.dbmaintain.util.DbMaintainException;
 
+import javax.sql.DataSource;
 import java.sql.SQLException;
 import java.util.*;
 
@@ -100,6 +104,12 @@ public class DefaultDbMaintainer implements DbMaintainer {
     protected ScriptIndexes baseLineRevision;
 
     private boolean ignoreDeletions;
+    /* The nr of threads used to calculate script check sums, 0 to use all available processors */
+    protected int nrOfCheckSumThreads;
+    /* True if a script for the default database is registered in the same transaction in which it is executed */
+    protected boolean registerScriptInScriptTransaction;
+    /* The data source of the default database, that contains the executed scripts table */
+    protected DataSource defaultDataSource;
 
     /**
      * Creates a new instance
@@ -126,11 +136,18 @@ public class DefaultDbMaintainer implements DbMaintainer {
      * @param maxNrOfCharsWhenLoggingScriptContent
      *                                 The maximum length of a script that is logged in an exception, 0 to not log any script content
      * @param baseLineRevision         The baseline revision. If set, all scripts with a lower revision will be ignored
+     * @param ignoreDeletions          if true, deleted indexed scripts are ignored instead of being reported as irregular updates
+     * @param nrOfCheckSumThreads      The nr of threads used to calculate script check sums, 0 to use all available processors
+     * @param registerScriptInScriptTransaction
+     *                                 if true, a script for the default database is registered as executed in the same
+     *                                 transaction in which it is executed, instead of before and after its execution
+     * @param defaultDataSource        The data source of the default database, only needed if registerScriptInScriptTransaction is true
      */
     public DefaultDbMaintainer(ScriptRunner scriptRunner, ScriptRepository scriptRepository, ExecutedScriptInfoSource executedScriptInfoSource,
                                boolean fromScratchEnabled, boolean useScriptFileLastModificationDates, boolean allowOutOfSequenceExecutionOfPatchScripts,
                                boolean cleanDb, boolean disableConstraints, boolean updateSequences, DBClearer dbClearer, DBCleaner dbCleaner, ConstraintsDisabler constraintsDisabler,
-                               SequenceUpdater sequenceUpdater, ScriptUpdatesFormatter scriptUpdatesFormatter, SQLHandler sqlHandler, long maxNrOfCharsWhenLoggingScriptContent, ScriptIndexes baseLineRevision, boolean ignoreDeletions) {
+                               SequenceUpdater sequenceUpdater, ScriptUpdatesFormatter scriptUpdatesFormatter, SQLHandler sqlHandler, long maxNrOfCharsWhenLoggingScriptContent, ScriptIndexes baseLineRevision, boolean ignoreDeletions, int nrOfCheckSumThreads,
+                               boolean registerScriptInScriptTransaction, DataSource defaultDataSource) {
 
         this.scriptRunner = scriptRunner;
         this.scriptRepository = scriptRepository;
@@ -150,6 +167,9 @@ public class DefaultDbMaintainer implements DbMaintainer {
         this.maxNrOfCharsWhenLoggingScriptContent = maxNrOfCharsWhenLoggingScriptContent;
         this.baseLineRevision = baseLineRevision;
         this.ignoreDeletions = ignoreDeletions;
+        this.nrOfCheckSumThreads = nrOfCheckSumThreads;
+        this.registerScriptInScriptTransaction = registerScriptInScriptTransaction;
+        this.defaultDataSource = defaultDataSource;
     }
 
 
@@ -166,26 +186,31 @@ public class DefaultDbMaintainer implements DbMaintainer {
      */
     public boolean updateDatabase(boolean dryRun) {
         try {
-            ScriptUpdates scriptUpdates = getScriptUpdates();
+            if (!dryRun) {
+                // DDL, performed before any transaction is started
+                executedScriptInfoSource.upgradeExecutedScriptsTable();
+            }
+            UpdatePlan updatePlan = createUpdatePlan();
+            ScriptUpdates scriptUpdates = updatePlan.getScriptUpdates();
 
             if (scriptUpdates.hasIgnoredScriptsAndScriptChanges()) {
                 throw new DbMaintainException(
                         "DB-State is newer than current script release and scripts of current release are different to the corresponding script in the database");
             }
 
-            if (!getIncrementalScriptsThatFailedDuringLastUpdate().isEmpty() && !scriptUpdates.hasIrregularScriptUpdates()) {
-                ExecutedScript failedExecutedScriptScript = getIncrementalScriptsThatFailedDuringLastUpdate().first();
+            if (!updatePlan.getFailedIncrementalScripts().isEmpty() && !scriptUpdates.hasIrregularScriptUpdates()) {
+                ExecutedScript failedExecutedScriptScript = updatePlan.getFailedIncrementalScripts().first();
                 throw new DbMaintainException("During the latest update, the execution of the following incremental script failed: " +
                         failedExecutedScriptScript + ". \nThis problem must be fixed before any other " +
                         "updates can be performed.\n" + getErrorScriptOptionsMessage(failedExecutedScriptScript.getScript()));
             }
 
-            if (!getRepeatableScriptsThatFailedDuringLastUpdate().isEmpty() && !scriptUpdates.hasIrregularScriptUpdates()) {
-                ExecutedScript failedScript = getRepeatableScriptsThatFailedDuringLastUpdate().first();
+            if (!updatePlan.getFailedRepeatableScripts().isEmpty() && !scriptUpdates.hasIrregularScriptUpdates()) {
+                ExecutedScript failedScript = updatePlan.getFailedRepeatableScripts().first();
                 if (!scriptUpdates.getRegularlyAddedOrModifiedScripts().contains(new ScriptUpdate(REPEATABLE_SCRIPT_UPDATED, failedScript.getScript()))
                         && !scriptUpdates.getRegularlyDeletedRepeatableScripts().contains(new ScriptUpdate(REPEATABLE_SCRIPT_DELETED, failedScript.getScript()))) {
                     throw new DbMaintainException("During the latest update, the execution of following repeatable script failed: " +
-                            getRepeatableScriptsThatFailedDuringLastUpdate().first() + ". \nThis problem must be fixed " +
+                            failedScript + ". \nThis problem must be fixed " +
                             "before any other updates can be performed.");
                 }
             }
@@ -196,6 +221,9 @@ public class DefaultDbMaintainer implements DbMaintainer {
                 }
                 logger.info("Check the scripts and maybe repeat the deployment with a newer database release!");
             }
+            if (!dryRun) {
+                updateCheckSumsOfOtherAlgorithm();
+            }
             if (scriptUpdates.isEmpty()) {
                 logger.info("The database is up to date");
                 return false;
@@ -228,6 +256,7 @@ public class DefaultDbMaintainer implements DbMaintainer {
                             "Please clear the baseline revision if you want to perform a from scratch update.\n" +
                             "Another option is to explicitly clear the database using the clear task and then performing the update.");
                 }
+                assertScriptContentAvailable(scriptRepository.getAllUpdateScripts());
                 logger.info("The database is cleared, and all database scripts are executed.");
                 if (!dryRun) {
                     dbClearer.clearDatabase();
@@ -235,7 +264,15 @@ public class DefaultDbMaintainer implements DbMaintainer {
                     executeScripts(scriptRepository.getAllUpdateScripts());
                 }
             } else {
-                logger.info("The database is updated incrementally, since following regular script updates were detected:\n" + scriptUpdatesFormatter.formatScriptUpdates(scriptUpdates.getRegularScriptUpdates()));
+                List<Script> scriptsToExecute = new ArrayList<>();
+                for (ScriptUpdate scriptUpdate : scriptUpdates.getRegularlyAddedPatchScripts()) {
+                    scriptsToExecute.add(scriptUpdate.getScript());
+                }
+                for (ScriptUpdate scriptUpdate : scriptUpdates.getRegularlyAddedOrModifiedScripts()) {
+                    scriptsToExecute.add(scriptUpdate.getScript());
+                }
+                assertScriptContentAvailable(scriptsToExecute);
+                logger.info("The database is updated incrementally, since following regular script updates were detected:\n" + scriptUpdatesFormatter.formatScriptUpdates(updatePlan.getRegularScriptUpdates()));
                 if (!dryRun) {
                     // If the disable constraints option is enabled, disable all FK and not null constraints
                     if (disableConstraints) {
@@ -251,9 +288,9 @@ public class DefaultDbMaintainer implements DbMaintainer {
                     // Execute all new incremental and all new or modified repeatable scripts
                     executeScriptUpdates(scriptUpdates.getRegularlyAddedOrModifiedScripts());
                     // If repeatable scripts were removed, also remove them from the executed scripts
-                    removeDeletedRepeatableScriptsFromExecutedScripts(scriptUpdates.getRegularlyDeletedRepeatableScripts());
+                    removeDeletedRepeatableScriptsFromExecutedScripts(updatePlan, scriptUpdates.getRegularlyDeletedRepeatableScripts());
                     // If regular script renames were detected, update the executed script records to reflect this
-                    performRegularScriptRenamesInExecutedScripts(scriptUpdates.getRegularlyRenamedScripts());
+                    performRegularScriptRenamesInExecutedScripts(updatePlan, scriptUpdates.getRegularlyRenamedScripts());
                 }
             }
             if (scriptUpdates.noUpdatesOtherThanRepeatableScriptDeletionsOrRenames()) {
@@ -282,11 +319,75 @@ public class DefaultDbMaintainer implements DbMaintainer {
             return true;
 
         } finally {
+            scriptRepository.close();
             sqlHandler.closeAllConnections();
         }
     }
 
 
+    /**
+     * Verifies that the given scripts can be executed before the database is touched. The content of a script is not
+     * available if it was left out of a delta script archive.
+     *
+     * @param scripts The scripts that will be executed, not null
+     * @throws DbMaintainException if the content of one of the scripts is not available
+     */
+    protected void assertScriptContentAvailable(Collection<Script> scripts) {
+        List<String> fileNames = new ArrayList<>();
+        for (Script script : scripts) {
+            ScriptContentHandle scriptContentHandle = script.getScriptContentHandle();
+            if (scriptContentHandle != null && !scriptContentHandle.isContentAvailable()) {
+                fileNames.add(script.getFileName());
+            }
+        }
+        if (!fileNames.isEmpty()) {
+            throw new DbMaintainException("Unable to update the database: the content of following scripts is not available, since they were left out of a delta script archive: " + fileNames +
+                    "\nA delta script archive can only update a database that was updated with the previous script archive. Use a complete script archive instead.");
+        }
+    }
+
+
+    /**
+     * Replaces the registered check sums that were calculated with another algorithm than the current one by the check
+     * sum of the current algorithm. The rows are written in a single batch. Only scripts of which the current check sum
+     * is already known are updated: the check sums are migrated gradually instead of reading all scripts at once.
+     * Scripts whose content changed are not touched, they are handled as regular script updates.
+     * <p/>
+     * Scripts that were marked as performed after an interrupted run have no registered check sum at all. The current
+     * check sum of these scripts is registered, otherwise they could never be renamed.
+     */
+    protected void updateCheckSumsOfOtherAlgorithm() {
+        Map<String, Script> scriptsPerName = new HashMap<>();
+        for (Script script : scriptRepository.getAllScripts()) {
+            scriptsPerName.put(script.getFileName(), script);
+        }
+        List<ExecutedScript> executedScriptsToUpdate = new ArrayList<>();
+        for (ExecutedScript executedScript : executedScriptInfoSource.getExecutedScripts()) {
+            Script registeredScript = executedScript.getScript();
+            Script script = scriptsPerName.get(registeredScript.getFileName());
+            if (script == null || !executedScript.isSuccessful()) {
+                continue;
+            }
+            if (registeredScript.getCheckSum() == null) {
+                // calculates the check sum if needed
+                script.getCheckSum();
+                executedScriptsToUpdate.add(new ExecutedScript(script, executedScript.getExecutedAt(), true));
+                continue;
+            }
+            if (!script.isCheckSumCalculated()) {
+                continue;
+            }
+            // an unprefixed check sum of the legacy algorithm equals the prefixed one, it is not rewritten
+            if (!CheckSumAlgorithms.isEqual(registeredScript.getCheckSum(), script.getCheckSum()) && registeredScript.isCheckSumEqualTo(script)) {
+                executedScriptsToUpdate.add(new ExecutedScript(script, executedScript.getExecutedAt(), true));
+            }
+        }
+        if (!executedScriptsToUpdate.isEmpty()) {
+            executedScriptInfoSource.registerExecutedScripts(executedScriptsToUpdate);
+        }
+    }
+
+
     /**
      * This operation calcutes and logs which script updates have been performed since the last database update.
      *
@@ -294,7 +395,17 @@ public class DefaultDbMaintainer implements DbMaintainer {
      */
     public ScriptUpdates getScriptUpdates() {
         return new ScriptUpdatesAnalyzer(scriptRepository, executedScriptInfoSource, useScriptFileLastModificationDates,
-                allowOutOfSequenceExecutionOfPatchScripts, ignoreDeletions).calculateScriptUpdates();
+                allowOutOfSequenceExecutionOfPatchScripts, ignoreDeletions, nrOfCheckSumThreads).calculateScriptUpdates();
+    }
+
+    /**
+     * Analyzes the scripts and creates the plan for an update. A new plan is created for every update, it is passed
+     * to the steps of the update that need it.
+     *
+     * @return The plan for the update, not null
+     */
+    protected UpdatePlan createUpdatePlan() {
+        return new UpdatePlan(getScriptUpdates(), executedScriptInfoSource.getExecutedScripts());
     }
 
 
@@ -303,7 +414,8 @@ public class DefaultDbMaintainer implements DbMaintainer {
      *         returns false.
      */
     protected boolean isInitialDatabaseUpdate() {
-        return executedScriptInfoSource.getExecutedScripts().size() == 0 && scriptRepository.areScriptsAvailable();
+        return executedScriptInfoSource.getExecutedScripts().size() == 0 && executedScriptInfoSource.getCheckpointRevision() == null
+                && scriptRepository.areScriptsAvailable();
     }
 
 
@@ -318,7 +430,9 @@ public class DefaultDbMaintainer implements DbMaintainer {
 
     /**
      * @return The already executed scripts, as a map from Script => ExecutedScript
+     * @deprecated The executed scripts are looked up in the {@link UpdatePlan} of the update, use {@link UpdatePlan#getExecutedScript(Script)}
      */
+    @Deprecated
     protected Map<Script, ExecutedScript> getAlreadyExecutedScripts() {
         Map<Script, ExecutedScript> alreadyExecutedScripts = new HashMap<>();
         for (ExecutedScript executedScript : executedScriptInfoSource.getExecutedScripts()) {
@@ -327,15 +441,60 @@ public class DefaultDbMaintainer implements DbMaintainer {
         return alreadyExecutedScripts;
     }
 
+    /**
+     * @return the incremental scripts that failed during the last database update
+     * @deprecated The failed scripts are determined when the {@link UpdatePlan} is created, use {@link UpdatePlan#getFailedIncrementalScripts()}
+     */
+    @Deprecated
+    protected SortedSet<ExecutedScript> getIncrementalScriptsThatFailedDuringLastUpdate() {
+        SortedSet<ExecutedScript> failedExecutedScripts = new TreeSet<>();
+        for (ExecutedScript script : executedScriptInfoSource.getExecutedScripts()) {
+            if (!script.isSuccessful() && script.getScript().isIncremental()) {
+                failedExecutedScripts.add(script);
+            }
+        }
+        return failedExecutedScripts;
+    }
+
+    /**
+     * @return the repeatable scripts that failed during the last database update
+     * @deprecated The failed scripts are determined when the {@link UpdatePlan} is created, use {@link UpdatePlan#getFailedRepeatableScripts()}
+     */
+    @Deprecated
+    protected SortedSet<ExecutedScript> getRepeatableScriptsThatFailedDuringLastUpdate() {
+        SortedSet<ExecutedScript> failedExecutedScripts = new TreeSet<>();
+        for (ExecutedScript script : executedScriptInfoSource.getExecutedScripts()) {
+            if (!script.isSuccessful() && script.getScript().isRepeatable()) {
+                failedExecutedScripts.add(script);
+            }
+        }
+        return failedExecutedScripts;
+    }
+
 
     /**
      * Removes all executed scripts that indicate repeatable scripts that were removed since the last database update
      *
      * @param repeatableScriptDeletions The scripts that were removed since the last database updates
+     * @deprecated Use {@link #removeDeletedRepeatableScriptsFromExecutedScripts(UpdatePlan, SortedSet)}
      */
+    @Deprecated
     protected void removeDeletedRepeatableScriptsFromExecutedScripts(SortedSet<ScriptUpdate> repeatableScriptDeletions) {
+        Map<Script, ExecutedScript> alreadyExecutedScripts = getAlreadyExecutedScripts();
         for (ScriptUpdate deletedRepeatableScriptUpdate : repeatableScriptDeletions) {
-            executedScriptInfoSource.deleteExecutedScript(getAlreadyExecutedScripts().get(deletedRepeatableScriptUpdate.getScript()));
+            executedScriptInfoSource.deleteExecutedScript(alreadyExecutedScripts.get(deletedRepeatableScriptUpdate.getScript()));
+        }
+    }
+
+    /**
+     * Removes all executed scripts that indicate repeatable scripts that were removed since the last database update
+     *
+     * @param updatePlan                The plan of the update, not null
+     * @param repeatableScriptDeletions The scripts that were removed since the last database updates
+     */
+    protected void removeDeletedRepeatableScriptsFromExecutedScripts(UpdatePlan updatePlan, SortedSet<ScriptUpdate> repeatableScriptDeletions) {
+        for (ScriptUpdate deletedRepeatableScriptUpdate : repeatableScriptDeletions) {
+            executedScriptInfoSource.deleteExecutedScript(updatePlan.getExecutedScript(deletedRepeatableScriptUpdate.getScript()));
         }
     }
 
@@ -345,10 +504,26 @@ public class DefaultDbMaintainer implements DbMaintainer {
      * without changing the order of the incremental scripts.
      *
      * @param regularScriptRenames the scripts that were regularly renamed
+     * @deprecated Use {@link #performRegularScriptRenamesInExecutedScripts(UpdatePlan, SortedSet)}
      */
+    @Deprecated
     protected void performRegularScriptRenamesInExecutedScripts(SortedSet<ScriptUpdate> regularScriptRenames) {
+        Map<Script, ExecutedScript> alreadyExecutedScripts = getAlreadyExecutedScripts();
         for (ScriptUpdate regularScriptRename : regularScriptRenames) {
-            executedScriptInfoSource.renameExecutedScript(getAlreadyExecutedScripts().get(regularScriptRename.getScript()), regularScriptRename.getRenamedToScript());
+            executedScriptInfoSource.renameExecutedScript(alreadyExecutedScripts.get(regularScriptRename.getScript()), regularScriptRename.getRenamedToScript());
+        }
+    }
+
+    /**
+     * Updates the records in the DBMAINTAIN_SCRIPTS table for all scripts that were regularly renamed (i.e. renamed
+     * without changing the order of the incremental scripts.
+     *
+     * @param updatePlan           The plan of the update, not null
+     * @param regularScriptRenames the scripts that were regularly renamed
+     */
+    protected void performRegularScriptRenamesInExecutedScripts(UpdatePlan updatePlan, SortedSet<ScriptUpdate> regularScriptRenames) {
+        for (ScriptUpdate regularScriptRename : regularScriptRenames) {
+            executedScriptInfoSource.renameExecutedScript(updatePlan.getExecutedScript(regularScriptRename.getScript()), regularScriptRename.getRenamedToScript());
         }
     }
 
@@ -363,11 +538,18 @@ public class DefaultDbMaintainer implements DbMaintainer {
             executedScriptInfoSource.clearAllExecutedScripts();
 
             SortedSet<Script> allScripts = scriptRepository.getAllScripts();
+            // calculate the check sums up front, using multiple threads
+            new ScriptCheckSumCalculator(nrOfCheckSumThreads).calculateCheckSums(allScripts);
+
+            Date executedAt = new Date();
+            List<ExecutedScript> executedScripts = new ArrayList<>(allScripts.size());
             for (Script script : allScripts) {
-                executedScriptInfoSource.registerExecutedScript(new ExecutedScript(script, new Date(), true));
+                executedScripts.add(new ExecutedScript(script, executedAt, true));
             }
+            executedScriptInfoSource.registerExecutedScripts(executedScripts);
             logger.info("The database has been marked as up-to-date");
         } finally {
+            scriptRepository.close();
             sqlHandler.closeAllConnections();
         }
     }
@@ -425,23 +607,87 @@ public class DefaultDbMaintainer implements DbMaintainer {
      * @param script The script to execute, not null
      */
     protected void executeScript(Script script) {
+        if (registerScriptInScriptTransaction && script.getTargetDatabaseName() == null) {
+            executeScriptInRegistrationTransaction(script);
+            return;
+        }
+        boolean executionRegistered = false;
+        // We register the script execution, but we indicate it to be unsuccessful. If anything goes wrong or if the update is
+        // interrupted before being completed, this will be the final state and the DbMaintainer will do a from-scratch update the next time
+        ExecutedScript executedScript = new ExecutedScript(script, new Date(), false);
         try {
-            // We register the script execution, but we indicate it to be unsuccessful. If anything goes wrong or if the update is
-            // interrupted before being completed, this will be the final state and the DbMaintainer will do a from-scratch update the next time
-            ExecutedScript executedScript = new ExecutedScript(script, new Date(), false);
             executedScriptInfoSource.registerExecutedScript(executedScript);
+            executionRegistered = true;
 
+            // The check sum of the script is calculated while the script runner reads it
             scriptRunner.execute(script);
             // We now register the previously registered script execution as being successful
             executedScript.setSuccessful(true);
             executedScriptInfoSource.updateExecutedScript(executedScript);
 
         } catch (DbMaintainException e) {
+            if (executionRegistered && !executedScript.isSuccessful()) {
+                registerCheckSumOfFailedScript(executedScript);
+            }
             String message = getErrorMessage(script, e);
             throw new DbMaintainException(message, e.getCause());
         }
     }
 
+    /**
+     * Executes the given script and registers it as successfully executed in the same transaction, so that the script
+     * and its registration are committed together, without registering the execution up front. If the script fails,
+     * the transaction is rolled back and the execution is registered as unsuccessful.
+     * <p/>
+     * This is only safe if the script is executed through JDBC on the default database and the database supports
+     * transactional DDL: otherwise a script that was interrupted is not registered at all.
+     *
+     * @param script The script to execute, not null
+     */
+    protected void executeScriptInRegistrationTransaction(Script script) {
+        ExecutedScript executedScript = new ExecutedScript(script, new Date(), true);
+        try {
+            sqlHandler.startTransaction(defaultDataSource);
+            try {
+                // The check sum of the script is calculated while the script runner reads it
+                scriptRunner.execute(script);
+                executedScriptInfoSource.registerExecutedScript(executedScript);
+            } catch (DbMaintainException e) {
+                sqlHandler.endTransactionAndRollback(defaultDataSource);
+                throw e;
+            }
+            sqlHandler.endTransactionAndCommit(defaultDataSource);
+
+        } catch (DbMaintainException e) {
+            // the cached registration was rolled back together with the script
+            executedScriptInfoSource.resetCachedState();
+            executedScript.setSuccessful(false);
+            try {
+                executedScript.getScript().getCheckSum();
+                executedScriptInfoSource.registerExecutedScript(executedScript);
+            } catch (DbMaintainException registrationException) {
+                logger.warn("Unable to register the execution of failed script " + script.getFileName(), registrationException);
+            }
+            String message = getErrorMessage(script, e);
+            throw new DbMaintainException(message, e.getCause());
+        }
+    }
+
+    /**
+     * Stores the check sum of a script that failed. The script runner may have stopped reading the script before the
+     * end, so the check sum is calculated from the complete content if needed.
+     *
+     * @param executedScript The failed script execution, not null
+     */
+    protected void registerCheckSumOfFailedScript(ExecutedScript executedScript) {
+        try {
+            executedScript.getScript().getCheckSum();
+            executedScriptInfoSource.updateExecutedScript(executedScript);
+        } catch (DbMaintainException e) {
+            logger.warn("Unable to register the check sum of failed script " + executedScript.getScript().getFileName(), e);
+        }
+    }
+
 
     protected String getErrorMessage(Script script, DbMaintainException e) {
         String exceptionMessage = e.getMessage();
@@ -481,31 +727,4 @@ public class DefaultDbMaintainer implements DbMaintainer {
                 "You can then continue the update by re-running the updateDatabase task. The error script will only be executed again when option 2 was chosen.";
     }
 
-    /**
-     * @return the incremental scripts that failed during the last database update
-     */
-    protected SortedSet<ExecutedScript> getIncrementalScriptsThatFailedDuringLastUpdate() {
-        SortedSet<ExecutedScript> failedExecutedScripts = new TreeSet<>();
-        for (ExecutedScript script : executedScriptInfoSource.getExecutedScripts()) {
-            if (!script.isSuccessful() && script.getScript().isIncremental()) {
-                failedExecutedScripts.add(script);
-            }
-        }
-        return failedExecutedScripts;
-    }
-
-
-    /**
-     * @return the repeatable scripts that failed during the last database update
-     */
-    protected SortedSet<ExecutedScript> getRepeatableScriptsThatFailedDuringLastUpdate() {
-        SortedSet<ExecutedScript> failedExecutedScripts = new TreeSet<>();
-        for (ExecutedScript script : executedScriptInfoSource.getExecutedScripts()) {
-            if (!script.isSuccessful() && script.getScript().isRepeatable()) {
-                failedExecutedScripts.add(script);
-            }
-        }
-        return failedExecutedScripts;
-    }
-
 }
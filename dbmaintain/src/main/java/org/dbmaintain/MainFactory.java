@@ -24,6 +24,7 @@ import org.dbmaintain.database.impl.DefaultDatabaseConnectionManager;
 import org.dbmaintain.database.impl.DefaultSQLHandler;
 import org.dbmaintain.datasource.DataSourceFactory;
 import org.dbmaintain.datasource.impl.SimpleDataSourceFactory;
+import org.dbmaintain.script.ScriptNameCache;
 import org.dbmaintain.script.archive.ScriptArchiveCreator;
 import org.dbmaintain.script.executedscriptinfo.ExecutedScriptInfoSource;
 import org.dbmaintain.script.runner.ScriptRunner;
@@ -54,6 +55,8 @@ public class MainFactory {
 
     protected FactoryContext factoryContext;
     protected FactoryWithDatabaseContext factoryWithDatabaseContext;
+    /* The parsed script names, shared by the script repository and the executed scripts registry */
+    protected ScriptNameCache scriptNameCache = new ScriptNameCache();
 
 
     public MainFactory(Properties configuration) {
@@ -127,6 +130,10 @@ public class MainFactory {
         return factoryContext;
     }
 
+    public ScriptNameCache getScriptNameCache() {
+        return scriptNameCache;
+    }
+
     protected synchronized FactoryWithDatabaseContext createFactoryWithDatabaseContext() {
         if (factoryWithDatabaseContext == null) {
             Databases databases = getDatabases();
@@ -0,0 +1,106 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain;
+
+import org.dbmaintain.script.ExecutedScript;
+import org.dbmaintain.script.Script;
+import org.dbmaintain.script.analyzer.ScriptUpdate;
+import org.dbmaintain.script.analyzer.ScriptUpdates;
+
+import java.util.*;
+
+import static java.util.Collections.unmodifiableMap;
+import static java.util.Collections.unmodifiableSortedSet;
+
+/**
+ * The outcome of the analysis of the scripts and the executed scripts, together with everything that is derived from
+ * the executed scripts during an update. The executed scripts are only scanned once, when the plan is created. A plan
+ * is created for every update and is shared by all steps of that update.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class UpdatePlan {
+
+    private final ScriptUpdates scriptUpdates;
+    private final SortedSet<ScriptUpdate> regularScriptUpdates;
+    private final SortedSet<ExecutedScript> failedIncrementalScripts;
+    private final SortedSet<ExecutedScript> failedRepeatableScripts;
+    private final Map<Script, ExecutedScript> executedScriptsPerScript;
+
+
+    /**
+     * Creates a plan for the given script updates.
+     *
+     * @param scriptUpdates   The script updates, not null
+     * @param executedScripts The scripts that were executed on the database, not null
+     */
+    public UpdatePlan(ScriptUpdates scriptUpdates, Set<ExecutedScript> executedScripts) {
+        SortedSet<ExecutedScript> failedIncrementalScripts = new TreeSet<>();
+        SortedSet<ExecutedScript> failedRepeatableScripts = new TreeSet<>();
+        Map<Script, ExecutedScript> executedScriptsPerScript = new HashMap<>(executedScripts.size() * 2);
+        for (ExecutedScript executedScript : executedScripts) {
+            executedScriptsPerScript.put(executedScript.getScript(), executedScript);
+            if (executedScript.isSuccessful()) {
+                continue;
+            }
+            if (executedScript.getScript().isIncremental()) {
+                failedIncrementalScripts.add(executedScript);
+            } else if (executedScript.getScript().isRepeatable()) {
+                failedRepeatableScripts.add(executedScript);
+            }
+        }
+        this.scriptUpdates = scriptUpdates;
+        this.regularScriptUpdates = unmodifiableSortedSet(scriptUpdates.getRegularScriptUpdates());
+        this.failedIncrementalScripts = unmodifiableSortedSet(failedIncrementalScripts);
+        this.failedRepeatableScripts = unmodifiableSortedSet(failedRepeatableScripts);
+        this.executedScriptsPerScript = unmodifiableMap(executedScriptsPerScript);
+    }
+
+
+    public ScriptUpdates getScriptUpdates() {
+        return scriptUpdates;
+    }
+
+    /**
+     * @return All regular script updates, see {@link ScriptUpdates#getRegularScriptUpdates()}, not null
+     */
+    public SortedSet<ScriptUpdate> getRegularScriptUpdates() {
+        return regularScriptUpdates;
+    }
+
+    /**
+     * @return The incremental scripts that failed during the last database update, not null
+     */
+    public SortedSet<ExecutedScript> getFailedIncrementalScripts() {
+        return failedIncrementalScripts;
+    }
+
+    /**
+     * @return The repeatable scripts that failed during the last database update, not null
+     */
+    public SortedSet<ExecutedScript> getFailedRepeatableScripts() {
+        return failedRepeatableScripts;
+    }
+
+    /**
+     * @param script The script, not null
+     * @return The executed script for the given script, null if the script was not executed
+     */
+    public ExecutedScript getExecutedScript(Script script) {
+        return executedScriptsPerScript.get(script);
+    }
+}
@@ -115,6 +115,21 @@ public class DbMaintainProperties {
      */
     public static final String PROPERTY_MAX_NR_CHARS_WHEN_LOGGING_SCRIPT_CONTENT = "dbMaintainer.maxNrOfCharsWhenLoggingScriptContent";
 
+    /**
+     * Property for the nr of threads that are used to calculate script check sums, 0 to use all available processors
+     */
+    public static final String PROPERTY_CHECKSUM_THREADS = "dbMaintainer.checksum.threads";
+
+    /**
+     * Property that indicates whether a script is registered as executed in the same transaction in which it is executed
+     */
+    public static final String PROPERTY_REGISTER_SCRIPT_IN_SCRIPT_TRANSACTION = "dbMaintainer.registerScriptInScriptTransaction";
+
+    /**
+     * Property for the name of the algorithm that is used to calculate script check sums
+     */
+    public static final String PROPERTY_CHECKSUM_ALGORITHM = "dbMaintainer.checksum.algorithm";
+
     /**
      * Property key for the lowest acceptable sequence value
      */
@@ -267,6 +282,9 @@ public class DbMaintainProperties {
     /* The key of the property that specifies the column in which is stored whether the last update succeeded. */
     public static final String PROPERTY_SUCCEEDED_COLUMN_NAME = "dbMaintainer.succeededColumnName";
 
+    /* The key of the property that specifies the column in which the sequence nr of the last change of a row is stored. */
+    public static final String PROPERTY_CHANGE_SEQUENCE_COLUMN_NAME = "dbMaintainer.changeSequenceColumnName";
+
     /* The key of the property that specifies whether the executed scripts table should be created automatically. */
     public static final String PROPERTY_AUTO_CREATE_DBMAINTAIN_SCRIPTS_TABLE = "dbMaintainer.autoCreateDbMaintainScriptsTable";
 
@@ -284,6 +302,42 @@ public class DbMaintainProperties {
 
     public static final String PROPERTY_IGNORE_CARRIAGE_RETURN_WHEN_CALCULATING_CHECK_SUM = "dbMaintainer.script.ignoreCarriageReturnsWhenCalculatingCheckSum";
 
+    /**
+     * Property key that enables the persistent check sum cache of file system script locations
+     */
+    public static final String PROPERTY_CHECKSUM_CACHE_ENABLED = "dbMaintainer.script.checkSumCache.enabled";
+
+    /**
+     * Property key for the directory in which the check sum caches are stored. If not set, the cache of a script location
+     * is stored in the root directory of that location.
+     */
+    public static final String PROPERTY_CHECKSUM_CACHE_DIRECTORY = "dbMaintainer.script.checkSumCache.directory";
+
+    /**
+     * Property key that enables the verification of the script manifest of script archives against the scripts in the archive
+     */
+    public static final String PROPERTY_SCRIPT_ARCHIVE_VERIFY_MANIFEST = "dbMaintainer.script.archive.verifyManifest";
+
+    /**
+     * Property key for the compression level of the scripts in a created script archive, 0 for no compression
+     */
+    public static final String PROPERTY_SCRIPT_ARCHIVE_COMPRESSION_LEVEL = "dbMaintainer.script.archive.compressionLevel";
+
+    /**
+     * Property key for the nr of threads that read the scripts when a script archive is created, 0 for the nr of processors
+     */
+    public static final String PROPERTY_SCRIPT_ARCHIVE_THREADS = "dbMaintainer.script.archive.threads";
+
+    /**
+     * Property key that enables storing scripts with the same content only once in a created script archive
+     */
+    public static final String PROPERTY_SCRIPT_ARCHIVE_DEDUPLICATE = "dbMaintainer.script.archive.deduplicate";
+
+    /**
+     * Property key for the previous script archive. If set, a delta script archive is created against this archive
+     */
+    public static final String PROPERTY_SCRIPT_ARCHIVE_PREVIOUS = "dbMaintainer.script.archive.previous";
+
     /**
      * Property key for the directory in which the code script files are located
      */
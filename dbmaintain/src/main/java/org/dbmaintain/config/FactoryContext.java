@@ -16,6 +16,9 @@
 package org.dbmaintain.config;
 
 import org.dbmaintain.MainFactory;
+import org.dbmaintain.script.ScriptNameCache;
+import org.dbmaintain.script.checksum.CheckSumAlgorithm;
+import org.dbmaintain.script.checksum.CheckSumAlgorithms;
 import org.dbmaintain.script.executedscriptinfo.ScriptIndexes;
 import org.dbmaintain.script.qualifier.Qualifier;
 import org.dbmaintain.script.qualifier.QualifierEvaluator;
@@ -27,6 +30,7 @@ import org.dbmaintain.script.repository.impl.FileSystemScriptLocation;
 import org.dbmaintain.util.DbMaintainException;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
@@ -35,6 +39,8 @@ import java.util.Set;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.dbmaintain.config.DbMaintainProperties.*;
 import static org.dbmaintain.config.PropertyUtils.*;
+import static org.dbmaintain.util.ReflectionUtils.createInstanceOfType;
+import static org.dbmaintain.util.ReflectionUtils.getClassWithName;
 
 /**
  * @author Tim Ducheyne
@@ -78,7 +84,31 @@ public class FactoryContext {
             scriptLocations.add(createScriptLocation(scriptLocationIndicator));
         }
         QualifierEvaluator qualifierEvaluator = createQualifierEvaluator(scriptLocations);
-        return new ScriptRepository(scriptLocations, qualifierEvaluator);
+        CheckSumAlgorithms checkSumAlgorithms = createCheckSumAlgorithms();
+        return new ScriptRepository(scriptLocations, qualifierEvaluator, checkSumAlgorithms);
+    }
+
+    /**
+     * Creates all check sum algorithms that are registered using the
+     * <code>org.dbmaintain.script.checksum.CheckSumAlgorithm.implClassName.&lt;name&gt;</code> properties.
+     *
+     * @return The algorithms, using the configured algorithm as default algorithm, not null
+     */
+    public CheckSumAlgorithms createCheckSumAlgorithms() {
+        String defaultAlgorithmName = getString(PROPERTY_CHECKSUM_ALGORITHM, CheckSumAlgorithms.LEGACY_ALGORITHM_NAME, configuration);
+        String implClassNamePropertyPrefix = CheckSumAlgorithm.class.getName() + ".implClassName.";
+
+        List<CheckSumAlgorithm> checkSumAlgorithms = new ArrayList<>();
+        for (String propertyName : configuration.stringPropertyNames()) {
+            if (propertyName.startsWith(implClassNamePropertyPrefix)) {
+                Class<CheckSumAlgorithm> checkSumAlgorithmClass = getClassWithName(getString(propertyName, configuration));
+                checkSumAlgorithms.add(createInstanceOfType(checkSumAlgorithmClass, false, new Class<?>[0], new Object[0]));
+            }
+        }
+        if (checkSumAlgorithms.isEmpty()) {
+            return CheckSumAlgorithms.createDefault();
+        }
+        return new CheckSumAlgorithms(defaultAlgorithmName, checkSumAlgorithms);
     }
 
 
@@ -96,10 +126,30 @@ public class FactoryContext {
 
         File scriptLocationFile = new File(scriptLocation);
         if (scriptLocationFile.isDirectory()) {
-            return new FileSystemScriptLocation(scriptLocationFile, scriptEncoding, postProcessingScriptDirName, registeredQualifiers, patchQualifiers, scriptIndexRegexp, qualifierRegexp, targetDatabaseRegexp, scriptFileExtensions, baseLineRevision, ignoreCarriageReturnsWhenCalculatingCheckSum);
+            File checkSumCacheFile = getCheckSumCacheFile(scriptLocationFile);
+            return new FileSystemScriptLocation(scriptLocationFile, scriptEncoding, postProcessingScriptDirName, registeredQualifiers, patchQualifiers, scriptIndexRegexp, qualifierRegexp, targetDatabaseRegexp, scriptFileExtensions, baseLineRevision, ignoreCarriageReturnsWhenCalculatingCheckSum, checkSumCacheFile, getScriptNameCache());
         } else {
-            return new ArchiveScriptLocation(scriptLocationFile, scriptEncoding, postProcessingScriptDirName, registeredQualifiers, patchQualifiers, scriptIndexRegexp, qualifierRegexp, targetDatabaseRegexp, scriptFileExtensions, baseLineRevision, ignoreCarriageReturnsWhenCalculatingCheckSum);
+            boolean verifyManifest = getBoolean(PROPERTY_SCRIPT_ARCHIVE_VERIFY_MANIFEST, false, configuration);
+            return new ArchiveScriptLocation(scriptLocationFile, scriptEncoding, postProcessingScriptDirName, registeredQualifiers, patchQualifiers, scriptIndexRegexp, qualifierRegexp, targetDatabaseRegexp, scriptFileExtensions, baseLineRevision, ignoreCarriageReturnsWhenCalculatingCheckSum, verifyManifest, getScriptNameCache());
+        }
+    }
+
+
+    /**
+     * @param scriptLocationFile The root directory of a script location, not null
+     * @return The file in which the check sums of the scripts of the location are cached, null if caching is disabled
+     */
+    protected File getCheckSumCacheFile(File scriptLocationFile) {
+        if (!getBoolean(PROPERTY_CHECKSUM_CACHE_ENABLED, false, configuration)) {
+            return null;
         }
+        String checkSumCacheDirectory = getString(PROPERTY_CHECKSUM_CACHE_DIRECTORY, null, configuration);
+        if (isBlank(checkSumCacheDirectory)) {
+            return new File(scriptLocationFile, FileSystemScriptLocation.CHECKSUM_CACHE_FILENAME);
+        }
+        // multiple locations can share the same cache directory: use the location path to get a unique name
+        String locationId = Integer.toHexString(scriptLocationFile.getAbsolutePath().hashCode());
+        return new File(checkSumCacheDirectory, "dbmaintain-checksums-" + locationId + ".properties");
     }
 
 
@@ -119,6 +169,13 @@ public class FactoryContext {
     }
 
 
+    /**
+     * @return The cache of parsed script names, shared by all factories of the main factory, not null
+     */
+    public ScriptNameCache getScriptNameCache() {
+        return mainFactory.getScriptNameCache();
+    }
+
     public Properties getConfiguration() {
         return configuration;
     }
@@ -18,6 +18,7 @@ package org.dbmaintain.database;
 import org.dbmaintain.util.DbMaintainException;
 
 import javax.sql.DataSource;
+import java.util.List;
 import java.util.Set;
 
 public interface SQLHandler {
@@ -39,6 +40,29 @@ public interface SQLHandler {
      */
     int executeUpdateAndCommit(String sql, DataSource dataSource);
 
+    /**
+     * Executes the given parameterized statement and commits the changes to the database. The prepared statement is
+     * kept and reused for later statements with the same sql.
+     *
+     * @param sql        The sql string with a ? for each parameter, not null
+     * @param dataSource The dataSource, not null
+     * @param parameters The values of the parameters, null values are passed as varchar
+     * @return The nr of updates
+     */
+    int executePreparedUpdateAndCommit(String sql, DataSource dataSource, Object... parameters);
+
+    /**
+     * Executes the given parameterized statement for each of the given rows of parameter values, using JDBC batches,
+     * and commits the changes to the database. The prepared statement is kept and reused for later statements with
+     * the same sql.
+     *
+     * @param sql           The sql string with a ? for each parameter, not null
+     * @param dataSource    The dataSource, not null
+     * @param parameterRows The values of the parameters, one array per execution, not null
+     * @return The nr of updates, not including the updates of which the driver did not report the nr
+     */
+    int executePreparedBatchAndCommit(String sql, DataSource dataSource, List<Object[]> parameterRows);
+
     /**
      * Returns the long extracted from the result of the given query. If no value is found, a {@link DbMaintainException}
      * is thrown.
@@ -81,6 +105,10 @@ public interface SQLHandler {
     /**
      * Starts a transaction by turning of auto commit.
      * Make sure to call endTransaction at the end of the transaction
+     * <p/>
+     * Transactions can be nested: if a transaction was already started for the data source, the inner transaction
+     * becomes part of it and is only committed when the outer transaction is committed. Updates that are executed
+     * within a transaction are not committed separately.
      *
      * @param dataSource The data source, not null
      */
@@ -109,4 +137,4 @@ public interface SQLHandler {
      */
     void closeAllConnections();
 
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -22,11 +22,14 @@ import org.dbmaintain.database.SQLHandler;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -55,6 +58,15 @@ public class DefaultSQLHandler implements SQLHandler {
 
     private Map<DataSource, Connection> cachedConnections = new HashMap<DataSource, Connection>();
 
+    /* The prepared statements per sql, per cached connection */
+    private Map<Connection, Map<String, PreparedStatement>> cachedPreparedStatements = new HashMap<>();
+
+    /* The nr of nested transactions that were started, per cached connection */
+    private Map<Connection, Integer> nrOfStartedTransactions = new HashMap<>();
+
+    /* The max nr of statements that is sent to the database in 1 batch */
+    protected static final int MAX_BATCH_SIZE = 1000;
+
     /**
      * Constructs a new instance that connects to the given DataSource
      */
@@ -106,9 +118,7 @@ public class DefaultSQLHandler implements SQLHandler {
             Connection connection = getConnection(dataSource);
             statement = connection.createStatement();
             int nbChanges = statement.executeUpdate(sql);
-            if (!connection.getAutoCommit()) {
-                connection.commit();
-            }
+            commitIfNotInTransaction(connection);
             return nbChanges;
 
         } catch (Exception e) {
@@ -119,6 +129,93 @@ public class DefaultSQLHandler implements SQLHandler {
     }
 
 
+    public int executePreparedUpdateAndCommit(String sql, DataSource dataSource, Object... parameters) {
+        logger.debug(sql);
+
+        if (!doExecuteUpdates) {
+            // skip update
+            return 0;
+        }
+        Connection connection = getConnection(dataSource);
+        try {
+            PreparedStatement preparedStatement = getPreparedStatement(connection, sql);
+            setParameters(preparedStatement, parameters);
+            int nbChanges = preparedStatement.executeUpdate();
+            commitIfNotInTransaction(connection);
+            return nbChanges;
+
+        } catch (Exception e) {
+            closePreparedStatement(connection, sql);
+            throw new DatabaseException("Error while performing database update:\n" + sql, e);
+        }
+    }
+
+
+    public int executePreparedBatchAndCommit(String sql, DataSource dataSource, List<Object[]> parameterRows) {
+        logger.debug(sql + " (" + parameterRows.size() + " times)");
+
+        if (!doExecuteUpdates || parameterRows.isEmpty()) {
+            // skip update
+            return 0;
+        }
+        Connection connection = getConnection(dataSource);
+        try {
+            PreparedStatement preparedStatement = getPreparedStatement(connection, sql);
+            int nbChanges = 0;
+            int batchSize = 0;
+            for (Object[] parameters : parameterRows) {
+                setParameters(preparedStatement, parameters);
+                preparedStatement.addBatch();
+                if (++batchSize == MAX_BATCH_SIZE) {
+                    nbChanges += executeBatch(preparedStatement);
+                    batchSize = 0;
+                }
+            }
+            if (batchSize > 0) {
+                nbChanges += executeBatch(preparedStatement);
+            }
+            commitIfNotInTransaction(connection);
+            return nbChanges;
+
+        } catch (Exception e) {
+            closePreparedStatement(connection, sql);
+            throw new DatabaseException("Error while performing database batch update:\n" + sql, e);
+        }
+    }
+
+    protected int executeBatch(PreparedStatement preparedStatement) throws SQLException {
+        int nbChanges = 0;
+        for (int updateCount : preparedStatement.executeBatch()) {
+            if (updateCount > 0) {
+                nbChanges += updateCount;
+            }
+        }
+        return nbChanges;
+    }
+
+    protected void setParameters(PreparedStatement preparedStatement, Object[] parameters) throws SQLException {
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i] == null) {
+                preparedStatement.setNull(i + 1, Types.VARCHAR);
+            } else {
+                preparedStatement.setObject(i + 1, parameters[i]);
+            }
+        }
+    }
+
+    /**
+     * Commits the changes, unless auto commit is enabled or the changes are part of a transaction that was started
+     * using startTransaction.
+     *
+     * @param connection The connection, not null
+     */
+    protected void commitIfNotInTransaction(Connection connection) throws SQLException {
+        if (!connection.getAutoCommit() && !nrOfStartedTransactions.containsKey(connection)) {
+            connection.commit();
+        }
+    }
+
+
     public long getItemAsLong(String sql, DataSource dataSource) {
         logger.debug(sql);
 
@@ -209,6 +306,12 @@ public class DefaultSQLHandler implements SQLHandler {
      */
     public void startTransaction(DataSource dataSource) {
         Connection connection = getConnection(dataSource);
+        Integer nrOfTransactions = nrOfStartedTransactions.get(connection);
+        if (nrOfTransactions != null) {
+            // nested transaction: becomes part of the outer transaction
+            nrOfStartedTransactions.put(connection, nrOfTransactions + 1);
+            return;
+        }
         try {
             if (connection.getAutoCommit()) {
                 connection.setAutoCommit(false);
@@ -216,6 +319,7 @@ public class DefaultSQLHandler implements SQLHandler {
         } catch (Exception e) {
             throw new DatabaseException("Unable to start transaction.", e);
         }
+        nrOfStartedTransactions.put(connection, 1);
     }
 
     /**
@@ -226,6 +330,10 @@ public class DefaultSQLHandler implements SQLHandler {
      */
     public void endTransactionAndCommit(DataSource dataSource) {
         Connection connection = getConnection(dataSource);
+        if (endTransaction(connection)) {
+            // nested transaction: committed together with the outer transaction
+            return;
+        }
         try {
             connection.commit();
 
@@ -249,14 +357,31 @@ public class DefaultSQLHandler implements SQLHandler {
      */
     public void endTransactionAndRollback(DataSource dataSource) {
         Connection connection = getConnection(dataSource);
+        // a nested transaction also rolls back the outer transaction
+        boolean nested = endTransaction(connection);
         try {
             connection.rollback();
 
         } catch (Exception e) {
             throw new DatabaseException("Unable to perform database rollback.", e);
         } finally {
-            reenableAutoCommit(connection);
+            if (!nested) {
+                reenableAutoCommit(connection);
+            }
+        }
+    }
+
+    /**
+     * @param connection The connection, not null
+     * @return True if the ended transaction was nested in another transaction
+     */
+    private boolean endTransaction(Connection connection) {
+        Integer nrOfTransactions = nrOfStartedTransactions.remove(connection);
+        if (nrOfTransactions != null && nrOfTransactions > 1) {
+            nrOfStartedTransactions.put(connection, nrOfTransactions - 1);
+            return true;
         }
+        return false;
     }
 
     private void reenableAutoCommit(Connection connection) {
@@ -273,6 +398,13 @@ public class DefaultSQLHandler implements SQLHandler {
      * disposing this object.
      */
     public void closeAllConnections() {
+        for (Map<String, PreparedStatement> preparedStatements : cachedPreparedStatements.values()) {
+            for (PreparedStatement preparedStatement : preparedStatements.values()) {
+                closeQuietly(preparedStatement);
+            }
+        }
+        cachedPreparedStatements.clear();
+        nrOfStartedTransactions.clear();
         for (Connection connection : cachedConnections.values()) {
             closeQuietly(connection);
         }
@@ -300,4 +432,40 @@ public class DefaultSQLHandler implements SQLHandler {
         }
         return connection;
     }
+
+    /**
+     * Returns a prepared statement for the given sql. The first time a statement is requested, it is prepared on the
+     * given connection. All subsequent calls with the same connection and sql will return the same statement instance.
+     *
+     * @param connection The connection, not null
+     * @param sql        The sql, not null
+     * @return The prepared statement, not null
+     */
+    protected PreparedStatement getPreparedStatement(Connection connection, String sql) throws SQLException {
+        Map<String, PreparedStatement> preparedStatements = cachedPreparedStatements.get(connection);
+        if (preparedStatements == null) {
+            preparedStatements = new HashMap<>();
+            cachedPreparedStatements.put(connection, preparedStatements);
+        }
+        PreparedStatement preparedStatement = preparedStatements.get(sql);
+        if (preparedStatement == null) {
+            preparedStatement = connection.prepareStatement(sql);
+            preparedStatements.put(sql, preparedStatement);
+        }
+        return preparedStatement;
+    }
+
+    /**
+     * Closes and forgets the prepared statement for the given sql, e.g. when it could be left in an invalid state
+     * after an error.
+     *
+     * @param connection The connection, not null
+     * @param sql        The sql, not null
+     */
+    protected void closePreparedStatement(Connection connection, String sql) {
+        Map<String, PreparedStatement> preparedStatements = cachedPreparedStatements.get(connection);
+        if (preparedStatements != null) {
+            closeQuietly(preparedStatements.remove(sql));
+        }
+    }
 }
@@ -94,4 +94,14 @@ public class InformixDatabase extends Database {
             closeQuietly(connection, alterStatement, resultSet);
         }
     }
+
+    /**
+     * Gets the column type suitable to store values of the Java <code>java.sql.Timestamp</code> type.
+     *
+     * @return The column type, not null
+     */
+    @Override
+    public String getTimestampDataType() {
+        return "DATETIME YEAR TO FRACTION";
+    }
 }
@@ -444,4 +444,15 @@ public class MsSqlDatabase extends Database {
         return true;
     }
 
+    /**
+     * Gets the column type suitable to store values of the Java <code>java.sql.Timestamp</code> type.
+     * TIMESTAMP is a row version number in MS-Sql.
+     *
+     * @return The column type, not null
+     */
+    @Override
+    public String getTimestampDataType() {
+        return "DATETIME";
+    }
+
 }
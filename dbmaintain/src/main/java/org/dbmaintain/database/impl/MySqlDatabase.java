@@ -267,4 +267,15 @@ public class MySqlDatabase extends Database {
         return true;
     }
 
-}
\ No newline at end of file
+    /**
+     * Gets the column type suitable to store values of the Java <code>java.sql.Timestamp</code> type.
+     * A TIMESTAMP column is automatically updated by MySql when the row is updated.
+     *
+     * @return The column type, not null
+     */
+    @Override
+    public String getTimestampDataType() {
+        return "DATETIME";
+    }
+
+}
\ No newline at end of file
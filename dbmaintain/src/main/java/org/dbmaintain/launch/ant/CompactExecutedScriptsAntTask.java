@@ -0,0 +1,50 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.launch.ant;
+
+import org.dbmaintain.launch.task.CompactExecutedScriptsTask;
+import org.dbmaintain.launch.task.DbMaintainTask;
+
+/**
+ * Task that replaces the registered incremental scripts with a lower revision than the given checkpoint revision by a
+ * single checkpoint. No scripts will be executed by this task.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class CompactExecutedScriptsAntTask extends BaseDatabaseAntTask {
+
+    private String checkpointRevision;
+
+
+    @Override
+    protected DbMaintainTask createDbMaintainTask() {
+        return new CompactExecutedScriptsTask(getDbMaintainDatabases(), checkpointRevision);
+    }
+
+
+    /**
+     * The registered incremental scripts with a lower revision than this revision are replaced by a single checkpoint,
+     * e.g. 1.5. The revision cannot be higher than the revision of the last executed incremental script. This property is required.
+     *
+     * @param checkpointRevision The checkpoint revision
+     */
+    public void setCheckpointRevision(String checkpointRevision) {
+        this.checkpointRevision = checkpointRevision;
+    }
+
+
+}
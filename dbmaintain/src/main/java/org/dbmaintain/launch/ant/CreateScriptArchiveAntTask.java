@@ -38,11 +38,12 @@ public class CreateScriptArchiveAntTask extends BaseAntTask {
     private String qualifiers;
     private String patchQualifiers;
     private String scriptFileExtensions;
+    private String previousArchiveFileName;
 
 
     @Override
     protected DbMaintainTask createDbMaintainTask() {
-        return new CreateScriptArchiveTask(archiveFileName, scriptLocations, scriptEncoding, postProcessingScriptDirectoryName, qualifiers, patchQualifiers, scriptFileExtensions);
+        return new CreateScriptArchiveTask(archiveFileName, scriptLocations, scriptEncoding, postProcessingScriptDirectoryName, qualifiers, patchQualifiers, scriptFileExtensions, previousArchiveFileName);
     }
 
     /**
@@ -113,4 +114,15 @@ public class CreateScriptArchiveAntTask extends BaseAntTask {
     public void setScriptFileExtensions(String scriptFileExtensions) {
         this.scriptFileExtensions = scriptFileExtensions;
     }
+
+    /**
+     * Optional script archive that was created before with the same configuration. If set, a delta archive is created
+     * that only contains the scripts that are new or changed since this archive. Such an archive can only update
+     * databases that were updated with the previous archive.
+     *
+     * @param previousArchiveFileName The name of the previous archive
+     */
+    public void setPreviousArchiveFileName(String previousArchiveFileName) {
+        this.previousArchiveFileName = previousArchiveFileName;
+    }
 }
@@ -20,6 +20,7 @@ import org.apache.commons.logging.LogFactory;
 import org.dbmaintain.MainFactory;
 import org.dbmaintain.config.DbMaintainConfigurationLoader;
 import org.dbmaintain.config.DbMaintainProperties;
+import org.dbmaintain.script.executedscriptinfo.ScriptIndexes;
 import org.dbmaintain.util.DbMaintainException;
 import org.dbmaintain.util.FileUtils;
 
@@ -50,6 +51,7 @@ public class CommandLine {
         UPDATE_DATABASE("updateDatabase"),
         MARK_ERROR_SCRIPT_PERFORMED("markErrorScriptPerformed"),
         MARK_ERROR_SCRIPT_REVERTED("markErrorScriptReverted"),
+        COMPACT_EXECUTED_SCRIPTS("compactExecutedScripts"),
         MARK_DATABASE_AS_UPTODATE("markDatabaseAsUpToDate"),
         CLEAR_DATABASE("clearDatabase"),
         CLEAN_DATABASE("cleanDatabase"),
@@ -203,6 +205,13 @@ public class CommandLine {
             case MARK_ERROR_SCRIPT_REVERTED:
                 getMainFactory(configuration).createExecutedScriptInfoSource().removeErrorScripts();
                 break;
+            case COMPACT_EXECUTED_SCRIPTS:
+                if (commandLineArguments.getFirstExtraArgument() == null) {
+                    System.err.println("Checkpoint revision must be specified as extra argument");
+                    System.exit(1);
+                }
+                getMainFactory(configuration).createExecutedScriptInfoSource().compactExecutedScripts(new ScriptIndexes(commandLineArguments.getFirstExtraArgument()));
+                break;
             case CLEAR_DATABASE:
                 getMainFactory(configuration).createDBClearer().clearDatabase();
                 break;
@@ -272,6 +281,11 @@ public class CommandLine {
         System.out.println("     The script will be run again in the next update.");
         System.out.println("     No scripts will be executed by this task.");
         System.out.println();
+        System.out.println("- " + DbMaintainOperation.COMPACT_EXECUTED_SCRIPTS.getOperationName());
+        System.out.println("     Replaces the registered incremental scripts with a lower revision than the given revision by a single checkpoint.");
+        System.out.println("     Expects a second argument indicating the checkpoint revision, e.g. 1.5.");
+        System.out.println("     No scripts will be executed by this task.");
+        System.out.println();
         System.out.println("- " + DbMaintainOperation.MARK_DATABASE_AS_UPTODATE.getOperationName());
         System.out.println("     Marks the database as up-to-date, without executing any script.");
         System.out.println("     You can use this operation to prepare an existing database to be managed by DbMaintain, ");
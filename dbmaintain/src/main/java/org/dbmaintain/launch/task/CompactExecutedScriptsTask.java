@@ -0,0 +1,70 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.launch.task;
+
+import org.dbmaintain.MainFactory;
+import org.dbmaintain.script.executedscriptinfo.ExecutedScriptInfoSource;
+import org.dbmaintain.script.executedscriptinfo.ScriptIndexes;
+import org.dbmaintain.util.DbMaintainException;
+
+import java.util.List;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Task that replaces the registered incremental scripts with a lower revision than the given checkpoint revision by a
+ * single checkpoint. These scripts no longer have to be read from the executed scripts table and compared with the
+ * scripts during an update. Patch scripts stay registered. Scripts with a lower revision that are changed afterwards
+ * are ignored, adding or deleting such scripts is reported as an irregular update. No scripts will be executed by
+ * this task.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class CompactExecutedScriptsTask extends DbMaintainDatabaseTask {
+
+    protected String checkpointRevision;
+
+
+    public CompactExecutedScriptsTask() {
+    }
+
+    public CompactExecutedScriptsTask(List<DbMaintainDatabase> taskDatabases, String checkpointRevision) {
+        super(taskDatabases);
+        this.checkpointRevision = checkpointRevision;
+    }
+
+
+    @Override
+    protected void addTaskConfiguration(TaskConfiguration taskConfiguration) {
+        taskConfiguration.addDatabaseConfigurations(databases);
+    }
+
+    @Override
+    protected boolean doExecute(MainFactory mainFactory) {
+        if (isBlank(checkpointRevision)) {
+            throw new DbMaintainException("Unable to compact the executed scripts: no checkpoint revision specified.");
+        }
+        ExecutedScriptInfoSource executedScriptInfoSource = mainFactory.createExecutedScriptInfoSource();
+        executedScriptInfoSource.compactExecutedScripts(new ScriptIndexes(checkpointRevision));
+        return true;
+    }
+
+
+    public void setCheckpointRevision(String checkpointRevision) {
+        this.checkpointRevision = checkpointRevision;
+    }
+}
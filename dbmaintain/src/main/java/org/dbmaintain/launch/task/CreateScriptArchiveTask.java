@@ -40,12 +40,17 @@ public class CreateScriptArchiveTask extends DbMaintainTask {
     protected String qualifiers;
     protected String patchQualifiers;
     protected String scriptFileExtensions;
+    protected String previousArchiveFileName;
 
 
     public CreateScriptArchiveTask() {
     }
 
     public CreateScriptArchiveTask(String archiveFileName, String scriptLocations, String scriptEncoding, String postProcessingScriptDirectoryName, String qualifiers, String patchQualifiers, String scriptFileExtensions) {
+        this(archiveFileName, scriptLocations, scriptEncoding, postProcessingScriptDirectoryName, qualifiers, patchQualifiers, scriptFileExtensions, null);
+    }
+
+    public CreateScriptArchiveTask(String archiveFileName, String scriptLocations, String scriptEncoding, String postProcessingScriptDirectoryName, String qualifiers, String patchQualifiers, String scriptFileExtensions, String previousArchiveFileName) {
         this.archiveFileName = archiveFileName;
         this.scriptLocations = scriptLocations;
         this.scriptEncoding = scriptEncoding;
@@ -53,6 +58,7 @@ public class CreateScriptArchiveTask extends DbMaintainTask {
         this.qualifiers = qualifiers;
         this.patchQualifiers = patchQualifiers;
         this.scriptFileExtensions = scriptFileExtensions;
+        this.previousArchiveFileName = previousArchiveFileName;
     }
 
 
@@ -71,6 +77,7 @@ public class CreateScriptArchiveTask extends DbMaintainTask {
         taskConfiguration.addConfigurationIfSet(PROPERTY_QUALIFIERS, qualifiers);
         taskConfiguration.addConfigurationIfSet(PROPERTY_SCRIPT_PATCH_QUALIFIERS, patchQualifiers);
         taskConfiguration.addConfigurationIfSet(PROPERTY_SCRIPT_FILE_EXTENSIONS, scriptFileExtensions);
+        taskConfiguration.addConfigurationIfSet(PROPERTY_SCRIPT_ARCHIVE_PREVIOUS, previousArchiveFileName);
     }
 
 
@@ -101,4 +108,8 @@ public class CreateScriptArchiveTask extends DbMaintainTask {
     public void setScriptFileExtensions(String scriptFileExtensions) {
         this.scriptFileExtensions = scriptFileExtensions;
     }
+
+    public void setPreviousArchiveFileName(String previousArchiveFileName) {
+        this.previousArchiveFileName = previousArchiveFileName;
+    }
 }
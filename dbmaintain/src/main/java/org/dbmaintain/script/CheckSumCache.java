@@ -0,0 +1,237 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.apache.commons.io.IOUtils.closeQuietly;
+import static org.apache.commons.lang3.StringUtils.split;
+
+/**
+ * Persistent cache of script check sums. A cached check sum is only used if the size, last modification time, encoding
+ * and carriage return setting of the script are still the same as when the check sum was calculated. This avoids
+ * having to read all unchanged scripts each time DbMaintain is run.
+ * <p/>
+ * The cache is stored as a properties file. It is written to a temporary file first, which then replaces the
+ * original file, so that an interrupted run never leaves a corrupt cache behind.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class CheckSumCache {
+
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(CheckSumCache.class);
+
+    /*
+     * Scripts that were modified less than this nr of ms before their check sum was calculated are not cached. The file
+     * system timestamp resolution could otherwise hide a change that was made right after the check sum calculation.
+     */
+    protected static final long MIN_AGE_OF_CACHED_SCRIPTS = 2000;
+
+    /* The file in which the cache is stored */
+    protected File cacheFile;
+    /* The cached entries, the relative script name is used as key */
+    protected Map<String, Entry> entries = new ConcurrentHashMap<>();
+    /* True if the cache was changed since it was loaded */
+    protected volatile boolean modified;
+
+
+    /**
+     * Creates a cache and loads the existing entries from the given file. If the file does not exist or cannot be
+     * read, the cache starts out empty.
+     *
+     * @param cacheFile The file in which the cache is stored, not null
+     */
+    public CheckSumCache(File cacheFile) {
+        this.cacheFile = cacheFile;
+        load();
+    }
+
+
+    /**
+     * @param scriptName            The name of the script, not null
+     * @param size                  The current size of the script in bytes
+     * @param lastModified          The current last modification timestamp of the script
+     * @param encoding              The encoding of the script, not null
+     * @param ignoreCarriageReturns True if carriage returns are ignored when calculating the check sum
+     * @return The cached check sum, null if not cached or if the script has changed
+     */
+    public String getCheckSum(String scriptName, long size, long lastModified, String encoding, boolean ignoreCarriageReturns) {
+        Entry entry = entries.get(scriptName);
+        if (entry == null || !entry.matches(size, lastModified, encoding, ignoreCarriageReturns)) {
+            return null;
+        }
+        return entry.checkSum;
+    }
+
+    /**
+     * Stores the check sum of the given script in the cache.
+     *
+     * @param scriptName            The name of the script, not null
+     * @param size                  The size of the script in bytes
+     * @param lastModified          The last modification timestamp of the script
+     * @param encoding              The encoding of the script, not null
+     * @param ignoreCarriageReturns True if carriage returns were ignored when calculating the check sum
+     * @param checkSum              The check sum, not null
+     */
+    public void putCheckSum(String scriptName, long size, long lastModified, String encoding, boolean ignoreCarriageReturns, String checkSum) {
+        if (System.currentTimeMillis() - lastModified < MIN_AGE_OF_CACHED_SCRIPTS) {
+            return;
+        }
+        entries.put(scriptName, new Entry(size, lastModified, encoding, ignoreCarriageReturns, checkSum));
+        modified = true;
+    }
+
+    /**
+     * Removes the entries of all scripts that are not in the given collection, e.g. because they were deleted.
+     *
+     * @param scriptNames The names of the scripts to keep, not null
+     */
+    public void retainScripts(Collection<String> scriptNames) {
+        if (entries.keySet().retainAll(scriptNames)) {
+            modified = true;
+        }
+    }
+
+
+    /**
+     * Writes the cache to its file if it was changed. Failing to store the cache is not an error: the check sums
+     * will simply be recalculated during the next run.
+     */
+    public synchronized void store() {
+        if (!modified) {
+            return;
+        }
+        File tempFile = null;
+        OutputStream outputStream = null;
+        try {
+            File cacheDir = cacheFile.getAbsoluteFile().getParentFile();
+            cacheDir.mkdirs();
+            tempFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheDir);
+            outputStream = new BufferedOutputStream(new FileOutputStream(tempFile));
+            toProperties().store(outputStream, "DbMaintain script check sum cache, do not edit");
+            outputStream.close();
+            moveAtomically(tempFile, cacheFile);
+            modified = false;
+        } catch (IOException e) {
+            logger.warn("Unable to store script check sum cache " + cacheFile + ": " + e.getMessage());
+            closeQuietly(outputStream);
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+
+    protected void load() {
+        if (!cacheFile.exists()) {
+            return;
+        }
+        InputStream inputStream = null;
+        try {
+            inputStream = new BufferedInputStream(new FileInputStream(cacheFile));
+            Properties properties = new Properties();
+            properties.load(inputStream);
+            for (String scriptName : properties.stringPropertyNames()) {
+                Entry entry = Entry.parse(properties.getProperty(scriptName));
+                if (entry != null) {
+                    entries.put(scriptName, entry);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to read script check sum cache " + cacheFile + ", all check sums will be recalculated: " + e.getMessage());
+            entries.clear();
+        } finally {
+            closeQuietly(inputStream);
+        }
+    }
+
+    protected Properties toProperties() {
+        Properties properties = new Properties();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            properties.setProperty(entry.getKey(), entry.getValue().format());
+        }
+        return properties;
+    }
+
+    protected void moveAtomically(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), REPLACE_EXISTING);
+        }
+    }
+
+
+    /**
+     * A cached check sum together with the properties of the script at the time the check sum was calculated.
+     */
+    protected static class Entry {
+
+        private long size;
+        private long lastModified;
+        private String encoding;
+        private boolean ignoreCarriageReturns;
+        private String checkSum;
+
+        public Entry(long size, long lastModified, String encoding, boolean ignoreCarriageReturns, String checkSum) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.encoding = encoding;
+            this.ignoreCarriageReturns = ignoreCarriageReturns;
+            this.checkSum = checkSum;
+        }
+
+        public boolean matches(long size, long lastModified, String encoding, boolean ignoreCarriageReturns) {
+            return this.size == size && this.lastModified == lastModified && this.ignoreCarriageReturns == ignoreCarriageReturns && this.encoding.equals(encoding);
+        }
+
+        /**
+         * @return The entry as a property value: size,lastModified,encoding,ignoreCarriageReturns,checkSum
+         */
+        public String format() {
+            return size + "," + lastModified + "," + encoding + "," + ignoreCarriageReturns + "," + checkSum;
+        }
+
+        /**
+         * @param value The property value
+         * @return The entry, null if the value is not valid
+         */
+        public static Entry parse(String value) {
+            String[] parts = split(value, ',');
+            if (parts.length != 5) {
+                return null;
+            }
+            try {
+                return new Entry(Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2], Boolean.parseBoolean(parts[3]), parts[4]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
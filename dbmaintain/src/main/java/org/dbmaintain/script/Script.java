@@ -15,6 +15,7 @@
  */
 package org.dbmaintain.script;
 
+import org.dbmaintain.script.checksum.CheckSumAlgorithms;
 import org.dbmaintain.script.executedscriptinfo.ScriptIndexes;
 import org.dbmaintain.script.qualifier.Qualifier;
 
@@ -132,15 +133,40 @@ public class Script implements Comparable<Script> {
     }
 
     /**
-     * @return Checksum calculated for the content of the script, not null
+     * @return Checksum calculated for the content of the script, null only for an executed script that was
+     *         registered before its execution completed
      */
     public String getCheckSum() {
-        if (checkSum == null) {
+        if (checkSum == null && scriptContentHandle != null) {
             checkSum = scriptContentHandle.getCheckSum();
         }
         return checkSum;
     }
 
+    /**
+     * Gets the checksum calculated with the given algorithm. If this script has no content, only the checksum that
+     * was provided can be returned.
+     *
+     * @param algorithmName The name of the checksum algorithm, not null
+     * @return The checksum, null if it cannot be determined for the given algorithm
+     */
+    public String getCheckSum(String algorithmName) {
+        if (checkSum != null && algorithmName.equals(CheckSumAlgorithms.getAlgorithmName(checkSum))) {
+            return checkSum;
+        }
+        if (scriptContentHandle != null) {
+            return scriptContentHandle.getCheckSum(algorithmName);
+        }
+        return null;
+    }
+
+    /**
+     * @return True if the checksum is known without having to read the content of the script
+     */
+    public boolean isCheckSumCalculated() {
+        return checkSum != null || (scriptContentHandle != null && scriptContentHandle.isCheckSumCalculated());
+    }
+
     /**
      * @return Handle that provides access to the content of the script. May be null! If so, this
      *         object is not suitable for being executed. The checksum however cannot be null, so we can always
@@ -168,7 +194,22 @@ public class Script implements Comparable<Script> {
      */
     public boolean isScriptContentEqualTo(Script other, boolean useLastModificationDates) {
         return useLastModificationDates && this.getFileLastModifiedAt().equals(other.getFileLastModifiedAt())
-                || this.getCheckSum().equals(other.getCheckSum());
+                || isCheckSumEqualTo(other);
+    }
+
+    /**
+     * The checksums are compared using the algorithm of the checksum of this script. This way, a script that was
+     * registered using another algorithm than the current one, is not seen as modified.
+     *
+     * @param other Another script, not null
+     * @return True if the checksum of this script is known and equal to the checksum of the given one
+     */
+    public boolean isCheckSumEqualTo(Script other) {
+        String checkSum = getCheckSum();
+        if (checkSum == null) {
+            return false;
+        }
+        return CheckSumAlgorithms.isEqual(checkSum, other.getCheckSum(CheckSumAlgorithms.getAlgorithmName(checkSum)));
     }
 
 
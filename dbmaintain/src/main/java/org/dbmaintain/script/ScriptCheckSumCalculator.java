@@ -0,0 +1,110 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script;
+
+import org.dbmaintain.util.DbMaintainException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Calculates the check sums of a set of scripts up front, using a bounded pool of threads. Once calculated, the
+ * check sum is kept by the script, so that later calls to {@link Script#getCheckSum()} return immediately.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ScriptCheckSumCalculator {
+
+    /* The nr of threads to use, 1 to calculate the check sums in the calling thread */
+    protected int nrOfThreads;
+
+
+    /**
+     * @param nrOfThreads The nr of threads to use, 0 or less to use as many threads as there are available processors
+     */
+    public ScriptCheckSumCalculator(int nrOfThreads) {
+        this.nrOfThreads = nrOfThreads > 0 ? nrOfThreads : Runtime.getRuntime().availableProcessors();
+    }
+
+
+    /**
+     * Calculates the check sums of the given scripts. Returns when all check sums are calculated.
+     *
+     * @param scripts The scripts, not null
+     * @throws DbMaintainException if a check sum could not be calculated
+     */
+    public void calculateCheckSums(Collection<Script> scripts) {
+        int poolSize = Math.min(nrOfThreads, scripts.size());
+        if (poolSize <= 1) {
+            for (Script script : scripts) {
+                script.getCheckSum();
+            }
+            return;
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(poolSize, new CheckSumThreadFactory());
+        try {
+            List<Future<String>> futures = new ArrayList<>(scripts.size());
+            for (final Script script : scripts) {
+                futures.add(executorService.submit(new Callable<String>() {
+                    public String call() {
+                        return script.getCheckSum();
+                    }
+                }));
+            }
+            for (Future<String> future : futures) {
+                waitForCheckSum(future);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+
+    protected void waitForCheckSum(Future<String> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DbMaintainException("Interrupted while calculating script check sums", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof DbMaintainException) {
+                throw (DbMaintainException) cause;
+            }
+            throw new DbMaintainException("Unable to calculate script check sum", cause);
+        }
+    }
+
+
+    /**
+     * Creates daemon threads, so that a hanging script read can never prevent the VM from exiting.
+     */
+    protected static class CheckSumThreadFactory implements ThreadFactory {
+
+        private ThreadFactory defaultThreadFactory = Executors.defaultThreadFactory();
+
+        public Thread newThread(Runnable runnable) {
+            Thread thread = defaultThreadFactory.newThread(runnable);
+            thread.setName("dbmaintain-checksum-" + thread.getName());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -15,12 +15,19 @@
  */
 package org.dbmaintain.script;
 
+import org.dbmaintain.script.checksum.CheckSumAlgorithm;
+import org.dbmaintain.script.checksum.CheckSumAlgorithms;
 import org.dbmaintain.util.DbMaintainException;
 import org.dbmaintain.util.ReaderInputStream;
 
 import java.io.*;
 import java.net.URL;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
 
 import static org.apache.commons.io.IOUtils.closeQuietly;
 
@@ -33,6 +40,16 @@ import static org.apache.commons.io.IOUtils.closeQuietly;
  */
 public abstract class ScriptContentHandle {
 
+    /* The size of the blocks that are read when calculating the digest of a script */
+    protected static final int DIGEST_BUFFER_SIZE = 64 * 1024;
+
+    /* The algorithms that are used when no algorithms were set explicitly */
+    private static final CheckSumAlgorithms DEFAULT_CHECK_SUM_ALGORITHMS = CheckSumAlgorithms.createDefault();
+
+    /* The available check sum algorithms, the default algorithm is used to calculate the check sum of the script */
+    protected CheckSumAlgorithms checkSumAlgorithms = DEFAULT_CHECK_SUM_ALGORITHMS;
+    /* The check sums that are already known, per algorithm name. digest() resets a digest, so results are kept here */
+    protected Map<String, String> checkSums = new HashMap<>();
     protected MessageDigest scriptDigest;
     protected Reader scriptReader;
     protected String encoding;
@@ -53,13 +70,20 @@ public abstract class ScriptContentHandle {
     /**
      * Opens a stream to the content of the script.
      * <p/>
+     * If the check sum was not calculated yet, it is calculated while the content is read. When the reader has been
+     * read until the end, {@link #getCheckSum()} no longer needs to read the script again.
+     * <p/>
      * NOTE: do not forget to close the stream after usage.
      *
      * @return The content stream, not null
      */
     public Reader openScriptContentReader() {
+        InputStream scriptInputStream = getScriptInputStream();
+        if (!isCheckSumCalculated()) {
+            scriptInputStream = new CheckSumInputStream(scriptInputStream, createDigest());
+        }
         try {
-            scriptReader = new InputStreamReader(getScriptInputStream(), encoding);
+            scriptReader = new InputStreamReader(scriptInputStream, encoding);
         } catch (UnsupportedEncodingException e) {
             throw new DbMaintainException("Unsupported encoding " + encoding, e);
         }
@@ -67,40 +91,187 @@ public abstract class ScriptContentHandle {
     }
 
 
+    /**
+     * @return True if the check sum is known without having to read the script, e.g. because the script was already
+     *         read until the end using {@link #openScriptContentReader()}
+     */
+    public boolean isCheckSumCalculated() {
+        return scriptDigest != null || checkSums.containsKey(getCheckSumAlgorithmName());
+    }
+
+    /**
+     * Sets a check sum that was calculated beforehand, e.g. the check sum that is stored in the manifest of a script
+     * archive. It is used instead of reading the script when a check sum with the same algorithm is requested.
+     *
+     * @param checkSum The check sum, prefixed with the algorithm name, not null
+     */
+    public void setCheckSum(String checkSum) {
+        checkSums.put(CheckSumAlgorithms.getAlgorithmName(checkSum), checkSum);
+    }
+
+    /**
+     * @return The algorithms that are used for calculating check sums, not null
+     */
+    public CheckSumAlgorithms getCheckSumAlgorithms() {
+        return checkSumAlgorithms;
+    }
+
+    /**
+     * Sets the algorithms to use for calculating check sums. Should be called before any check sum is calculated.
+     *
+     * @param checkSumAlgorithms The algorithms, not null
+     */
+    public void setCheckSumAlgorithms(CheckSumAlgorithms checkSumAlgorithms) {
+        this.checkSumAlgorithms = checkSumAlgorithms;
+    }
+
+    /**
+     * @return The name of the algorithm that is used by {@link #getCheckSum()}, not null
+     */
+    public String getCheckSumAlgorithmName() {
+        return checkSumAlgorithms.getDefaultAlgorithm().getName();
+    }
+
+    /**
+     * @return The check sum of the script, calculated with the default algorithm and prefixed with the algorithm name, not null
+     */
     public String getCheckSum() {
+        String algorithmName = getCheckSumAlgorithmName();
+        String checkSum = checkSums.get(algorithmName);
+        if (checkSum != null) {
+            return checkSum;
+        }
         try {
             MessageDigest scriptDigest = getScriptDigest();
-            return getHexPresentation(scriptDigest.digest());
+            checkSum = CheckSumAlgorithms.toCheckSum(algorithmName, scriptDigest.digest());
+            checkSums.put(algorithmName, checkSum);
+            return checkSum;
         } catch (IOException e) {
             throw new DbMaintainException(e);
         }
     }
 
+    /**
+     * Gets the check sum calculated with the given algorithm. This is used to compare the script with check sums that
+     * were stored using another algorithm than the current default one.
+     *
+     * @param algorithmName The name of the algorithm, not null
+     * @return The check sum of the script prefixed with the algorithm name, not null
+     */
+    public String getCheckSum(String algorithmName) {
+        if (algorithmName.equals(getCheckSumAlgorithmName())) {
+            return getCheckSum();
+        }
+        String checkSum = checkSums.get(algorithmName);
+        if (checkSum == null) {
+            try {
+                MessageDigest digest = checkSumAlgorithms.getAlgorithmWithName(algorithmName).createDigest();
+                updateScriptDigest(digest);
+                checkSum = CheckSumAlgorithms.toCheckSum(algorithmName, digest.digest());
+                checkSums.put(algorithmName, checkSum);
+            } catch (IOException e) {
+                throw new DbMaintainException("Unable to calculate " + algorithmName + " digest for script.", e);
+            }
+        }
+        return checkSum;
+    }
+
     protected MessageDigest getScriptDigest() throws IOException {
         if (scriptDigest != null) {
             return scriptDigest;
         }
+        try {
+            MessageDigest digest = createDigest();
+            updateScriptDigest(digest);
+            scriptDigest = digest;
+            return scriptDigest;
+        } catch (Exception e) {
+            throw new DbMaintainException("Unable to calculate digest for script.", e);
+        }
+    }
+
+    protected MessageDigest createDigest() {
+        CheckSumAlgorithm checkSumAlgorithm = checkSumAlgorithms.getDefaultAlgorithm();
+        return checkSumAlgorithm.createDigest();
+    }
 
+    /**
+     * Feeds the complete content of the script to the given digest. The content is read in blocks of
+     * {@link #DIGEST_BUFFER_SIZE} bytes. Subclasses that have a faster way of accessing the raw bytes can override
+     * this method, they should pass every block through {@link #updateScriptDigest(MessageDigest, byte[], int, int)}
+     * so that carriage returns are filtered in the same way.
+     *
+     * @param digest The digest to update, not null
+     */
+    protected void updateScriptDigest(MessageDigest digest) throws IOException {
         InputStream scriptInputStream = null;
         try {
             scriptInputStream = getScriptInputStream();
-            scriptDigest = MessageDigest.getInstance("MD5");
-
-            int b;
-            while ((b = scriptInputStream.read()) != -1) {
-                if (ignoreCarriageReturnsWhenCalculatingCheckSum && b == '\r') {
-                    continue;
-                }
-                scriptDigest.update((byte) b);
+            byte[] buffer = new byte[DIGEST_BUFFER_SIZE];
+            int length;
+            while ((length = scriptInputStream.read(buffer, 0, buffer.length)) != -1) {
+                updateScriptDigest(digest, buffer, 0, length);
             }
-            return scriptDigest;
-        } catch (Exception e) {
-            throw new DbMaintainException("Unable to calculate digest for script.", e);
         } finally {
             closeQuietly(scriptInputStream);
         }
     }
 
+    /**
+     * Adds the given block of bytes to the digest. If carriage returns need to be ignored, the block is split on the
+     * carriage return chars and the parts in between are added in bulk.
+     *
+     * @param digest The digest to update, not null
+     * @param bytes  The buffer, not null
+     * @param offset The start of the block in the buffer
+     * @param length The nr of bytes in the block
+     */
+    protected void updateScriptDigest(MessageDigest digest, byte[] bytes, int offset, int length) {
+        if (!ignoreCarriageReturnsWhenCalculatingCheckSum) {
+            digest.update(bytes, offset, length);
+            return;
+        }
+        int end = offset + length;
+        int start = offset;
+        for (int i = offset; i < end; i++) {
+            if (bytes[i] == '\r') {
+                if (i > start) {
+                    digest.update(bytes, start, i - start);
+                }
+                start = i + 1;
+            }
+        }
+        if (start < end) {
+            digest.update(bytes, start, end - start);
+        }
+    }
+
+
+    /**
+     * Opens a stream to the raw bytes of the script, e.g. to copy the script without decoding it.
+     * <p/>
+     * NOTE: do not forget to close the stream after usage.
+     *
+     * @return The content stream, not null
+     */
+    public InputStream openScriptContentInputStream() {
+        return getScriptInputStream();
+    }
+
+    /**
+     * @return The encoding of the script, not null
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * @return False if only the check sum of the script is known and its content can not be read, e.g. for a script
+     *         that was left out of a delta script archive
+     */
+    public boolean isContentAvailable() {
+        return true;
+    }
 
     public String getScriptContentsAsString(long maxNrChars) {
         try {
@@ -126,14 +297,6 @@ public abstract class ScriptContentHandle {
         }
     }
 
-    protected String getHexPresentation(byte[] byteArray) {
-        StringBuffer result = new StringBuffer();
-        for (byte b : byteArray) {
-            result.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
-        }
-        return result.toString();
-    }
-
 
     /**
      * NOTE: Make sure you don't forget to close the stream!
@@ -143,6 +306,72 @@ public abstract class ScriptContentHandle {
     protected abstract InputStream getScriptInputStream();
 
 
+    /**
+     * Stream that updates a digest with all bytes that pass through it. When the end of the stream is reached, the
+     * digest becomes the digest of the script. A stream that is closed before the end leaves the digest untouched.
+     */
+    protected class CheckSumInputStream extends FilterInputStream {
+
+        private MessageDigest digest;
+        private byte[] singleByte = new byte[1];
+
+        public CheckSumInputStream(InputStream inputStream, MessageDigest digest) {
+            super(inputStream);
+            this.digest = digest;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b == -1) {
+                endOfStreamReached();
+            } else {
+                singleByte[0] = (byte) b;
+                updateScriptDigest(digest, singleByte, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int nrOfBytesRead = in.read(bytes, offset, length);
+            if (nrOfBytesRead == -1) {
+                endOfStreamReached();
+            } else if (nrOfBytesRead > 0) {
+                updateScriptDigest(digest, bytes, offset, nrOfBytesRead);
+            }
+            return nrOfBytesRead;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // skipped bytes still need to be digested
+            int nrOfBytesRead = read(new byte[(int) Math.min(n, DIGEST_BUFFER_SIZE)]);
+            return nrOfBytesRead == -1 ? 0 : nrOfBytesRead;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void mark(int readLimit) {
+        }
+
+        @Override
+        public void reset() throws IOException {
+            throw new IOException("Mark not supported");
+        }
+
+        private void endOfStreamReached() {
+            if (scriptDigest == null) {
+                scriptDigest = digest;
+            }
+        }
+    }
+
+
     /**
      * A handle for getting the script content as a stream.
      */
@@ -180,6 +409,101 @@ public abstract class ScriptContentHandle {
     }
 
 
+    /**
+     * A handle for getting the content of a script file. The digest is calculated by reading the file in large blocks
+     * using a file channel instead of going through a URL connection.
+     */
+    public static class FileScriptContentHandle extends ScriptContentHandle {
+
+        /* The script file */
+        private File file;
+        /* The cache that is consulted before calculating the check sum, null if there is no cache */
+        private CheckSumCache checkSumCache;
+        /* The name of the script in the check sum cache */
+        private String checkSumCacheKey;
+
+        /**
+         * Creates a content handle.
+         *
+         * @param file     The script file, not null
+         * @param encoding The encoding of the script, not null
+         * @param ignoreCarriageReturnsWhenCalculatingCheckSum
+         *                 If true, carriage return chars will be ignored when calculating check sums
+         */
+        public FileScriptContentHandle(File file, String encoding, boolean ignoreCarriageReturnsWhenCalculatingCheckSum) {
+            super(encoding, ignoreCarriageReturnsWhenCalculatingCheckSum);
+            this.file = file;
+        }
+
+        /**
+         * Opens a stream to the content of the script.
+         *
+         * @return The content stream, not null
+         */
+        @Override
+        protected InputStream getScriptInputStream() {
+            try {
+                return new FileInputStream(file);
+            } catch (IOException e) {
+                throw new DbMaintainException("Error while trying to create reader for file " + file, e);
+            }
+        }
+
+        /**
+         * Enables the use of the given cache: an unchanged script will then get its check sum from the cache
+         * instead of reading the file.
+         *
+         * @param checkSumCache    The cache, not null
+         * @param checkSumCacheKey The name of the script in the cache, not null
+         */
+        public void setCheckSumCache(CheckSumCache checkSumCache, String checkSumCacheKey) {
+            this.checkSumCache = checkSumCache;
+            this.checkSumCacheKey = checkSumCacheKey;
+        }
+
+        @Override
+        public String getCheckSum() {
+            if (checkSumCache == null) {
+                return super.getCheckSum();
+            }
+            long size = file.length();
+            long lastModified = file.lastModified();
+            String checkSum = checkSumCache.getCheckSum(checkSumCacheKey, size, lastModified, encoding, ignoreCarriageReturnsWhenCalculatingCheckSum);
+            if (checkSum != null && !checkSum.startsWith(getCheckSumAlgorithmName() + CheckSumAlgorithms.ALGORITHM_SEPARATOR)) {
+                // cached using another algorithm
+                checkSum = null;
+            }
+            if (checkSum == null) {
+                checkSum = super.getCheckSum();
+                if (file.length() != size || file.lastModified() != lastModified) {
+                    // the file changed while it was being read
+                    return checkSum;
+                }
+                checkSumCache.putCheckSum(checkSumCacheKey, size, lastModified, encoding, ignoreCarriageReturnsWhenCalculatingCheckSum, checkSum);
+            }
+            return checkSum;
+        }
+
+        @Override
+        protected void updateScriptDigest(MessageDigest digest) throws IOException {
+            FileInputStream fileInputStream = null;
+            try {
+                fileInputStream = new FileInputStream(file);
+                FileChannel fileChannel = fileInputStream.getChannel();
+                ByteBuffer buffer = ByteBuffer.allocate(DIGEST_BUFFER_SIZE);
+                while (fileChannel.read(buffer) != -1) {
+                    // called through Buffer: the covariant ByteBuffer overrides of JDK 9+ do not exist on Java 7 and 8
+                    ((Buffer) buffer).flip();
+                    updateScriptDigest(digest, buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                    ((Buffer) buffer).clear();
+                }
+            } finally {
+                closeQuietly(fileInputStream);
+            }
+        }
+    }
+
+
     /**
      * A handle for getting the script content as a stream.
      */
@@ -210,6 +534,30 @@ public abstract class ScriptContentHandle {
         protected InputStream getScriptInputStream() {
             return new ReaderInputStream(new StringReader(scriptContent));
         }
+
+        /**
+         * The carriage returns are filtered on the char values, before the chars are narrowed to bytes. Filtering the
+         * bytes of the stream would also leave out chars that are narrowed to a carriage return, e.g. U+010D.
+         *
+         * @param digest The digest to update, not null
+         */
+        @Override
+        protected void updateScriptDigest(MessageDigest digest) {
+            byte[] buffer = new byte[Math.min(scriptContent.length(), DIGEST_BUFFER_SIZE)];
+            int length = 0;
+            for (int i = 0; i < scriptContent.length(); i++) {
+                char c = scriptContent.charAt(i);
+                if (ignoreCarriageReturnsWhenCalculatingCheckSum && c == '\r') {
+                    continue;
+                }
+                buffer[length++] = (byte) c;
+                if (length == buffer.length) {
+                    digest.update(buffer, 0, length);
+                    length = 0;
+                }
+            }
+            digest.update(buffer, 0, length);
+        }
     }
 
-}
\ No newline at end of file
+}
\ No newline at end of file
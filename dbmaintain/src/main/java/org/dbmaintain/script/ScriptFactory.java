@@ -22,10 +22,8 @@ import org.dbmaintain.script.executedscriptinfo.ScriptIndexes;
 import org.dbmaintain.script.qualifier.Qualifier;
 import org.dbmaintain.util.DbMaintainException;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -33,6 +31,17 @@ import static org.apache.commons.lang3.StringUtils.isEmpty;
 import static org.apache.commons.lang3.StringUtils.substringBeforeLast;
 
 /**
+ * Creates scripts, deriving their indexes, target database and qualifiers from their file names.
+ * <p/>
+ * If the default naming conventions are used, the file names are parsed by a {@link ScriptFileNameParser} instead of
+ * the regexps. The parsed names are kept in a {@link ScriptNameCache}, which is shared by all factories with the same
+ * cache and configuration, so that a name that is both in the script repository and in the executed scripts registry
+ * is only parsed once.
+ * <p/>
+ * The qualifiers, qualifier sets and target database names of the created scripts are interned: all scripts of the
+ * factories with the same cache share the same instance for equal values. A script from the repository and the script
+ * with the same name from the executed scripts registry also share the same file name instance.
+ *
  * @author Tim Ducheyne
  * @author Filip Neven
  */
@@ -49,9 +58,23 @@ public class ScriptFactory {
     private String postProcessingScriptDirName;
     /* The baseline revision. If set, all scripts with a lower revision will be ignored */
     protected ScriptIndexes baseLineRevision;
+    /* The parser for the default naming conventions, null if other regexps are used */
+    protected ScriptFileNameParser scriptFileNameParser;
+    /* The parsed names and interned values, shared with the factories with the same cache */
+    protected ScriptNameCache scriptNameCache;
+    /* The parsed names per file name, shared with the factories with the same cache and configuration */
+    protected ConcurrentMap<String, ScriptName> parsedNames;
 
 
+    /**
+     * Creates a factory that does not share its parsed names and interned values with other factories.
+     */
     public ScriptFactory(String scriptIndexRegexp, String targetDatabaseRegexp, String qualifierRegexp, Set<Qualifier> registeredQualifiers, Set<Qualifier> patchQualifiers, String postProcessingScriptDirName, ScriptIndexes baseLineRevision) {
+        this(scriptIndexRegexp, targetDatabaseRegexp, qualifierRegexp, registeredQualifiers, patchQualifiers, postProcessingScriptDirName, baseLineRevision, new ScriptNameCache());
+    }
+
+    public ScriptFactory(String scriptIndexRegexp, String targetDatabaseRegexp, String qualifierRegexp, Set<Qualifier> registeredQualifiers, Set<Qualifier> patchQualifiers, String postProcessingScriptDirName, ScriptIndexes baseLineRevision, ScriptNameCache scriptNameCache) {
+        this.scriptNameCache = scriptNameCache;
         this.registeredQualifiers = registeredQualifiers;
         this.patchQualifiers = patchQualifiers;
         this.postProcessingScriptDirName = postProcessingScriptDirName;
@@ -60,6 +83,10 @@ public class ScriptFactory {
         this.scriptIndexPattern = Pattern.compile(scriptIndexRegexp);
         this.targetDatabasePattern = Pattern.compile(targetDatabaseRegexp);
         this.qualifierPattern = Pattern.compile(qualifierRegexp);
+        if (ScriptFileNameParser.isDefaultNamingConvention(scriptIndexRegexp, targetDatabaseRegexp, qualifierRegexp)) {
+            this.scriptFileNameParser = new ScriptFileNameParser();
+        }
+        this.parsedNames = scriptNameCache.getParsedNames(getConfigurationKey(scriptIndexRegexp, targetDatabaseRegexp, qualifierRegexp));
 
         if (baseLineRevision != null) {
             logger.info("The baseline revision is set to " + baseLineRevision.getIndexesString() + ". All script with a lower revision will be ignored");
@@ -76,37 +103,160 @@ public class ScriptFactory {
     }
 
 
+    /**
+     * Creates a script using metadata that was derived from its file name beforehand, e.g. the metadata in the manifest
+     * of a script archive, instead of parsing the file name. The qualifiers and the target database name are shared
+     * with the other scripts in the same way as for a parsed file name.
+     *
+     * @param fileName             The name of the script file, not null
+     * @param scriptIndexes        The indexes of the script, not null
+     * @param targetDatabaseName   The target database, null if there is no target database
+     * @param qualifierNames       The names of the qualifiers of the script, not null
+     * @param postProcessingScript True if this script is a post processing script
+     * @param patchScript          True if this script is a patch script
+     * @param ignored              True if this script is ignored because its revision is below the baseline revision
+     * @param fileLastModifiedAt   The time when the file was last modified (in ms), not null
+     * @param scriptContentHandle  Handle providing access to the contents of the script, not null
+     * @return The script, not null
+     */
+    public Script createScriptWithMetadata(String fileName, ScriptIndexes scriptIndexes, String targetDatabaseName, List<String> qualifierNames, boolean postProcessingScript,
+                                           boolean patchScript, boolean ignored, Long fileLastModifiedAt, ScriptContentHandle scriptContentHandle) {
+        Set<Qualifier> qualifiers = scriptNameCache.internQualifiers(getQualifiers(qualifierNames));
+        return new Script(fileName, scriptIndexes, scriptNameCache.internTargetDatabaseName(targetDatabaseName), fileLastModifiedAt, null, scriptContentHandle, postProcessingScript, patchScript, ignored, qualifiers);
+    }
+
+
     private Script createScript(String fileName, Long fileLastModifiedAt, String checkSum, ScriptContentHandle scriptContentHandle) {
         try {
-            String[] pathParts = getPathParts(fileName);
-            ScriptIndexes scriptIndexes = getScriptIndexes(pathParts);
-            String targetDatabaseName = getTargetDatabaseName(pathParts);
-            Set<Qualifier> qualifiers = getQualifiers(pathParts);
-            boolean patchScript = isPatchScript(qualifiers);
-            boolean postProcessingScript = isPostProcessingScript(fileName);
-            boolean ignored = isIgnored(scriptIndexes);
+            ScriptName scriptName = getScriptName(fileName);
+            return new Script(scriptName.fileName, scriptName.scriptIndexes, scriptName.targetDatabaseName, fileLastModifiedAt, checkSum, scriptContentHandle, scriptName.postProcessingScript, scriptName.patchScript, scriptName.ignored, scriptName.qualifiers);
+
+        } catch (DbMaintainException e) {
+            throw new DbMaintainException("Error in script " + fileName + ": " + e.getMessage(), e);
+        }
+    }
+
 
-            return new Script(fileName, scriptIndexes, targetDatabaseName, fileLastModifiedAt, checkSum, scriptContentHandle, postProcessingScript, patchScript, ignored, qualifiers);
+    /**
+     * @param fileName The script file name, not null
+     * @return True if a script with the given name would be ignored because its revision is below the baseline revision
+     */
+    public boolean isIgnored(String fileName) {
+        if (baseLineRevision == null) {
+            return false;
+        }
+        try {
+            return getScriptName(fileName).ignored;
 
         } catch (DbMaintainException e) {
             throw new DbMaintainException("Error in script " + fileName + ": " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Compares the scripts with the given names in the same way as {@link Script#compareTo}, without creating the scripts.
+     *
+     * @param fileName      The script file name, not null
+     * @param otherFileName The other script file name, not null
+     * @return -1 when the first script has a smaller version, 0 if equal, 1 when larger
+     */
+    public int compareFileNames(String fileName, String otherFileName) {
+        ScriptName scriptName = getScriptName(fileName);
+        ScriptName otherScriptName = getScriptName(otherFileName);
+        if (scriptName.postProcessingScript != otherScriptName.postProcessingScript) {
+            return scriptName.postProcessingScript ? 1 : -1;
+        }
+        int versionComparison = scriptName.scriptIndexes.compareTo(otherScriptName.scriptIndexes);
+        if (versionComparison != 0) {
+            return versionComparison;
+        }
+        return fileName.compareTo(otherFileName);
+    }
+
+
+    /**
+     * @param fileName The script file name, not null
+     * @return The parsed name, taken from the shared table if the name was parsed before, not null
+     */
+    protected ScriptName getScriptName(String fileName) {
+        ScriptName scriptName = parsedNames.get(fileName);
+        if (scriptName == null) {
+            scriptName = parseScriptName(fileName);
+            if (parsedNames.size() < ScriptNameCache.MAX_NR_OF_PARSED_NAMES) {
+                parsedNames.putIfAbsent(fileName, scriptName);
+            }
+        }
+        return scriptName;
+    }
+
+    protected ScriptName parseScriptName(String fileName) {
+        ScriptName scriptName = new ScriptName();
+        scriptName.fileName = fileName;
+        if (scriptFileNameParser != null) {
+            ScriptFileNameParser.ParsedFileName parsedFileName = scriptFileNameParser.parse(fileName);
+            scriptName.scriptIndexes = new ScriptIndexes(parsedFileName.getIndexes());
+            scriptName.targetDatabaseName = parsedFileName.getTargetDatabaseName();
+            scriptName.qualifiers = getQualifiers(parsedFileName.getQualifierNames());
+        } else {
+            String[] pathParts = getPathParts(fileName);
+            scriptName.scriptIndexes = getScriptIndexes(pathParts);
+            scriptName.targetDatabaseName = getTargetDatabaseName(pathParts);
+            scriptName.qualifiers = getQualifiers(pathParts);
+        }
+        scriptName.targetDatabaseName = scriptNameCache.internTargetDatabaseName(scriptName.targetDatabaseName);
+        scriptName.qualifiers = scriptNameCache.internQualifiers(scriptName.qualifiers);
+        scriptName.patchScript = isPatchScript(scriptName.qualifiers);
+        scriptName.postProcessingScript = isPostProcessingScript(fileName);
+        scriptName.ignored = isIgnored(scriptName.scriptIndexes);
+        return scriptName;
+    }
+
+
+    /**
+     * @return A key that is equal for all factories that derive the same names from the same file names, not null
+     */
+    protected String getConfigurationKey(String scriptIndexRegexp, String targetDatabaseRegexp, String qualifierRegexp) {
+        return scriptIndexRegexp + '\n' + targetDatabaseRegexp + '\n' + qualifierRegexp + '\n' +
+                getSortedQualifierNames(registeredQualifiers) + '\n' + getSortedQualifierNames(patchQualifiers) + '\n' +
+                postProcessingScriptDirName + '\n' + (baseLineRevision == null ? null : baseLineRevision.getIndexesString());
+    }
+
+    protected String getSortedQualifierNames(Set<Qualifier> qualifiers) {
+        if (qualifiers == null) {
+            return null;
+        }
+        Set<String> qualifierNames = new TreeSet<>();
+        for (Qualifier qualifier : qualifiers) {
+            qualifierNames.add(qualifier.getQualifierName());
+        }
+        return qualifierNames.toString();
+    }
+
 
     /**
      * @param fileName The script file name, not null
      * @return True if the given script name is a post processing script
      */
     protected boolean isPostProcessingScript(String fileName) {
-        if (isEmpty(postProcessingScriptDirName)) {
+        String dirName = getPostProcessingScriptDirName();
+        if (dirName == null) {
             return false;
         }
-        String dirName = postProcessingScriptDirName;
+        return fileName.startsWith(dirName + '/') || fileName.startsWith(dirName + '\\');
+    }
+
+    /**
+     * @return The name of the directory that contains the post processing scripts, without trailing separator,
+     *         null if there are no post processing scripts
+     */
+    public String getPostProcessingScriptDirName() {
+        if (isEmpty(postProcessingScriptDirName)) {
+            return null;
+        }
         if (postProcessingScriptDirName.endsWith("/") || postProcessingScriptDirName.endsWith("\\")) {
-            dirName = postProcessingScriptDirName.substring(0, postProcessingScriptDirName.length() - 1);
+            return postProcessingScriptDirName.substring(0, postProcessingScriptDirName.length() - 1);
         }
-        return fileName.startsWith(dirName + '/') || fileName.startsWith(dirName + '\\');
+        return postProcessingScriptDirName;
     }
 
 
@@ -133,16 +283,25 @@ public class ScriptFactory {
     }
 
     protected Set<Qualifier> getQualifiers(String[] pathParts) {
-        Set<Qualifier> qualifiers = new HashSet<>();
-
-        List<String> qualifierNames = getTokens(pathParts, qualifierPattern, false);
+        return getQualifiers(getTokens(pathParts, qualifierPattern, false));
+    }
 
+    /**
+     * @param qualifierNames The names of the qualifiers, null if there are none
+     * @return The qualifiers, not null
+     * @throws DbMaintainException if one of the qualifiers is not registered
+     */
+    protected Set<Qualifier> getQualifiers(List<String> qualifierNames) {
+        if (qualifierNames == null) {
+            return new HashSet<>(0);
+        }
+        Set<Qualifier> qualifiers = new HashSet<>();
         for (String qualifierName : qualifierNames) {
             Qualifier qualifier = new Qualifier(qualifierName);
             if (!registeredQualifiers.contains(qualifier) && !patchQualifiers.contains(qualifier)) {
                 throw new DbMaintainException("Qualifier \"" + qualifier.getQualifierName() + "\" has not been registered.");
             }
-            qualifiers.add(qualifier);
+            qualifiers.add(scriptNameCache.internQualifier(qualifier));
         }
         return qualifiers;
     }
@@ -222,4 +381,18 @@ public class ScriptFactory {
     }
 
 
+    /**
+     * Everything that is derived from the file name of a script.
+     */
+    protected static class ScriptName {
+
+        /* The file name instance that is shared by all scripts with this name */
+        protected String fileName;
+        protected ScriptIndexes scriptIndexes;
+        protected String targetDatabaseName;
+        protected Set<Qualifier> qualifiers;
+        protected boolean patchScript;
+        protected boolean postProcessingScript;
+        protected boolean ignored;
+    }
 }
@@ -0,0 +1,162 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script;
+
+import org.dbmaintain.util.DbMaintainException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses script file names that follow the default naming conventions in a single pass over the characters of the
+ * name, without regexps and without splitting the name into parts. The result is the same as the result of the default
+ * regexps {@link #DEFAULT_SCRIPT_INDEX_REGEXP}, {@link #DEFAULT_TARGET_DATABASE_REGEXP} and
+ * {@link #DEFAULT_QUALIFIER_REGEXP}:
+ * <ul>
+ * <li>every folder and the file name itself (without extension) can start with an index followed by a _</li>
+ * <li>a target database is an @ followed by letters and digits, a qualifier is a # followed by letters and digits.
+ * They should be at the start of a part or follow a _, and should be followed by a _ or be at the end of the part</li>
+ * </ul>
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ScriptFileNameParser {
+
+    public static final String DEFAULT_SCRIPT_INDEX_REGEXP = "^([0-9]+)(?:_|$)";
+    public static final String DEFAULT_TARGET_DATABASE_REGEXP = "(?:\\G|_)@([a-zA-Z0-9]+)(?:_|$)";
+    public static final String DEFAULT_QUALIFIER_REGEXP = "(?:\\G|_)#([a-zA-Z0-9]+)(?:_|$)";
+
+
+    /**
+     * @param scriptIndexRegexp    The regexp that identifies the script index in the filename, not null
+     * @param targetDatabaseRegexp The regexp that indicates the target database in the filename, not null
+     * @param qualifierRegexp      The regexp that identifies a qualifier in the filename, not null
+     * @return True if the given regexps are the default ones, i.e. if this parser can be used instead of the regexps
+     */
+    public static boolean isDefaultNamingConvention(String scriptIndexRegexp, String targetDatabaseRegexp, String qualifierRegexp) {
+        return DEFAULT_SCRIPT_INDEX_REGEXP.equals(scriptIndexRegexp) && DEFAULT_TARGET_DATABASE_REGEXP.equals(targetDatabaseRegexp) && DEFAULT_QUALIFIER_REGEXP.equals(qualifierRegexp);
+    }
+
+
+    /**
+     * @param fileName The script file name, not null
+     * @return The parsed name, not null
+     */
+    public ParsedFileName parse(String fileName) {
+        ParsedFileName parsedFileName = new ParsedFileName();
+        // the extension is everything after the last dot, as for the regexps
+        int end = fileName.lastIndexOf('.');
+        if (end == -1) {
+            end = fileName.length();
+        }
+        int partStart = 0;
+        for (int i = 0; i <= end; i++) {
+            if (i == end || fileName.charAt(i) == '/' || fileName.charAt(i) == '\\') {
+                if (i > partStart) {
+                    parsePart(fileName, partStart, i, parsedFileName);
+                }
+                partStart = i + 1;
+            }
+        }
+        return parsedFileName;
+    }
+
+
+    protected void parsePart(String fileName, int start, int end, ParsedFileName parsedFileName) {
+        parsedFileName.indexes.add(parseIndex(fileName, start, end));
+
+        for (int i = start; i < end; i++) {
+            char c = fileName.charAt(i);
+            if ((c != '@' && c != '#') || (i > start && fileName.charAt(i - 1) != '_')) {
+                continue;
+            }
+            int tokenEnd = i + 1;
+            while (tokenEnd < end && isLetterOrDigit(fileName.charAt(tokenEnd))) {
+                tokenEnd++;
+            }
+            if (tokenEnd == i + 1 || (tokenEnd < end && fileName.charAt(tokenEnd) != '_')) {
+                continue;
+            }
+            String token = fileName.substring(i + 1, tokenEnd);
+            if (c == '@') {
+                parsedFileName.targetDatabaseName = token;
+            } else {
+                if (parsedFileName.qualifierNames == null) {
+                    parsedFileName.qualifierNames = new ArrayList<>(2);
+                }
+                parsedFileName.qualifierNames.add(token);
+            }
+            i = tokenEnd - 1;
+        }
+    }
+
+    /**
+     * @return The index at the start of the part, null if the part has no index
+     */
+    protected Long parseIndex(String fileName, int start, int end) {
+        int indexEnd = start;
+        while (indexEnd < end && isDigit(fileName.charAt(indexEnd))) {
+            indexEnd++;
+        }
+        if (indexEnd == start || (indexEnd < end && fileName.charAt(indexEnd) != '_')) {
+            return null;
+        }
+        long index = 0;
+        for (int i = start; i < indexEnd; i++) {
+            int digit = fileName.charAt(i) - '0';
+            if (index > (Long.MAX_VALUE - digit) / 10) {
+                throw new DbMaintainException("Unable to parse version index: " + fileName.substring(start, indexEnd));
+            }
+            index = index * 10 + digit;
+        }
+        return index;
+    }
+
+    protected boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    protected boolean isLetterOrDigit(char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+
+    /**
+     * The parts of a script file name.
+     */
+    public static class ParsedFileName {
+
+        /* The index of every part of the name, null for a part without index */
+        protected List<Long> indexes = new ArrayList<>(4);
+        /* The last target database in the name, null if there is none */
+        protected String targetDatabaseName;
+        /* The qualifiers in the name, null if there are none */
+        protected List<String> qualifierNames;
+
+        public List<Long> getIndexes() {
+            return indexes;
+        }
+
+        public String getTargetDatabaseName() {
+            return targetDatabaseName;
+        }
+
+        public List<String> getQualifierNames() {
+            return qualifierNames;
+        }
+    }
+}
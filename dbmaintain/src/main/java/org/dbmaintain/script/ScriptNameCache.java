@@ -0,0 +1,111 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script;
+
+import org.dbmaintain.script.qualifier.Qualifier;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Tables with the values that script factories derive from file names: the parsed names per configuration and the
+ * shared instances of qualifiers, qualifier sets and target database names. Factories that are given the same cache
+ * share these values, e.g. the factory of the script repository and the factory of the executed scripts registry.
+ * The values are kept as long as the cache is referenced, there is no process-wide state.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ScriptNameCache {
+
+    /* The max nr of parsed names that are kept per configuration */
+    protected static final int MAX_NR_OF_PARSED_NAMES = 100000;
+    /* The max nr of values that are kept per table of interned values */
+    protected static final int MAX_NR_OF_INTERNED_VALUES = 10000;
+
+    /* The parsed names per file name, per configuration of the factory */
+    protected ConcurrentMap<String, ConcurrentMap<String, ScriptFactory.ScriptName>> parsedNamesPerConfiguration = new ConcurrentHashMap<>();
+    /* The shared qualifier instances */
+    protected ConcurrentMap<Qualifier, Qualifier> internedQualifiers = new ConcurrentHashMap<>();
+    /* The shared unmodifiable qualifier sets */
+    protected ConcurrentMap<Set<Qualifier>, Set<Qualifier>> internedQualifierSets = new ConcurrentHashMap<>();
+    /* The shared target database names */
+    protected ConcurrentMap<String, String> internedTargetDatabaseNames = new ConcurrentHashMap<>();
+
+
+    /**
+     * @param configurationKey The key of the configuration of the factory, not null
+     * @return The parsed names per file name, shared by the factories with the same configuration, not null
+     */
+    protected ConcurrentMap<String, ScriptFactory.ScriptName> getParsedNames(String configurationKey) {
+        ConcurrentMap<String, ScriptFactory.ScriptName> parsedNames = parsedNamesPerConfiguration.get(configurationKey);
+        if (parsedNames == null) {
+            parsedNamesPerConfiguration.putIfAbsent(configurationKey, new ConcurrentHashMap<String, ScriptFactory.ScriptName>());
+            parsedNames = parsedNamesPerConfiguration.get(configurationKey);
+        }
+        return parsedNames;
+    }
+
+    /**
+     * @param qualifier The qualifier, not null
+     * @return The shared instance that is equal to the given qualifier, not null
+     */
+    public Qualifier internQualifier(Qualifier qualifier) {
+        return intern(internedQualifiers, qualifier, qualifier);
+    }
+
+    /**
+     * @param qualifiers The qualifiers, not null
+     * @return The shared unmodifiable set that is equal to the given qualifiers, not null
+     */
+    public Set<Qualifier> internQualifiers(Set<Qualifier> qualifiers) {
+        return intern(internedQualifierSets, qualifiers, Collections.unmodifiableSet(qualifiers));
+    }
+
+    /**
+     * @param targetDatabaseName The target database name, null if there is no target database
+     * @return The shared instance that is equal to the given name, null if the given name was null
+     */
+    public String internTargetDatabaseName(String targetDatabaseName) {
+        if (targetDatabaseName == null) {
+            return null;
+        }
+        return intern(internedTargetDatabaseNames, targetDatabaseName, targetDatabaseName);
+    }
+
+    /**
+     * Gets the shared instance for the given key. If there is none yet, the given instance becomes the shared one,
+     * unless the table is full.
+     *
+     * @param internedValues The table with the shared instances, not null
+     * @param key            The key, not null
+     * @param value          The instance to share if there is no shared instance yet, not null
+     * @return The shared instance, the given instance if the table is full, not null
+     */
+    protected <T> T intern(ConcurrentMap<T, T> internedValues, T key, T value) {
+        T internedValue = internedValues.get(key);
+        if (internedValue != null) {
+            return internedValue;
+        }
+        if (internedValues.size() >= MAX_NR_OF_INTERNED_VALUES) {
+            return value;
+        }
+        internedValue = internedValues.putIfAbsent(key, value);
+        return internedValue == null ? value : internedValue;
+    }
+}
@@ -41,6 +41,7 @@ public enum ScriptUpdateType {
      * Irregular script updates: these cause an exception or trigger a recreation from scratch
      */
     INDEXED_SCRIPT_UPDATED, INDEXED_SCRIPT_DELETED, LOWER_INDEX_NON_PATCH_SCRIPT_ADDED, INDEXED_SCRIPT_RENAMED_SCRIPT_SEQUENCE_CHANGED,
+    INDEXED_SCRIPTS_BELOW_CHECKPOINT_CHANGED,
 
     /**
      * Script update that is only allowed if the 'patch.allowOutOfSequenceExecution' option is enabled
@@ -17,7 +17,11 @@ package org.dbmaintain.script.analyzer;
 
 import org.dbmaintain.script.ExecutedScript;
 import org.dbmaintain.script.Script;
+import org.dbmaintain.script.ScriptCheckSumCalculator;
+import org.dbmaintain.script.checksum.CheckSumAlgorithms;
 import org.dbmaintain.script.executedscriptinfo.ExecutedScriptInfoSource;
+import org.dbmaintain.script.executedscriptinfo.ScriptIndexes;
+import org.dbmaintain.script.qualifier.Qualifier;
 import org.dbmaintain.script.repository.ScriptRepository;
 
 import java.util.*;
@@ -40,6 +44,7 @@ public class ScriptUpdatesAnalyzer {
     private final ExecutedScriptInfoSource executedScriptInfoSource;
     private final boolean useScriptFileLastModificationDates;
     private final boolean allowOutOfSequenceExecutionOfPatchScripts;
+    private final int nrOfCheckSumThreads;
 
     /* Sets that contain the result of the analysis: each set contains a specific type of script updates */
     private final SortedSet<ScriptUpdate> regularlyAddedOrModifiedScripts = new TreeSet<ScriptUpdate>();
@@ -55,10 +60,16 @@ public class ScriptUpdatesAnalyzer {
     private final Map<Script, ExecutedScript> scriptExecutedScriptMap = new HashMap<Script, ExecutedScript>();
 
     /* Lazily initialized data, that is cached during analysis to avoid repeated calculation of the contents */
+    private SortedSet<Script> allScripts;
     private Map<String, Script> scriptNameScriptMap;
-    private Map<String, Set<Script>> checkSumScriptMap;
+    private List<Script> renameCandidates;
+    private Script executedScriptWithHighestScriptIndex;
+    private boolean executedScriptWithHighestScriptIndexDetermined;
+    private Map<String, Map<String, Set<Script>>> checkSumScriptMapPerAlgorithm = new HashMap<String, Map<String, Set<Script>>>();
     private boolean ignoreDeletions; // Ignore if the db state is newer, i.e. there are allready
                                      // successor skripts in the database
+    /* The revision below which the executed scripts were compacted, null if not compacted */
+    private ScriptIndexes checkpointRevision;
 
     /**
      * Creates a new instance that will compare the info from the given {@link ExecutedScriptInfoSource} with the current
@@ -74,11 +85,29 @@ public class ScriptUpdatesAnalyzer {
      */
     public ScriptUpdatesAnalyzer(ScriptRepository scriptRepository, ExecutedScriptInfoSource executedScriptInfoSource,
             boolean useScriptFileLastModificationDates, boolean allowOutOfSequenceExecutionOfPatchScripts, boolean ignoreDeletions) {
+        this(scriptRepository, executedScriptInfoSource, useScriptFileLastModificationDates, allowOutOfSequenceExecutionOfPatchScripts, ignoreDeletions, 1);
+    }
+
+    /**
+     * Creates a new instance that calculates the check sums that are needed for the analysis up front, using the given
+     * nr of threads.
+     *
+     * @param scriptRepository         exposes the current set of scripts
+     * @param executedScriptInfoSource provides info on the script that were executed on the database
+     * @param useScriptFileLastModificationDates
+     *                                 whether the last modification date of the scripts can be used to determine if a script has changed.
+     * @param allowOutOfSequenceExecutionOfPatchScripts
+     *                                 whether scripts marked as patch scripts may be executed out-of-sequence
+     * @param nrOfCheckSumThreads      the nr of threads used to calculate check sums, 0 to use all available processors
+     */
+    public ScriptUpdatesAnalyzer(ScriptRepository scriptRepository, ExecutedScriptInfoSource executedScriptInfoSource,
+            boolean useScriptFileLastModificationDates, boolean allowOutOfSequenceExecutionOfPatchScripts, boolean ignoreDeletions, int nrOfCheckSumThreads) {
         this.scriptRepository = scriptRepository;
         this.executedScriptInfoSource = executedScriptInfoSource;
         this.useScriptFileLastModificationDates = useScriptFileLastModificationDates;
         this.allowOutOfSequenceExecutionOfPatchScripts = allowOutOfSequenceExecutionOfPatchScripts;
         this.ignoreDeletions = ignoreDeletions;
+        this.nrOfCheckSumThreads = nrOfCheckSumThreads;
     }
 
     /**
@@ -90,6 +119,9 @@ public class ScriptUpdatesAnalyzer {
      *         database update
      */
     public ScriptUpdates calculateScriptUpdates() {
+        checkpointRevision = executedScriptInfoSource.getCheckpointRevision();
+        calculateRequiredCheckSums();
+
         // Iterate over the already executed scripts to find out whether the contents of some scripts has been modified
         // since the last update. We also map the executed scripts with their script counterparts, to be able to verify
         // afterwards if scripts have been renamed or deleted.
@@ -98,8 +130,9 @@ public class ScriptUpdatesAnalyzer {
             if (scriptWithSameName != null) {
                 // The script with this name still exists. We keep the mapping in the scriptExecutedScriptMap
                 scriptExecutedScriptMap.put(scriptWithSameName, executedScript);
-                // Check if the content didn't change
-                if (!executedScript.getScript().isScriptContentEqualTo(scriptWithSameName, useScriptFileLastModificationDates)) {
+                // Check if the content didn't change. A script that was marked as performed after an interrupted run
+                // has no check sum: its content is unknown and its current check sum is registered during the update
+                if (!isCheckSumMissing(executedScript) && !executedScript.getScript().isScriptContentEqualTo(scriptWithSameName, useScriptFileLastModificationDates)) {
                     registerScriptUpdate(scriptWithSameName);
                 } else if (!executedScript.isSuccessful() && executedScript.getScript().isPostProcessingScript()) {
                     registerPostprocessingScriptUpdate(POSTPROCESSING_SCRIPT_FAILURE_RERUN, scriptWithSameName);
@@ -139,12 +172,23 @@ public class ScriptUpdatesAnalyzer {
         }
 
         // Look for newly added scripts. A script is new if it's not mapped to an executed script in the scriptExecuteScriptMap,
-        // which also contains the scripts that were renamed
-        for (Script script : scriptRepository.getAllScripts()) {
+        // which also contains the scripts that were renamed. Scripts below the checkpoint were executed before the
+        // executed scripts were compacted.
+        long nrOfScriptsCoveredByCheckpoint = 0;
+        for (Script script : getAllScripts()) {
             if (!scriptExecutedScriptMap.containsKey(script)) {
-                registerScriptAddition(script);
+                if (isCoveredByCheckpoint(script)) {
+                    nrOfScriptsCoveredByCheckpoint++;
+                } else {
+                    registerScriptAddition(script);
+                }
             }
         }
+        // The scripts below the checkpoint are not registered one by one: if their nr differs from the nr of compacted
+        // scripts, scripts were added or deleted below the checkpoint
+        if (checkpointRevision != null && nrOfScriptsCoveredByCheckpoint != executedScriptInfoSource.getNrOfCheckpointScripts()) {
+            registerIrregularScriptUpdate(INDEXED_SCRIPTS_BELOW_CHECKPOINT_CHANGED, createCheckpointScript());
+        }
 
         return new ScriptUpdates(regularlyAddedOrModifiedScripts, irregularlyUpdatedScripts, regularlyDeletedRepeatableScripts, regularlyAddedPatchScripts,
                 regularlyUpdatedPostprocessingScripts, regularlyRenamedScripts, ignoredScripts);
@@ -237,6 +281,9 @@ public class ScriptUpdatesAnalyzer {
 
 
     /**
+     * Walks the executed scripts and the indexed scripts side by side, both are in script order: every script is
+     * visited only once.
+     *
      * @return whether the sequence of the indexed scripts has changed due to indexed scripts that were renamed since
      *         the last update
      */
@@ -282,24 +329,100 @@ public class ScriptUpdatesAnalyzer {
         }
     }
 
+    /**
+     * Calculates the check sums of all scripts that will be compared during the analysis, using multiple threads
+     * if configured. If last modification dates can be used, only scripts with a changed modification date need a
+     * check sum. If an executed script no longer exists, the check sums of the scripts it could have been renamed to
+     * are needed to detect renames.
+     */
+    protected void calculateRequiredCheckSums() {
+        List<Script> scriptsRequiringCheckSum = new ArrayList<Script>();
+        boolean executedScriptsMissing = false;
+        for (ExecutedScript executedScript : executedScriptInfoSource.getExecutedScripts()) {
+            Script scriptWithSameName = findScriptWithSameName(executedScript);
+            if (scriptWithSameName == null) {
+                executedScriptsMissing = true;
+            } else if (!useScriptFileLastModificationDates || !executedScript.getScript().getFileLastModifiedAt().equals(scriptWithSameName.getFileLastModifiedAt())) {
+                scriptsRequiringCheckSum.add(scriptWithSameName);
+            }
+        }
+        if (executedScriptsMissing) {
+            scriptsRequiringCheckSum.addAll(getRenameCandidates());
+        }
+        new ScriptCheckSumCalculator(nrOfCheckSumThreads).calculateCheckSums(scriptsRequiringCheckSum);
+    }
+
+    /**
+     * An executed script can only have been renamed to a script of the same type that has no executed script with
+     * the same name. E.g. if only a repeatable script was deleted, the incremental scripts are no candidates. The
+     * incremental scripts below the checkpoint are no candidates either.
+     *
+     * @return The scripts to which an executed script that no longer exists could have been renamed, not null
+     */
+    protected List<Script> getRenameCandidates() {
+        if (renameCandidates == null) {
+            Set<String> executedScriptNames = new HashSet<String>();
+            boolean incrementalScriptsMissing = false, repeatableScriptsMissing = false, postProcessingScriptsMissing = false;
+            for (ExecutedScript executedScript : executedScriptInfoSource.getExecutedScripts()) {
+                Script script = executedScript.getScript();
+                executedScriptNames.add(script.getFileName());
+                if (findScriptWithSameName(executedScript) == null) {
+                    incrementalScriptsMissing |= script.isIncremental();
+                    repeatableScriptsMissing |= script.isRepeatable();
+                    postProcessingScriptsMissing |= script.isPostProcessingScript();
+                }
+            }
+            renameCandidates = new ArrayList<Script>();
+            for (Script script : getAllScripts()) {
+                if (executedScriptNames.contains(script.getFileName()) || isCoveredByCheckpoint(script)) {
+                    continue;
+                }
+                if (script.isIncremental() && incrementalScriptsMissing || script.isRepeatable() && repeatableScriptsMissing ||
+                        script.isPostProcessingScript() && postProcessingScriptsMissing) {
+                    renameCandidates.add(script);
+                }
+            }
+        }
+        return renameCandidates;
+    }
+
+    /**
+     * The execution of a script is registered before the script is read, without a check sum. If the run was
+     * interrupted and the script was afterwards marked as performed, the check sum stays unknown.
+     *
+     * @param executedScript The script as executed during a previous update, not null
+     * @return True if the script was executed successfully but its check sum was never registered
+     */
+    protected boolean isCheckSumMissing(ExecutedScript executedScript) {
+        return executedScript.isSuccessful() && executedScript.getScript().getCheckSum() == null;
+    }
+
     /**
      * @param executedScript The script as executed during a previous update
      * @return A script that is not yet mapped to an executed script, but that has the same content as the given one
      */
     protected Script findNewScriptWithSameContent(ExecutedScript executedScript) {
-        SortedSet<Script> newScriptsWithSameContent = new TreeSet<Script>();
-        Set<Script> scriptsWithSameContent = getCheckSumScriptMap().get(executedScript.getScript().getCheckSum());
-        if (scriptsWithSameContent != null) {
-            for (Script scriptWithSameContent : scriptsWithSameContent) {
-                if (!scriptExecutedScriptMap.containsKey(scriptWithSameContent)) {
-                    newScriptsWithSameContent.add(scriptWithSameContent);
+        String checkSum = executedScript.getScript().getCheckSum();
+        if (checkSum == null) {
+            return null;
+        }
+        // use the algorithm with which the executed script was registered
+        String algorithmName = CheckSumAlgorithms.getAlgorithmName(checkSum);
+        Set<Script> scriptsWithSameContent = getCheckSumScriptMap(algorithmName).get(CheckSumAlgorithms.getValue(checkSum));
+        if (scriptsWithSameContent == null) {
+            return null;
+        }
+        // the new script is only found if it is the only one
+        Script newScriptWithSameContent = null;
+        for (Script scriptWithSameContent : scriptsWithSameContent) {
+            if (!scriptExecutedScriptMap.containsKey(scriptWithSameContent)) {
+                if (newScriptWithSameContent != null) {
+                    return null;
                 }
+                newScriptWithSameContent = scriptWithSameContent;
             }
         }
-        if (newScriptsWithSameContent.size() == 1) {
-            return newScriptsWithSameContent.first();
-        }
-        return null;
+        return newScriptWithSameContent;
     }
 
     /**
@@ -321,13 +444,26 @@ public class ScriptUpdatesAnalyzer {
         return scriptNameAlreadyExecutedScriptMap;
     }
 
+    /**
+     * The repository assembles a new set every time all scripts are requested, the set is only assembled once
+     * during the analysis.
+     *
+     * @return All scripts, not null
+     */
+    protected SortedSet<Script> getAllScripts() {
+        if (allScripts == null) {
+            allScripts = scriptRepository.getAllScripts();
+        }
+        return allScripts;
+    }
+
     /**
      * @return All scripts, as a map from scriptName => Script
      */
     protected Map<String, Script> getScriptNameScriptMap() {
         if (scriptNameScriptMap == null) {
             scriptNameScriptMap = new HashMap<String, Script>();
-            for (Script script : scriptRepository.getAllScripts()) {
+            for (Script script : getAllScripts()) {
                 scriptNameScriptMap.put(script.getFileName(), script);
             }
         }
@@ -335,35 +471,70 @@ public class ScriptUpdatesAnalyzer {
     }
 
     /**
-     * @return All scripts, as a map from checksum => Script
+     * @param algorithmName The name of the checksum algorithm, not null
+     * @return The scripts to which an executed script could have been renamed, as a map from checksum value
+     *         (without algorithm prefix) => Script
      */
-    protected Map<String, Set<Script>> getCheckSumScriptMap() {
+    protected Map<String, Set<Script>> getCheckSumScriptMap(String algorithmName) {
+        Map<String, Set<Script>> checkSumScriptMap = checkSumScriptMapPerAlgorithm.get(algorithmName);
         if (checkSumScriptMap == null) {
             checkSumScriptMap = new HashMap<String, Set<Script>>();
-            for (Script script : scriptRepository.getAllScripts()) {
-                Set<Script> scriptsWithCheckSum = checkSumScriptMap.get(script.getCheckSum());
+            for (Script script : getRenameCandidates()) {
+                String checkSum = script.getCheckSum(algorithmName);
+                if (checkSum == null) {
+                    continue;
+                }
+                String checkSumValue = CheckSumAlgorithms.getValue(checkSum);
+                Set<Script> scriptsWithCheckSum = checkSumScriptMap.get(checkSumValue);
                 if (scriptsWithCheckSum == null) {
                     scriptsWithCheckSum = new HashSet<Script>();
-                    checkSumScriptMap.put(script.getCheckSum(), scriptsWithCheckSum);
+                    checkSumScriptMap.put(checkSumValue, scriptsWithCheckSum);
                 }
                 scriptsWithCheckSum.add(script);
             }
+            checkSumScriptMapPerAlgorithm.put(algorithmName, checkSumScriptMap);
         }
         return checkSumScriptMap;
     }
 
 
     /**
-     * @return The executed scripts with the highest script index
+     * The incremental scripts with a lower revision than the checkpoint were executed before the executed scripts were
+     * compacted. They are not compared with the executed scripts, their contents are never read. Patch scripts are
+     * never compacted: a patch script below the checkpoint that is not registered was added afterwards.
+     *
+     * @param script The script, not null
+     * @return True if the script has a lower revision than the checkpoint and is not a patch script
+     */
+    protected boolean isCoveredByCheckpoint(Script script) {
+        return checkpointRevision != null && script.isIncremental() && !script.isPatchScript() && checkpointRevision.compareTo(script.getScriptIndexes()) > 0;
+    }
+
+    /**
+     * The individual scripts below the checkpoint are unknown, the checkpoint itself is reported when they changed.
+     *
+     * @return A script that represents the checkpoint, not null
+     */
+    protected Script createCheckpointScript() {
+        return new Script("checkpoint " + checkpointRevision.getIndexesString(), checkpointRevision, null, null, null, null, false, false, false,
+                Collections.<Qualifier>emptySet());
+    }
+
+    /**
+     * The executed scripts do not change during the analysis, the script is only looked up once.
+     *
+     * @return The executed scripts with the highest script index, null if no incremental scripts were executed
      */
     protected Script getExecutedScriptWithHighestScriptIndex() {
-        Script result = null;
-        for (ExecutedScript executedScript : executedScriptInfoSource.getExecutedScripts()) {
-            if (executedScript.getScript().isIncremental() && (result == null || executedScript.getScript().compareTo(result) > 0)) {
-                result = executedScript.getScript();
+        if (!executedScriptWithHighestScriptIndexDetermined) {
+            for (ExecutedScript executedScript : executedScriptInfoSource.getExecutedScripts()) {
+                if (executedScript.getScript().isIncremental() && (executedScriptWithHighestScriptIndex == null || executedScript.getScript().compareTo(executedScriptWithHighestScriptIndex) > 0)) {
+                    executedScriptWithHighestScriptIndex = executedScript.getScript();
+                }
             }
+            executedScriptWithHighestScriptIndexDetermined = true;
         }
-        return result;
+        return executedScriptWithHighestScriptIndex;
     }
 
 
@@ -70,6 +70,9 @@ public class ScriptUpdatesFormatter {
             case LOWER_INDEX_NON_PATCH_SCRIPT_ADDED:
                 return "newly added script with a lower index: "
                         + scriptUpdate.getScript().getFileName();
+            case INDEXED_SCRIPTS_BELOW_CHECKPOINT_CHANGED:
+                return "added or deleted indexed scripts below the " + scriptUpdate.getScript().getFileName()
+                        + ": the nr of indexed scripts differs from the nr of compacted scripts";
             case LOWER_INDEX_PATCH_SCRIPT_ADDED:
                 return "newly added patch script with a lower index: "
                         + scriptUpdate.getScript().getFileName();
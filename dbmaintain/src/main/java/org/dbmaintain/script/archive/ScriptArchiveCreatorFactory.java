@@ -46,8 +46,12 @@ public class ScriptArchiveCreatorFactory extends FactoryWithoutDatabase<ScriptAr
         Set<String> scriptFileExtensions = new HashSet<String>(getStringList(PROPERTY_SCRIPT_FILE_EXTENSIONS, getConfiguration()));
         ScriptIndexes baselineRevision = factoryContext.getBaselineRevision();
         boolean ignoreCarriageReturnsWhenCalculatingCheckSum = getBoolean(PROPERTY_IGNORE_CARRIAGE_RETURN_WHEN_CALCULATING_CHECK_SUM, getConfiguration());
+        int compressionLevel = getInt(PROPERTY_SCRIPT_ARCHIVE_COMPRESSION_LEVEL, getConfiguration());
+        int nrOfThreads = getInt(PROPERTY_SCRIPT_ARCHIVE_THREADS, getConfiguration());
+        boolean deduplicate = getBoolean(PROPERTY_SCRIPT_ARCHIVE_DEDUPLICATE, getConfiguration());
+        String previousArchiveFileName = getString(PROPERTY_SCRIPT_ARCHIVE_PREVIOUS, null, getConfiguration());
 
-        return new DefaultScriptArchiveCreator(scriptRepository, scriptEncoding, postProcessingScriptDirName, registeredQualifiers, patchQualifiers, scriptIndexRegexp, qualifierRegexp, targetDatabaseRegexp, scriptFileExtensions, baselineRevision, ignoreCarriageReturnsWhenCalculatingCheckSum);
+        return new DefaultScriptArchiveCreator(scriptRepository, scriptEncoding, postProcessingScriptDirName, registeredQualifiers, patchQualifiers, scriptIndexRegexp, qualifierRegexp, targetDatabaseRegexp, scriptFileExtensions, baselineRevision, ignoreCarriageReturnsWhenCalculatingCheckSum, compressionLevel, nrOfThreads, deduplicate, previousArchiveFileName);
     }
 
 }
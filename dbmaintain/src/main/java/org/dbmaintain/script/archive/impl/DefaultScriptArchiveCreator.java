@@ -28,6 +28,7 @@ import org.dbmaintain.util.DbMaintainException;
 import java.io.File;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.zip.Deflater;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
@@ -54,9 +55,25 @@ public class DefaultScriptArchiveCreator implements ScriptArchiveCreator {
     protected Set<String> scriptFileExtensions;
     protected ScriptIndexes baseLineRevision;
     protected boolean ignoreCarriageReturnsWhenCalculatingCheckSum;
+    protected int compressionLevel;
+    protected int nrOfThreads;
+    protected boolean deduplicate;
+    protected String previousArchiveFileName;
 
 
     public DefaultScriptArchiveCreator(ScriptRepository scriptRepository, String scriptEncoding, String postProcessingScriptDirName, Set<Qualifier> registeredQualifiers, Set<Qualifier> patchQualifiers, String scriptIndexRegexp, String qualifierRegexp, String targetDatabaseRegexp, Set<String> scriptFileExtensions, ScriptIndexes baseLineRevision, boolean ignoreCarriageReturnsWhenCalculatingCheckSum) {
+        this(scriptRepository, scriptEncoding, postProcessingScriptDirName, registeredQualifiers, patchQualifiers, scriptIndexRegexp, qualifierRegexp, targetDatabaseRegexp, scriptFileExtensions, baseLineRevision, ignoreCarriageReturnsWhenCalculatingCheckSum, Deflater.DEFAULT_COMPRESSION, 0);
+    }
+
+    public DefaultScriptArchiveCreator(ScriptRepository scriptRepository, String scriptEncoding, String postProcessingScriptDirName, Set<Qualifier> registeredQualifiers, Set<Qualifier> patchQualifiers, String scriptIndexRegexp, String qualifierRegexp, String targetDatabaseRegexp, Set<String> scriptFileExtensions, ScriptIndexes baseLineRevision, boolean ignoreCarriageReturnsWhenCalculatingCheckSum, int compressionLevel, int nrOfThreads) {
+        this(scriptRepository, scriptEncoding, postProcessingScriptDirName, registeredQualifiers, patchQualifiers, scriptIndexRegexp, qualifierRegexp, targetDatabaseRegexp, scriptFileExtensions, baseLineRevision, ignoreCarriageReturnsWhenCalculatingCheckSum, compressionLevel, nrOfThreads, false);
+    }
+
+    public DefaultScriptArchiveCreator(ScriptRepository scriptRepository, String scriptEncoding, String postProcessingScriptDirName, Set<Qualifier> registeredQualifiers, Set<Qualifier> patchQualifiers, String scriptIndexRegexp, String qualifierRegexp, String targetDatabaseRegexp, Set<String> scriptFileExtensions, ScriptIndexes baseLineRevision, boolean ignoreCarriageReturnsWhenCalculatingCheckSum, int compressionLevel, int nrOfThreads, boolean deduplicate) {
+        this(scriptRepository, scriptEncoding, postProcessingScriptDirName, registeredQualifiers, patchQualifiers, scriptIndexRegexp, qualifierRegexp, targetDatabaseRegexp, scriptFileExtensions, baseLineRevision, ignoreCarriageReturnsWhenCalculatingCheckSum, compressionLevel, nrOfThreads, deduplicate, null);
+    }
+
+    public DefaultScriptArchiveCreator(ScriptRepository scriptRepository, String scriptEncoding, String postProcessingScriptDirName, Set<Qualifier> registeredQualifiers, Set<Qualifier> patchQualifiers, String scriptIndexRegexp, String qualifierRegexp, String targetDatabaseRegexp, Set<String> scriptFileExtensions, ScriptIndexes baseLineRevision, boolean ignoreCarriageReturnsWhenCalculatingCheckSum, int compressionLevel, int nrOfThreads, boolean deduplicate, String previousArchiveFileName) {
         this.scriptRepository = scriptRepository;
         this.scriptEncoding = scriptEncoding;
         this.postProcessingScriptDirName = postProcessingScriptDirName;
@@ -68,6 +85,10 @@ public class DefaultScriptArchiveCreator implements ScriptArchiveCreator {
         this.scriptFileExtensions = scriptFileExtensions;
         this.baseLineRevision = baseLineRevision;
         this.ignoreCarriageReturnsWhenCalculatingCheckSum = ignoreCarriageReturnsWhenCalculatingCheckSum;
+        this.compressionLevel = compressionLevel;
+        this.nrOfThreads = nrOfThreads;
+        this.deduplicate = deduplicate;
+        this.previousArchiveFileName = previousArchiveFileName;
     }
 
     /**
@@ -83,10 +104,17 @@ public class DefaultScriptArchiveCreator implements ScriptArchiveCreator {
             logger.info("Creating script archive: " + archiveFileName);
             SortedSet<Script> allScripts = scriptRepository.getAllScripts();
             ArchiveScriptLocation archiveScriptLocation = new ArchiveScriptLocation(allScripts, scriptEncoding, postProcessingScriptDirName, registeredQualifiers, patchQualifiers, scriptIndexRegexp, qualifierRegexp, targetDatabaseRegexp, scriptFileExtensions, baseLineRevision, ignoreCarriageReturnsWhenCalculatingCheckSum);
-            archiveScriptLocation.writeToJarFile(new File(archiveFileName));
+            File previousArchiveFile = null;
+            if (!isBlank(previousArchiveFileName)) {
+                logger.info("Creating a delta archive against previous script archive: " + previousArchiveFileName);
+                previousArchiveFile = new File(previousArchiveFileName);
+            }
+            archiveScriptLocation.writeToJarFile(new File(archiveFileName), compressionLevel, nrOfThreads, deduplicate, previousArchiveFile);
 
         } catch (Exception e) {
             throw new DbMaintainException("Error creating script archive " + archiveFileName, e);
+        } finally {
+            scriptRepository.close();
         }
     }
 
@@ -0,0 +1,44 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.checksum;
+
+import java.security.MessageDigest;
+
+/**
+ * An algorithm for calculating the check sum of the content of a script.
+ * <p/>
+ * Implementations are registered using the property
+ * <code>org.dbmaintain.script.checksum.CheckSumAlgorithm.implClassName.&lt;name&gt;</code> and need a public
+ * no-argument constructor.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public interface CheckSumAlgorithm {
+
+    /**
+     * The name is stored as prefix of every check sum that is calculated with the algorithm. It should therefore
+     * never change once check sums have been stored.
+     *
+     * @return The name of the algorithm, not null. Should not contain a ':'
+     */
+    String getName();
+
+    /**
+     * @return A new digest that calculates the check sum, not null
+     */
+    MessageDigest createDigest();
+}
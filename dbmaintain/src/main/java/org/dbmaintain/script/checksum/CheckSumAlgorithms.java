@@ -0,0 +1,158 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.checksum;
+
+import org.dbmaintain.script.checksum.impl.Crc32CheckSumAlgorithm;
+import org.dbmaintain.script.checksum.impl.Md5CheckSumAlgorithm;
+import org.dbmaintain.script.checksum.impl.Sha256CheckSumAlgorithm;
+import org.dbmaintain.util.DbMaintainException;
+
+import java.util.*;
+
+import static java.util.Arrays.asList;
+
+/**
+ * The available check sum algorithms, together with the algorithm that is used for calculating new check sums.
+ * <p/>
+ * A check sum is stored as the name of the algorithm followed by a ':' and the hex value of the digest, e.g.
+ * <code>MD5:d41d8cd98f00b204e9800998ecf8427e</code>. Check sums that were stored before the algorithm became
+ * configurable have no prefix and are MD5 check sums.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class CheckSumAlgorithms {
+
+    /* The algorithm of check sums without a prefix */
+    public static final String LEGACY_ALGORITHM_NAME = Md5CheckSumAlgorithm.NAME;
+
+    /* The separator between the algorithm name and the value of a check sum */
+    public static final char ALGORITHM_SEPARATOR = ':';
+
+    /* The algorithms per name */
+    protected Map<String, CheckSumAlgorithm> algorithms = new HashMap<>();
+    /* The algorithm that is used for calculating new check sums */
+    protected CheckSumAlgorithm defaultAlgorithm;
+
+
+    /**
+     * @param defaultAlgorithmName The name of the algorithm for calculating new check sums, not null
+     * @param algorithms           The available algorithms, not null
+     * @throws DbMaintainException if the default algorithm is not one of the available algorithms
+     */
+    public CheckSumAlgorithms(String defaultAlgorithmName, Collection<CheckSumAlgorithm> algorithms) {
+        for (CheckSumAlgorithm algorithm : algorithms) {
+            if (algorithm.getName().indexOf(ALGORITHM_SEPARATOR) != -1) {
+                throw new DbMaintainException("Invalid check sum algorithm name " + algorithm.getName() + ". The name should not contain a " + ALGORITHM_SEPARATOR);
+            }
+            this.algorithms.put(algorithm.getName(), algorithm);
+        }
+        this.defaultAlgorithm = getAlgorithmWithName(defaultAlgorithmName);
+    }
+
+    /**
+     * @return The built-in algorithms with MD5 as default algorithm, not null
+     */
+    public static CheckSumAlgorithms createDefault() {
+        return new CheckSumAlgorithms(Md5CheckSumAlgorithm.NAME, asList(new Md5CheckSumAlgorithm(), new Sha256CheckSumAlgorithm(), new Crc32CheckSumAlgorithm()));
+    }
+
+
+    /**
+     * @return The algorithm that is used for calculating new check sums, not null
+     */
+    public CheckSumAlgorithm getDefaultAlgorithm() {
+        return defaultAlgorithm;
+    }
+
+    /**
+     * @return The length of the check sums that are calculated with the default algorithm, including the algorithm prefix
+     */
+    public int getDefaultCheckSumLength() {
+        return defaultAlgorithm.getName().length() + 1 + 2 * defaultAlgorithm.createDigest().digest().length;
+    }
+
+    /**
+     * @param algorithmName The name of the algorithm, not null
+     * @return The algorithm, not null
+     * @throws DbMaintainException if there is no algorithm with the given name
+     */
+    public CheckSumAlgorithm getAlgorithmWithName(String algorithmName) {
+        CheckSumAlgorithm algorithm = algorithms.get(algorithmName);
+        if (algorithm == null) {
+            throw new DbMaintainException("Unknown check sum algorithm " + algorithmName + ". Available algorithms: " + new TreeSet<>(algorithms.keySet()));
+        }
+        return algorithm;
+    }
+
+
+    /**
+     * @param algorithmName The name of the algorithm, not null
+     * @param value         The hex value of the digest, not null
+     * @return The check sum including the algorithm prefix, not null
+     */
+    public static String toCheckSum(String algorithmName, String value) {
+        return algorithmName + ALGORITHM_SEPARATOR + value;
+    }
+
+    /**
+     * @param algorithmName The name of the algorithm, not null
+     * @param digest        The value of the digest, not null
+     * @return The check sum including the algorithm prefix, the digest is formatted as hex, not null
+     */
+    public static String toCheckSum(String algorithmName, byte[] digest) {
+        StringBuilder value = new StringBuilder();
+        for (byte b : digest) {
+            value.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
+        }
+        return toCheckSum(algorithmName, value.toString());
+    }
+
+    /**
+     * @param checkSum A check sum, with or without algorithm prefix, not null
+     * @return The name of the algorithm with which the check sum was calculated, not null
+     */
+    public static String getAlgorithmName(String checkSum) {
+        int index = checkSum.indexOf(ALGORITHM_SEPARATOR);
+        if (index == -1) {
+            return LEGACY_ALGORITHM_NAME;
+        }
+        return checkSum.substring(0, index);
+    }
+
+    /**
+     * @param checkSum A check sum, with or without algorithm prefix, not null
+     * @return The check sum without the algorithm prefix, not null
+     */
+    public static String getValue(String checkSum) {
+        return checkSum.substring(checkSum.indexOf(ALGORITHM_SEPARATOR) + 1);
+    }
+
+    /**
+     * Check sums calculated with a different algorithm are never equal, even if the content they were calculated for
+     * is the same.
+     *
+     * @param checkSum1 The first check sum, with or without algorithm prefix, null if unknown
+     * @param checkSum2 The second check sum, with or without algorithm prefix, null if unknown
+     * @return True if both check sums are known, were calculated using the same algorithm and have the same value
+     */
+    public static boolean isEqual(String checkSum1, String checkSum2) {
+        if (checkSum1 == null || checkSum2 == null) {
+            return false;
+        }
+        return getAlgorithmName(checkSum1).equals(getAlgorithmName(checkSum2)) && getValue(checkSum1).equals(getValue(checkSum2));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.checksum.impl;
+
+import org.dbmaintain.script.checksum.CheckSumAlgorithm;
+
+import java.security.MessageDigest;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * CRC32 check sums. Much faster to calculate than MD5, but not a cryptographic hash: only use it if the scripts are
+ * not expected to be modified on purpose in a way that keeps the check sum the same.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class Crc32CheckSumAlgorithm implements CheckSumAlgorithm {
+
+    public static final String NAME = "CRC32";
+
+
+    public String getName() {
+        return NAME;
+    }
+
+    public MessageDigest createDigest() {
+        return new ChecksumMessageDigest(NAME, new CRC32());
+    }
+
+
+    /**
+     * Message digest that delegates to a 32 bit {@link Checksum}.
+     */
+    protected static class ChecksumMessageDigest extends MessageDigest {
+
+        private Checksum checksum;
+
+        public ChecksumMessageDigest(String algorithm, Checksum checksum) {
+            super(algorithm);
+            this.checksum = checksum;
+        }
+
+        @Override
+        protected void engineUpdate(byte input) {
+            checksum.update(input);
+        }
+
+        @Override
+        protected void engineUpdate(byte[] input, int offset, int length) {
+            checksum.update(input, offset, length);
+        }
+
+        @Override
+        protected byte[] engineDigest() {
+            long value = checksum.getValue();
+            checksum.reset();
+            return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+        }
+
+        @Override
+        protected int engineGetDigestLength() {
+            return 4;
+        }
+
+        @Override
+        protected void engineReset() {
+            checksum.reset();
+        }
+    }
+}
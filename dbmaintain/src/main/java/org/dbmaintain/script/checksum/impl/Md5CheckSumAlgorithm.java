@@ -0,0 +1,32 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.checksum.impl;
+
+/**
+ * MD5 check sums. This is the default algorithm.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class Md5CheckSumAlgorithm extends MessageDigestCheckSumAlgorithm {
+
+    public static final String NAME = "MD5";
+
+
+    public Md5CheckSumAlgorithm() {
+        super(NAME);
+    }
+}
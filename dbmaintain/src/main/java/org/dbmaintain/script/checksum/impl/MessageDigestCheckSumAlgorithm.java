@@ -0,0 +1,55 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.checksum.impl;
+
+import org.dbmaintain.script.checksum.CheckSumAlgorithm;
+import org.dbmaintain.util.DbMaintainException;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Check sum algorithm that uses a message digest of the java security API.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class MessageDigestCheckSumAlgorithm implements CheckSumAlgorithm {
+
+    /* The name of the algorithm, also the name of the message digest */
+    protected String name;
+
+
+    /**
+     * @param name The name of the message digest algorithm, e.g. MD5, not null
+     */
+    public MessageDigestCheckSumAlgorithm(String name) {
+        this.name = name;
+    }
+
+
+    public String getName() {
+        return name;
+    }
+
+    public MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance(name);
+        } catch (NoSuchAlgorithmException e) {
+            throw new DbMaintainException("Unable to create digest for check sum algorithm " + name, e);
+        }
+    }
+}
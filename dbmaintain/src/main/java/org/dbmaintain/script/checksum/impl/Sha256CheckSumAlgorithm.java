@@ -0,0 +1,33 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.checksum.impl;
+
+/**
+ * SHA-256 check sums. Note that these check sums are 72 characters long, the checksum column of the executed
+ * scripts table should be large enough to hold them.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class Sha256CheckSumAlgorithm extends MessageDigestCheckSumAlgorithm {
+
+    public static final String NAME = "SHA-256";
+
+
+    public Sha256CheckSumAlgorithm() {
+        super(NAME);
+    }
+}
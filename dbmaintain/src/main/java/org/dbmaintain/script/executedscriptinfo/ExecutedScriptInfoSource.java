@@ -18,6 +18,7 @@ package org.dbmaintain.script.executedscriptinfo;
 import org.dbmaintain.script.ExecutedScript;
 import org.dbmaintain.script.Script;
 
+import java.util.Collection;
 import java.util.Set;
 
 
@@ -37,6 +38,13 @@ public interface ExecutedScriptInfoSource {
      */
     void registerExecutedScript(ExecutedScript executedScript);
 
+    /**
+     * Registers the fact that the given scripts have been executed on the database, all at once.
+     *
+     * @param executedScripts The scripts that were executed on the database, not null
+     */
+    void registerExecutedScripts(Collection<ExecutedScript> executedScripts);
+
     /**
      * Updates the given registered script
      *
@@ -85,6 +93,32 @@ public interface ExecutedScriptInfoSource {
      */
     void removeErrorScripts();
 
+    /**
+     * Replaces the registered incremental scripts with a lower revision than the given checkpoint revision by a single
+     * checkpoint. Scripts with a lower revision are from then on considered to be executed, without being registered
+     * one by one. Only successfully executed scripts can be compacted. Patch scripts stay registered, so that a patch
+     * script that is added below the checkpoint afterwards can still be recognized as a new one.
+     *
+     * @param checkpointRevision The revision of the checkpoint, not null
+     */
+    void compactExecutedScripts(ScriptIndexes checkpointRevision);
+
+    /**
+     * @return The revision of the checkpoint, null if the executed scripts were never compacted
+     */
+    ScriptIndexes getCheckpointRevision();
+
+    /**
+     * @return The nr of scripts that were compacted into the checkpoint, 0 if the executed scripts were never compacted
+     */
+    long getNrOfCheckpointScripts();
+
+    /**
+     * Adds what is missing in an executed scripts table that was created by an older version, e.g. indexes. This can
+     * execute DDL statements, which implicitly commit on some databases: do not call it within a transaction.
+     */
+    void upgradeExecutedScriptsTable();
+
     /**
      * Resets the cached state, for example when the scripts table was modified by another process.
      * The scripts will be reloaded the next time.
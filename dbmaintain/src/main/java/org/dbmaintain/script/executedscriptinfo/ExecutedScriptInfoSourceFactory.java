@@ -19,6 +19,7 @@ import org.dbmaintain.config.FactoryWithDatabase;
 import org.dbmaintain.config.PropertyUtils;
 import org.dbmaintain.database.Database;
 import org.dbmaintain.script.ScriptFactory;
+import org.dbmaintain.script.checksum.CheckSumAlgorithms;
 import org.dbmaintain.script.executedscriptinfo.impl.DefaultExecutedScriptInfoSource;
 import org.dbmaintain.script.qualifier.Qualifier;
 
@@ -47,9 +48,11 @@ public class ExecutedScriptInfoSourceFactory extends FactoryWithDatabase<Execute
         String fileLastModifiedAtColumnName = defaultDatabase.toCorrectCaseIdentifier(getString(PROPERTY_FILE_LAST_MODIFIED_AT_COLUMN_NAME, getConfiguration()));
         String checksumColumnName = defaultDatabase.toCorrectCaseIdentifier(getString(PROPERTY_CHECKSUM_COLUMN_NAME, getConfiguration()));
         int checksumColumnSize = PropertyUtils.getInt(PROPERTY_CHECKSUM_COLUMN_SIZE, getConfiguration());
+        CheckSumAlgorithms checkSumAlgorithms = factoryWithDatabaseContext.createCheckSumAlgorithms();
         String executedAtColumnName = defaultDatabase.toCorrectCaseIdentifier(getString(PROPERTY_EXECUTED_AT_COLUMN_NAME, getConfiguration()));
         int executedAtColumnSize = PropertyUtils.getInt(PROPERTY_EXECUTED_AT_COLUMN_SIZE, getConfiguration());
         String succeededColumnName = defaultDatabase.toCorrectCaseIdentifier(getString(PROPERTY_SUCCEEDED_COLUMN_NAME, getConfiguration()));
+        String changeSequenceColumnName = getString(PROPERTY_CHANGE_SEQUENCE_COLUMN_NAME, null, getConfiguration());
         DateFormat timestampFormat = new SimpleDateFormat(getString(PROPERTY_TIMESTAMP_FORMAT, getConfiguration()));
         String scriptIndexRegexp = getString(PROPERTY_SCRIPT_INDEX_REGEXP, getConfiguration());
         String targetDatabaseRegexp = getString(PROPERTY_SCRIPT_TARGETDATABASE_REGEXP, getConfiguration());
@@ -59,10 +62,11 @@ public class ExecutedScriptInfoSourceFactory extends FactoryWithDatabase<Execute
         String postProcessingScriptsDirName = getString(PROPERTY_POSTPROCESSINGSCRIPT_DIRNAME, getConfiguration());
         ScriptIndexes baselineRevision = factoryWithDatabaseContext.getBaselineRevision();
 
-        ScriptFactory scriptFactory = new ScriptFactory(scriptIndexRegexp, targetDatabaseRegexp, qualifierRegexp, registeredQualifiers, patchQualifiers, postProcessingScriptsDirName, baselineRevision);
+        ScriptFactory scriptFactory = new ScriptFactory(scriptIndexRegexp, targetDatabaseRegexp, qualifierRegexp, registeredQualifiers, patchQualifiers, postProcessingScriptsDirName, baselineRevision,
+                factoryWithDatabaseContext.getScriptNameCache());
         return new DefaultExecutedScriptInfoSource(autoCreateExecutedScriptsTable, executedScriptsTableName, fileNameColumnName, fileNameColumnSize,
-                fileLastModifiedAtColumnName, checksumColumnName, checksumColumnSize,
-                executedAtColumnName, executedAtColumnSize, succeededColumnName, timestampFormat, defaultDatabase,
+                fileLastModifiedAtColumnName, checksumColumnName, checksumColumnSize, checkSumAlgorithms,
+                executedAtColumnName, executedAtColumnSize, succeededColumnName, changeSequenceColumnName, timestampFormat, defaultDatabase,
                 getSqlHandler(), scriptFactory);
     }
 
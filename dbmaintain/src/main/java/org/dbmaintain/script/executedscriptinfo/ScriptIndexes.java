@@ -18,7 +18,7 @@ package org.dbmaintain.script.executedscriptinfo;
 import org.dbmaintain.util.DbMaintainException;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.apache.commons.lang3.StringUtils.isEmpty;
@@ -37,23 +37,32 @@ import static org.apache.commons.lang3.StringUtils.split;
  * <p/>
  * The last index defines whether the script is incremental or repeatable: if the last index is null, the
  * script is repeatable; if not, it is incremental.
+ * <p/>
+ * The indexes are kept as primitive longs, with a bit mask of the levels that have no index. Instances are immutable
+ * and are compared very often when scripts are sorted, so the hash code is calculated only once.
  *
  * @author Filip Neven
  * @author Tim Ducheyne
  */
 public class ScriptIndexes implements Comparable<ScriptIndexes> {
 
-    /* The version indexes, empty if not defined */
-    private List<Long> indexes = new ArrayList<Long>();
+    private static final long[] NO_INDEXES = new long[0];
+
+    /* The version indexes, 0 for a level without index, empty if not defined */
+    private long[] indexes;
+    /* One bit per level, set if the level has no index */
+    private long[] unindexedLevels;
+    /* The cached hash code */
+    private int hashCode;
 
 
     /**
      * Creates a new version.
      *
-     * @param indexes The script indexes, not null
+     * @param indexes The script indexes, null for a level without index, not null
      */
     public ScriptIndexes(List<Long> indexes) {
-        this.indexes = indexes;
+        init(indexes);
         assertValidIndexes();
     }
 
@@ -64,23 +73,51 @@ public class ScriptIndexes implements Comparable<ScriptIndexes> {
      * @param indexString The indexes as a string
      */
     public ScriptIndexes(String indexString) {
-        this.indexes = extractIndexes(indexString);
+        init(extractIndexes(indexString));
         assertValidIndexes();
     }
 
 
+    protected void init(List<Long> indexList) {
+        int size = indexList.size();
+        indexes = size == 0 ? NO_INDEXES : new long[size];
+        unindexedLevels = new long[(size + 63) >>> 6];
+        for (int i = 0; i < size; i++) {
+            Long index = indexList.get(i);
+            if (index == null) {
+                unindexedLevels[i >>> 6] |= 1L << i;
+            } else {
+                indexes[i] = index;
+            }
+        }
+        hashCode = 31 * Arrays.hashCode(indexes) + Arrays.hashCode(unindexedLevels);
+    }
+
+
     /**
      * An empty list if no version is defined.
      *
-     * @return The script index, not null
+     * @return A copy of the script indexes, null for a level without index, not null
      */
     public List<Long> getIndexes() {
-        return indexes;
+        List<Long> result = new ArrayList<>(indexes.length);
+        for (int i = 0; i < indexes.length; i++) {
+            result.add(isIndexed(i) ? indexes[i] : null);
+        }
+        return result;
+    }
+
+    /**
+     * @param level The level, between 0 and the nr of levels
+     * @return True if the given level has an index
+     */
+    protected boolean isIndexed(int level) {
+        return (unindexedLevels[level >>> 6] & (1L << level)) == 0;
     }
 
 
     public boolean isIncrementalScript() {
-        return !indexes.isEmpty() && indexes.get(indexes.size() - 1) != null;
+        return indexes.length > 0 && isIndexed(indexes.length - 1);
     }
 
 
@@ -91,8 +128,8 @@ public class ScriptIndexes implements Comparable<ScriptIndexes> {
 
     protected void assertValidIndexes() {
         if (isRepeatableScript()) {
-            for (Long index : indexes) {
-                if (index != null) {
+            for (int i = 0; i < indexes.length; i++) {
+                if (isIndexed(i)) {
                     throw new DbMaintainException("Repeatable scripts cannot be located inside an indexed folder.");
                 }
             }
@@ -109,17 +146,14 @@ public class ScriptIndexes implements Comparable<ScriptIndexes> {
     public String getIndexesString() {
         StringBuilder result = new StringBuilder();
 
-        boolean first = true;
-        for (Long index : indexes) {
-            if (first) {
-                first = false;
-            } else {
+        for (int i = 0; i < indexes.length; i++) {
+            if (i > 0) {
                 result.append('.');
             }
-            if (index == null) {
-                result.append('x');
+            if (isIndexed(i)) {
+                result.append(indexes[i]);
             } else {
-                result.append(index);
+                result.append('x');
             }
         }
         return result.toString();
@@ -170,43 +204,24 @@ public class ScriptIndexes implements Comparable<ScriptIndexes> {
      * @return -1 when this version is smaller, 0 if equal, 1 when larger
      */
     public int compareTo(ScriptIndexes otherVersion) {
-        List<Long> otherIndexes = otherVersion.getIndexes();
-        if (indexes.isEmpty()) {
-            if (otherIndexes.isEmpty()) {
-                return 0;
-            }
-            return -1;
-        } else if (otherIndexes.isEmpty()) {
-            return 1;
-        }
-        Iterator<Long> thisIterator = indexes.iterator();
-        Iterator<Long> otherIterator = otherIndexes.iterator();
-
-        while (thisIterator.hasNext() && otherIterator.hasNext()) {
-            Long thisIndex = thisIterator.next();
-            Long otherIndex = otherIterator.next();
-
-            if (thisIndex != null && otherIndex != null) {
-                if (thisIndex < otherIndex) {
-                    return -1;
-                }
-                if (thisIndex > otherIndex) {
-                    return 1;
-                }
-            } else if (thisIndex != null) {
-                return -1;
-            } else if (otherIndex != null) {
-                return 1;
-            }
-        }
-        if (!thisIterator.hasNext() && !otherIterator.hasNext()) {
+        if (this == otherVersion) {
             return 0;
         }
-        if (thisIterator.hasNext()) {
-            return 1;
-        } else {
-            return -1;
+        long[] otherIndexes = otherVersion.indexes;
+        int length = Math.min(indexes.length, otherIndexes.length);
+        for (int i = 0; i < length; i++) {
+            boolean thisIndexed = isIndexed(i);
+            boolean otherIndexed = otherVersion.isIndexed(i);
+            if (thisIndexed != otherIndexed) {
+                // a level with an index comes before a level without index
+                return thisIndexed ? -1 : 1;
+            }
+            if (indexes[i] != otherIndexes[i]) {
+                return indexes[i] < otherIndexes[i] ? -1 : 1;
+            }
         }
+        // e.g. no indexes before 1 and 1 before 1.1
+        return indexes.length == otherIndexes.length ? 0 : (indexes.length < otherIndexes.length ? -1 : 1);
     }
 
 
@@ -215,7 +230,7 @@ public class ScriptIndexes implements Comparable<ScriptIndexes> {
      */
     @Override
     public int hashCode() {
-        return 31 + ((indexes == null) ? 0 : indexes.hashCode());
+        return hashCode;
     }
 
 
@@ -235,14 +250,7 @@ public class ScriptIndexes implements Comparable<ScriptIndexes> {
             return false;
         }
         ScriptIndexes other = (ScriptIndexes) object;
-        if (indexes == null) {
-            if (other.indexes != null) {
-                return false;
-            }
-        } else if (!indexes.equals(other.indexes)) {
-            return false;
-        }
-        return true;
+        return hashCode == other.hashCode && Arrays.equals(indexes, other.indexes) && Arrays.equals(unindexedLevels, other.unindexedLevels);
     }
 
 
@@ -22,21 +22,47 @@ import org.dbmaintain.database.SQLHandler;
 import org.dbmaintain.script.ExecutedScript;
 import org.dbmaintain.script.Script;
 import org.dbmaintain.script.ScriptFactory;
+import org.dbmaintain.script.checksum.CheckSumAlgorithm;
+import org.dbmaintain.script.checksum.CheckSumAlgorithms;
 import org.dbmaintain.script.executedscriptinfo.ExecutedScriptInfoSource;
+import org.dbmaintain.script.executedscriptinfo.ScriptIndexes;
 import org.dbmaintain.util.DbMaintainException;
 
+import javax.sql.DataSource;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.sql.PreparedStatement;
 import java.text.DateFormat;
-import java.text.ParseException;
 import java.util.*;
 
 import static org.apache.commons.dbutils.DbUtils.closeQuietly;
+import static org.apache.commons.lang3.StringUtils.join;
+import static org.apache.commons.lang3.StringUtils.left;
+import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_CHECKSUM_COLUMN_SIZE;
+import static org.dbmaintain.script.executedscriptinfo.impl.LazyExecutedScriptSet.NO_EXECUTED_AT;
 
 /**
  * Implementation of <code>VersionSource</code> that stores the version in the database.
+ * <p/>
+ * The registry is updated using parameterized statements that are prepared once and reused for all scripts.
+ * <p/>
+ * If the table has a change sequence column, every insert or update stores the next sequence nr. When the cached state
+ * is reset, only the rows with a higher sequence nr than the last loaded or stored one are read again. If rows were
+ * deleted by someone else, all rows are read again.
+ * <p/>
+ * When the executed scripts are compacted, the rows of the incremental scripts below the checkpoint revision, except
+ * the patch scripts, are replaced by a single checkpoint row. Its file name is the checkpoint revision prefixed with
+ * {@link #CHECKPOINT_FILE_NAME_PREFIX}, it stores the nr of compacted scripts as last modification date and an
+ * aggregate check sum of the compacted scripts. Versions that do not support compaction treat this row as a deleted
+ * script and the compacted scripts as newly added ones.
+ * <p/>
+ * The loaded rows are kept in a {@link LazyExecutedScriptSet}: the scripts are only created when they are accessed.
  *
  * @author Filip Neven
  * @author Tim Ducheyne
@@ -46,7 +72,30 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
     /* The logger instance for this class */
     private static Log logger = LogFactory.getLog(DefaultExecutedScriptInfoSource.class);
 
-    protected SortedSet<ExecutedScript> cachedExecutedScripts;
+    /* The prefix of the file name of the checkpoint row, it is followed by the checkpoint revision */
+    public static final String CHECKPOINT_FILE_NAME_PREFIX = "<checkpoint>/";
+
+    /* The max nr of rows that is fetched from the database at once */
+    protected static final int FETCH_SIZE = 1000;
+
+    /* The registered scripts, including the rows of the ignored ones, null if not loaded yet */
+    protected LazyExecutedScriptSet cachedExecutedScripts;
+    /* True if the cached scripts can be outdated and are refreshed before they are used */
+    protected boolean cachedStateOutdated;
+    /* The highest change sequence nr that was loaded, rows with a higher nr are loaded when the state is outdated */
+    protected long loadedChangeSequence = -1;
+    /* The highest change sequence nr that was loaded, stored or read from the database, -1 if none */
+    protected long lastChangeSequence = -1;
+    /* True if the highest stored change sequence nr was read since the cached state was last reset, the next nrs are then determined locally */
+    protected boolean lastChangeSequenceRead;
+    /* The nr of times all rows of the executed scripts table were loaded */
+    protected int nrOfFullLoads;
+    /* The revision of the checkpoint, null if the scripts were never compacted */
+    protected ScriptIndexes checkpointRevision;
+    /* The aggregate check sum of the compacted scripts, null if the scripts were never compacted */
+    protected String checkpointCheckSum;
+    /* The nr of compacted scripts */
+    protected long nrOfCheckpointScripts;
 
     protected Database defaultDatabase;
     protected SQLHandler sqlHandler;
@@ -60,17 +109,29 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
     /* The name of the database column in which the checksum calculated on the script content is stored */
     protected String checksumColumnName;
     protected int checksumColumnSize;
+    /* The length of the check sums of the configured check sum algorithm, 0 if unknown */
+    protected int checkSumLength;
+    /* The check sum algorithms, the default algorithm is used for the check sum of the checkpoint */
+    protected CheckSumAlgorithms checkSumAlgorithms;
     /* The name of the database column in which the script execution timestamp is stored */
     protected String executedAtColumnName;
     protected int executedAtColumnSize;
     /* The name of the database column in which the script name is stored */
     protected String succeededColumnName;
+    /* The name of the database column in which the change sequence nr is stored, null if not used */
+    protected String changeSequenceColumnName;
+    /* True if the executed scripts table has a change sequence column */
+    protected boolean changeSequenceColumnAvailable;
     /* True if the scripts table should be created automatically if it does not exist yet */
     protected boolean autoCreateExecutedScriptsTable;
-    /* Format of the contents of the executed_at column */
+    /* Format of the contents of the executed_at column, only used if it is a text column */
     protected DateFormat timestampFormat;
+    /* True if the executed_at column has a timestamp type, false if it is a text column that uses the timestamp format */
+    protected boolean executedAtColumnTyped;
     /* True if the scripts table was checked and was valid */
     protected boolean validExecutedScriptsTable = false;
+    /* True if the upgrade of the scripts table was performed or failed, it is not attempted again */
+    protected boolean executedScriptsTableUpgraded = false;
 
     protected ScriptFactory scriptFactory;
 
@@ -78,6 +139,27 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
                                            int fileNameColumnSize, String fileLastModifiedAtColumnName, String checksumColumnName, int checksumColumnSize,
                                            String executedAtColumnName, int executedAtColumnSize, String succeededColumnName, DateFormat timestampFormat,
                                            Database defaultSupport, SQLHandler sqlHandler, ScriptFactory scriptFactory) {
+        this(autoCreateExecutedScriptsTable, executedScriptsTableName, fileNameColumnName, fileNameColumnSize, fileLastModifiedAtColumnName, checksumColumnName,
+                checksumColumnSize, executedAtColumnName, executedAtColumnSize, succeededColumnName, null, timestampFormat, defaultSupport, sqlHandler, scriptFactory);
+    }
+
+    public DefaultExecutedScriptInfoSource(boolean autoCreateExecutedScriptsTable, String executedScriptsTableName, String fileNameColumnName,
+                                           int fileNameColumnSize, String fileLastModifiedAtColumnName, String checksumColumnName, int checksumColumnSize,
+                                           String executedAtColumnName, int executedAtColumnSize, String succeededColumnName, String changeSequenceColumnName,
+                                           DateFormat timestampFormat, Database defaultSupport, SQLHandler sqlHandler, ScriptFactory scriptFactory) {
+        this(autoCreateExecutedScriptsTable, executedScriptsTableName, fileNameColumnName, fileNameColumnSize, fileLastModifiedAtColumnName, checksumColumnName,
+                checksumColumnSize, null, executedAtColumnName, executedAtColumnSize, succeededColumnName, changeSequenceColumnName, timestampFormat, defaultSupport, sqlHandler, scriptFactory);
+    }
+
+    /**
+     * @param checkSumAlgorithms The configured check sum algorithms. The checksum column of an existing table should be
+     *                           large enough for the check sums of the default algorithm, a new table is created with a
+     *                           column that is large enough. Null if unknown, the default MD5 algorithm is then used.
+     */
+    public DefaultExecutedScriptInfoSource(boolean autoCreateExecutedScriptsTable, String executedScriptsTableName, String fileNameColumnName,
+                                           int fileNameColumnSize, String fileLastModifiedAtColumnName, String checksumColumnName, int checksumColumnSize, CheckSumAlgorithms checkSumAlgorithms,
+                                           String executedAtColumnName, int executedAtColumnSize, String succeededColumnName, String changeSequenceColumnName,
+                                           DateFormat timestampFormat, Database defaultSupport, SQLHandler sqlHandler, ScriptFactory scriptFactory) {
 
         this.defaultDatabase = defaultSupport;
         this.sqlHandler = sqlHandler;
@@ -88,9 +170,12 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
         this.fileLastModifiedAtColumnName = defaultDatabase.toCorrectCaseIdentifier(fileLastModifiedAtColumnName);
         this.checksumColumnName = defaultDatabase.toCorrectCaseIdentifier(checksumColumnName);
         this.checksumColumnSize = checksumColumnSize;
+        this.checkSumLength = checkSumAlgorithms == null ? 0 : checkSumAlgorithms.getDefaultCheckSumLength();
+        this.checkSumAlgorithms = checkSumAlgorithms == null ? CheckSumAlgorithms.createDefault() : checkSumAlgorithms;
         this.executedAtColumnName = defaultDatabase.toCorrectCaseIdentifier(executedAtColumnName);
         this.executedAtColumnSize = executedAtColumnSize;
         this.succeededColumnName = defaultDatabase.toCorrectCaseIdentifier(succeededColumnName);
+        this.changeSequenceColumnName = changeSequenceColumnName == null ? null : defaultDatabase.toCorrectCaseIdentifier(changeSequenceColumnName);
         this.timestampFormat = timestampFormat;
         this.scriptFactory = scriptFactory;
     }
@@ -100,13 +185,16 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
      * @return All scripts that were registered as executed on the database
      */
     public SortedSet<ExecutedScript> getExecutedScripts() {
-        if (cachedExecutedScripts != null) {
+        if (cachedExecutedScripts != null && !cachedStateOutdated) {
             return cachedExecutedScripts;
         }
 
         checkExecutedScriptsTable();
 
-        cachedExecutedScripts = doGetExecutedScripts();
+        if (cachedExecutedScripts == null || !changeSequenceColumnAvailable || !doUpdateChangedExecutedScripts()) {
+            cachedExecutedScripts = doGetExecutedScripts();
+        }
+        cachedStateOutdated = false;
         return cachedExecutedScripts;
     }
 
@@ -116,36 +204,86 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
      *
      * @return All scripts that were registered as executed on the database
      */
-    protected synchronized SortedSet<ExecutedScript> doGetExecutedScripts() {
-        TreeSet<ExecutedScript> executedScripts = new TreeSet<ExecutedScript>();
+    protected synchronized LazyExecutedScriptSet doGetExecutedScripts() {
+        LazyExecutedScriptSet executedScripts = new LazyExecutedScriptSet(scriptFactory, timestampFormat);
+        checkpointRevision = null;
+        checkpointCheckSum = null;
+        nrOfCheckpointScripts = 0;
+        loadedChangeSequence = -1;
+        lastChangeSequence = -1;
+        lastChangeSequenceRead = false;
+        loadExecutedScripts(null, executedScripts);
+        nrOfFullLoads++;
+        return executedScripts;
+    }
+
+    /**
+     * Loads the rows that were changed since they were last loaded or stored and updates the cached scripts.
+     * Precondition: The table db_executed_scripts must exist and has a change sequence column
+     *
+     * @return False if the cached scripts could not be updated, because rows were deleted
+     */
+    protected synchronized boolean doUpdateChangedExecutedScripts() {
+        loadExecutedScripts(loadedChangeSequence, cachedExecutedScripts);
+        long nrOfRows = sqlHandler.getItemAsLong("select count(*) from " + getQualifiedExecutedScriptsTableName(), defaultDatabase.getDataSource());
+        return nrOfRows == getNrOfRegisteredRows();
+    }
+
+    /**
+     * @return The nr of rows of the executed scripts table according to the cached state, including the rows of the
+     *         ignored scripts and the checkpoint row
+     */
+    protected int getNrOfRegisteredRows() {
+        return cachedExecutedScripts.getNrOfRows() + (checkpointRevision == null ? 0 : 1);
+    }
+
+    /**
+     * Loads the rows of the executed scripts table and remembers the highest change sequence nr. The rows are stored
+     * as they are, the scripts are only created when they are accessed.
+     *
+     * @param fromChangeSequence Only load the rows with a higher change sequence nr, null to load all rows
+     * @param executedScripts    The set to add the rows to, rows of the same scripts are replaced, not null
+     */
+    protected void loadExecutedScripts(Long fromChangeSequence, LazyExecutedScriptSet executedScripts) {
+        String selectSql = "select " + fileNameColumnName + ", " + fileLastModifiedAtColumnName + ", " +
+                checksumColumnName + ", " + executedAtColumnName + ", " + succeededColumnName +
+                (changeSequenceColumnAvailable ? ", " + changeSequenceColumnName : "") +
+                " from " + getQualifiedExecutedScriptsTableName() +
+                (fromChangeSequence == null ? "" : " where " + changeSequenceColumnName + " > ?");
 
         Connection connection = null;
-        Statement statement = null;
+        PreparedStatement statement = null;
         ResultSet resultSet = null;
         try {
             connection = defaultDatabase.getDataSource().getConnection();
-            statement = connection.createStatement();
-            resultSet = statement.executeQuery("select " + fileNameColumnName + ", " + fileLastModifiedAtColumnName + ", " +
-                    checksumColumnName + ", " + executedAtColumnName + ", " + succeededColumnName +
-                    " from " + getQualifiedExecutedScriptsTableName());
+            statement = connection.prepareStatement(selectSql);
+            statement.setFetchSize(FETCH_SIZE);
+            if (fromChangeSequence != null) {
+                statement.setLong(1, fromChangeSequence);
+            }
+            resultSet = statement.executeQuery();
 
             while (resultSet.next()) {
                 String fileName = resultSet.getString(fileNameColumnName);
                 String checkSum = resultSet.getString(checksumColumnName);
-                Long fileLastModifiedAt = resultSet.getLong(fileLastModifiedAtColumnName);
-                Date executedAt = null;
-                try {
-                    String executedAtStr = resultSet.getString(executedAtColumnName);
-                    if (executedAtStr != null) executedAt = timestampFormat.parse(executedAtStr);
-                } catch (ParseException e) {
-                    throw new DbMaintainException("Error when parsing date " + executedAt + " using format " + timestampFormat, e);
-                }
+                long fileLastModifiedAt = resultSet.getLong(fileLastModifiedAtColumnName);
                 boolean succeeded = resultSet.getInt(succeededColumnName) == 1;
+                if (changeSequenceColumnAvailable) {
+                    loadedChangeSequence = Math.max(loadedChangeSequence, resultSet.getLong(changeSequenceColumnName));
+                    lastChangeSequence = Math.max(lastChangeSequence, loadedChangeSequence);
+                }
+                if (fileName.startsWith(CHECKPOINT_FILE_NAME_PREFIX)) {
+                    checkpointRevision = new ScriptIndexes(fileName.substring(CHECKPOINT_FILE_NAME_PREFIX.length()));
+                    checkpointCheckSum = checkSum;
+                    nrOfCheckpointScripts = fileLastModifiedAt;
+                    continue;
+                }
 
-                Script script = scriptFactory.createScriptWithoutContent(fileName, fileLastModifiedAt, checkSum);
-                if (!script.isIgnored()) {
-                    ExecutedScript executedScript = new ExecutedScript(script, executedAt, succeeded);
-                    executedScripts.add(executedScript);
+                if (executedAtColumnTyped) {
+                    Timestamp executedAt = resultSet.getTimestamp(executedAtColumnName);
+                    executedScripts.addRow(fileName, fileLastModifiedAt, checkSum, executedAt == null ? NO_EXECUTED_AT : executedAt.getTime(), null, succeeded);
+                } else {
+                    executedScripts.addRow(fileName, fileLastModifiedAt, checkSum, NO_EXECUTED_AT, resultSet.getString(executedAtColumnName), succeeded);
                 }
             }
         } catch (SQLException e) {
@@ -153,7 +291,6 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
         } finally {
             closeQuietly(connection, statement, resultSet);
         }
-        return executedScripts;
     }
 
 
@@ -173,6 +310,39 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
     }
 
 
+    /**
+     * Registers the fact that the given scripts have been executed on the database. The scripts are inserted and
+     * updated using JDBC batches, in a single transaction.
+     *
+     * @param executedScripts The scripts that were executed on the database, not null
+     */
+    public void registerExecutedScripts(Collection<ExecutedScript> executedScripts) {
+        checkExecutedScriptsTable();
+
+        DataSource dataSource = defaultDatabase.getDataSource();
+        sqlHandler.startTransaction(dataSource);
+        try {
+            List<Object[]> insertParameterRows = new ArrayList<>();
+            List<Object[]> updateParameterRows = new ArrayList<>();
+            for (ExecutedScript executedScript : executedScripts) {
+                if (getExecutedScripts().remove(executedScript)) {
+                    updateParameterRows.add(getUpdateParameters(executedScript));
+                } else {
+                    insertParameterRows.add(getInsertParameters(executedScript));
+                }
+                getExecutedScripts().add(executedScript);
+            }
+            sqlHandler.executePreparedBatchAndCommit(getInsertSql(), dataSource, insertParameterRows);
+            sqlHandler.executePreparedBatchAndCommit(getUpdateSql(), dataSource, updateParameterRows);
+        } catch (DbMaintainException e) {
+            sqlHandler.endTransactionAndRollback(dataSource);
+            invalidateCachedState();
+            throw e;
+        }
+        sqlHandler.endTransactionAndCommit(dataSource);
+    }
+
+
     /**
      * Saves the given registered script
      * Precondition: The table db_executed_scripts must exist
@@ -181,14 +351,19 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
      */
     protected void insertExecutedScript(ExecutedScript executedScript) {
         getExecutedScripts().add(executedScript);
+        sqlHandler.executePreparedUpdateAndCommit(getInsertSql(), defaultDatabase.getDataSource(), getInsertParameters(executedScript));
+    }
 
-        String executedAt = timestampFormat.format(executedScript.getExecutedAt());
-        String insertSql = "insert into " + getQualifiedExecutedScriptsTableName() +
+    protected String getInsertSql() {
+        return "insert into " + getQualifiedExecutedScriptsTableName() +
                 " (" + fileNameColumnName + ", " + fileLastModifiedAtColumnName + ", " + checksumColumnName + ", " +
-                executedAtColumnName + ", " + succeededColumnName + ") values ('" + executedScript.getScript().getFileName() +
-                "', " + executedScript.getScript().getFileLastModifiedAt() + ", '" +
-                executedScript.getScript().getCheckSum() + "', '" + executedAt + "', " + (executedScript.isSuccessful() ? "1" : "0") + ")";
-        sqlHandler.executeUpdateAndCommit(insertSql, defaultDatabase.getDataSource());
+                executedAtColumnName + ", " + succeededColumnName + (changeSequenceColumnAvailable ? ", " + changeSequenceColumnName + ") values (?, ?, ?, ?, ?, ?)" : ") values (?, ?, ?, ?, ?)");
+    }
+
+    protected Object[] getInsertParameters(ExecutedScript executedScript) {
+        Script script = executedScript.getScript();
+        return withChangeSequence(new Object[]{script.getFileName(), script.getFileLastModifiedAt(), getCheckSumValue(executedScript),
+                getExecutedAtValue(executedScript), getSucceededValue(executedScript)});
     }
 
 
@@ -200,16 +375,118 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
     public void updateExecutedScript(ExecutedScript executedScript) {
         checkExecutedScriptsTable();
 
+        // replace the cached instance, it can refer to another version of the script
+        getExecutedScripts().remove(executedScript);
         getExecutedScripts().add(executedScript);
 
-        String executedAt = timestampFormat.format(executedScript.getExecutedAt());
-        String updateSql = "update " + getQualifiedExecutedScriptsTableName() +
-                " set " + checksumColumnName + " = '" + executedScript.getScript().getCheckSum() + "', " +
-                fileLastModifiedAtColumnName + " = " + executedScript.getScript().getFileLastModifiedAt() + ", " +
-                executedAtColumnName + " = '" + executedAt + "', " +
-                succeededColumnName + " = " + (executedScript.isSuccessful() ? "1" : "0") +
-                " where " + fileNameColumnName + " = '" + executedScript.getScript().getFileName() + "'";
-        sqlHandler.executeUpdateAndCommit(updateSql, defaultDatabase.getDataSource());
+        sqlHandler.executePreparedUpdateAndCommit(getUpdateSql(), defaultDatabase.getDataSource(), getUpdateParameters(executedScript));
+    }
+
+    protected String getUpdateSql() {
+        return "update " + getQualifiedExecutedScriptsTableName() +
+                " set " + checksumColumnName + " = ?, " + fileLastModifiedAtColumnName + " = ?, " +
+                executedAtColumnName + " = ?, " + succeededColumnName + " = ?" + getSetChangeSequenceSql() + " where " + fileNameColumnName + " = ?";
+    }
+
+    protected Object[] getUpdateParameters(ExecutedScript executedScript) {
+        Script script = executedScript.getScript();
+        return withChangeSequence(new Object[]{getCheckSumValue(executedScript), script.getFileLastModifiedAt(),
+                getExecutedAtValue(executedScript), getSucceededValue(executedScript)}, script.getFileName());
+    }
+
+
+    /**
+     * @return The assignment of the next change sequence nr for an update statement, empty if there is no change sequence column
+     */
+    protected String getSetChangeSequenceSql() {
+        return changeSequenceColumnAvailable ? ", " + changeSequenceColumnName + " = ?" : "";
+    }
+
+    /**
+     * @param parameters      The parameters of the stored values, not null
+     * @param whereParameters The parameters of the where clause, not null
+     * @return The parameters, followed by the next change sequence nr if there is a change sequence column, followed by the where parameters
+     */
+    protected Object[] withChangeSequence(Object[] parameters, Object... whereParameters) {
+        List<Object> result = new ArrayList<>(parameters.length + whereParameters.length + 1);
+        result.addAll(Arrays.asList(parameters));
+        if (changeSequenceColumnAvailable) {
+            result.add(getNextChangeSequence());
+        }
+        result.addAll(Arrays.asList(whereParameters));
+        return result.toArray();
+    }
+
+    /**
+     * Rows are loaded again based on the highest loaded nr, so a row that another process stored with a nr at or
+     * below that nr would never be loaded. The highest stored nr is therefore read from the database by the first
+     * write after the cached state was reset, e.g. because another process modified the table. The following nrs
+     * are determined locally, so that a single row write does not need an extra query. Rows that were stored by this
+     * instance are also loaded again when the cached state is outdated.
+     *
+     * @return The change sequence nr for the next stored row
+     */
+    protected long getNextChangeSequence() {
+        if (!lastChangeSequenceRead) {
+            readLastChangeSequence();
+            lastChangeSequenceRead = true;
+        }
+        return ++lastChangeSequence;
+    }
+
+    /**
+     * Updates the last change sequence nr with the highest nr that is stored in the executed scripts table.
+     */
+    protected void readLastChangeSequence() {
+        if (!changeSequenceColumnAvailable) {
+            return;
+        }
+        long storedChangeSequence = sqlHandler.getItemAsLong("select coalesce(max(" + changeSequenceColumnName + "), -1) from " +
+                getQualifiedExecutedScriptsTableName(), defaultDatabase.getDataSource());
+        lastChangeSequence = Math.max(lastChangeSequence, storedChangeSequence);
+    }
+
+    /**
+     * A script that is registered right before it is executed, does not need to be read for calculating its check sum:
+     * the check sum is calculated while the script is executed and stored when the execution is registered as
+     * completed. Until then, null is stored.
+     *
+     * @param executedScript The executed script, not null
+     * @return The check sum, null if not calculated yet
+     */
+    protected String getCheckSumValue(ExecutedScript executedScript) {
+        Script script = executedScript.getScript();
+        if (!executedScript.isSuccessful() && !script.isCheckSumCalculated()) {
+            return null;
+        }
+        return script.getCheckSum();
+    }
+
+    /**
+     * @param executedScript The executed script, not null
+     * @return The execution timestamp as stored in the executed at column, not null
+     */
+    protected Object getExecutedAtValue(ExecutedScript executedScript) {
+        return getExecutedAtValue(executedScript.getExecutedAt());
+    }
+
+    /**
+     * @param executedAt The execution timestamp, not null
+     * @return The execution timestamp as stored in the executed at column, not null
+     */
+    protected Object getExecutedAtValue(Date executedAt) {
+        if (executedAtColumnTyped) {
+            return new Timestamp(executedAt.getTime());
+        }
+        return timestampFormat.format(executedAt);
+    }
+
+    /**
+     * @param executedScript The executed script, not null
+     * @return The value of the succeeded column: 1 if the script was executed successfully, else 0
+     */
+    protected Integer getSucceededValue(ExecutedScript executedScript) {
+        return executedScript.isSuccessful() ? 1 : 0;
     }
 
 
@@ -223,9 +500,7 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
 
         getExecutedScripts().remove(executedScript);
 
-        String deleteSql = "delete from " + getQualifiedExecutedScriptsTableName() +
-                " where " + fileNameColumnName + " = '" + executedScript.getScript().getFileName() + "'";
-        sqlHandler.executeUpdateAndCommit(deleteSql, defaultDatabase.getDataSource());
+        sqlHandler.executePreparedUpdateAndCommit(getDeleteExecutedScriptSql(), defaultDatabase.getDataSource(), executedScript.getScript().getFileName());
     }
 
 
@@ -239,27 +514,64 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
         checkExecutedScriptsTable();
 
         String renameSql = "update " + getQualifiedExecutedScriptsTableName() +
-                " set " + fileNameColumnName + " = '" + renamedToScript.getFileName() + "', " +
-                checksumColumnName + " = '" + renamedToScript.getCheckSum() + "', " +
-                fileLastModifiedAtColumnName + " = " + renamedToScript.getFileLastModifiedAt() +
-                " where " + fileNameColumnName + " = '" + executedScript.getScript().getFileName() + "'";
-        sqlHandler.executeUpdateAndCommit(renameSql, defaultDatabase.getDataSource());
+                " set " + fileNameColumnName + " = ?, " + checksumColumnName + " = ?, " + fileLastModifiedAtColumnName + " = ?" +
+                getSetChangeSequenceSql() + " where " + fileNameColumnName + " = ?";
+        Object[] parameters = withChangeSequence(new Object[]{renamedToScript.getFileName(), renamedToScript.getCheckSum(),
+                renamedToScript.getFileLastModifiedAt()}, executedScript.getScript().getFileName());
+        sqlHandler.executePreparedUpdateAndCommit(renameSql, defaultDatabase.getDataSource(), parameters);
+        // the cached scripts are looked up by file name
+        boolean cached = cachedExecutedScripts != null && cachedExecutedScripts.remove(executedScript);
         executedScript.renameTo(renamedToScript);
+        if (cached) {
+            cachedExecutedScripts.add(executedScript);
+        }
     }
 
 
     public void deleteAllExecutedPostprocessingScripts() {
         checkExecutedScriptsTable();
 
+        String postProcessingScriptDirName = scriptFactory.getPostProcessingScriptDirName();
+        if (postProcessingScriptDirName == null) {
+            // there are no postprocessing scripts
+            return;
+        }
+        int nrOfPostProcessingScripts = 0;
         for (Iterator<ExecutedScript> executedScriptsIterator = getExecutedScripts().iterator(); executedScriptsIterator.hasNext();) {
             ExecutedScript executedScript = executedScriptsIterator.next();
             if (executedScript.getScript().isPostProcessingScript()) {
                 executedScriptsIterator.remove();
-                String deleteSql = "delete from " + getQualifiedExecutedScriptsTableName() +
-                        " where " + fileNameColumnName + " = '" + executedScript.getScript().getFileName() + "'";
-                sqlHandler.executeUpdateAndCommit(deleteSql, defaultDatabase.getDataSource());
+                nrOfPostProcessingScripts++;
+            }
+        }
+        String deleteSql = "delete from " + getQualifiedExecutedScriptsTableName() +
+                " where " + fileNameColumnName + " like ? escape '!' or " + fileNameColumnName + " like ? escape '!'";
+        String dirNamePattern = escapeLikePattern(postProcessingScriptDirName);
+        int nrOfDeletedScripts = sqlHandler.executePreparedUpdateAndCommit(deleteSql, defaultDatabase.getDataSource(), dirNamePattern + "/%", dirNamePattern + "\\%");
+        if (nrOfDeletedScripts != nrOfPostProcessingScripts) {
+            // e.g. the comparison is case insensitive in the database, reload the registered scripts to be sure
+            invalidateCachedState();
+        }
+    }
+
+    /**
+     * @param value The value, not null
+     * @return The value with all characters that have a special meaning in a like pattern escaped with a !, not null
+     */
+    protected String escapeLikePattern(String value) {
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '!' || c == '%' || c == '_') {
+                result.append('!');
             }
+            result.append(c);
         }
+        return result.toString();
+    }
+
+    protected String getDeleteExecutedScriptSql() {
+        return "delete from " + getQualifiedExecutedScriptsTableName() + " where " + fileNameColumnName + " = ?";
     }
 
     /**
@@ -272,7 +584,7 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
         String deleteSql = "delete from " + getQualifiedExecutedScriptsTableName();
         sqlHandler.executeUpdateAndCommit(deleteSql, defaultDatabase.getDataSource());
 
-        resetCachedState();
+        invalidateCachedState();
     }
 
 
@@ -282,8 +594,9 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
     public void markErrorScriptsAsSuccessful() {
         checkExecutedScriptsTable();
 
-        String deleteSql = "update " + getQualifiedExecutedScriptsTableName() + " set " + succeededColumnName + "=1 where " + succeededColumnName + "=0";
-        sqlHandler.executeUpdateAndCommit(deleteSql, defaultDatabase.getDataSource());
+        String updateSql = "update " + getQualifiedExecutedScriptsTableName() + " set " + succeededColumnName + " = 1" +
+                getSetChangeSequenceSql() + " where " + succeededColumnName + " = 0";
+        sqlHandler.executePreparedUpdateAndCommit(updateSql, defaultDatabase.getDataSource(), withChangeSequence(new Object[0]));
 
         resetCachedState();
     }
@@ -297,7 +610,125 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
         String deleteSql = "delete from " + getQualifiedExecutedScriptsTableName() + " where " + succeededColumnName + "=0";
         sqlHandler.executeUpdateAndCommit(deleteSql, defaultDatabase.getDataSource());
 
-        resetCachedState();
+        invalidateCachedState();
+    }
+
+
+    /**
+     * Replaces the registered incremental scripts with a lower revision than the given checkpoint revision by a single
+     * checkpoint row. An existing checkpoint is included in the new one. The checkpoint revision cannot be higher than
+     * the revision of the last executed incremental script: scripts that were not executed yet would otherwise be
+     * considered as executed. Patch scripts are not compacted: they can be added below the checkpoint afterwards.
+     *
+     * @param newCheckpointRevision The revision of the checkpoint, not null
+     */
+    public void compactExecutedScripts(ScriptIndexes newCheckpointRevision) {
+        checkExecutedScriptsTable();
+
+        SortedSet<ExecutedScript> executedScripts = getExecutedScripts();
+        if (checkpointRevision != null && checkpointRevision.compareTo(newCheckpointRevision) > 0) {
+            throw new DbMaintainException("Unable to compact the executed scripts: checkpoint revision " + newCheckpointRevision.getIndexesString() +
+                    " is lower than the current checkpoint revision " + checkpointRevision.getIndexesString() + ".");
+        }
+        List<ExecutedScript> compactedScripts = new ArrayList<>();
+        ScriptIndexes highestRevision = checkpointRevision;
+        for (ExecutedScript executedScript : executedScripts) {
+            Script script = executedScript.getScript();
+            if (!script.isIncremental()) {
+                continue;
+            }
+            if (highestRevision == null || script.getScriptIndexes().compareTo(highestRevision) > 0) {
+                highestRevision = script.getScriptIndexes();
+            }
+            if (!script.isPatchScript() && newCheckpointRevision.compareTo(script.getScriptIndexes()) > 0) {
+                if (!executedScript.isSuccessful()) {
+                    throw new DbMaintainException("Unable to compact the executed scripts: script " + script.getFileName() +
+                            " has a lower revision than the checkpoint revision " + newCheckpointRevision.getIndexesString() + " but did not execute successfully.");
+                }
+                if (script.getCheckSum() == null) {
+                    throw new DbMaintainException("Unable to compact the executed scripts: script " + script.getFileName() +
+                            " has a lower revision than the checkpoint revision " + newCheckpointRevision.getIndexesString() + " but its check sum is unknown. " +
+                            "Perform an update first, this registers the missing check sum.");
+                }
+                compactedScripts.add(executedScript);
+            }
+        }
+        if (highestRevision == null || newCheckpointRevision.compareTo(highestRevision) > 0) {
+            throw new DbMaintainException("Unable to compact the executed scripts: checkpoint revision " + newCheckpointRevision.getIndexesString() +
+                    " is higher than the revision of the last executed incremental script.");
+        }
+        if (compactedScripts.isEmpty()) {
+            logger.info("There are no executed scripts to compact below revision " + newCheckpointRevision.getIndexesString() + ".");
+            return;
+        }
+
+        String newCheckpointFileName = CHECKPOINT_FILE_NAME_PREFIX + newCheckpointRevision.getIndexesString();
+        String newCheckpointCheckSum = calculateCheckpointCheckSum(compactedScripts);
+        long newNrOfCheckpointScripts = nrOfCheckpointScripts + compactedScripts.size();
+
+        List<Object[]> deleteParameterRows = new ArrayList<>();
+        for (ExecutedScript compactedScript : compactedScripts) {
+            deleteParameterRows.add(new Object[]{compactedScript.getScript().getFileName()});
+        }
+        if (checkpointRevision != null) {
+            deleteParameterRows.add(new Object[]{CHECKPOINT_FILE_NAME_PREFIX + checkpointRevision.getIndexesString()});
+        }
+        DataSource dataSource = defaultDatabase.getDataSource();
+        sqlHandler.startTransaction(dataSource);
+        try {
+            Object[] insertParameters = withChangeSequence(new Object[]{newCheckpointFileName, newNrOfCheckpointScripts, newCheckpointCheckSum,
+                    getExecutedAtValue(new Date()), 1});
+            sqlHandler.executePreparedBatchAndCommit(getDeleteExecutedScriptSql(), dataSource, deleteParameterRows);
+            sqlHandler.executePreparedUpdateAndCommit(getInsertSql(), dataSource, insertParameters);
+        } catch (DbMaintainException e) {
+            sqlHandler.endTransactionAndRollback(dataSource);
+            invalidateCachedState();
+            throw e;
+        }
+        sqlHandler.endTransactionAndCommit(dataSource);
+
+        executedScripts.removeAll(compactedScripts);
+        checkpointRevision = newCheckpointRevision;
+        checkpointCheckSum = newCheckpointCheckSum;
+        nrOfCheckpointScripts = newNrOfCheckpointScripts;
+        logger.info("Compacted " + compactedScripts.size() + " executed scripts below revision " + newCheckpointRevision.getIndexesString() + ".");
+    }
+
+    /**
+     * The check sum is calculated on the names and check sums of the compacted scripts, in order, preceded by the check
+     * sum of the previous checkpoint if there was one.
+     *
+     * @param compactedScripts The compacted scripts, all having a check sum, not null
+     * @return The check sum of the checkpoint, calculated with the default algorithm, not null
+     */
+    protected String calculateCheckpointCheckSum(List<ExecutedScript> compactedScripts) {
+        CheckSumAlgorithm checkSumAlgorithm = checkSumAlgorithms.getDefaultAlgorithm();
+        MessageDigest digest = checkSumAlgorithm.createDigest();
+        StringBuilder content = new StringBuilder();
+        if (checkpointCheckSum != null) {
+            content.append(checkpointCheckSum).append('\n');
+        }
+        for (ExecutedScript compactedScript : compactedScripts) {
+            Script script = compactedScript.getScript();
+            content.append(script.getFileName()).append('\n').append(script.getCheckSum()).append('\n');
+        }
+        return CheckSumAlgorithms.toCheckSum(checkSumAlgorithm.getName(), digest.digest(content.toString().getBytes(Charset.forName("UTF-8"))));
+    }
+
+    /**
+     * @return The revision of the checkpoint, null if the executed scripts were never compacted
+     */
+    public ScriptIndexes getCheckpointRevision() {
+        getExecutedScripts();
+        return checkpointRevision;
+    }
+
+    /**
+     * @return The nr of scripts that were compacted into the checkpoint, 0 if the executed scripts were never compacted
+     */
+    public long getNrOfCheckpointScripts() {
+        getExecutedScripts();
+        return nrOfCheckpointScripts;
     }
 
 
@@ -313,6 +744,7 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
         }
         // check valid
         if (isExecutedScriptsTableValid()) {
+            checkChecksumColumnSize();
             validExecutedScriptsTable = true;
             return true;
         }
@@ -321,6 +753,10 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
         if (autoCreateExecutedScriptsTable) {
             logger.warn("Executed scripts table " + getQualifiedExecutedScriptsTableName() + " doesn't exist yet or is invalid. A new one is created automatically.");
             createExecutedScriptsTable();
+            changeSequenceColumnAvailable = changeSequenceColumnName != null;
+            executedAtColumnTyped = true;
+            // the created table is valid, it does not need to be checked again
+            validExecutedScriptsTable = true;
             return false;
         }
 
@@ -340,19 +776,171 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
      * @return False if the version table was not ok and therefore re-created
      */
     protected boolean isExecutedScriptsTableValid() {
-        // Check existence of version table
-        Set<String> tableNames = defaultDatabase.getTableNames(defaultDatabase.getDefaultSchemaName());
-        if (tableNames.contains(executedScriptsTableName)) {
-            // Check columns of version table
-            Set<String> columnNames = defaultDatabase.getColumnNames(defaultDatabase.getDefaultSchemaName(), executedScriptsTableName);
-            if (columnNames.contains(fileNameColumnName) && columnNames.contains(fileLastModifiedAtColumnName)
-                    && columnNames.contains(checksumColumnName) && columnNames.contains(executedAtColumnName)
-                    && columnNames.contains(succeededColumnName)) {
-                return true;
+        // Only look up the columns of the version table: listing all tables of the schema does not scale with the schema size.
+        // There are no columns if the version table does not exist.
+        Set<String> columnNames = defaultDatabase.getColumnNames(defaultDatabase.getDefaultSchemaName(), executedScriptsTableName);
+        if (columnNames.contains(fileNameColumnName) && columnNames.contains(fileLastModifiedAtColumnName)
+                && columnNames.contains(checksumColumnName) && columnNames.contains(executedAtColumnName)
+                && columnNames.contains(succeededColumnName)) {
+            // the change sequence column is optional, without it all rows are loaded again when the state is outdated
+            changeSequenceColumnAvailable = changeSequenceColumnName != null && columnNames.contains(changeSequenceColumnName);
+            executedAtColumnTyped = isExecutedAtColumnTyped();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * The default checksum column size is too small for the check sums of some algorithms, e.g. SHA-256. This is
+     * detected before any check sum is stored, instead of failing when the first script is registered.
+     * Precondition: The table db_executed_scripts must exist
+     *
+     * @throws DbMaintainException if the column is too small for the check sums of the configured algorithm
+     */
+    protected void checkChecksumColumnSize() {
+        if (checkSumLength == 0) {
+            return;
+        }
+        Connection connection = null;
+        ResultSet resultSet = null;
+        try {
+            connection = defaultDatabase.getDataSource().getConnection();
+            resultSet = connection.getMetaData().getColumns(null, defaultDatabase.getDefaultSchemaName(), executedScriptsTableName, checksumColumnName);
+            if (resultSet.next()) {
+                int columnSize = resultSet.getInt("COLUMN_SIZE");
+                if (columnSize > 0 && columnSize < checkSumLength) {
+                    throw new DbMaintainException("Column " + checksumColumnName + " of executed scripts table " + getQualifiedExecutedScriptsTableName() + " has size " + columnSize +
+                            ", which is too small for the check sums of the configured check sum algorithm. These are " + checkSumLength + " characters long.\n" +
+                            "Please enlarge the column and set the property " + PROPERTY_CHECKSUM_COLUMN_SIZE + " accordingly, or configure another check sum algorithm.");
+                }
             }
+        } catch (SQLException e) {
+            throw new DbMaintainException("Unable to determine the size of column " + checksumColumnName + " of executed scripts table " + getQualifiedExecutedScriptsTableName(), e);
+        } finally {
+            closeQuietly(connection, null, resultSet);
         }
+    }
 
-        return false;
+    /**
+     * Tables that were created by older versions store the executed at timestamp as text.
+     * Precondition: The table db_executed_scripts must exist
+     *
+     * @return True if the executed at column has a date or timestamp type
+     */
+    protected boolean isExecutedAtColumnTyped() {
+        Connection connection = null;
+        Statement statement = null;
+        ResultSet resultSet = null;
+        try {
+            connection = defaultDatabase.getDataSource().getConnection();
+            statement = connection.createStatement();
+            resultSet = statement.executeQuery("select " + executedAtColumnName + " from " + getQualifiedExecutedScriptsTableName() + " where 1 = 0");
+            int columnType = resultSet.getMetaData().getColumnType(1);
+            return columnType == Types.TIMESTAMP || columnType == Types.DATE;
+        } catch (SQLException e) {
+            throw new DbMaintainException("Unable to determine the type of column " + executedAtColumnName + " of executed scripts table " + getQualifiedExecutedScriptsTableName(), e);
+        } finally {
+            closeQuietly(connection, statement, resultSet);
+        }
+    }
+
+    /**
+     * Tables that were created by older versions have no index on the file name and change sequence columns, which
+     * makes every update of a script row a full table scan. They also have no change sequence column, so all rows
+     * are reloaded every time the table was modified. The missing column and indexes are added if auto-create is
+     * enabled, else a warning is logged containing the statements to add them manually.
+     * <p/>
+     * Adding a column or an index is DDL, which implicitly commits the current transaction on some databases, e.g. Oracle and
+     * MySql. This is therefore not done while the table is validated, but only when this method is called explicitly,
+     * outside any transaction. The upgrade is attempted only once: if it fails, it is not retried by this instance.
+     * The unique file name index is not attempted at all if the table contains the same file name more than once.
+     */
+    public void upgradeExecutedScriptsTable() {
+        if (executedScriptsTableUpgraded) {
+            return;
+        }
+        checkExecutedScriptsTable();
+        executedScriptsTableUpgraded = true;
+
+        boolean changeSequenceColumnMissing = changeSequenceColumnName != null && !changeSequenceColumnAvailable;
+        Set<String> indexedColumnNames = getIndexedColumnNames();
+        List<String> upgradeStatements = new ArrayList<>();
+        if (changeSequenceColumnMissing) {
+            upgradeStatements.add(getAddChangeSequenceColumnStatement());
+        }
+        if (!indexedColumnNames.contains(fileNameColumnName.toUpperCase())) {
+            if (containsDuplicateFileNames()) {
+                logger.warn("Executed scripts table " + getQualifiedExecutedScriptsTableName() + " contains the same file name more than once. " +
+                        "Unable to add a unique index on column " + fileNameColumnName + ". Registering scripts will be slow for large tables.\n" +
+                        "Please remove the duplicate rows and create the index manually by executing following statement:\n" + getCreateFileNameIndexStatement());
+            } else {
+                upgradeStatements.add(getCreateFileNameIndexStatement());
+            }
+        }
+        if (changeSequenceColumnName != null && !indexedColumnNames.contains(changeSequenceColumnName.toUpperCase())) {
+            upgradeStatements.add(getCreateChangeSequenceIndexStatement());
+        }
+        if (upgradeStatements.isEmpty()) {
+            return;
+        }
+        if (!autoCreateExecutedScriptsTable) {
+            logger.warn("Executed scripts table " + getQualifiedExecutedScriptsTableName() + " is not up to date. Registering and reloading scripts will be slow for large tables.\n" +
+                    "The table can be upgraded manually by executing following statements:\n" + join(upgradeStatements, ";\n"));
+            return;
+        }
+        for (String upgradeStatement : upgradeStatements) {
+            try {
+                logger.info("Upgrading executed scripts table " + getQualifiedExecutedScriptsTableName() + ": " + upgradeStatement);
+                sqlHandler.executeUpdateAndCommit(upgradeStatement, defaultDatabase.getDataSource());
+            } catch (DbMaintainException e) {
+                // e.g. missing privileges
+                logger.warn("Unable to upgrade executed scripts table " + getQualifiedExecutedScriptsTableName() + ". The table can be upgraded manually by executing following statements:\n" +
+                        join(upgradeStatements.subList(upgradeStatements.indexOf(upgradeStatement), upgradeStatements.size()), ";\n"), e);
+                return;
+            }
+            if (changeSequenceColumnMissing) {
+                // the loaded rows have no change sequence nr, they are loaded again when needed
+                changeSequenceColumnMissing = false;
+                changeSequenceColumnAvailable = true;
+                invalidateCachedState();
+            }
+        }
+    }
+
+    /**
+     * Precondition: The table db_executed_scripts must exist
+     *
+     * @return True if a file name is registered more than once
+     */
+    protected boolean containsDuplicateFileNames() {
+        return sqlHandler.exists("select " + fileNameColumnName + " from " + getQualifiedExecutedScriptsTableName() +
+                " group by " + fileNameColumnName + " having count(*) > 1", defaultDatabase.getDataSource());
+    }
+
+    /**
+     * Precondition: The table db_executed_scripts must exist
+     *
+     * @return The names, in upper case, of the columns of the executed scripts table that are the first column of an index, not null
+     */
+    protected Set<String> getIndexedColumnNames() {
+        Set<String> indexedColumnNames = new HashSet<>();
+        Connection connection = null;
+        ResultSet resultSet = null;
+        try {
+            connection = defaultDatabase.getDataSource().getConnection();
+            resultSet = connection.getMetaData().getIndexInfo(null, defaultDatabase.getDefaultSchemaName(), executedScriptsTableName, false, true);
+            while (resultSet.next()) {
+                String columnName = resultSet.getString("COLUMN_NAME");
+                if (columnName != null && resultSet.getInt("ORDINAL_POSITION") == 1) {
+                    indexedColumnNames.add(columnName.toUpperCase());
+                }
+            }
+        } catch (SQLException e) {
+            throw new DbMaintainException("Unable to retrieve the indexes of executed scripts table " + getQualifiedExecutedScriptsTableName(), e);
+        } finally {
+            closeQuietly(connection, null, resultSet);
+        }
+        return indexedColumnNames;
     }
 
     /**
@@ -368,6 +956,9 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
 
         // Create db version table
         sqlHandler.executeUpdateAndCommit(getCreateExecutedScriptTableStatement(), defaultDatabase.getDataSource());
+        if (changeSequenceColumnName != null) {
+            sqlHandler.executeUpdateAndCommit(getCreateChangeSequenceIndexStatement(), defaultDatabase.getDataSource());
+        }
     }
 
     /**
@@ -376,11 +967,44 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
     protected String getCreateExecutedScriptTableStatement() {
         String longDataType = defaultDatabase.getLongDataType();
         return "create table " + getQualifiedExecutedScriptsTableName() + " ( " +
-                fileNameColumnName + " " + defaultDatabase.getTextDataType(fileNameColumnSize) + ", " +
+                fileNameColumnName + " " + defaultDatabase.getTextDataType(fileNameColumnSize) + " not null, " +
                 fileLastModifiedAtColumnName + " " + defaultDatabase.getLongDataType() + ", " +
-                checksumColumnName + " " + defaultDatabase.getTextDataType(checksumColumnSize) + ", " +
-                executedAtColumnName + " " + defaultDatabase.getTextDataType(executedAtColumnSize) + ", " +
-                succeededColumnName + " " + longDataType + " )";
+                checksumColumnName + " " + defaultDatabase.getTextDataType(Math.max(checksumColumnSize, checkSumLength)) + ", " +
+                executedAtColumnName + " " + defaultDatabase.getTimestampDataType() + ", " +
+                succeededColumnName + " " + longDataType +
+                (changeSequenceColumnName == null ? "" : ", " + changeSequenceColumnName + " " + longDataType) +
+                ", primary key (" + fileNameColumnName + ") )";
+    }
+
+    /**
+     * @return The statement to add the change sequence column to an existing version table.
+     */
+    protected String getAddChangeSequenceColumnStatement() {
+        return "alter table " + getQualifiedExecutedScriptsTableName() + " add " + changeSequenceColumnName + " " + defaultDatabase.getLongDataType();
+    }
+
+    /**
+     * @return The statement to add a unique index on the file name column to an existing version table.
+     */
+    protected String getCreateFileNameIndexStatement() {
+        return "create unique index " + getIndexName("fn") + " on " + getQualifiedExecutedScriptsTableName() + " (" + fileNameColumnName + ")";
+    }
+
+    /**
+     * @return The statement to add an index on the change sequence column to the version table.
+     */
+    protected String getCreateChangeSequenceIndexStatement() {
+        return "create index " + getIndexName("seq") + " on " + getQualifiedExecutedScriptsTableName() + " (" + changeSequenceColumnName + ")";
+    }
+
+    /**
+     * Some databases limit the length of index names to 30 characters.
+     *
+     * @param suffix The suffix that identifies the index, not null
+     * @return The name of the index of the version table with the given suffix, not null
+     */
+    protected String getIndexName(String suffix) {
+        return defaultDatabase.toCorrectCaseIdentifier(left(executedScriptsTableName, 25) + "_" + suffix);
     }
 
     protected String getQualifiedExecutedScriptsTableName() {
@@ -389,9 +1013,25 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
 
     /**
      * Resets the cached state, for example when the scripts table was modified by another process.
-     * The scripts will be reloaded the next time.
+     * The scripts will be reloaded the next time. If there is a change sequence column, only the changed rows are loaded.
      */
     public void resetCachedState() {
+        cachedStateOutdated = true;
+        lastChangeSequenceRead = false;
+    }
+
+    /**
+     * Discards the cached state, all scripts will be reloaded the next time.
+     */
+    protected void invalidateCachedState() {
         cachedExecutedScripts = null;
+        lastChangeSequenceRead = false;
+    }
+
+    /**
+     * @return The nr of times all rows of the executed scripts table were loaded
+     */
+    public int getNrOfFullLoads() {
+        return nrOfFullLoads;
     }
 }
@@ -0,0 +1,644 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.executedscriptinfo.impl;
+
+import org.dbmaintain.script.ExecutedScript;
+import org.dbmaintain.script.Script;
+import org.dbmaintain.script.ScriptFactory;
+import org.dbmaintain.util.DbMaintainException;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.util.*;
+
+/**
+ * The registered scripts, stored column by column in parallel arrays. The {@link Script} and {@link ExecutedScript}
+ * instances are only created when a row is accessed through the set, e.g. while iterating. Looking up, adding and
+ * removing scripts and getting the size does not create any instances.
+ * <p/>
+ * Once a row is created, the instance is kept: the executed scripts can be modified by the callers. An executed script
+ * that is renamed should be removed before and added again after renaming it.
+ * <p/>
+ * Rows of ignored scripts, i.e. with a revision below the baseline revision, are stored but are not part of the set.
+ * The executed at values of a table with a text column are kept as text and only parsed when the row is created.
+ * <p/>
+ * The set is not thread-safe. Range views (sub, head and tail sets) are backed by the set and are located in the
+ * sorted rows by file name, without creating executed scripts for the rows outside the view.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class LazyExecutedScriptSet extends AbstractSet<ExecutedScript> implements SortedSet<ExecutedScript> {
+
+    /* The executed at value of a row without executed at time */
+    public static final long NO_EXECUTED_AT = Long.MIN_VALUE;
+
+    protected static final int INITIAL_CAPACITY = 16;
+
+    protected ScriptFactory scriptFactory;
+    /* The format of the executed at text values, not thread-safe */
+    protected DateFormat timestampFormat;
+
+    /* The nr of used rows, including the removed rows */
+    protected int nrOfRows;
+    /* The nr of removed rows */
+    protected int nrOfRemovedRows;
+    /* The nr of ignored rows that were not removed */
+    protected int nrOfIgnoredRows;
+
+    protected String[] fileNames;
+    protected long[] fileLastModifiedAts;
+    protected String[] checkSums;
+    protected long[] executedAts;
+    /* The executed at text values, null as long as there were no text values */
+    protected String[] executedAtTexts;
+    protected BitSet succeeded = new BitSet();
+    protected BitSet ignored = new BitSet();
+    protected BitSet removed = new BitSet();
+    /* The created instances per row, null if not created yet */
+    protected ExecutedScript[] executedScripts;
+    protected int nrOfCreatedExecutedScripts;
+
+    /* Open addressing table with the row nr + 1 per file name hash, 0 for an empty slot */
+    protected int[] fileNameSlots;
+    /* The rows of the set in script order, null if the order has to be determined again */
+    protected int[] sortedRows;
+    /* Incremented when rows are added or removed, iterators fail fast when the set is modified */
+    protected int modCount;
+
+
+    public LazyExecutedScriptSet(ScriptFactory scriptFactory, DateFormat timestampFormat) {
+        this.scriptFactory = scriptFactory;
+        this.timestampFormat = timestampFormat;
+        initialize(INITIAL_CAPACITY);
+    }
+
+
+    /**
+     * Adds a row that was loaded from the executed scripts table. An existing row for the same file name is replaced.
+     *
+     * @param fileName           The file name of the script, not null
+     * @param fileLastModifiedAt The last modification time of the script
+     * @param checkSum           The check sum of the script, null if not known
+     * @param executedAt         The executed at time, {@link #NO_EXECUTED_AT} if there is none or if it is given as text
+     * @param executedAtText     The executed at time as text, null if there is none or if it is given as time
+     * @param succeeded          True if the script was executed successfully
+     */
+    public void addRow(String fileName, long fileLastModifiedAt, String checkSum, long executedAt, String executedAtText, boolean succeeded) {
+        removeRow(getRow(fileName, true));
+        int row = newRow(fileName);
+        fileLastModifiedAts[row] = fileLastModifiedAt;
+        checkSums[row] = checkSum;
+        executedAts[row] = executedAt;
+        if (executedAtText != null) {
+            if (executedAtTexts == null) {
+                executedAtTexts = new String[fileNames.length];
+            }
+            executedAtTexts[row] = executedAtText;
+        }
+        this.succeeded.set(row, succeeded);
+        if (scriptFactory.isIgnored(fileName)) {
+            ignored.set(row);
+            nrOfIgnoredRows++;
+        }
+    }
+
+    /**
+     * @return The nr of rows, including the rows of the ignored scripts
+     */
+    public int getNrOfRows() {
+        return nrOfRows - nrOfRemovedRows;
+    }
+
+    /**
+     * @return The nr of executed script instances that were created for the rows
+     */
+    public int getNrOfCreatedExecutedScripts() {
+        return nrOfCreatedExecutedScripts;
+    }
+
+
+    @Override
+    public int size() {
+        return nrOfRows - nrOfRemovedRows - nrOfIgnoredRows;
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        return getRow(object) != -1;
+    }
+
+    @Override
+    public boolean add(ExecutedScript executedScript) {
+        String fileName = executedScript.getScript().getFileName();
+        int row = getRow(fileName, true);
+        if (row != -1 && !ignored.get(row)) {
+            return false;
+        }
+        removeRow(row);
+        row = newRow(fileName);
+        executedScripts[row] = executedScript;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object object) {
+        int row = getRow(object);
+        if (row == -1) {
+            return false;
+        }
+        removeRow(row);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        initialize(INITIAL_CAPACITY);
+        modCount++;
+    }
+
+    @Override
+    public Iterator<ExecutedScript> iterator() {
+        int[] rows = getSortedRows();
+        return createIterator(rows, 0, rows.length);
+    }
+
+    public ExecutedScript first() {
+        Iterator<ExecutedScript> iterator = iterator();
+        if (!iterator.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return iterator.next();
+    }
+
+    public ExecutedScript last() {
+        int[] rows = getSortedRows();
+        return getLastExecutedScript(rows, 0, rows.length);
+    }
+
+    public Comparator<? super ExecutedScript> comparator() {
+        return null;
+    }
+
+    public SortedSet<ExecutedScript> subSet(ExecutedScript fromElement, ExecutedScript toElement) {
+        if (compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("From element " + fromElement + " is greater than to element " + toElement);
+        }
+        return new RangeView(fromElement, toElement);
+    }
+
+    public SortedSet<ExecutedScript> headSet(ExecutedScript toElement) {
+        return new RangeView(null, toElement);
+    }
+
+    public SortedSet<ExecutedScript> tailSet(ExecutedScript fromElement) {
+        return new RangeView(fromElement, null);
+    }
+
+
+    /**
+     * Creates an iterator over the given part of the sorted rows. Rows that were removed after the rows were sorted
+     * are skipped.
+     *
+     * @param rows      The sorted rows, not null
+     * @param fromIndex The index of the first row, inclusive
+     * @param toIndex   The index of the last row, exclusive
+     * @return The iterator, not null
+     */
+    protected Iterator<ExecutedScript> createIterator(final int[] rows, final int fromIndex, final int toIndex) {
+        return new Iterator<ExecutedScript>() {
+
+            private int index = skipRemovedRows(fromIndex);
+            private int lastRow = -1;
+            private int expectedModCount = modCount;
+
+            public boolean hasNext() {
+                return index < toIndex;
+            }
+
+            public ExecutedScript next() {
+                checkModCount();
+                if (index >= toIndex) {
+                    throw new NoSuchElementException();
+                }
+                lastRow = rows[index];
+                index = skipRemovedRows(index + 1);
+                return getExecutedScript(lastRow);
+            }
+
+            public void remove() {
+                checkModCount();
+                if (lastRow == -1) {
+                    throw new IllegalStateException();
+                }
+                removeRow(lastRow);
+                lastRow = -1;
+                expectedModCount = modCount;
+            }
+
+            private int skipRemovedRows(int index) {
+                while (index < toIndex && removed.get(rows[index])) {
+                    index++;
+                }
+                return index;
+            }
+
+            private void checkModCount() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+            }
+        };
+    }
+
+    /**
+     * @param rows      The sorted rows, not null
+     * @param fromIndex The index of the first row, inclusive
+     * @param toIndex   The index of the last row, exclusive
+     * @return The executed script of the last row in the given part that was not removed, not null
+     * @throws NoSuchElementException if there is no such row
+     */
+    protected ExecutedScript getLastExecutedScript(int[] rows, int fromIndex, int toIndex) {
+        for (int i = toIndex - 1; i >= fromIndex; i--) {
+            if (!removed.get(rows[i])) {
+                return getExecutedScript(rows[i]);
+            }
+        }
+        throw new NoSuchElementException();
+    }
+
+    /**
+     * Determines the index of the first of the sorted rows that is not smaller than the given executed script.
+     * The rows are compared by file name, so no executed scripts need to be created for this.
+     *
+     * @param rows           The sorted rows, not null
+     * @param executedScript The executed script, null to get the index after the last row
+     * @return The index, rows.length if all rows are smaller
+     */
+    protected int getIndex(int[] rows, ExecutedScript executedScript) {
+        if (executedScript == null) {
+            return rows.length;
+        }
+        String fileName = executedScript.getScript().getFileName();
+        int low = 0;
+        int high = rows.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (scriptFactory.compareFileNames(fileNames[rows[middle]], fileName) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compares the executed scripts in the same way as the rows are sorted.
+     *
+     * @param executedScript      The executed script, not null
+     * @param otherExecutedScript The other executed script, not null
+     * @return A negative nr, zero or a positive nr if the first script is smaller, equal or greater
+     */
+    protected int compare(ExecutedScript executedScript, ExecutedScript otherExecutedScript) {
+        return scriptFactory.compareFileNames(executedScript.getScript().getFileName(), otherExecutedScript.getScript().getFileName());
+    }
+
+
+    /**
+     * A view on the part of the set between a from element, inclusive, and a to element, exclusive. Like the views of a
+     * TreeSet, changes to the view are made in the set and changes to the set are visible in the view.
+     */
+    protected class RangeView extends AbstractSet<ExecutedScript> implements SortedSet<ExecutedScript> {
+
+        /* The lowest element of the view, inclusive, null for no lower bound */
+        protected ExecutedScript fromElement;
+        /* The highest element of the view, exclusive, null for no upper bound */
+        protected ExecutedScript toElement;
+
+
+        /**
+         * @param fromElement The lowest element of the view, inclusive, null for no lower bound
+         * @param toElement   The highest element of the view, exclusive, null for no upper bound
+         */
+        public RangeView(ExecutedScript fromElement, ExecutedScript toElement) {
+            this.fromElement = fromElement;
+            this.toElement = toElement;
+        }
+
+
+        @Override
+        public int size() {
+            int[] rows = getSortedRows();
+            int size = 0;
+            for (int i = getFromIndex(rows), toIndex = getToIndex(rows); i < toIndex; i++) {
+                if (!removed.get(rows[i])) {
+                    size++;
+                }
+            }
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object object) {
+            return object instanceof ExecutedScript && isInRange((ExecutedScript) object) && LazyExecutedScriptSet.this.contains(object);
+        }
+
+        @Override
+        public boolean add(ExecutedScript executedScript) {
+            if (!isInRange(executedScript)) {
+                throw new IllegalArgumentException("Executed script " + executedScript + " is out of the range of the view");
+            }
+            return LazyExecutedScriptSet.this.add(executedScript);
+        }
+
+        @Override
+        public boolean remove(Object object) {
+            return object instanceof ExecutedScript && isInRange((ExecutedScript) object) && LazyExecutedScriptSet.this.remove(object);
+        }
+
+        @Override
+        public Iterator<ExecutedScript> iterator() {
+            int[] rows = getSortedRows();
+            return createIterator(rows, getFromIndex(rows), getToIndex(rows));
+        }
+
+        public ExecutedScript first() {
+            Iterator<ExecutedScript> iterator = iterator();
+            if (!iterator.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return iterator.next();
+        }
+
+        public ExecutedScript last() {
+            int[] rows = getSortedRows();
+            return getLastExecutedScript(rows, getFromIndex(rows), getToIndex(rows));
+        }
+
+        public Comparator<? super ExecutedScript> comparator() {
+            return null;
+        }
+
+        public SortedSet<ExecutedScript> subSet(ExecutedScript fromElement, ExecutedScript toElement) {
+            if (compare(fromElement, toElement) > 0) {
+                throw new IllegalArgumentException("From element " + fromElement + " is greater than to element " + toElement);
+            }
+            assertBoundInRange(fromElement);
+            assertBoundInRange(toElement);
+            return new RangeView(fromElement, toElement);
+        }
+
+        public SortedSet<ExecutedScript> headSet(ExecutedScript toElement) {
+            assertBoundInRange(toElement);
+            return new RangeView(fromElement, toElement);
+        }
+
+        public SortedSet<ExecutedScript> tailSet(ExecutedScript fromElement) {
+            assertBoundInRange(fromElement);
+            return new RangeView(fromElement, toElement);
+        }
+
+
+        protected int getFromIndex(int[] rows) {
+            return fromElement == null ? 0 : getIndex(rows, fromElement);
+        }
+
+        protected int getToIndex(int[] rows) {
+            return Math.max(getFromIndex(rows), getIndex(rows, toElement));
+        }
+
+        protected boolean isInRange(ExecutedScript executedScript) {
+            return (fromElement == null || compare(executedScript, fromElement) >= 0) && (toElement == null || compare(executedScript, toElement) < 0);
+        }
+
+        /**
+         * A bound of a nested view may be equal to the to element of this view, the other bounds must be in range.
+         *
+         * @param bound The bound of the nested view, not null
+         */
+        protected void assertBoundInRange(ExecutedScript bound) {
+            if ((fromElement != null && compare(bound, fromElement) < 0) || (toElement != null && compare(bound, toElement) > 0)) {
+                throw new IllegalArgumentException("Executed script " + bound + " is out of the range of the view");
+            }
+        }
+    }
+
+
+    /**
+     * @param row The row nr, not removed
+     * @return The executed script of the row, created if it was not created before, not null
+     */
+    protected ExecutedScript getExecutedScript(int row) {
+        ExecutedScript executedScript = executedScripts[row];
+        if (executedScript == null) {
+            Script script = scriptFactory.createScriptWithoutContent(fileNames[row], fileLastModifiedAts[row], checkSums[row]);
+            executedScript = new ExecutedScript(script, getExecutedAt(row), succeeded.get(row));
+            executedScripts[row] = executedScript;
+            nrOfCreatedExecutedScripts++;
+        }
+        return executedScript;
+    }
+
+    /**
+     * @param row The row nr, not removed
+     * @return The executed at time of the row, null if there is none
+     */
+    protected Date getExecutedAt(int row) {
+        if (executedAts[row] != NO_EXECUTED_AT) {
+            return new Date(executedAts[row]);
+        }
+        String executedAtText = executedAtTexts == null ? null : executedAtTexts[row];
+        if (executedAtText == null) {
+            return null;
+        }
+        // the format can be shared with other sets
+        synchronized (timestampFormat) {
+            try {
+                return timestampFormat.parse(executedAtText);
+            } catch (ParseException e) {
+                throw new DbMaintainException("Error when parsing date " + executedAtText + " using format " + timestampFormat, e);
+            }
+        }
+    }
+
+    /**
+     * @return The rows that are part of the set in script order, not null
+     */
+    protected int[] getSortedRows() {
+        if (sortedRows != null) {
+            return sortedRows;
+        }
+        Integer[] rows = new Integer[size()];
+        int nrOfSortedRows = 0;
+        for (int row = 0; row < nrOfRows; row++) {
+            if (!removed.get(row) && !ignored.get(row)) {
+                rows[nrOfSortedRows++] = row;
+            }
+        }
+        Arrays.sort(rows, new Comparator<Integer>() {
+            public int compare(Integer row, Integer otherRow) {
+                return scriptFactory.compareFileNames(fileNames[row], fileNames[otherRow]);
+            }
+        });
+        sortedRows = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            sortedRows[i] = rows[i];
+        }
+        return sortedRows;
+    }
+
+    /**
+     * @param object The executed script
+     * @return The nr of the row of the script in the set, -1 if the script is not part of the set
+     */
+    protected int getRow(Object object) {
+        if (!(object instanceof ExecutedScript)) {
+            return -1;
+        }
+        return getRow(((ExecutedScript) object).getScript().getFileName(), false);
+    }
+
+    /**
+     * @param fileName           The file name, not null
+     * @param includeIgnoredRows True to also return the row of an ignored script
+     * @return The nr of the row with the given file name that was not removed, -1 if there is none
+     */
+    protected int getRow(String fileName, boolean includeIgnoredRows) {
+        int mask = fileNameSlots.length - 1;
+        for (int slot = getSlot(fileName); fileNameSlots[slot] != 0; slot = (slot + 1) & mask) {
+            int row = fileNameSlots[slot] - 1;
+            if (!removed.get(row) && fileNames[row].equals(fileName)) {
+                return (includeIgnoredRows || !ignored.get(row)) ? row : -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param fileName The file name of the new row, not null
+     * @return The nr of the new row
+     */
+    protected int newRow(String fileName) {
+        if (nrOfRows == fileNames.length) {
+            // drop the removed rows and grow if the rows are still more than half used
+            int nrOfUsedRows = nrOfRows - nrOfRemovedRows;
+            resize(nrOfUsedRows * 2 > fileNames.length ? fileNames.length * 2 : fileNames.length);
+        }
+        int row = nrOfRows++;
+        fileNames[row] = fileName;
+        executedAts[row] = NO_EXECUTED_AT;
+        addSlot(row);
+        sortedRows = null;
+        modCount++;
+        return row;
+    }
+
+    /**
+     * @param row The nr of the row to remove, -1 to do nothing
+     */
+    protected void removeRow(int row) {
+        if (row == -1) {
+            return;
+        }
+        if (ignored.get(row)) {
+            nrOfIgnoredRows--;
+        }
+        removed.set(row);
+        nrOfRemovedRows++;
+        executedScripts[row] = null;
+        modCount++;
+    }
+
+    /**
+     * Copies the rows that were not removed to new arrays with the given capacity.
+     *
+     * @param capacity The new capacity, at least the nr of rows that were not removed
+     */
+    protected void resize(int capacity) {
+        String[] oldFileNames = fileNames;
+        long[] oldFileLastModifiedAts = fileLastModifiedAts;
+        String[] oldCheckSums = checkSums;
+        long[] oldExecutedAts = executedAts;
+        String[] oldExecutedAtTexts = executedAtTexts;
+        BitSet oldSucceeded = succeeded;
+        BitSet oldIgnored = ignored;
+        BitSet oldRemoved = removed;
+        ExecutedScript[] oldExecutedScripts = executedScripts;
+        int oldNrOfRows = nrOfRows;
+
+        initialize(capacity);
+        if (oldExecutedAtTexts != null) {
+            executedAtTexts = new String[capacity];
+        }
+        for (int oldRow = 0; oldRow < oldNrOfRows; oldRow++) {
+            if (oldRemoved.get(oldRow)) {
+                continue;
+            }
+            int row = nrOfRows++;
+            fileNames[row] = oldFileNames[oldRow];
+            fileLastModifiedAts[row] = oldFileLastModifiedAts[oldRow];
+            checkSums[row] = oldCheckSums[oldRow];
+            executedAts[row] = oldExecutedAts[oldRow];
+            if (oldExecutedAtTexts != null) {
+                executedAtTexts[row] = oldExecutedAtTexts[oldRow];
+            }
+            succeeded.set(row, oldSucceeded.get(oldRow));
+            if (oldIgnored.get(oldRow)) {
+                ignored.set(row);
+                nrOfIgnoredRows++;
+            }
+            executedScripts[row] = oldExecutedScripts[oldRow];
+            addSlot(row);
+        }
+    }
+
+    /**
+     * Creates empty arrays with the given capacity.
+     *
+     * @param capacity The nr of rows
+     */
+    protected void initialize(int capacity) {
+        fileNames = new String[capacity];
+        fileLastModifiedAts = new long[capacity];
+        checkSums = new String[capacity];
+        executedAts = new long[capacity];
+        executedAtTexts = null;
+        succeeded = new BitSet();
+        ignored = new BitSet();
+        removed = new BitSet();
+        executedScripts = new ExecutedScript[capacity];
+        fileNameSlots = new int[capacity * 2];
+        nrOfRows = 0;
+        nrOfRemovedRows = 0;
+        nrOfIgnoredRows = 0;
+        sortedRows = null;
+    }
+
+    protected void addSlot(int row) {
+        int mask = fileNameSlots.length - 1;
+        int slot = getSlot(fileNames[row]);
+        while (fileNameSlots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        fileNameSlots[slot] = row + 1;
+    }
+
+    protected int getSlot(String fileName) {
+        int hash = fileName.hashCode();
+        return (hash ^ (hash >>> 16)) & (fileNameSlots.length - 1);
+    }
+}
@@ -19,6 +19,7 @@ import org.dbmaintain.config.PropertyUtils;
 import org.dbmaintain.script.Script;
 import org.dbmaintain.script.ScriptContentHandle;
 import org.dbmaintain.script.ScriptFactory;
+import org.dbmaintain.script.ScriptNameCache;
 import org.dbmaintain.script.executedscriptinfo.ScriptIndexes;
 import org.dbmaintain.script.qualifier.Qualifier;
 import org.dbmaintain.util.DbMaintainException;
@@ -56,6 +57,8 @@ abstract public class ScriptLocation {
     protected ScriptIndexes baseLineRevision;
     /* If true, carriage return chars will be ignored when calculating check sums */
     protected boolean ignoreCarriageReturnsWhenCalculatingCheckSum;
+    /* The parsed names and interned values, shared with the script factories of the other locations and the executed scripts */
+    protected ScriptNameCache scriptNameCache;
     protected ScriptFactory scriptFactory;
 
 
@@ -89,6 +92,7 @@ abstract public class ScriptLocation {
         this.scriptLocationName = "<undefined>";
         this.baseLineRevision = baseLineRevision;
         this.ignoreCarriageReturnsWhenCalculatingCheckSum = ignoreCarriageReturnsWhenCalculatingCheckSum;
+        this.scriptNameCache = new ScriptNameCache();
         this.scriptFactory = createScriptFactory();
     }
 
@@ -96,6 +100,14 @@ abstract public class ScriptLocation {
                              Set<Qualifier> defaultRegisteredQualifiers, Set<Qualifier> defaultPatchQualifiers, String defaultScriptIndexRegexp, String defaultQualifierRegexp,
                              String defaultTargetDatabaseRegexp, Set<String> defaultScriptFileExtensions, ScriptIndexes defaultBaseLineRevision,
                              boolean ignoreCarriageReturnsWhenCalculatingCheckSum) {
+        this(scriptLocation, defaultScriptEncoding, defaultPostProcessingScriptDirName, defaultRegisteredQualifiers, defaultPatchQualifiers, defaultScriptIndexRegexp, defaultQualifierRegexp,
+                defaultTargetDatabaseRegexp, defaultScriptFileExtensions, defaultBaseLineRevision, ignoreCarriageReturnsWhenCalculatingCheckSum, new ScriptNameCache());
+    }
+
+    protected ScriptLocation(File scriptLocation, String defaultScriptEncoding, String defaultPostProcessingScriptDirName,
+                             Set<Qualifier> defaultRegisteredQualifiers, Set<Qualifier> defaultPatchQualifiers, String defaultScriptIndexRegexp, String defaultQualifierRegexp,
+                             String defaultTargetDatabaseRegexp, Set<String> defaultScriptFileExtensions, ScriptIndexes defaultBaseLineRevision,
+                             boolean ignoreCarriageReturnsWhenCalculatingCheckSum, ScriptNameCache scriptNameCache) {
         assertValidScriptLocation(scriptLocation);
 
         this.scriptEncoding = defaultScriptEncoding;
@@ -113,6 +125,7 @@ abstract public class ScriptLocation {
         overrideValuesWithCustomConfiguration(customProperties);
 
         this.scriptLocationName = scriptLocation.getAbsolutePath();
+        this.scriptNameCache = scriptNameCache;
         this.scriptFactory = createScriptFactory();
         this.scripts = loadScripts(scriptLocation);
     }
@@ -132,6 +145,15 @@ abstract public class ScriptLocation {
     protected abstract void assertValidScriptLocation(File scriptLocation);
 
 
+    /**
+     * Releases the resources that were acquired by this location during a run, e.g. stores an updated check sum cache.
+     * The location remains usable afterwards: resources are acquired again when they are needed.
+     */
+    public void close() {
+        // override to release resources
+    }
+
+
     /**
      * @return A description of the location, for logging purposes
      */
@@ -258,7 +280,7 @@ abstract public class ScriptLocation {
     }
 
     protected ScriptFactory createScriptFactory() {
-        return new ScriptFactory(scriptIndexRegexp, targetDatabaseRegexp, qualifierRegexp, registeredQualifiers, patchQualifiers, postProcessingScriptDirName, baseLineRevision);
+        return new ScriptFactory(scriptIndexRegexp, targetDatabaseRegexp, qualifierRegexp, registeredQualifiers, patchQualifiers, postProcessingScriptDirName, baseLineRevision, scriptNameCache);
     }
 
     protected Script createScript(String fileName, Long fileLastModifiedAt, ScriptContentHandle scriptContentHandle) {
@@ -15,7 +15,11 @@
  */
 package org.dbmaintain.script.repository;
 
+import org.apache.commons.lang3.StringUtils;
 import org.dbmaintain.script.Script;
+import org.dbmaintain.script.ScriptContentHandle;
+import org.dbmaintain.script.checksum.CheckSumAlgorithms;
+import org.dbmaintain.script.executedscriptinfo.ScriptIndexes;
 import org.dbmaintain.script.qualifier.QualifierEvaluator;
 import org.dbmaintain.util.DbMaintainException;
 
@@ -32,14 +36,43 @@ public class ScriptRepository {
     protected SortedSet<Script> repeatableScripts = new TreeSet<>();
     protected SortedSet<Script> postProcessingScripts = new TreeSet<>();
 
+    protected Set<ScriptLocation> scriptLocations;
     protected QualifierEvaluator qualifierEvaluator;
 
 
     public ScriptRepository(Set<ScriptLocation> scriptLocations, QualifierEvaluator qualifierEvaluator) {
+        this.scriptLocations = scriptLocations;
         this.qualifierEvaluator = qualifierEvaluator;
         initScripts(scriptLocations);
     }
 
+    /**
+     * Creates a repository whose scripts calculate their check sums using the given algorithms.
+     *
+     * @param scriptLocations    The locations of the scripts, not null
+     * @param qualifierEvaluator Decides which scripts are included, not null
+     * @param checkSumAlgorithms The check sum algorithms, not null
+     */
+    public ScriptRepository(Set<ScriptLocation> scriptLocations, QualifierEvaluator qualifierEvaluator, CheckSumAlgorithms checkSumAlgorithms) {
+        this(scriptLocations, qualifierEvaluator);
+        for (Script script : getAllScripts()) {
+            ScriptContentHandle scriptContentHandle = script.getScriptContentHandle();
+            if (scriptContentHandle != null) {
+                scriptContentHandle.setCheckSumAlgorithms(checkSumAlgorithms);
+            }
+        }
+    }
+
+    /**
+     * Releases the resources of all script locations, e.g. stores updated check sum caches.
+     * Should be called at the end of each run.
+     */
+    public void close() {
+        for (ScriptLocation scriptLocation : scriptLocations) {
+            scriptLocation.close();
+        }
+    }
+
     public boolean areScriptsAvailable() {
         return indexedScripts.size() > 0 || repeatableScripts.size() > 0 || postProcessingScripts.size() > 0;
     }
@@ -71,77 +104,100 @@ public class ScriptRepository {
         return allScripts;
     }
 
+    /**
+     * Adds the scripts of all locations to the repository. Scripts that occur in more than one location and
+     * indexed scripts with the same index are looked up in hash maps that are built while the scripts are added,
+     * so that this is linear in the total nr of scripts. All conflicts are reported at once.
+     *
+     * @param scriptLocations The locations, not null
+     */
     protected void initScripts(Set<ScriptLocation> scriptLocations) {
-        assertNoDuplicateScripts(scriptLocations);
+        Map<String, ScriptLocation> scriptLocationPerFileName = new HashMap<>();
+        Map<ScriptIndexes, Script> indexedScriptPerIndexes = new HashMap<>();
+        List<DuplicateScript> duplicateScripts = new ArrayList<>();
+        List<Script[]> duplicateIndexScripts = new ArrayList<>();
 
         for (ScriptLocation scriptLocation : scriptLocations) {
             for (Script script : scriptLocation.getScripts()) {
-                if (qualifierEvaluator.evaluate(script.getQualifiers())) {
-                    initScript(script);
+                // a duplicate is reported against the first location that contains the script
+                ScriptLocation otherScriptLocation = scriptLocationPerFileName.get(script.getFileName());
+                if (otherScriptLocation != null) {
+                    duplicateScripts.add(new DuplicateScript(script, otherScriptLocation, scriptLocation));
+                    continue;
+                }
+                scriptLocationPerFileName.put(script.getFileName(), scriptLocation);
+                if (qualifierEvaluator.evaluate(script.getQualifiers()) && initScript(script)) {
+                    Script otherScript = indexedScriptPerIndexes.put(script.getScriptIndexes(), script);
+                    if (otherScript != null) {
+                        duplicateIndexScripts.add(new Script[]{otherScript, script});
+                    }
                 }
             }
         }
-        assertNoDuplicateScriptIndexes();
+        assertNoDuplicateScripts(duplicateScripts);
+        assertNoDuplicateScriptIndexes(duplicateIndexScripts);
     }
 
-    private void initScript(Script script) {
+    /**
+     * @param script The script to add, not null
+     * @return True if the script was added as an indexed script
+     */
+    private boolean initScript(Script script) {
         if (script.isPostProcessingScript()) {
             postProcessingScripts.add(script);
         } else if (script.isIncremental()) {
             if (!script.isIgnored()) {
                 indexedScripts.add(script);
+                return true;
             }
         } else { // Repeatable script
             repeatableScripts.add(script);
         }
+        return false;
     }
 
 
     /**
-     * Asserts that, there are no two indexed scripts with the same version.
+     * Asserts that there are no two indexed scripts with the same version.
+     *
+     * @param duplicateIndexScripts The pairs of indexed scripts that have the same index, not null
      */
-    protected void assertNoDuplicateScriptIndexes() {
-        Script previous, current = null;
-        for (Script script : indexedScripts) {
-            previous = current;
-            current = script;
-            if (previous != null && previous.getScriptIndexes().equals(current.getScriptIndexes())) {
-                throw new DbMaintainException("Found 2 indexed scripts with the same index: "
-                        + previous.getFileName() + " and " + current.getFileName() + ": both scripts have index "
-                        + previous.getScriptIndexes().getIndexesString());
+    protected void assertNoDuplicateScriptIndexes(List<Script[]> duplicateIndexScripts) {
+        if (duplicateIndexScripts.isEmpty()) {
+            return;
+        }
+        SortedSet<String> messages = new TreeSet<>();
+        for (Script[] duplicateIndexScript : duplicateIndexScripts) {
+            Script script1 = duplicateIndexScript[0];
+            Script script2 = duplicateIndexScript[1];
+            if (script1.compareTo(script2) > 0) {
+                script1 = duplicateIndexScript[1];
+                script2 = duplicateIndexScript[0];
             }
+            messages.add("Found 2 indexed scripts with the same index: " + script1.getFileName() + " and " + script2.getFileName()
+                    + ": both scripts have index " + script1.getScriptIndexes().getIndexesString());
         }
+        throw new DbMaintainException(StringUtils.join(messages, "\n"));
     }
 
-
-    protected void assertNoDuplicateScripts(Set<ScriptLocation> scriptLocations) {
-        Set<DuplicateScript> duplicateScripts = new HashSet<>();
-        List<ScriptLocation> scriptLocationList = new ArrayList<>(scriptLocations);
-        for (int i = 0; i < scriptLocationList.size() - 1; i++) {
-            for (Script script : scriptLocationList.get(i).getScripts()) {
-                for (int j = i + 1; j < scriptLocationList.size(); j++) {
-                    if (scriptLocationList.get(j).getScripts().contains(script)) {
-                        duplicateScripts.add(new DuplicateScript(script, scriptLocationList.get(i), scriptLocationList.get(j)));
-                    }
-                }
-            }
+    /**
+     * Asserts that no script is found in more than one location.
+     *
+     * @param duplicateScripts The scripts that were found in more than one location, not null
+     */
+    protected void assertNoDuplicateScripts(List<DuplicateScript> duplicateScripts) {
+        if (duplicateScripts.isEmpty()) {
+            return;
         }
-        if (duplicateScripts.size() > 0) {
-            StringBuilder message = new StringBuilder("Duplicate scripts found:\n");
-            for (DuplicateScript duplicateScript : duplicateScripts) {
-                message.append("- ")
-                        .append(duplicateScript.getDuplicateScript().getFileName())
-                        .append(" at ")
-                        .append(duplicateScript.getLocation1().getLocationName())
-                        .append(" and ")
-                        .append(duplicateScript.getLocation2().getLocationName())
-                        .append("\n");
-            }
-            throw new DbMaintainException(message.toString());
+        SortedSet<String> messages = new TreeSet<>();
+        for (DuplicateScript duplicateScript : duplicateScripts) {
+            messages.add("- " + duplicateScript.getDuplicateScript().getFileName() + " at " + duplicateScript.getLocation1().getLocationName()
+                    + " and " + duplicateScript.getLocation2().getLocationName() + "\n");
         }
+        throw new DbMaintainException("Duplicate scripts found:\n" + StringUtils.join(messages, ""));
     }
 
-    private static class DuplicateScript {
+    protected static class DuplicateScript {
 
         private Script duplicateScript;
         private ScriptLocation location1;
@@ -15,9 +15,16 @@
  */
 package org.dbmaintain.script.repository.impl;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.dbmaintain.script.Script;
 import org.dbmaintain.script.ScriptContentHandle;
+import org.dbmaintain.script.ScriptNameCache;
+import org.dbmaintain.script.checksum.CheckSumAlgorithm;
+import org.dbmaintain.script.checksum.CheckSumAlgorithms;
+import org.dbmaintain.script.checksum.impl.Sha256CheckSumAlgorithm;
 import org.dbmaintain.script.executedscriptinfo.ScriptIndexes;
 import org.dbmaintain.script.qualifier.Qualifier;
 import org.dbmaintain.script.repository.ScriptLocation;
@@ -27,22 +34,38 @@ import org.dbmaintain.util.WriterOutputStream;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 
 import static org.apache.commons.io.IOUtils.closeQuietly;
 import static org.dbmaintain.config.DbMaintainProperties.*;
+import static org.dbmaintain.script.repository.impl.ScriptArchiveManifest.CONTENT_DIRNAME;
+import static org.dbmaintain.script.repository.impl.ScriptArchiveManifest.MANIFEST_FILENAME;
 
 /**
- * Script container that reads all scripts from a jar file
+ * Script container that reads all scripts from a jar file.
+ * <p/>
+ * A jar that was written by this class contains a {@link ScriptArchiveManifest} with the check sums and the parsed
+ * file names of the scripts. If the jar is loaded with the same configuration as the one it was written with, the
+ * scripts are created from this manifest instead of parsing their names and reading their content.
  *
  * @author Filip Neven
  * @author Tim Ducheyne
  */
 public class ArchiveScriptLocation extends ScriptLocation {
 
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(ArchiveScriptLocation.class);
+
+    /* The shared access to the jar, null if there is no jar file. No initializer: it is set while the super constructor loads the scripts */
+    protected ScriptArchiveHandle archiveHandle;
+
+
     /**
      * Creates a new instance of the {@link ArchiveScriptLocation}, while there is no jar file available yet.
      * This constructor can be used to initialize the container while the scripts are still on the file system,
@@ -93,6 +116,63 @@ public class ArchiveScriptLocation extends ScriptLocation {
         super(jarLocation, defaultScriptEncoding, defaultPostProcessingScriptDirName, defaultRegisteredQualifiers, defaultPatchQualifiers, defaultScriptIndexRegexp, defaultQualifierRegexp, defaultTargetDatabaseRegexp, defaultScriptFileExtensions, baseLineRevision, ignoreCarriageReturnsWhenCalculatingCheckSum);
     }
 
+    /**
+     * Creates a new instance based on the contents of the given jar file, optionally verifying that the manifest
+     * of the jar matches the scripts in the jar.
+     *
+     * @param jarLocation                 the jar file
+     * @param defaultScriptEncoding       the default script encoding
+     * @param defaultPostProcessingScriptDirName
+     *                                    the default postprocessing dir name
+     * @param defaultRegisteredQualifiers the default registered (allowed) qualifiers
+     * @param defaultPatchQualifiers      the default patch qualifiers
+     * @param defaultScriptIndexRegexp    the default script index regexp
+     * @param defaultQualifierRegexp      the default qualifier regexp
+     * @param defaultTargetDatabaseRegexp the default target database regexp
+     * @param defaultScriptFileExtensions the default script file extensions
+     * @param baseLineRevision            The baseline revision. If set, all scripts with a lower revision will be ignored
+     * @param ignoreCarriageReturnsWhenCalculatingCheckSum
+     *                                    If true, carriage return chars will be ignored when calculating check sums
+     * @param verifyManifest              If true, the content and the file names of all scripts are checked against the manifest
+     */
+    public ArchiveScriptLocation(File jarLocation, String defaultScriptEncoding, String defaultPostProcessingScriptDirName,
+                                 Set<Qualifier> defaultRegisteredQualifiers, Set<Qualifier> defaultPatchQualifiers, String defaultScriptIndexRegexp, String defaultQualifierRegexp,
+                                 String defaultTargetDatabaseRegexp, Set<String> defaultScriptFileExtensions, ScriptIndexes baseLineRevision,
+                                 boolean ignoreCarriageReturnsWhenCalculatingCheckSum, boolean verifyManifest) {
+        this(jarLocation, defaultScriptEncoding, defaultPostProcessingScriptDirName, defaultRegisteredQualifiers, defaultPatchQualifiers, defaultScriptIndexRegexp, defaultQualifierRegexp, defaultTargetDatabaseRegexp, defaultScriptFileExtensions, baseLineRevision, ignoreCarriageReturnsWhenCalculatingCheckSum,
+                verifyManifest, new ScriptNameCache());
+    }
+
+    /**
+     * Creates a new instance based on the contents of the given jar file, that shares the parsed script names with
+     * other locations and with the executed scripts registry.
+     *
+     * @param jarLocation                 the jar file
+     * @param defaultScriptEncoding       the default script encoding
+     * @param defaultPostProcessingScriptDirName
+     *                                    the default postprocessing dir name
+     * @param defaultRegisteredQualifiers the default registered (allowed) qualifiers
+     * @param defaultPatchQualifiers      the default patch qualifiers
+     * @param defaultScriptIndexRegexp    the default script index regexp
+     * @param defaultQualifierRegexp      the default qualifier regexp
+     * @param defaultTargetDatabaseRegexp the default target database regexp
+     * @param defaultScriptFileExtensions the default script file extensions
+     * @param baseLineRevision            The baseline revision. If set, all scripts with a lower revision will be ignored
+     * @param ignoreCarriageReturnsWhenCalculatingCheckSum
+     *                                    If true, carriage return chars will be ignored when calculating check sums
+     * @param verifyManifest              If true, the content and the file names of all scripts are checked against the manifest
+     * @param scriptNameCache             The cache of parsed script names, not null
+     */
+    public ArchiveScriptLocation(File jarLocation, String defaultScriptEncoding, String defaultPostProcessingScriptDirName,
+                                 Set<Qualifier> defaultRegisteredQualifiers, Set<Qualifier> defaultPatchQualifiers, String defaultScriptIndexRegexp, String defaultQualifierRegexp,
+                                 String defaultTargetDatabaseRegexp, Set<String> defaultScriptFileExtensions, ScriptIndexes baseLineRevision,
+                                 boolean ignoreCarriageReturnsWhenCalculatingCheckSum, boolean verifyManifest, ScriptNameCache scriptNameCache) {
+        super(jarLocation, defaultScriptEncoding, defaultPostProcessingScriptDirName, defaultRegisteredQualifiers, defaultPatchQualifiers, defaultScriptIndexRegexp, defaultQualifierRegexp, defaultTargetDatabaseRegexp, defaultScriptFileExtensions, baseLineRevision, ignoreCarriageReturnsWhenCalculatingCheckSum, scriptNameCache);
+        if (verifyManifest) {
+            verifyManifest(jarLocation);
+        }
+    }
+
 
     /**
      * Asserts that the script archive exists
@@ -114,16 +194,25 @@ public class ArchiveScriptLocation extends ScriptLocation {
     protected SortedSet<Script> loadScripts(File scriptLocation) {
         String subPath = getJarSubPath(scriptLocation);
 
-        JarFile jarFile = createJarFile(scriptLocation);
+        JarFile jarFile = getArchiveHandle(scriptLocation).getJarFile();
         return loadScriptsFromJar(jarFile, subPath);
     }
 
     protected SortedSet<Script> loadScriptsFromJar(final JarFile jarFile, String subPath) {
+        ScriptArchiveManifest manifest = readManifest(jarFile);
+        if (manifest != null && (manifest.isDeduplicated() || manifest.isDelta())) {
+            return loadScriptsFromManifest(manifest, jarFile, subPath);
+        }
+        // the file names in the manifest are relative to the root of the jar
+        if (subPath != null || !isValidManifest(manifest, jarFile)) {
+            manifest = null;
+        }
+
         SortedSet<Script> scripts = new TreeSet<>();
         for (Enumeration<JarEntry> jarEntries = jarFile.entries(); jarEntries.hasMoreElements();) {
             final JarEntry jarEntry = jarEntries.nextElement();
             String fileName = jarEntry.getName();
-            if (LOCATION_PROPERTIES_FILENAME.equals(fileName) || !isScriptFileName(fileName)) {
+            if (isMetaInfFileName(fileName) || !isScriptFileName(fileName)) {
                 continue;
             }
 
@@ -134,32 +223,213 @@ public class ArchiveScriptLocation extends ScriptLocation {
                 }
                 relativeScriptName = relativeScriptName.substring(subPath.length());
             }
-            ScriptContentHandle scriptContentHandle = new ScriptContentHandle(scriptEncoding, ignoreCarriageReturnsWhenCalculatingCheckSum) {
-                @Override
-                protected InputStream getScriptInputStream() {
-                    try {
-                        return jarFile.getInputStream(jarEntry);
-                    } catch (IOException e) {
-                        throw new DbMaintainException("Error while reading jar entry " + jarEntry, e);
-                    }
-                }
-            };
+            ScriptContentHandle scriptContentHandle = createScriptContentHandle(fileName);
             Long fileLastModifiedAt = jarEntry.getTime();
-            Script script = scriptFactory.createScriptWithContent(relativeScriptName, fileLastModifiedAt, scriptContentHandle);
+            ScriptArchiveManifest.Entry manifestEntry = manifest == null ? null : manifest.getEntry(fileName);
+            Script script;
+            if (manifestEntry != null) {
+                script = manifestEntry.createScript(scriptFactory, fileLastModifiedAt, scriptContentHandle);
+            } else {
+                script = scriptFactory.createScriptWithContent(relativeScriptName, fileLastModifiedAt, scriptContentHandle);
+            }
+            scripts.add(script);
+        }
+        return scripts;
+    }
+
+    /**
+     * Loads the scripts of a deduplicated or delta jar. Scripts with the same content share the same content handle,
+     * so that the content is only read and its check sum is only calculated once. Scripts of which the content was
+     * left out of the jar get the check sum of the manifest.
+     *
+     * @param manifest The manifest of the jar, not null
+     * @param jarFile  The jar, not null
+     * @param subPath  The optional sub path in the jar, null if the whole jar should be loaded
+     * @return The scripts, not null
+     */
+    protected SortedSet<Script> loadScriptsFromManifest(ScriptArchiveManifest manifest, JarFile jarFile, String subPath) {
+        // the metadata in the manifest was parsed from file names relative to the root of the jar
+        boolean useMetadata = subPath == null && isValidManifest(manifest, jarFile);
+        boolean useCheckSums = isCheckSumConfigurationEqual(manifest);
+
+        Map<String, ScriptContentHandle> scriptContentHandles = new HashMap<>();
+        SortedSet<Script> scripts = new TreeSet<>();
+        for (String fileName : manifest.getFileNames()) {
+            if (!isScriptFileName(fileName)) {
+                continue;
+            }
+            String relativeScriptName = fileName;
+            if (subPath != null) {
+                if (!fileName.startsWith(subPath)) {
+                    continue;
+                }
+                relativeScriptName = relativeScriptName.substring(subPath.length());
+            }
+            ScriptArchiveManifest.Entry manifestEntry = manifest.getEntry(fileName);
+            ScriptContentHandle scriptContentHandle = scriptContentHandles.get(manifestEntry.getEntryName());
+            if (manifestEntry.isContentOmitted()) {
+                scriptContentHandle = new OmittedScriptContentHandle(fileName, jarFile.getName(), scriptEncoding, ignoreCarriageReturnsWhenCalculatingCheckSum);
+                if (useCheckSums) {
+                    scriptContentHandle.setCheckSum(manifestEntry.getCheckSum());
+                }
+            } else if (scriptContentHandle == null) {
+                scriptContentHandle = createScriptContentHandle(manifestEntry.getEntryName());
+                scriptContentHandles.put(manifestEntry.getEntryName(), scriptContentHandle);
+            }
+            Script script;
+            if (useMetadata) {
+                script = manifestEntry.createScript(scriptFactory, manifestEntry.getLastModified(), scriptContentHandle);
+            } else {
+                script = scriptFactory.createScriptWithContent(relativeScriptName, manifestEntry.getLastModified(), scriptContentHandle);
+            }
             scripts.add(script);
         }
         return scripts;
     }
 
+    /**
+     * @param manifest The manifest, not null
+     * @return True if the check sums of the manifest were calculated in the same way as the check sums of this location
+     */
+    protected boolean isCheckSumConfigurationEqual(ScriptArchiveManifest manifest) {
+        return scriptEncoding.equals(manifest.getConfigurationProperty(PROPERTY_SCRIPT_ENCODING))
+                && Boolean.toString(ignoreCarriageReturnsWhenCalculatingCheckSum).equals(manifest.getConfigurationProperty(PROPERTY_IGNORE_CARRIAGE_RETURN_WHEN_CALCULATING_CHECK_SUM));
+    }
+
+    /**
+     * @param entryName The name of the jar entry, not null
+     * @return A handle that reads the entry through the shared archive handle of this location, not null
+     */
+    protected ScriptContentHandle createScriptContentHandle(final String entryName) {
+        return new ScriptContentHandle(scriptEncoding, ignoreCarriageReturnsWhenCalculatingCheckSum) {
+            @Override
+            protected InputStream getScriptInputStream() {
+                try {
+                    return archiveHandle.getInputStream(entryName);
+                } catch (IOException e) {
+                    throw new DbMaintainException("Error while reading jar entry " + entryName, e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Closes the jar file. It is opened again if a script is read afterwards.
+     */
+    @Override
+    public void close() {
+        if (archiveHandle != null) {
+            archiveHandle.close();
+        }
+    }
+
+    /**
+     * @param fileName The name of a jar entry, not null
+     * @return True if the entry is one of the files that are written by this class in the META-INF folder
+     */
+    protected boolean isMetaInfFileName(String fileName) {
+        return LOCATION_PROPERTIES_FILENAME.equals(fileName) || MANIFEST_FILENAME.equals(fileName) || fileName.startsWith(CONTENT_DIRNAME);
+    }
+
+
+    /**
+     * @param jarFile The jar, not null
+     * @return The manifest of the jar, null if there is no manifest or if it was written using another configuration
+     */
+    protected ScriptArchiveManifest getValidManifest(JarFile jarFile) {
+        ScriptArchiveManifest manifest = readManifest(jarFile);
+        return isValidManifest(manifest, jarFile) ? manifest : null;
+    }
+
+    /**
+     * @param manifest The manifest, null if there is no manifest
+     * @param jarFile  The jar, not null
+     * @return True if the manifest was written using the configuration of this location
+     */
+    protected boolean isValidManifest(ScriptArchiveManifest manifest, JarFile jarFile) {
+        if (manifest == null) {
+            return false;
+        }
+        if (!manifest.isConfigurationEqualTo(getJarProperties())) {
+            logger.info("The configuration of script archive " + jarFile.getName() + " differs from the configuration it was created with. The script metadata of the manifest will not be used.");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param jarFile The jar, not null
+     * @return The manifest of the jar, null if there is no manifest
+     */
+    protected ScriptArchiveManifest readManifest(JarFile jarFile) {
+        ZipEntry manifestEntry = jarFile.getEntry(MANIFEST_FILENAME);
+        if (manifestEntry == null) {
+            return null;
+        }
+        InputStream manifestInputStream = null;
+        try {
+            manifestInputStream = jarFile.getInputStream(manifestEntry);
+            return ScriptArchiveManifest.load(manifestInputStream);
+        } catch (Exception e) {
+            throw new DbMaintainException("Error while reading script manifest " + MANIFEST_FILENAME + " from jar file " + jarFile.getName(), e);
+        } finally {
+            closeQuietly(manifestInputStream);
+        }
+    }
+
+    /**
+     * Verifies that the manifest of the jar matches the scripts in the jar: every script should be in the manifest
+     * with the same size and check sum, and with the same metadata as the one that is parsed from its file name.
+     *
+     * @param scriptLocation The location of the jar file, not null
+     * @throws DbMaintainException if the jar contains a manifest that does not match the scripts
+     */
+    protected void verifyManifest(File scriptLocation) {
+        ScriptArchiveManifest manifest = getValidManifest(archiveHandle.getJarFile());
+        if (manifest == null || getJarSubPath(scriptLocation) != null) {
+            return;
+        }
+        Set<String> fileNamesNotInJar = new TreeSet<>(manifest.getFileNames());
+        for (Script script : scripts) {
+            String fileName = script.getFileName();
+            ScriptArchiveManifest.Entry manifestEntry = manifest.getEntry(fileName);
+            if (manifestEntry == null) {
+                throw new DbMaintainException("Script manifest of jar file " + scriptLocation + " does not contain script " + fileName);
+            }
+            fileNamesNotInJar.remove(fileName);
+
+            // the content of scripts that were left out of a delta jar can not be verified
+            ScriptContentHandle scriptContentHandle = script.getScriptContentHandle();
+            if (!manifestEntry.isContentOmitted()) {
+                ZipEntry jarEntry = archiveHandle.getEntry(manifestEntry.getEntryName());
+                if (jarEntry == null) {
+                    throw new DbMaintainException("Jar file " + scriptLocation + " does not contain entry " + manifestEntry.getEntryName() + " with the content of script " + fileName);
+                }
+                scriptContentHandle = createScriptContentHandle(manifestEntry.getEntryName());
+                scriptContentHandle.setCheckSumAlgorithms(script.getScriptContentHandle().getCheckSumAlgorithms());
+                String checkSum = scriptContentHandle.getCheckSum(CheckSumAlgorithms.getAlgorithmName(manifestEntry.getCheckSum()));
+                if (jarEntry.getSize() != manifestEntry.getSize() || !checkSum.equals(manifestEntry.getCheckSum())) {
+                    throw new DbMaintainException("Script manifest of jar file " + scriptLocation + " does not match the content of script " + fileName);
+                }
+            }
+            Script parsedScript = scriptFactory.createScriptWithContent(fileName, script.getFileLastModifiedAt(), scriptContentHandle);
+            if (!manifestEntry.isMetadataEqualTo(parsedScript)) {
+                throw new DbMaintainException("Script manifest of jar file " + scriptLocation + " does not match the file name of script " + fileName);
+            }
+        }
+        if (!fileNamesNotInJar.isEmpty()) {
+            throw new DbMaintainException("Script manifest of jar file " + scriptLocation + " contains scripts that are not in the jar: " + fileNamesNotInJar);
+        }
+    }
+
 
     protected String toQualifiersPropertyValue(Set<Qualifier> qualifiers) {
-        StringBuilder propertyValue = new StringBuilder();
-        String separator = "";
+        // sorted, so that the value does not depend on the iteration order of the set
+        Set<String> qualifierNames = new TreeSet<>();
         for (Qualifier qualifier : qualifiers) {
-            propertyValue.append(separator).append(qualifier.getQualifierName());
-            separator = ",";
+            qualifierNames.add(qualifier.getQualifierName());
         }
-        return propertyValue.toString();
+        return StringUtils.join(qualifierNames, ",");
     }
 
 
@@ -171,14 +441,13 @@ public class ArchiveScriptLocation extends ScriptLocation {
     protected Properties getCustomProperties(File scriptLocation) {
         InputStream configurationInputStream = null;
         try {
-            JarFile jarFile = createJarFile(scriptLocation);
-            ZipEntry configurationEntry = jarFile.getEntry(LOCATION_PROPERTIES_FILENAME);
-            if (configurationEntry == null) {
+            ScriptArchiveHandle archiveHandle = getArchiveHandle(scriptLocation);
+            if (archiveHandle.getEntry(LOCATION_PROPERTIES_FILENAME) == null) {
                 // no custom config found in meta-inf folder, skipping
                 return null;
             }
             Properties configuration = new Properties();
-            configurationInputStream = jarFile.getInputStream(configurationEntry);
+            configurationInputStream = archiveHandle.getInputStream(LOCATION_PROPERTIES_FILENAME);
             configuration.load(configurationInputStream);
             return configuration;
         } catch (IOException e) {
@@ -207,29 +476,197 @@ public class ArchiveScriptLocation extends ScriptLocation {
      * @param jarFile Path where the jar file is stored
      */
     public void writeToJarFile(File jarFile) {
-        JarOutputStream jarOutputStream = null;
+        writeToJarFile(jarFile, Deflater.DEFAULT_COMPRESSION, 1);
+    }
+
+    /**
+     * Creates the jar containing the scripts and stores it in the file with the given file name.
+     * <p/>
+     * The scripts are read and their check sums are calculated by a pool of threads, while the calling thread
+     * compresses and writes them in order. Only a limited nr of scripts is read ahead of the writer.
+     *
+     * @param jarFile          Path where the jar file is stored
+     * @param compressionLevel The compression level, 0 to store the scripts without compression (STORED),
+     *                         1 (fastest) to 9 (smallest), -1 for the default level
+     * @param nrOfThreads      The nr of threads that read the scripts, 0 or less to use as many threads as there are available processors
+     */
+    public void writeToJarFile(File jarFile, int compressionLevel, int nrOfThreads) {
+        writeToJarFile(jarFile, compressionLevel, nrOfThreads, false);
+    }
 
+    /**
+     * Creates the jar containing the scripts and stores it in the file with the given file name.
+     * <p/>
+     * If deduplicate is true, every distinct script content is written only once. See {@link ScriptArchiveManifest}
+     * for the layout of such a jar. Note that a deduplicated jar can not be read by older versions of DbMaintain.
+     *
+     * @param jarFile          Path where the jar file is stored
+     * @param compressionLevel The compression level, 0 to store the scripts without compression (STORED),
+     *                         1 (fastest) to 9 (smallest), -1 for the default level
+     * @param nrOfThreads      The nr of threads that read the scripts, 0 or less to use as many threads as there are available processors
+     * @param deduplicate      True to store scripts with the same content only once
+     */
+    public void writeToJarFile(File jarFile, int compressionLevel, int nrOfThreads, boolean deduplicate) {
+        writeToJarFile(jarFile, compressionLevel, nrOfThreads, deduplicate, null);
+    }
+
+    /**
+     * Creates the jar containing the scripts and stores it in the file with the given file name.
+     * <p/>
+     * If deduplicate is true, every distinct script content is written only once. If a previous jar is given, the
+     * content of the scripts that did not change since that jar is left out. Post processing scripts are always
+     * included, since they are executed again after every update. See {@link ScriptArchiveManifest} for the layout of
+     * such jars. Note that deduplicated and delta jars can not be read by older versions of DbMaintain.
+     *
+     * @param jarFile          Path where the jar file is stored
+     * @param compressionLevel The compression level, 0 to store the scripts without compression (STORED),
+     *                         1 (fastest) to 9 (smallest), -1 for the default level
+     * @param nrOfThreads      The nr of threads that read the scripts, 0 or less to use as many threads as there are available processors
+     * @param deduplicate      True to store scripts with the same content only once
+     * @param previousJarFile  A jar that was previously written with the same configuration, null to write a complete jar.
+     *                         If set, a delta jar is written that only contains the content of the scripts that are new or changed since the previous jar
+     */
+    public void writeToJarFile(File jarFile, int compressionLevel, int nrOfThreads, boolean deduplicate, File previousJarFile) {
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new DbMaintainException("Invalid compression level " + compressionLevel + ". The level should be between -1 and 9.");
+        }
+        if (nrOfThreads <= 0) {
+            nrOfThreads = Runtime.getRuntime().availableProcessors();
+        }
+        ScriptArchiveManifest previousManifest = previousJarFile == null ? null : readPreviousManifest(previousJarFile);
+        JarOutputStream jarOutputStream = null;
+        ExecutorService executorService = Executors.newFixedThreadPool(nrOfThreads, new ArchiveThreadFactory());
         try {
-            jarOutputStream = new JarOutputStream(new FileOutputStream(jarFile));
+            jarOutputStream = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(jarFile)));
+            if (compressionLevel != 0) {
+                jarOutputStream.setLevel(compressionLevel);
+            }
             Reader propertiesAsFile = getPropertiesAsFile(getJarProperties());
             writeJarEntry(jarOutputStream, LOCATION_PROPERTIES_FILENAME, System.currentTimeMillis(), propertiesAsFile);
             propertiesAsFile.close();
-            for (Script script : getScripts()) {
-                Reader scriptContentReader = null;
-                try {
-                    scriptContentReader = script.getScriptContentHandle().openScriptContentReader();
-                    writeJarEntry(jarOutputStream, script.getFileName(), script.getFileLastModifiedAt(), scriptContentReader);
-                } finally {
-                    closeQuietly(scriptContentReader);
+
+            ScriptArchiveManifest manifest = new ScriptArchiveManifest(getJarProperties());
+            List<Script> scriptList = new ArrayList<>(getScripts());
+            int readAhead = 4 * nrOfThreads;
+            List<Future<ArchiveEntry>> archiveEntries = new ArrayList<>(scriptList.size());
+            Set<String> writtenContentEntryNames = new HashSet<>();
+            for (int i = 0; i < scriptList.size(); i++) {
+                archiveEntries.add(null);
+            }
+            for (int i = 0; i < Math.min(readAhead, scriptList.size()); i++) {
+                archiveEntries.set(i, executorService.submit(new ReadArchiveEntryTask(scriptList.get(i), compressionLevel == 0, deduplicate)));
+            }
+            for (int i = 0; i < scriptList.size(); i++) {
+                ArchiveEntry archiveEntry = getArchiveEntry(archiveEntries.get(i));
+                archiveEntries.set(i, null);
+                if (i + readAhead < scriptList.size()) {
+                    archiveEntries.set(i + readAhead, executorService.submit(new ReadArchiveEntryTask(scriptList.get(i + readAhead), compressionLevel == 0, deduplicate)));
+                }
+                Script script = archiveEntry.script;
+                if (isUnchanged(archiveEntry, previousManifest)) {
+                    manifest.addOmittedScript(script, archiveEntry.checkSum, archiveEntry.content.length);
+                } else if (archiveEntry.contentKey == null) {
+                    writeJarEntry(jarOutputStream, script.getFileName(), script.getFileLastModifiedAt(), archiveEntry);
+                    manifest.addScript(script, archiveEntry.checkSum, archiveEntry.content.length);
+                } else {
+                    String contentEntryName = CONTENT_DIRNAME + archiveEntry.contentKey;
+                    if (writtenContentEntryNames.add(contentEntryName)) {
+                        writeJarEntry(jarOutputStream, contentEntryName, script.getFileLastModifiedAt(), archiveEntry);
+                    }
+                    manifest.addScript(script, archiveEntry.checkSum, archiveEntry.content.length, contentEntryName);
                 }
             }
+            jarOutputStream.putNextEntry(new JarEntry(MANIFEST_FILENAME));
+            manifest.store(jarOutputStream);
+            jarOutputStream.closeEntry();
         } catch (IOException e) {
             throw new DbMaintainException("Error while writing archive file " + jarFile, e);
         } finally {
+            executorService.shutdownNow();
             closeQuietly(jarOutputStream);
         }
     }
 
+    /**
+     * @param previousJarFile The jar that was written before, not null
+     * @return The manifest of the jar, not null
+     * @throws DbMaintainException if the jar has no manifest or if it was written with another configuration
+     */
+    protected ScriptArchiveManifest readPreviousManifest(File previousJarFile) {
+        JarFile jarFile = null;
+        try {
+            jarFile = new JarFile(previousJarFile);
+            ScriptArchiveManifest previousManifest = readManifest(jarFile);
+            if (previousManifest == null) {
+                throw new DbMaintainException("Unable to create a delta script archive: previous script archive " + previousJarFile + " does not contain a script manifest.");
+            }
+            if (!previousManifest.isConfigurationEqualTo(getJarProperties())) {
+                throw new DbMaintainException("Unable to create a delta script archive: previous script archive " + previousJarFile + " was created with another configuration.");
+            }
+            return previousManifest;
+        } catch (IOException e) {
+            throw new DbMaintainException("Error opening previous script archive " + previousJarFile, e);
+        } finally {
+            closeQuietly(jarFile);
+        }
+    }
+
+    /**
+     * @param archiveEntry     The script and its content, not null
+     * @param previousManifest The manifest of the previous jar, null if a complete jar is written
+     * @return True if the content of the script can be left out of the jar
+     */
+    protected boolean isUnchanged(ArchiveEntry archiveEntry, ScriptArchiveManifest previousManifest) {
+        if (previousManifest == null || archiveEntry.script.isPostProcessingScript()) {
+            return false;
+        }
+        ScriptArchiveManifest.Entry previousEntry = previousManifest.getEntry(archiveEntry.script.getFileName());
+        return previousEntry != null && previousEntry.getCheckSum().equals(archiveEntry.checkSum);
+    }
+
+    /**
+     * Gets the content of a script as it should be stored in the jar. The raw bytes are copied if the script has the
+     * encoding of this location. Otherwise the script is converted to the encoding of this location.
+     *
+     * @param script The script, not null
+     * @return The content, not null
+     */
+    protected byte[] getArchiveContent(Script script) throws IOException {
+        ScriptContentHandle scriptContentHandle = script.getScriptContentHandle();
+        if (scriptEncoding == null || scriptEncoding.equals(scriptContentHandle.getEncoding())) {
+            InputStream scriptInputStream = scriptContentHandle.openScriptContentInputStream();
+            try {
+                return IOUtils.toByteArray(scriptInputStream);
+            } finally {
+                closeQuietly(scriptInputStream);
+            }
+        }
+        Reader scriptContentReader = scriptContentHandle.openScriptContentReader();
+        try {
+            return IOUtils.toString(scriptContentReader).getBytes(scriptEncoding);
+        } finally {
+            closeQuietly(scriptContentReader);
+        }
+    }
+
+    protected ArchiveEntry getArchiveEntry(Future<ArchiveEntry> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DbMaintainException("Interrupted while writing script archive", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof DbMaintainException) {
+                throw (DbMaintainException) cause;
+            }
+            throw new DbMaintainException("Unable to read script", cause);
+        }
+    }
+
     /**
      * @return The jar location's configuration as a <code>Properties</code> object
      */
@@ -242,7 +679,7 @@ public class ArchiveScriptLocation extends ScriptLocation {
         configuration.put(PROPERTY_SCRIPT_INDEX_REGEXP, scriptIndexRegexp);
         configuration.put(PROPERTY_SCRIPT_QUALIFIER_REGEXP, qualifierRegexp);
         configuration.put(PROPERTY_SCRIPT_TARGETDATABASE_REGEXP, targetDatabaseRegexp);
-        configuration.put(PROPERTY_SCRIPT_FILE_EXTENSIONS, StringUtils.join(scriptFileExtensions, ","));
+        configuration.put(PROPERTY_SCRIPT_FILE_EXTENSIONS, StringUtils.join(new TreeSet<>(scriptFileExtensions), ","));
         if (baseLineRevision != null) {
             configuration.put(PROPERTY_BASELINE_REVISION, baseLineRevision.getIndexesString());
         }
@@ -251,6 +688,47 @@ public class ArchiveScriptLocation extends ScriptLocation {
     }
 
 
+    /**
+     * Writes the entry with the given name and content to the given {@link JarOutputStream}
+     *
+     * @param jarOutputStream    {@link OutputStream} to the jar file
+     * @param name               Name of the jar file entry
+     * @param timestamp          Last modification date of the entry
+     * @param content            The content of the jar entry, not null
+     * @throws IOException In case of disk IO problems
+     */
+    protected void writeJarEntry(JarOutputStream jarOutputStream, String name, long timestamp, byte[] content) throws IOException {
+        JarEntry jarEntry = new JarEntry(name);
+        jarEntry.setTime(timestamp);
+        jarOutputStream.putNextEntry(jarEntry);
+        jarOutputStream.write(content);
+        jarOutputStream.closeEntry();
+    }
+
+    /**
+     * Writes the content of the given script to the given {@link JarOutputStream}. If a CRC was calculated, the
+     * content is stored without compression.
+     *
+     * @param jarOutputStream {@link OutputStream} to the jar file
+     * @param name            The name of the entry, not null
+     * @param timestamp       The last modification date of the entry
+     * @param archiveEntry    The script and its content, not null
+     * @throws IOException In case of disk IO problems
+     */
+    protected void writeJarEntry(JarOutputStream jarOutputStream, String name, long timestamp, ArchiveEntry archiveEntry) throws IOException {
+        JarEntry jarEntry = new JarEntry(name);
+        jarEntry.setTime(timestamp);
+        if (archiveEntry.crc != null) {
+            jarEntry.setMethod(ZipEntry.STORED);
+            jarEntry.setSize(archiveEntry.content.length);
+            jarEntry.setCompressedSize(archiveEntry.content.length);
+            jarEntry.setCrc(archiveEntry.crc);
+        }
+        jarOutputStream.putNextEntry(jarEntry);
+        jarOutputStream.write(archiveEntry.content);
+        jarOutputStream.closeEntry();
+    }
+
     /**
      * Writes the entry with the given name and content to the given {@link JarOutputStream}
      *
@@ -275,15 +753,127 @@ public class ArchiveScriptLocation extends ScriptLocation {
         jarOutputStream.closeEntry();
     }
 
-    protected JarFile createJarFile(File jarFile) {
-        try {
-            File jarFileWithoutSubPath = getJarFileWithoutSubPath(jarFile);
-            return new JarFile(jarFileWithoutSubPath);
-        } catch (IOException e) {
-            throw new DbMaintainException("Error opening jar file " + jarFile, e);
+    /**
+     * Gets the handle through which all entries of the jar are read. It is created when it is first needed, which
+     * is while the super constructor is still running.
+     *
+     * @param jarFile The jar file, possibly followed by a sub-path, not null
+     * @return The handle, not null
+     */
+    protected ScriptArchiveHandle getArchiveHandle(File jarFile) {
+        if (archiveHandle == null) {
+            archiveHandle = new ScriptArchiveHandle(getJarFileWithoutSubPath(jarFile));
         }
+        return archiveHandle;
+    }
+
+    /**
+     * A script with the content and the check sum as they will be stored in the jar.
+     */
+    protected static class ArchiveEntry {
+
+        protected Script script;
+        protected byte[] content;
+        /* The check sum of the content, with the ignore carriage returns setting of this location */
+        protected String checkSum;
+        /* The CRC of the content, null if the content will be compressed */
+        protected Long crc;
+        /* The hex SHA-256 digest of the content, null if the archive is not deduplicated */
+        protected String contentKey;
     }
 
+    /**
+     * Reads a script and calculates the check sum of its content.
+     */
+    protected class ReadArchiveEntryTask implements Callable<ArchiveEntry> {
+
+        private Script script;
+        private boolean stored;
+        private boolean deduplicate;
+
+        public ReadArchiveEntryTask(Script script, boolean stored, boolean deduplicate) {
+            this.script = script;
+            this.stored = stored;
+            this.deduplicate = deduplicate;
+        }
+
+        public ArchiveEntry call() throws IOException {
+            final ArchiveEntry archiveEntry = new ArchiveEntry();
+            archiveEntry.script = script;
+            archiveEntry.content = getArchiveContent(script);
+
+            ScriptContentHandle archiveContentHandle = new ScriptContentHandle(scriptEncoding, ignoreCarriageReturnsWhenCalculatingCheckSum) {
+                @Override
+                protected InputStream getScriptInputStream() {
+                    return new ByteArrayInputStream(archiveEntry.content);
+                }
+            };
+            archiveContentHandle.setCheckSumAlgorithms(script.getScriptContentHandle().getCheckSumAlgorithms());
+            archiveEntry.checkSum = archiveContentHandle.getCheckSum();
+
+            if (stored) {
+                CRC32 crc32 = new CRC32();
+                crc32.update(archiveEntry.content);
+                archiveEntry.crc = crc32.getValue();
+            }
+            if (deduplicate) {
+                // the raw content, also when carriage returns are ignored for the check sums
+                ScriptContentHandle contentKeyHandle = new ScriptContentHandle(scriptEncoding, false) {
+                    @Override
+                    protected InputStream getScriptInputStream() {
+                        return new ByteArrayInputStream(archiveEntry.content);
+                    }
+                };
+                contentKeyHandle.setCheckSumAlgorithms(new CheckSumAlgorithms(Sha256CheckSumAlgorithm.NAME, Collections.<CheckSumAlgorithm>singletonList(new Sha256CheckSumAlgorithm())));
+                archiveEntry.contentKey = CheckSumAlgorithms.getValue(contentKeyHandle.getCheckSum());
+            }
+            return archiveEntry;
+        }
+    }
+
+    /**
+     * The content handle of a script of which the content was left out of a delta jar. Only the check sum of the
+     * script is known.
+     */
+    protected static class OmittedScriptContentHandle extends ScriptContentHandle {
+
+        private String fileName;
+        private String jarFileName;
+
+        public OmittedScriptContentHandle(String fileName, String jarFileName, String encoding, boolean ignoreCarriageReturnsWhenCalculatingCheckSum) {
+            super(encoding, ignoreCarriageReturnsWhenCalculatingCheckSum);
+            this.fileName = fileName;
+            this.jarFileName = jarFileName;
+        }
+
+        @Override
+        public boolean isContentAvailable() {
+            return false;
+        }
+
+        @Override
+        protected InputStream getScriptInputStream() {
+            throw new DbMaintainException("The content of script " + fileName + " is not available: script archive " + jarFileName +
+                    " is a delta archive and the script did not change since the previous archive. Use a complete script archive instead.");
+        }
+    }
+
+    /**
+     * Creates daemon threads, so that a hanging script read can never prevent the VM from exiting.
+     */
+    protected static class ArchiveThreadFactory implements ThreadFactory {
+
+        private ThreadFactory defaultThreadFactory = Executors.defaultThreadFactory();
+
+        public Thread newThread(Runnable runnable) {
+            Thread thread = defaultThreadFactory.newThread(runnable);
+            thread.setName("dbmaintain-archive-" + thread.getName());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+
     /**
      * Gets the optional sub path in the jar file.
      * E.g. dir/my_archive.jar!subpath/bla => returns subpath/bla/
@@ -15,22 +15,26 @@
  */
 package org.dbmaintain.script.repository.impl;
 
+import org.dbmaintain.script.CheckSumCache;
 import org.dbmaintain.script.Script;
 import org.dbmaintain.script.ScriptContentHandle;
+import org.dbmaintain.script.ScriptNameCache;
 import org.dbmaintain.script.executedscriptinfo.ScriptIndexes;
 import org.dbmaintain.script.qualifier.Qualifier;
 import org.dbmaintain.script.repository.ScriptLocation;
 import org.dbmaintain.util.DbMaintainException;
-import org.dbmaintain.util.FileUtils;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Properties;
-import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import static org.apache.commons.io.IOUtils.closeQuietly;
 
@@ -45,6 +49,14 @@ import static org.apache.commons.io.IOUtils.closeQuietly;
  */
 public class FileSystemScriptLocation extends ScriptLocation {
 
+    /**
+     * Name of the check sum cache file that is stored in the root of the location when no cache directory is configured.
+     */
+    public static final String CHECKSUM_CACHE_FILENAME = ".dbmaintain-checksums.properties";
+
+    /* Cache of the check sums of the scripts, null if the cache is disabled */
+    protected CheckSumCache checkSumCache;
+
 
     /**
      * Constructor for FileSystemScriptLocation.
@@ -68,6 +80,59 @@ public class FileSystemScriptLocation extends ScriptLocation {
         super(scriptLocation, defaultScriptEncoding, defaultPostProcessingScriptDirName, defaultRegisteredQualifiers, defaultPatchQualifiers, defaultScriptIndexRegexp, defaultQualifierRegexp, defaultTargetDatabaseRegexp, defaultScriptFileExtensions, baseLineRevision, ignoreCarriageReturnsWhenCalculatingCheckSum);
     }
 
+    /**
+     * Constructor for FileSystemScriptLocation that uses a persistent check sum cache. Check sums of scripts that
+     * did not change since the previous run are then taken from the cache instead of being recalculated.
+     *
+     * @param scriptLocation              The file system directory that is the root of this script location
+     * @param defaultScriptEncoding       The default script encoding. Only used if not overridden in {@link #LOCATION_PROPERTIES_FILENAME}.
+     * @param defaultPostProcessingScriptDirName
+     *                                    The default postprocessing script dir name. Only used if not overridden in {@link #LOCATION_PROPERTIES_FILENAME}.
+     * @param defaultRegisteredQualifiers The default registered qualifiers
+     * @param defaultPatchQualifiers      The default qualfiers that indicate a patch file. Only used if not overridden in {@link #LOCATION_PROPERTIES_FILENAME}.
+     * @param defaultScriptIndexRegexp    The default script index regexp. Only used if not overridden in {@link #LOCATION_PROPERTIES_FILENAME}.
+     * @param defaultQualifierRegexp      The default qualifier regexp. Only used if not overridden in {@link #LOCATION_PROPERTIES_FILENAME}.
+     * @param defaultTargetDatabaseRegexp The default target database regexp. Only used if not overridden in {@link #LOCATION_PROPERTIES_FILENAME}.
+     * @param defaultScriptFileExtensions The default script extensions. Only used if not overridden in {@link #LOCATION_PROPERTIES_FILENAME}.
+     * @param baseLineRevision            The baseline revision. If set, all scripts with a lower revision will be ignored
+     * @param ignoreCarriageReturnsWhenCalculatingCheckSum
+     *                                    If true, carriage return chars will be ignored when calculating check sums
+     * @param checkSumCacheFile           The file in which the check sums are cached, null to disable the cache
+     */
+    public FileSystemScriptLocation(File scriptLocation, String defaultScriptEncoding, String defaultPostProcessingScriptDirName, Set<Qualifier> defaultRegisteredQualifiers, Set<Qualifier> defaultPatchQualifiers, String defaultScriptIndexRegexp, String defaultQualifierRegexp,
+                                    String defaultTargetDatabaseRegexp, Set<String> defaultScriptFileExtensions, ScriptIndexes baseLineRevision, boolean ignoreCarriageReturnsWhenCalculatingCheckSum, File checkSumCacheFile) {
+        this(scriptLocation, defaultScriptEncoding, defaultPostProcessingScriptDirName, defaultRegisteredQualifiers, defaultPatchQualifiers, defaultScriptIndexRegexp, defaultQualifierRegexp, defaultTargetDatabaseRegexp, defaultScriptFileExtensions, baseLineRevision, ignoreCarriageReturnsWhenCalculatingCheckSum, checkSumCacheFile, new ScriptNameCache());
+    }
+
+    /**
+     * Constructor for FileSystemScriptLocation that shares the parsed script names with other locations and with the
+     * executed scripts registry.
+     *
+     * @param scriptLocation              The file system directory that is the root of this script location
+     * @param defaultScriptEncoding       The default script encoding. Only used if not overridden in {@link #LOCATION_PROPERTIES_FILENAME}.
+     * @param defaultPostProcessingScriptDirName
+     *                                    The default postprocessing script dir name. Only used if not overridden in {@link #LOCATION_PROPERTIES_FILENAME}.
+     * @param defaultRegisteredQualifiers The default registered qualifiers
+     * @param defaultPatchQualifiers      The default qualfiers that indicate a patch file. Only used if not overridden in {@link #LOCATION_PROPERTIES_FILENAME}.
+     * @param defaultScriptIndexRegexp    The default script index regexp. Only used if not overridden in {@link #LOCATION_PROPERTIES_FILENAME}.
+     * @param defaultQualifierRegexp      The default qualifier regexp. Only used if not overridden in {@link #LOCATION_PROPERTIES_FILENAME}.
+     * @param defaultTargetDatabaseRegexp The default target database regexp. Only used if not overridden in {@link #LOCATION_PROPERTIES_FILENAME}.
+     * @param defaultScriptFileExtensions The default script extensions. Only used if not overridden in {@link #LOCATION_PROPERTIES_FILENAME}.
+     * @param baseLineRevision            The baseline revision. If set, all scripts with a lower revision will be ignored
+     * @param ignoreCarriageReturnsWhenCalculatingCheckSum
+     *                                    If true, carriage return chars will be ignored when calculating check sums
+     * @param checkSumCacheFile           The file in which the check sums are cached, null to disable the cache
+     * @param scriptNameCache             The cache of parsed script names, not null
+     */
+    public FileSystemScriptLocation(File scriptLocation, String defaultScriptEncoding, String defaultPostProcessingScriptDirName, Set<Qualifier> defaultRegisteredQualifiers, Set<Qualifier> defaultPatchQualifiers, String defaultScriptIndexRegexp, String defaultQualifierRegexp,
+                                    String defaultTargetDatabaseRegexp, Set<String> defaultScriptFileExtensions, ScriptIndexes baseLineRevision, boolean ignoreCarriageReturnsWhenCalculatingCheckSum, File checkSumCacheFile,
+                                    ScriptNameCache scriptNameCache) {
+        super(scriptLocation, defaultScriptEncoding, defaultPostProcessingScriptDirName, defaultRegisteredQualifiers, defaultPatchQualifiers, defaultScriptIndexRegexp, defaultQualifierRegexp, defaultTargetDatabaseRegexp, defaultScriptFileExtensions, baseLineRevision, ignoreCarriageReturnsWhenCalculatingCheckSum, scriptNameCache);
+        if (checkSumCacheFile != null) {
+            initCheckSumCache(checkSumCacheFile);
+        }
+    }
+
 
     /**
      * Asserts that the script root directory exists
@@ -105,38 +170,137 @@ public class FileSystemScriptLocation extends ScriptLocation {
 
 
     /**
+     * The directories of the location are scanned concurrently. The attributes of every file are read with a single
+     * call to the file system.
+     *
      * @return all available scripts, loaded from the file system
      */
     protected SortedSet<Script> loadScripts(File scriptLocation) {
+        Path root = scriptLocation.getAbsoluteFile().toPath();
+        BasicFileAttributes rootAttributes = readAttributes(root);
+        if (!rootAttributes.isDirectory()) {
+            SortedSet<Script> scripts = new TreeSet<>();
+            if (rootAttributes.isRegularFile() && isScriptFileName(root.getFileName().toString())) {
+                scripts.add(createScript(root.toFile(), "", rootAttributes.lastModifiedTime().toMillis()));
+            }
+            return scripts;
+        }
+        Map<String, Long> scriptFiles;
+        ForkJoinPool forkJoinPool = new ForkJoinPool(getNrOfScanThreads());
+        try {
+            scriptFiles = new TreeMap<>(forkJoinPool.invoke(new ScanDirectoryTask(root, "")));
+        } finally {
+            forkJoinPool.shutdown();
+        }
+        // scripts are created in the calling thread and in a fixed order, so that errors in script names are reported the same way every run
         SortedSet<Script> scripts = new TreeSet<>();
-        getScriptsAt(scripts, scriptLocation.getAbsolutePath(), "");
+        for (Map.Entry<String, Long> scriptFile : scriptFiles.entrySet()) {
+            String relativeScriptFileName = scriptFile.getKey();
+            scripts.add(createScript(root.resolve(relativeScriptFileName).toFile(), relativeScriptFileName, scriptFile.getValue()));
+        }
         return scripts;
     }
 
+    /**
+     * Directories are scanned concurrently. Scanning is mostly waiting for the file system, e.g. on a network share,
+     * so more threads than processors are used.
+     *
+     * @return The nr of threads that are used to scan the directories of the location
+     */
+    protected int getNrOfScanThreads() {
+        return Math.max(4, Runtime.getRuntime().availableProcessors());
+    }
 
     /**
-     * Adds all scripts available in the given directory or one of its subdirectories to the given set of files. Recursively
-     * invokes itself to handle subdirectories.
+     * Gets the attributes of a file with a single call to the file system. Symbolic links are followed.
      *
-     * @param scripts          aggregates the scripts found up until now during recursion.
-     * @param scriptRoot       the root script directory
-     * @param relativeLocation the subdirectory in which we are now looking for scripts
+     * @param path The file, not null
+     * @return The attributes, not null
      */
-    protected void getScriptsAt(SortedSet<Script> scripts, String scriptRoot, String relativeLocation) {
-        File currentLocation = new File(scriptRoot + "/" + relativeLocation);
-        if (currentLocation.isFile() && isScriptFileName(currentLocation.getName())) {
-            Script script = createScript(currentLocation, relativeLocation);
-            scripts.add(script);
-            return;
+    protected BasicFileAttributes readAttributes(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            throw new DbMaintainException("Unable to read attributes of file " + path, e);
         }
-        // recursively scan sub folders for script files
-        if (currentLocation.isDirectory()) {
-            for (File subLocation : currentLocation.listFiles()) {
-                getScriptsAt(scripts, scriptRoot, "".equals(relativeLocation) ? subLocation.getName() : relativeLocation + '/' + subLocation.getName());
+    }
+
+
+    /**
+     * Finds all script files in a directory and its subdirectories. The subdirectories are scanned by forked tasks.
+     * The result contains the last modification time of each script file, by file name relative to the root of the location.
+     */
+    protected class ScanDirectoryTask extends RecursiveTask<Map<String, Long>> {
+
+        /* The directory to scan */
+        private Path directory;
+        /* The name of the directory relative to the root of the location, empty for the root itself */
+        private String relativeLocation;
+
+        public ScanDirectoryTask(Path directory, String relativeLocation) {
+            this.directory = directory;
+            this.relativeLocation = relativeLocation;
+        }
+
+        @Override
+        protected Map<String, Long> compute() {
+            Map<String, Long> scriptFiles = new HashMap<>();
+            List<ScanDirectoryTask> subDirectoryTasks = new ArrayList<>();
+            try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory)) {
+                for (Path path : directoryStream) {
+                    String fileName = path.getFileName().toString();
+                    String relativeFileName = relativeLocation.isEmpty() ? fileName : relativeLocation + '/' + fileName;
+                    BasicFileAttributes attributes = readAttributes(path);
+                    if (attributes.isDirectory()) {
+                        ScanDirectoryTask subDirectoryTask = new ScanDirectoryTask(path, relativeFileName);
+                        subDirectoryTask.fork();
+                        subDirectoryTasks.add(subDirectoryTask);
+                    } else if (attributes.isRegularFile() && isScriptFileName(fileName)) {
+                        scriptFiles.put(relativeFileName, attributes.lastModifiedTime().toMillis());
+                    }
+                }
+            } catch (IOException e) {
+                throw new DbMaintainException("Unable to read the content of directory " + directory, e);
+            }
+            for (ScanDirectoryTask subDirectoryTask : subDirectoryTasks) {
+                scriptFiles.putAll(subDirectoryTask.join());
             }
+            return scriptFiles;
         }
     }
 
+    /**
+     * Loads the check sum cache and attaches it to the content handles of all scripts.
+     *
+     * @param checkSumCacheFile The file in which the check sums are cached, not null
+     */
+    protected void initCheckSumCache(File checkSumCacheFile) {
+        checkSumCache = new CheckSumCache(checkSumCacheFile);
+        for (Script script : scripts) {
+            ScriptContentHandle scriptContentHandle = script.getScriptContentHandle();
+            if (scriptContentHandle instanceof ScriptContentHandle.FileScriptContentHandle) {
+                ((ScriptContentHandle.FileScriptContentHandle) scriptContentHandle).setCheckSumCache(checkSumCache, script.getFileName());
+            }
+        }
+    }
+
+    /**
+     * Stores the check sum cache, if enabled. Entries of scripts that no longer exist are removed.
+     */
+    @Override
+    public void close() {
+        if (checkSumCache == null) {
+            return;
+        }
+        List<String> scriptNames = new ArrayList<>(scripts.size());
+        for (Script script : scripts) {
+            scriptNames.add(script.getFileName());
+        }
+        checkSumCache.retainScripts(scriptNames);
+        checkSumCache.store();
+    }
+
+
     /**
      * Creates a script object for the given script file
      *
@@ -145,8 +309,19 @@ public class FileSystemScriptLocation extends ScriptLocation {
      * @return The script, not null
      */
     protected Script createScript(File scriptFile, String relativeScriptFileName) {
-        Long fileLastModifiedAt = scriptFile.lastModified();
-        ScriptContentHandle scriptContentHandle = new ScriptContentHandle.UrlScriptContentHandle(FileUtils.getUrl(scriptFile), scriptEncoding, ignoreCarriageReturnsWhenCalculatingCheckSum);
+        return createScript(scriptFile, relativeScriptFileName, scriptFile.lastModified());
+    }
+
+    /**
+     * Creates a script object for the given script file
+     *
+     * @param scriptFile             the script file, not null
+     * @param relativeScriptFileName the name of the script file relative to the root scripts dir, not null
+     * @param fileLastModifiedAt     the time when the script file was last modified (in ms)
+     * @return The script, not null
+     */
+    protected Script createScript(File scriptFile, String relativeScriptFileName, long fileLastModifiedAt) {
+        ScriptContentHandle scriptContentHandle = new ScriptContentHandle.FileScriptContentHandle(scriptFile, scriptEncoding, ignoreCarriageReturnsWhenCalculatingCheckSum);
         return scriptFactory.createScriptWithContent(relativeScriptFileName, fileLastModifiedAt, scriptContentHandle);
     }
 
@@ -0,0 +1,169 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.repository.impl;
+
+import org.dbmaintain.util.DbMaintainException;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+
+import static org.apache.commons.io.IOUtils.closeQuietly;
+import static org.apache.commons.io.IOUtils.toByteArray;
+
+/**
+ * Shared access to the entries of a script archive. The archive is opened once and all entries are read through
+ * the same {@link JarFile}, which can be used by multiple threads at the same time. Small entries are kept in memory
+ * once they are inflated, as long as the total size of the kept entries stays within a budget, so that a script that
+ * is read more than once is only inflated once.
+ * <p/>
+ * After {@link #close()} the archive file and the kept entries are released. The archive is opened again when an
+ * entry is requested afterwards.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ScriptArchiveHandle {
+
+    /* The default max total nr of bytes of the entries that are kept in memory */
+    public static final long DEFAULT_CACHE_SIZE = 16 * 1024 * 1024;
+    /* The default max nr of bytes of a single entry that is kept in memory */
+    public static final long DEFAULT_MAX_CACHED_ENTRY_SIZE = 256 * 1024;
+
+    /* The archive file, not null */
+    protected File archiveFile;
+    /* The max total nr of bytes of the entries that are kept in memory */
+    protected long cacheSize;
+    /* The max nr of bytes of a single entry that is kept in memory */
+    protected long maxCachedEntrySize;
+
+    /* The opened archive, null if not opened or closed */
+    protected JarFile jarFile;
+    /* The inflated entries that are kept in memory, per entry name */
+    protected Map<String, byte[]> cachedEntries = new HashMap<>();
+    /* The total nr of bytes of the entries that are kept in memory */
+    protected long cachedEntriesSize;
+
+
+    /**
+     * Creates a handle with the default cache sizes.
+     *
+     * @param archiveFile The archive file, not null
+     */
+    public ScriptArchiveHandle(File archiveFile) {
+        this(archiveFile, DEFAULT_CACHE_SIZE, DEFAULT_MAX_CACHED_ENTRY_SIZE);
+    }
+
+    /**
+     * @param archiveFile        The archive file, not null
+     * @param cacheSize          The max total nr of bytes of the entries that are kept in memory, 0 to disable caching
+     * @param maxCachedEntrySize The max nr of bytes of a single entry that is kept in memory
+     */
+    public ScriptArchiveHandle(File archiveFile, long cacheSize, long maxCachedEntrySize) {
+        this.archiveFile = archiveFile;
+        this.cacheSize = cacheSize;
+        this.maxCachedEntrySize = maxCachedEntrySize;
+    }
+
+
+    /**
+     * @return The opened archive, not null
+     */
+    public synchronized JarFile getJarFile() {
+        if (jarFile == null) {
+            try {
+                jarFile = new JarFile(archiveFile);
+            } catch (IOException e) {
+                throw new DbMaintainException("Error opening jar file " + archiveFile, e);
+            }
+        }
+        return jarFile;
+    }
+
+    /**
+     * @param entryName The name of the entry, not null
+     * @return The entry, null if the archive does not contain the entry
+     */
+    public ZipEntry getEntry(String entryName) {
+        return getJarFile().getEntry(entryName);
+    }
+
+    /**
+     * Opens a stream to the inflated content of the given entry. If the entry is small enough it is kept in memory
+     * and later calls for the same entry no longer access the archive.
+     * <p/>
+     * NOTE: do not forget to close the stream after usage.
+     *
+     * @param entryName The name of the entry, not null
+     * @return The stream, not null
+     * @throws DbMaintainException if the archive does not contain the entry
+     */
+    public InputStream getInputStream(String entryName) throws IOException {
+        byte[] content = getCachedEntry(entryName);
+        if (content != null) {
+            return new ByteArrayInputStream(content);
+        }
+        JarFile jarFile = getJarFile();
+        ZipEntry entry = jarFile.getEntry(entryName);
+        if (entry == null) {
+            throw new DbMaintainException("Jar file " + archiveFile + " does not contain entry " + entryName);
+        }
+        long size = entry.getSize();
+        if (size < 0 || size > maxCachedEntrySize || !hasCacheSpaceFor(size)) {
+            return jarFile.getInputStream(entry);
+        }
+        InputStream entryInputStream = jarFile.getInputStream(entry);
+        try {
+            content = toByteArray(entryInputStream);
+        } finally {
+            closeQuietly(entryInputStream);
+        }
+        putCachedEntry(entryName, content);
+        return new ByteArrayInputStream(content);
+    }
+
+    /**
+     * Closes the archive and releases the entries that are kept in memory.
+     */
+    public synchronized void close() {
+        closeQuietly(jarFile);
+        jarFile = null;
+        cachedEntries.clear();
+        cachedEntriesSize = 0;
+    }
+
+
+    protected synchronized byte[] getCachedEntry(String entryName) {
+        return cachedEntries.get(entryName);
+    }
+
+    protected synchronized boolean hasCacheSpaceFor(long size) {
+        return cachedEntriesSize + size <= cacheSize;
+    }
+
+    protected synchronized void putCachedEntry(String entryName, byte[] content) {
+        if (cachedEntries.containsKey(entryName) || !hasCacheSpaceFor(content.length)) {
+            return;
+        }
+        cachedEntries.put(entryName, content);
+        cachedEntriesSize += content.length;
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.repository.impl;
+
+import org.dbmaintain.script.Script;
+import org.dbmaintain.script.ScriptContentHandle;
+import org.dbmaintain.script.ScriptFactory;
+import org.dbmaintain.script.executedscriptinfo.ScriptIndexes;
+import org.dbmaintain.script.qualifier.Qualifier;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.*;
+
+import static org.apache.commons.lang3.StringUtils.isEmpty;
+import static org.apache.commons.lang3.StringUtils.join;
+import static org.apache.commons.lang3.StringUtils.split;
+
+/**
+ * Metadata of the scripts in a script archive, as it was derived when the archive was created: the check sum, the
+ * size and everything that is parsed from the file name of a script. This way an archive can be loaded without
+ * parsing all file names and without decompressing every script for calculating its check sum.
+ * <p/>
+ * The manifest also holds the configuration that was used for deriving the metadata. The metadata is only valid
+ * if the archive is loaded with exactly the same configuration.
+ * <p/>
+ * In a deduplicated archive, every distinct script content is stored only once, in an entry below
+ * {@link #CONTENT_DIRNAME} that is named after the SHA-256 digest of the content. The manifest then maps the file name
+ * of every script to its content entry. Such an archive can only be read using its manifest.
+ * <p/>
+ * In a delta archive, the content of scripts that did not change since a previous archive is left out. For these
+ * scripts the manifest only holds the check sum and the metadata, which is enough for analyzing the script updates of
+ * a database that was updated with the previous archive.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ScriptArchiveManifest {
+
+    /* The name of the entry in the archive that contains the manifest */
+    public static final String MANIFEST_FILENAME = "META-INF/dbmaintain-scripts.properties";
+    /* The folder in a deduplicated archive that contains the distinct script contents */
+    public static final String CONTENT_DIRNAME = "META-INF/dbmaintain-content/";
+
+    private static final String CONFIGURATION_PREFIX = "configuration.";
+    private static final String SCRIPT_PREFIX = "script.";
+
+    /* The configuration that was used for deriving the metadata */
+    protected Properties configuration;
+    /* The metadata per script file name */
+    protected Map<String, Entry> entries = new HashMap<>();
+
+
+    /**
+     * @param configuration The configuration that is used for deriving the metadata, not null
+     */
+    public ScriptArchiveManifest(Properties configuration) {
+        this.configuration = configuration;
+    }
+
+
+    /**
+     * Reads a manifest that was written using {@link #store}.
+     *
+     * @param inputStream The stream to the manifest, not null
+     * @return The manifest, not null
+     */
+    public static ScriptArchiveManifest load(InputStream inputStream) throws IOException {
+        Properties properties = new Properties();
+        properties.load(inputStream);
+
+        Properties configuration = new Properties();
+        for (String propertyName : properties.stringPropertyNames()) {
+            if (propertyName.startsWith(CONFIGURATION_PREFIX)) {
+                configuration.setProperty(propertyName.substring(CONFIGURATION_PREFIX.length()), properties.getProperty(propertyName));
+            }
+        }
+        ScriptArchiveManifest manifest = new ScriptArchiveManifest(configuration);
+        for (int i = 0; properties.containsKey(SCRIPT_PREFIX + i + ".fileName"); i++) {
+            String prefix = SCRIPT_PREFIX + i + ".";
+            Entry entry = new Entry();
+            entry.fileName = properties.getProperty(prefix + "fileName");
+            entry.checkSum = properties.getProperty(prefix + "checkSum");
+            entry.size = Long.parseLong(properties.getProperty(prefix + "size"));
+            entry.scriptIndexes = properties.getProperty(prefix + "indexes", "");
+            entry.targetDatabaseName = properties.getProperty(prefix + "targetDatabase");
+            entry.qualifierNames = properties.getProperty(prefix + "qualifiers", "");
+            entry.postProcessingScript = Boolean.parseBoolean(properties.getProperty(prefix + "postProcessing"));
+            entry.patchScript = Boolean.parseBoolean(properties.getProperty(prefix + "patch"));
+            entry.ignored = Boolean.parseBoolean(properties.getProperty(prefix + "ignored"));
+            entry.contentEntryName = properties.getProperty(prefix + "content");
+            entry.contentOmitted = Boolean.parseBoolean(properties.getProperty(prefix + "omitted"));
+            String lastModified = properties.getProperty(prefix + "lastModified");
+            entry.lastModified = lastModified == null ? null : Long.valueOf(lastModified);
+            manifest.entries.put(entry.fileName, entry);
+        }
+        return manifest;
+    }
+
+    /**
+     * Writes the manifest to the given stream. The entries are written in order of file name.
+     *
+     * @param outputStream The stream, not null
+     */
+    public void store(OutputStream outputStream) throws IOException {
+        Properties properties = new Properties();
+        for (String propertyName : configuration.stringPropertyNames()) {
+            properties.setProperty(CONFIGURATION_PREFIX + propertyName, configuration.getProperty(propertyName));
+        }
+        int i = 0;
+        for (Entry entry : new TreeMap<>(entries).values()) {
+            String prefix = SCRIPT_PREFIX + i++ + ".";
+            properties.setProperty(prefix + "fileName", entry.fileName);
+            properties.setProperty(prefix + "checkSum", entry.checkSum);
+            properties.setProperty(prefix + "size", Long.toString(entry.size));
+            properties.setProperty(prefix + "indexes", entry.scriptIndexes);
+            if (entry.targetDatabaseName != null) {
+                properties.setProperty(prefix + "targetDatabase", entry.targetDatabaseName);
+            }
+            properties.setProperty(prefix + "qualifiers", entry.qualifierNames);
+            properties.setProperty(prefix + "postProcessing", Boolean.toString(entry.postProcessingScript));
+            properties.setProperty(prefix + "patch", Boolean.toString(entry.patchScript));
+            properties.setProperty(prefix + "ignored", Boolean.toString(entry.ignored));
+            if (entry.contentEntryName != null) {
+                properties.setProperty(prefix + "content", entry.contentEntryName);
+            }
+            if (entry.contentOmitted) {
+                properties.setProperty(prefix + "omitted", "true");
+            }
+            if (entry.lastModified != null) {
+                properties.setProperty(prefix + "lastModified", Long.toString(entry.lastModified));
+            }
+        }
+        properties.store(outputStream, null);
+    }
+
+
+    /**
+     * @param script   The script, not null
+     * @param checkSum The check sum of the script content as stored in the archive, not null
+     * @param size     The nr of bytes of the script content as stored in the archive
+     */
+    public void addScript(Script script, String checkSum, long size) {
+        addScript(script, checkSum, size, null);
+    }
+
+    /**
+     * @param script           The script, not null
+     * @param checkSum         The check sum of the script content as stored in the archive, not null
+     * @param size             The nr of bytes of the script content as stored in the archive
+     * @param contentEntryName The name of the archive entry with the content of the script, null if the entry has the file name of the script
+     */
+    public void addScript(Script script, String checkSum, long size, String contentEntryName) {
+        Entry entry = createEntry(script, checkSum, size);
+        if (contentEntryName != null) {
+            entry.contentEntryName = contentEntryName;
+            entry.lastModified = script.getFileLastModifiedAt();
+        }
+        entries.put(entry.fileName, entry);
+    }
+
+    /**
+     * Adds a script of which the content is not stored in the archive.
+     *
+     * @param script   The script, not null
+     * @param checkSum The check sum of the script content as it would have been stored in the archive, not null
+     * @param size     The nr of bytes of the script content as it would have been stored in the archive
+     */
+    public void addOmittedScript(Script script, String checkSum, long size) {
+        Entry entry = createEntry(script, checkSum, size);
+        entry.contentOmitted = true;
+        entry.lastModified = script.getFileLastModifiedAt();
+        entries.put(entry.fileName, entry);
+    }
+
+    protected Entry createEntry(Script script, String checkSum, long size) {
+        Entry entry = new Entry();
+        entry.fileName = script.getFileName();
+        entry.checkSum = checkSum;
+        entry.size = size;
+        entry.scriptIndexes = script.getScriptIndexes().getIndexesString();
+        entry.targetDatabaseName = script.getTargetDatabaseName();
+        entry.qualifierNames = toQualifierNames(script.getQualifiers());
+        entry.postProcessingScript = script.isPostProcessingScript();
+        entry.patchScript = script.isPatchScript();
+        entry.ignored = script.isIgnored();
+        return entry;
+    }
+
+    /**
+     * @param fileName The file name of the script, not null
+     * @return The metadata of the script, null if the script is not in the manifest
+     */
+    public Entry getEntry(String fileName) {
+        return entries.get(fileName);
+    }
+
+    /**
+     * @return The file names of all scripts in the manifest, not null
+     */
+    public Set<String> getFileNames() {
+        return entries.keySet();
+    }
+
+    /**
+     * @param configuration The configuration with which the archive is loaded, not null
+     * @return True if the metadata was derived using the given configuration
+     */
+    public boolean isConfigurationEqualTo(Properties configuration) {
+        return this.configuration.equals(configuration);
+    }
+
+    /**
+     * @param propertyName The name of the configuration property, not null
+     * @return The value of the property in the configuration that was used for deriving the metadata, null if not set
+     */
+    public String getConfigurationProperty(String propertyName) {
+        return configuration.getProperty(propertyName);
+    }
+
+    /**
+     * @return True if the content of some of the scripts is not stored in the archive
+     */
+    public boolean isDelta() {
+        for (Entry entry : entries.values()) {
+            if (entry.contentOmitted) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return True if the script contents are stored in content entries instead of in entries named after the scripts
+     */
+    public boolean isDeduplicated() {
+        for (Entry entry : entries.values()) {
+            if (entry.contentEntryName != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    protected static String toQualifierNames(Set<Qualifier> qualifiers) {
+        List<String> qualifierNames = new ArrayList<>();
+        for (Qualifier qualifier : qualifiers) {
+            qualifierNames.add(qualifier.getQualifierName());
+        }
+        Collections.sort(qualifierNames);
+        return join(qualifierNames, ',');
+    }
+
+
+    /**
+     * The metadata of a single script.
+     */
+    public static class Entry {
+
+        protected String fileName;
+        protected String checkSum;
+        protected long size;
+        protected String scriptIndexes;
+        protected String targetDatabaseName;
+        protected String qualifierNames;
+        protected boolean postProcessingScript;
+        protected boolean patchScript;
+        protected boolean ignored;
+        protected String contentEntryName;
+        protected boolean contentOmitted;
+        protected Long lastModified;
+
+
+        /**
+         * @return The name of the archive entry that contains the content of the script, not null
+         */
+        public String getEntryName() {
+            return contentEntryName == null ? fileName : contentEntryName;
+        }
+
+        /**
+         * @return True if the content of the script is not stored in the archive
+         */
+        public boolean isContentOmitted() {
+            return contentOmitted;
+        }
+
+        /**
+         * @return The time when the script was last modified (in ms), null if the jar entry of the script holds this time
+         */
+        public Long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return The check sum of the script content as stored in the archive, prefixed with the algorithm name, not null
+         */
+        public String getCheckSum() {
+            return checkSum;
+        }
+
+        /**
+         * @return The nr of bytes of the script content as stored in the archive
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Creates the script using the metadata instead of parsing its file name.
+         * <p/>
+         * The check sum of the manifest is offered to the content handle, which keeps check sums per algorithm: it is
+         * only reused if a check sum with the same algorithm prefix is requested. The algorithms of the handle are
+         * only configured after the script is created, so the check sum of an archive that was created with another
+         * algorithm is ignored and calculated again when it is needed, instead of being registered as is.
+         *
+         * @param scriptFactory       The factory that shares the qualifiers and target database names, not null
+         * @param fileLastModifiedAt  The time when the script was last modified (in ms), not null
+         * @param scriptContentHandle The handle to the content in the archive, not null
+         * @return The script, not null
+         */
+        public Script createScript(ScriptFactory scriptFactory, Long fileLastModifiedAt, ScriptContentHandle scriptContentHandle) {
+            List<String> qualifierNameList = isEmpty(qualifierNames) ? Collections.<String>emptyList() : Arrays.asList(split(qualifierNames, ','));
+            scriptContentHandle.setCheckSum(checkSum);
+            return scriptFactory.createScriptWithMetadata(fileName, new ScriptIndexes(scriptIndexes), targetDatabaseName, qualifierNameList, postProcessingScript, patchScript, ignored,
+                    fileLastModifiedAt, scriptContentHandle);
+        }
+
+        /**
+         * @param script The script, not null
+         * @return True if the metadata that is parsed from the file name of the given script equals this metadata
+         */
+        public boolean isMetadataEqualTo(Script script) {
+            return fileName.equals(script.getFileName())
+                    && scriptIndexes.equals(script.getScriptIndexes().getIndexesString())
+                    && (targetDatabaseName == null ? script.getTargetDatabaseName() == null : targetDatabaseName.equals(script.getTargetDatabaseName()))
+                    && qualifierNames.equals(toQualifierNames(script.getQualifiers()))
+                    && postProcessingScript == script.isPostProcessingScript()
+                    && patchScript == script.isPatchScript()
+                    && ignored == script.isIgnored();
+        }
+    }
+}
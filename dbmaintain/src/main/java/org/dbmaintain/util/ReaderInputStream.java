@@ -34,4 +34,31 @@ public class ReaderInputStream extends InputStream {
         return reader.read();
     }
 
+    /**
+     * Reads a block of chars at once. Every char is narrowed to a byte, in the same way as the default implementation
+     * of {@link InputStream#read(byte[], int, int)}. Unlike {@link #read()}, which returns the complete char value,
+     * chars above U+00FF therefore lose their high byte, e.g. U+010D becomes a carriage return. Checks on specific
+     * chars have to be done on the chars of the reader instead of on these bytes.
+     */
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        char[] chars = new char[length];
+        int nrOfChars = reader.read(chars, 0, length);
+        if (nrOfChars == -1) {
+            return -1;
+        }
+        for (int i = 0; i < nrOfChars; i++) {
+            bytes[offset + i] = (byte) chars[i];
+        }
+        return nrOfChars;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain;
+
+import org.dbmaintain.database.Database;
+import org.dbmaintain.database.impl.DefaultSQLHandler;
+import org.dbmaintain.script.ExecutedScript;
+import org.dbmaintain.script.Script;
+import org.dbmaintain.script.analyzer.ScriptUpdatesFormatter;
+import org.dbmaintain.script.checksum.CheckSumAlgorithms;
+import org.dbmaintain.script.checksum.impl.Crc32CheckSumAlgorithm;
+import org.dbmaintain.script.runner.ScriptRunner;
+import org.dbmaintain.util.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.unitils.UnitilsJUnit4;
+import org.unitils.mock.Mock;
+
+import java.util.Date;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.dbmaintain.util.SQLTestUtils.executeUpdateQuietly;
+import static org.dbmaintain.util.SQLTestUtils.getItemAsString;
+import static org.dbmaintain.util.TestUtils.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests replacing the registered check sums of another algorithm by check sums of the configured algorithm.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DefaultDbMaintainerCheckSumMigrationTest extends UnitilsJUnit4 {
+
+    protected Mock<ScriptRunner> scriptRunner;
+
+    private Database defaultDatabase;
+    private DefaultSQLHandler sqlHandler;
+    private Script script1;
+    private Script script2;
+
+
+    @Before
+    public void initialize() {
+        defaultDatabase = TestUtils.getDatabases().getDefaultDatabase();
+        sqlHandler = new DefaultSQLHandler();
+        script1 = createScriptWithContent("01_script1.sql", "content of script 1");
+        script2 = createScriptWithContent("02_script2.sql", "content of script 2");
+        // the check sums are known, e.g. because the scripts were read before
+        script1.getCheckSum();
+        script2.getCheckSum();
+        cleanUp();
+    }
+
+    @After
+    public void cleanUp() {
+        sqlHandler.closeAllConnections();
+        executeUpdateQuietly("drop table dbmaintain_scripts", defaultDatabase.getDataSource());
+    }
+
+
+    @Test
+    public void checkSumsOfOtherAlgorithmAreReplaced() {
+        registerExecutedScript("01_script1.sql", CheckSumAlgorithms.getValue(script1.getCheckSum()));
+        registerExecutedScript("02_script2.sql", script2.getCheckSum(Crc32CheckSumAlgorithm.NAME));
+
+        boolean updated = createDefaultDbMaintainer().updateDatabase(false);
+
+        assertFalse(updated);
+        // an unprefixed legacy check sum is not rewritten, it is a check sum of the same algorithm
+        assertEquals(CheckSumAlgorithms.getValue(script1.getCheckSum()), getRegisteredCheckSum("01_script1.sql"));
+        assertEquals(script2.getCheckSum(), getRegisteredCheckSum("02_script2.sql"));
+    }
+
+
+    private void registerExecutedScript(String fileName, String checkSum) {
+        getDefaultExecutedScriptInfoSource(defaultDatabase, true, sqlHandler).registerExecutedScript(new ExecutedScript(createScriptWithCheckSum(fileName, checkSum), new Date(), true));
+    }
+
+    private String getRegisteredCheckSum(String fileName) {
+        return getItemAsString("select checksum from dbmaintain_scripts where file_name = '" + fileName + "'", defaultDatabase.getDataSource());
+    }
+
+    private DefaultDbMaintainer createDefaultDbMaintainer() {
+        SortedSet<Script> scripts = new TreeSet<Script>();
+        scripts.add(script1);
+        scripts.add(script2);
+        return new DefaultDbMaintainer(scriptRunner.getMock(), getScriptRepository(scripts), getDefaultExecutedScriptInfoSource(defaultDatabase, true, sqlHandler), false, false, false,
+                false, false, false, null, null, null, null, new ScriptUpdatesFormatter(), sqlHandler, 0, null, false, 1, false, null);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain;
+
+import org.dbmaintain.database.Database;
+import org.dbmaintain.database.impl.DefaultSQLHandler;
+import org.dbmaintain.script.ExecutedScript;
+import org.dbmaintain.script.Script;
+import org.dbmaintain.script.analyzer.ScriptUpdatesFormatter;
+import org.dbmaintain.script.runner.ScriptRunner;
+import org.dbmaintain.util.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.unitils.UnitilsJUnit4;
+import org.unitils.mock.Mock;
+
+import java.util.Date;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.dbmaintain.util.SQLTestUtils.executeUpdateQuietly;
+import static org.dbmaintain.util.TestUtils.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests an update after a run that was killed while a script was executed. The execution of the script was registered
+ * before the script was read, so no check sum was registered.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DefaultDbMaintainerMissingCheckSumTest extends UnitilsJUnit4 {
+
+    protected Mock<ScriptRunner> scriptRunner;
+
+    private Database defaultDatabase;
+    private DefaultSQLHandler sqlHandler;
+    private SortedSet<Script> scripts;
+
+
+    @Before
+    public void initialize() {
+        defaultDatabase = TestUtils.getDatabases().getDefaultDatabase();
+        sqlHandler = new DefaultSQLHandler();
+        scripts = new TreeSet<Script>();
+        scripts.add(createScriptWithContent("01_script.sql", "content of script"));
+
+        cleanUp();
+        // the run was killed after registering the execution
+        getDefaultExecutedScriptInfoSource(defaultDatabase, true, sqlHandler).registerExecutedScript(new ExecutedScript(createScriptWithContent("01_script.sql", "content of script"), new Date(), false));
+    }
+
+    @After
+    public void cleanUp() {
+        sqlHandler.closeAllConnections();
+        executeUpdateQuietly("drop table dbmaintain_scripts", defaultDatabase.getDataSource());
+    }
+
+
+    @Test
+    public void checkSumIsRegisteredAfterMarkingErrorScriptAsPerformed() {
+        assertNull(getDefaultExecutedScriptInfoSource(defaultDatabase, true, sqlHandler).getExecutedScripts().first().getScript().getCheckSum());
+        getDefaultExecutedScriptInfoSource(defaultDatabase, true, sqlHandler).markErrorScriptsAsSuccessful();
+
+        boolean updated = createDefaultDbMaintainer().updateDatabase(false);
+
+        assertFalse(updated);
+        ExecutedScript executedScript = getDefaultExecutedScriptInfoSource(defaultDatabase, true, sqlHandler).getExecutedScripts().first();
+        assertTrue(executedScript.isSuccessful());
+        assertEquals(scripts.first().getCheckSum(), executedScript.getScript().getCheckSum());
+        scriptRunner.assertNotInvoked().execute(null);
+    }
+
+    @Test
+    public void scriptWithMissingCheckSumIsNoIrregularUpdateInDryRun() {
+        getDefaultExecutedScriptInfoSource(defaultDatabase, true, sqlHandler).markErrorScriptsAsSuccessful();
+
+        boolean updated = createDefaultDbMaintainer().updateDatabase(true);
+
+        assertFalse(updated);
+        assertNull(getDefaultExecutedScriptInfoSource(defaultDatabase, true, sqlHandler).getExecutedScripts().first().getScript().getCheckSum());
+    }
+
+
+    private DefaultDbMaintainer createDefaultDbMaintainer() {
+        return new DefaultDbMaintainer(scriptRunner.getMock(), getScriptRepository(scripts), getDefaultExecutedScriptInfoSource(defaultDatabase, true, sqlHandler), false, false, false,
+                false, false, false, null, null, null, null, new ScriptUpdatesFormatter(), sqlHandler, 0, null, false, 1, false, null);
+    }
+}
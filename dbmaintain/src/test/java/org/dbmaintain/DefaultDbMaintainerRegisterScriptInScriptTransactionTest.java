@@ -0,0 +1,110 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain;
+
+import org.dbmaintain.database.Database;
+import org.dbmaintain.database.Databases;
+import org.dbmaintain.database.impl.DefaultSQLHandler;
+import org.dbmaintain.script.ExecutedScript;
+import org.dbmaintain.script.Script;
+import org.dbmaintain.script.parser.ScriptParserFactory;
+import org.dbmaintain.script.parser.impl.DefaultScriptParserFactory;
+import org.dbmaintain.script.runner.impl.JdbcScriptRunner;
+import org.dbmaintain.util.DbMaintainException;
+import org.dbmaintain.util.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.dbmaintain.util.SQLTestUtils.*;
+import static org.dbmaintain.util.TestUtils.createScriptWithContent;
+import static org.dbmaintain.util.TestUtils.getDefaultExecutedScriptInfoSource;
+import static org.junit.Assert.*;
+
+/**
+ * Tests executing scripts that are registered in the same transaction in which they are executed.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DefaultDbMaintainerRegisterScriptInScriptTransactionTest {
+
+    /* The tested object */
+    private DefaultDbMaintainer defaultDbMaintainer;
+
+    private Database defaultDatabase;
+    private DataSource dataSource;
+    private DefaultSQLHandler sqlHandler;
+
+
+    @Before
+    public void initialize() {
+        Databases databases = TestUtils.getDatabases();
+        defaultDatabase = databases.getDefaultDatabase();
+        dataSource = defaultDatabase.getDataSource();
+        sqlHandler = new DefaultSQLHandler();
+
+        Map<String, ScriptParserFactory> databaseDialectScriptParserFactoryMap = new HashMap<String, ScriptParserFactory>();
+        databaseDialectScriptParserFactoryMap.put("hsqldb", new DefaultScriptParserFactory(false, null));
+        JdbcScriptRunner scriptRunner = new JdbcScriptRunner(databaseDialectScriptParserFactoryMap, databases, sqlHandler);
+        defaultDbMaintainer = new DefaultDbMaintainer(scriptRunner, null, getDefaultExecutedScriptInfoSource(defaultDatabase, true, sqlHandler), false, false, false, false, false, false,
+                null, null, null, null, null, sqlHandler, 0, null, false, 1, true, dataSource);
+
+        cleanUp();
+        executeUpdate("create table test_table (value integer)", dataSource);
+    }
+
+    @After
+    public void cleanUp() {
+        sqlHandler.closeAllConnections();
+        executeUpdateQuietly("drop table test_table", dataSource);
+        executeUpdateQuietly("drop table dbmaintain_scripts", dataSource);
+    }
+
+
+    @Test
+    public void scriptAndRegistrationAreCommittedTogether() {
+        Script script = createScriptWithContent("01_insert.sql", "insert into test_table values (1);");
+
+        defaultDbMaintainer.executeScript(script);
+
+        ExecutedScript executedScript = getDefaultExecutedScriptInfoSource(defaultDatabase, true, sqlHandler).getExecutedScripts().first();
+        assertEquals("01_insert.sql", executedScript.getScript().getFileName());
+        assertTrue(executedScript.isSuccessful());
+        assertFalse(isEmpty("test_table", dataSource));
+    }
+
+    @Test
+    public void failedScriptIsRolledBackAndRegisteredAsFailed() {
+        Script script = createScriptWithContent("01_insert.sql", "insert into test_table values (1);\ninsert into xxxx values (1);");
+        try {
+            defaultDbMaintainer.executeScript(script);
+            fail("Expected DbMaintainException");
+        } catch (DbMaintainException e) {
+            // expected
+        }
+
+        ExecutedScript executedScript = getDefaultExecutedScriptInfoSource(defaultDatabase, true, sqlHandler).getExecutedScripts().first();
+        assertEquals("01_insert.sql", executedScript.getScript().getFileName());
+        assertFalse(executedScript.isSuccessful());
+        assertEquals(script.getCheckSum(), executedScript.getScript().getCheckSum());
+        assertTrue(isEmpty("test_table", dataSource));
+    }
+}
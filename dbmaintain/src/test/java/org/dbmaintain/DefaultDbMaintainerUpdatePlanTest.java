@@ -0,0 +1,103 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain;
+
+import org.dbmaintain.database.impl.DefaultSQLHandler;
+import org.dbmaintain.script.ExecutedScript;
+import org.dbmaintain.script.Script;
+import org.dbmaintain.script.ScriptFactory;
+import org.dbmaintain.script.analyzer.ScriptUpdatesFormatter;
+import org.dbmaintain.script.runner.ScriptRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.unitils.UnitilsJUnit4;
+import org.unitils.mock.Mock;
+
+import java.util.Date;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.dbmaintain.util.TestUtils.*;
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that the executed scripts are scanned a fixed nr of times during an update: the update plan is created
+ * once for every update and shared by all steps of that update.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DefaultDbMaintainerUpdatePlanTest extends UnitilsJUnit4 {
+
+    protected Mock<ScriptRunner> scriptRunner;
+
+    private ScriptFactory scriptFactory = createScriptFactory();
+    private SortedSet<Script> scripts;
+    private CountingSet executedScripts;
+
+
+    @Before
+    public void initialize() {
+        scripts = new TreeSet<Script>();
+        executedScripts = new CountingSet();
+        for (int i = 1; i <= 10; i++) {
+            Script script = script(i + "_script.sql");
+            scripts.add(script);
+            executedScripts.add(new ExecutedScript(script, new Date(), true));
+        }
+    }
+
+
+    @Test
+    public void planIsNotKeptAcrossCalls() {
+        DefaultDbMaintainer defaultDbMaintainer = createDefaultDbMaintainer();
+        assertFalse(defaultDbMaintainer.updateDatabase(true));
+
+        executedScripts.remove(executedScripts.last());
+        assertTrue(defaultDbMaintainer.updateDatabase(true));
+        assertEquals(1, defaultDbMaintainer.getScriptUpdates().getRegularlyAddedOrModifiedScripts().size());
+    }
+
+    @Test
+    public void nrOfScansDoesNotDependOnNrOfDeletedScripts() {
+        assertEquals(getNrOfScansForDeletedRepeatableScripts(1), getNrOfScansForDeletedRepeatableScripts(50));
+    }
+
+
+    /**
+     * @param nrOfDeletedScripts The nr of repeatable scripts that were executed but no longer exist
+     * @return The nr of times the executed scripts were scanned during the update
+     */
+    private int getNrOfScansForDeletedRepeatableScripts(int nrOfDeletedScripts) {
+        initialize();
+        for (int i = 0; i < nrOfDeletedScripts; i++) {
+            executedScripts.add(new ExecutedScript(script("repeatable" + i + ".sql"), new Date(), true));
+        }
+        executedScripts.resetNrOfIterations();
+
+        createDefaultDbMaintainer().updateDatabase(false);
+        return executedScripts.getNrOfIterations();
+    }
+
+    private Script script(String fileName) {
+        return scriptFactory.createScriptWithoutContent(fileName, 0L, "checksum");
+    }
+
+    private DefaultDbMaintainer createDefaultDbMaintainer() {
+        return new DefaultDbMaintainer(scriptRunner.getMock(), getScriptRepository(scripts), getExecutedScriptInfoSource(executedScripts), false, true, false,
+                false, false, false, null, null, null, null, new ScriptUpdatesFormatter(), new DefaultSQLHandler(), 0, null, false, 1, false, null);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.database.impl;
+
+import org.dbmaintain.util.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.dbmaintain.util.SQLTestUtils.executeUpdate;
+import static org.dbmaintain.util.SQLTestUtils.executeUpdateQuietly;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the prepared statements and nested transactions of the {@link DefaultSQLHandler}.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DefaultSQLHandlerTest {
+
+    /* The tested object */
+    private DefaultSQLHandler defaultSQLHandler;
+
+    private DataSource dataSource;
+
+
+    @Before
+    public void initialize() {
+        dataSource = TestUtils.getDatabases().getDefaultDatabase().getDataSource();
+        defaultSQLHandler = new DefaultSQLHandler();
+
+        executeUpdateQuietly("drop table test_table", dataSource);
+        executeUpdate("create table test_table (name varchar(10), value integer)", dataSource);
+    }
+
+    @After
+    public void cleanUp() {
+        defaultSQLHandler.closeAllConnections();
+        executeUpdateQuietly("drop table test_table", dataSource);
+    }
+
+
+    @Test
+    public void preparedUpdate() throws Exception {
+        defaultSQLHandler.executePreparedUpdateAndCommit("insert into test_table (name, value) values (?, ?)", dataSource, "it's", 1);
+        defaultSQLHandler.executePreparedUpdateAndCommit("insert into test_table (name, value) values (?, ?)", dataSource, null, 2);
+
+        assertEquals(1, defaultSQLHandler.getItemAsLong("select value from test_table where name = 'it''s'", dataSource));
+        assertEquals(2, defaultSQLHandler.getItemAsLong("select value from test_table where name is null", dataSource));
+    }
+
+    @Test
+    public void preparedStatementIsReused() throws Exception {
+        Connection connection = defaultSQLHandler.getConnection(dataSource);
+        String sql = "insert into test_table (name, value) values (?, ?)";
+
+        assertSame(defaultSQLHandler.getPreparedStatement(connection, sql), defaultSQLHandler.getPreparedStatement(connection, sql));
+    }
+
+    @Test
+    public void preparedBatch() {
+        List<Object[]> parameterRows = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            parameterRows.add(new Object[]{"name" + i, i});
+        }
+        int nbChanges = defaultSQLHandler.executePreparedBatchAndCommit("insert into test_table (name, value) values (?, ?)", dataSource, parameterRows);
+
+        assertEquals(2500, nbChanges);
+        assertEquals(2500, defaultSQLHandler.getItemAsLong("select count(*) from test_table", dataSource));
+    }
+
+    @Test
+    public void nestedTransactionIsCommittedWithOuterTransaction() {
+        defaultSQLHandler.startTransaction(dataSource);
+        defaultSQLHandler.startTransaction(dataSource);
+        defaultSQLHandler.executePreparedUpdateAndCommit("insert into test_table (name, value) values (?, ?)", dataSource, "name", 1);
+        defaultSQLHandler.endTransactionAndCommit(dataSource);
+        defaultSQLHandler.executeUpdateAndCommit("insert into test_table (name, value) values ('other', 2)", dataSource);
+        defaultSQLHandler.endTransactionAndRollback(dataSource);
+
+        assertEquals(0, defaultSQLHandler.getItemAsLong("select count(*) from test_table", dataSource));
+    }
+
+    @Test
+    public void updatesAreCommittedAfterTransaction() {
+        defaultSQLHandler.startTransaction(dataSource);
+        defaultSQLHandler.endTransactionAndRollback(dataSource);
+        defaultSQLHandler.executePreparedUpdateAndCommit("insert into test_table (name, value) values (?, ?)", dataSource, "name", 1);
+        defaultSQLHandler.closeAllConnections();
+
+        assertEquals(1, defaultSQLHandler.getItemAsLong("select count(*) from test_table", dataSource));
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static java.util.Arrays.asList;
+import static org.apache.commons.io.FileUtils.deleteDirectory;
+import static org.apache.commons.io.FileUtils.writeStringToFile;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the persistent script check sum cache.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class CheckSumCacheTest {
+
+    private File tempDir;
+    private File cacheFile;
+    private File scriptFile;
+    private long lastModified;
+
+
+    @Before
+    public void initialize() throws IOException {
+        tempDir = Files.createTempDirectory("checksumcache").toFile();
+        cacheFile = new File(tempDir, "checksums.properties");
+        scriptFile = new File(tempDir, "01_script.sql");
+        writeStringToFile(scriptFile, "create table test (id int);", "ISO-8859-1");
+        // make the script old enough to be cached
+        lastModified = (System.currentTimeMillis() / 1000 - 3600) * 1000;
+        scriptFile.setLastModified(lastModified);
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        deleteDirectory(tempDir);
+    }
+
+
+    @Test
+    public void cachedCheckSum() {
+        CheckSumCache checkSumCache = new CheckSumCache(cacheFile);
+        checkSumCache.putCheckSum("01_script.sql", 10, lastModified, "ISO-8859-1", false, "xxx");
+
+        assertEquals("xxx", checkSumCache.getCheckSum("01_script.sql", 10, lastModified, "ISO-8859-1", false));
+    }
+
+    @Test
+    public void changedScriptIsNotCached() {
+        CheckSumCache checkSumCache = new CheckSumCache(cacheFile);
+        checkSumCache.putCheckSum("01_script.sql", 10, lastModified, "ISO-8859-1", false, "xxx");
+
+        assertNull(checkSumCache.getCheckSum("01_script.sql", 11, lastModified, "ISO-8859-1", false));
+        assertNull(checkSumCache.getCheckSum("01_script.sql", 10, lastModified + 1000, "ISO-8859-1", false));
+        assertNull(checkSumCache.getCheckSum("01_script.sql", 10, lastModified, "UTF-8", false));
+        assertNull(checkSumCache.getCheckSum("01_script.sql", 10, lastModified, "ISO-8859-1", true));
+        assertNull(checkSumCache.getCheckSum("02_script.sql", 10, lastModified, "ISO-8859-1", false));
+    }
+
+    @Test
+    public void recentlyModifiedScriptIsNotCached() {
+        CheckSumCache checkSumCache = new CheckSumCache(cacheFile);
+        long now = System.currentTimeMillis();
+        checkSumCache.putCheckSum("01_script.sql", 10, now, "ISO-8859-1", false, "xxx");
+
+        assertNull(checkSumCache.getCheckSum("01_script.sql", 10, now, "ISO-8859-1", false));
+    }
+
+    @Test
+    public void storeAndReload() {
+        CheckSumCache checkSumCache = new CheckSumCache(cacheFile);
+        checkSumCache.putCheckSum("01_script.sql", 10, lastModified, "ISO-8859-1", false, "xxx");
+        checkSumCache.putCheckSum("folder/02_script.sql", 20, lastModified, "UTF-8", true, "yyy");
+        checkSumCache.store();
+
+        CheckSumCache reloadedCheckSumCache = new CheckSumCache(cacheFile);
+        assertEquals("xxx", reloadedCheckSumCache.getCheckSum("01_script.sql", 10, lastModified, "ISO-8859-1", false));
+        assertEquals("yyy", reloadedCheckSumCache.getCheckSum("folder/02_script.sql", 20, lastModified, "UTF-8", true));
+    }
+
+    @Test
+    public void retainScripts() {
+        CheckSumCache checkSumCache = new CheckSumCache(cacheFile);
+        checkSumCache.putCheckSum("01_script.sql", 10, lastModified, "ISO-8859-1", false, "xxx");
+        checkSumCache.putCheckSum("02_script.sql", 20, lastModified, "ISO-8859-1", false, "yyy");
+        checkSumCache.retainScripts(asList("02_script.sql"));
+        checkSumCache.store();
+
+        CheckSumCache reloadedCheckSumCache = new CheckSumCache(cacheFile);
+        assertNull(reloadedCheckSumCache.getCheckSum("01_script.sql", 10, lastModified, "ISO-8859-1", false));
+        assertEquals("yyy", reloadedCheckSumCache.getCheckSum("02_script.sql", 20, lastModified, "ISO-8859-1", false));
+    }
+
+    @Test
+    public void invalidCacheFileIsIgnored() throws IOException {
+        writeStringToFile(cacheFile, "01_script.sql=invalid", "ISO-8859-1");
+
+        CheckSumCache checkSumCache = new CheckSumCache(cacheFile);
+        assertNull(checkSumCache.getCheckSum("01_script.sql", 10, lastModified, "ISO-8859-1", false));
+    }
+
+    @Test
+    public void fileContentHandleUsesCache() {
+        CheckSumCache checkSumCache = new CheckSumCache(cacheFile);
+        ScriptContentHandle.FileScriptContentHandle contentHandle = new ScriptContentHandle.FileScriptContentHandle(scriptFile, "ISO-8859-1", false);
+        contentHandle.setCheckSumCache(checkSumCache, "01_script.sql");
+        String checkSum = contentHandle.getCheckSum();
+        checkSumCache.store();
+
+        CheckSumCache reloadedCheckSumCache = new CheckSumCache(cacheFile);
+        assertEquals(checkSum, reloadedCheckSumCache.getCheckSum("01_script.sql", scriptFile.length(), lastModified, "ISO-8859-1", false));
+    }
+}
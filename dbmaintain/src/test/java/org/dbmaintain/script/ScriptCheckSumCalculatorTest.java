@@ -0,0 +1,99 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script;
+
+import org.dbmaintain.util.DbMaintainException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.dbmaintain.util.TestUtils.createScriptFactory;
+import static org.dbmaintain.util.TestUtils.createScriptWithContent;
+import static org.junit.Assert.*;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ScriptCheckSumCalculatorTest {
+
+    private List<Script> scripts;
+    private List<Script> sameScripts;
+
+
+    @Before
+    public void initialize() {
+        scripts = new ArrayList<>();
+        sameScripts = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            scripts.add(createScriptWithContent(i + "_script.sql", "script content " + i));
+            sameScripts.add(createScriptWithContent(i + "_script.sql", "script content " + i));
+        }
+    }
+
+
+    @Test
+    public void multipleThreads() {
+        new ScriptCheckSumCalculator(4).calculateCheckSums(scripts);
+        assertCheckSums();
+    }
+
+    @Test
+    public void singleThread() {
+        new ScriptCheckSumCalculator(1).calculateCheckSums(scripts);
+        assertCheckSums();
+    }
+
+    @Test
+    public void availableProcessors() {
+        new ScriptCheckSumCalculator(0).calculateCheckSums(scripts);
+        assertCheckSums();
+    }
+
+    @Test
+    public void errorWhileCalculatingCheckSum() {
+        scripts.add(createScriptFactory().createScriptWithContent("error.sql", 0L, new FailingScriptContentHandle()));
+        try {
+            new ScriptCheckSumCalculator(4).calculateCheckSums(scripts);
+            fail("DbMaintainException expected");
+        } catch (DbMaintainException e) {
+            assertEquals("failing content handle", e.getCause().getMessage());
+        }
+    }
+
+
+    private void assertCheckSums() {
+        for (int i = 0; i < scripts.size(); i++) {
+            assertEquals(sameScripts.get(i).getCheckSum(), scripts.get(i).getCheckSum());
+        }
+    }
+
+
+    private static class FailingScriptContentHandle extends ScriptContentHandle {
+
+        public FailingScriptContentHandle() {
+            super("ISO-8859-1", false);
+        }
+
+        @Override
+        protected InputStream getScriptInputStream() {
+            throw new DbMaintainException("failing content handle");
+        }
+    }
+}
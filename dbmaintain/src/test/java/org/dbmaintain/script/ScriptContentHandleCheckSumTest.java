@@ -0,0 +1,164 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static java.io.File.createTempFile;
+import static org.dbmaintain.util.FileUtils.getUrl;
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that the block based digest calculation gives exactly the same result as feeding the digest byte per byte.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ScriptContentHandleCheckSumTest {
+
+    /* Content that spans multiple digest blocks and has carriage returns on the block boundaries */
+    private byte[] content;
+    private File scriptFile;
+
+
+    @Before
+    public void initialize() throws IOException {
+        content = new byte[3 * ScriptContentHandle.DIGEST_BUFFER_SIZE + 17];
+        Random random = new Random(1234);
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (random.nextInt(10) == 0 ? '\r' : 'a' + random.nextInt(26));
+        }
+        content[ScriptContentHandle.DIGEST_BUFFER_SIZE - 1] = '\r';
+        content[ScriptContentHandle.DIGEST_BUFFER_SIZE] = '\r';
+        content[content.length - 1] = '\r';
+
+        scriptFile = createTempFile("script", ".sql");
+        scriptFile.deleteOnExit();
+        OutputStream outputStream = new FileOutputStream(scriptFile);
+        try {
+            outputStream.write(content);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+
+    @Test
+    public void fileHandle() throws Exception {
+        assertEquals(getExpectedCheckSum(false), new ScriptContentHandle.FileScriptContentHandle(scriptFile, "ISO-8859-1", false).getCheckSum());
+        assertEquals(getExpectedCheckSum(true), new ScriptContentHandle.FileScriptContentHandle(scriptFile, "ISO-8859-1", true).getCheckSum());
+    }
+
+    @Test
+    public void urlHandle() throws Exception {
+        assertEquals(getExpectedCheckSum(false), new ScriptContentHandle.UrlScriptContentHandle(getUrl(scriptFile), "ISO-8859-1", false).getCheckSum());
+        assertEquals(getExpectedCheckSum(true), new ScriptContentHandle.UrlScriptContentHandle(getUrl(scriptFile), "ISO-8859-1", true).getCheckSum());
+    }
+
+    @Test
+    public void stringHandle() throws Exception {
+        String scriptContent = new String(content, "ISO-8859-1");
+        assertEquals(getExpectedCheckSum(false), new ScriptContentHandle.StringScriptContentHandle(scriptContent, "ISO-8859-1", false).getCheckSum());
+        assertEquals(getExpectedCheckSum(true), new ScriptContentHandle.StringScriptContentHandle(scriptContent, "ISO-8859-1", true).getCheckSum());
+    }
+
+    @Test
+    public void stringHandleWithCharNarrowedToCarriageReturn() throws Exception {
+        String scriptContent = "select '\u010D' from dual;\r\n";
+        assertEquals(getExpectedCheckSum(scriptContent, false), new ScriptContentHandle.StringScriptContentHandle(scriptContent, "ISO-8859-1", false).getCheckSum());
+        assertEquals(getExpectedCheckSum(scriptContent, true), new ScriptContentHandle.StringScriptContentHandle(scriptContent, "ISO-8859-1", true).getCheckSum());
+    }
+
+    @Test
+    public void checkSumCalculatedWhileReadingContent() throws Exception {
+        ScriptContentHandle scriptContentHandle = new ScriptContentHandle.FileScriptContentHandle(scriptFile, "ISO-8859-1", true);
+        Reader reader = scriptContentHandle.openScriptContentReader();
+        try {
+            while (reader.read(new char[1000]) != -1) {
+                assertFalse(scriptContentHandle.isCheckSumCalculated());
+            }
+        } finally {
+            reader.close();
+        }
+        assertTrue(scriptContentHandle.isCheckSumCalculated());
+        assertEquals(getExpectedCheckSum(true), scriptContentHandle.getCheckSum());
+    }
+
+    @Test
+    public void checkSumWhenContentPartiallyRead() throws Exception {
+        ScriptContentHandle scriptContentHandle = new ScriptContentHandle.FileScriptContentHandle(scriptFile, "ISO-8859-1", false);
+        Reader reader = scriptContentHandle.openScriptContentReader();
+        try {
+            reader.read(new char[1000]);
+        } finally {
+            reader.close();
+        }
+        assertFalse(scriptContentHandle.isCheckSumCalculated());
+        assertEquals(getExpectedCheckSum(false), scriptContentHandle.getCheckSum());
+    }
+
+    @Test
+    public void emptyFile() throws Exception {
+        File emptyFile = createTempFile("empty", ".sql");
+        emptyFile.deleteOnExit();
+        String fileCheckSum = new ScriptContentHandle.FileScriptContentHandle(emptyFile, "ISO-8859-1", true).getCheckSum();
+        String stringCheckSum = new ScriptContentHandle.StringScriptContentHandle("", "ISO-8859-1", true).getCheckSum();
+        assertEquals(stringCheckSum, fileCheckSum);
+    }
+
+
+    private String getExpectedCheckSum(boolean ignoreCarriageReturns) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+        for (byte b : content) {
+            if (ignoreCarriageReturns && b == '\r') {
+                continue;
+            }
+            digest.update(b);
+        }
+        return toCheckSum(digest);
+    }
+
+    /**
+     * Feeds the chars to the digest one by one, the carriage returns are checked on the char values.
+     */
+    private String getExpectedCheckSum(String scriptContent, boolean ignoreCarriageReturns) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+        for (char c : scriptContent.toCharArray()) {
+            if (ignoreCarriageReturns && c == '\r') {
+                continue;
+            }
+            digest.update((byte) c);
+        }
+        return toCheckSum(digest);
+    }
+
+    private String toCheckSum(MessageDigest digest) {
+        StringBuilder result = new StringBuilder("MD5:");
+        for (byte b : digest.digest()) {
+            result.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
+        }
+        return result.toString();
+    }
+}
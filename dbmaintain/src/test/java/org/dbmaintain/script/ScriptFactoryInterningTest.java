@@ -0,0 +1,97 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script;
+
+import org.dbmaintain.script.executedscriptinfo.ScriptIndexes;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import static org.dbmaintain.util.TestUtils.createScriptFactory;
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that scripts share the instances of the values that are derived from their file names.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ScriptFactoryInterningTest {
+
+
+    @Test
+    public void valuesAreSharedBetweenScriptsAndFactories() {
+        ScriptNameCache scriptNameCache = new ScriptNameCache();
+        ScriptFactory scriptFactory = createScriptFactory(null, scriptNameCache);
+        ScriptFactory otherScriptFactory = createScriptFactory(new ScriptIndexes("1"), scriptNameCache);
+
+        Script script1 = scriptFactory.createScriptWithoutContent("01_@db_#patch_script1.sql", 0L, "checksum");
+        Script script2 = otherScriptFactory.createScriptWithoutContent("02_@db_#patch_script2.sql", 0L, "checksum");
+
+        assertEquals("db", script1.getTargetDatabaseName());
+        assertSame(script1.getTargetDatabaseName(), script2.getTargetDatabaseName());
+        assertSame(script1.getQualifiers(), script2.getQualifiers());
+        assertSame(script1.getQualifiers().iterator().next(), script2.getQualifiers().iterator().next());
+    }
+
+    @Test
+    public void valuesAreNotSharedBetweenFactoriesWithOtherCaches() {
+        Script script1 = createScriptFactory().createScriptWithoutContent("01_@db_#patch_script1.sql", 0L, "checksum");
+        Script script2 = createScriptFactory().createScriptWithoutContent("02_@db_#patch_script2.sql", 0L, "checksum");
+
+        assertNotSame(script1.getQualifiers(), script2.getQualifiers());
+    }
+
+    @Test
+    public void scriptsWithTheSameNameShareTheFileName() {
+        ScriptNameCache scriptNameCache = new ScriptNameCache();
+        Script repositoryScript = createScriptFactory(null, scriptNameCache).createScriptWithoutContent(new String("01_folder/01_shared.sql"), 0L, "checksum");
+        Script registryScript = createScriptFactory(null, scriptNameCache).createScriptWithoutContent(new String("01_folder/01_shared.sql"), 0L, "checksum");
+
+        assertSame(repositoryScript.getFileName(), registryScript.getFileName());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void sharedQualifiersCannotBeModified() {
+        Script script = createScriptFactory().createScriptWithoutContent("01_#patch_script.sql", 0L, "checksum");
+        script.getQualifiers().clear();
+    }
+
+    /**
+     * Measures the footprint as the nr of distinct instances that is retained by a large nr of scripts.
+     */
+    @Test
+    public void footprint() {
+        ScriptFactory scriptFactory = createScriptFactory();
+        Set<Object> qualifierSets = newIdentitySet();
+        Set<Object> targetDatabaseNames = newIdentitySet();
+        for (int i = 0; i < 2000; i++) {
+            String fileName = (i % 2 == 0) ? "01_@db_#patch_script" + i + ".sql" : "02_@otherdb_script" + i + ".sql";
+            Script script = scriptFactory.createScriptWithoutContent(fileName, 0L, "checksum");
+            qualifierSets.add(script.getQualifiers());
+            targetDatabaseNames.add(script.getTargetDatabaseName());
+        }
+        assertEquals(2, qualifierSets.size());
+        assertEquals(2, targetDatabaseNames.size());
+    }
+
+
+    private Set<Object> newIdentitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+    }
+}
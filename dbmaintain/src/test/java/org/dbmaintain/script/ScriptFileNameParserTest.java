@@ -0,0 +1,135 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script;
+
+import org.dbmaintain.script.executedscriptinfo.ScriptIndexes;
+import org.dbmaintain.util.DbMaintainException;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.dbmaintain.script.ScriptFileNameParser.*;
+import static org.dbmaintain.util.TestUtils.qualifiers;
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that the parser for the default naming conventions derives the same script names as the default regexps.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ScriptFileNameParserTest {
+
+    private static final String[] PARTS = {"01", "1_", "01_script", "a01", "01a_x", "@db", "_@db", "@db_", "x_@db2_y", "@db@x", "#q",
+            "x#q", "#q_@db_name", "01_#q_#patch_x", "#unknown", "02_#Q_@DB_x", "name_", "_", "99999999999999999999_x", "script", "#q#patch", "03_#_x"};
+
+    /* The cache that is shared by the factories of a test */
+    private ScriptNameCache scriptNameCache = new ScriptNameCache();
+
+
+    @Test
+    public void sameResultAsRegexps() {
+        ScriptFactory parserScriptFactory = createScriptFactory(DEFAULT_SCRIPT_INDEX_REGEXP, DEFAULT_TARGET_DATABASE_REGEXP, DEFAULT_QUALIFIER_REGEXP, null);
+        // equivalent regexps that are not the default ones, so that the regexps are used
+        ScriptFactory regexpScriptFactory = createScriptFactory("^([0-9]+)(?:$|_)", "(?:\\G|_)@([a-zA-Z0-9]+)(?:$|_)", "(?:\\G|_)#([a-zA-Z0-9]+)(?:$|_)", null);
+        assertNotNull(parserScriptFactory.scriptFileNameParser);
+        assertNull(regexpScriptFactory.scriptFileNameParser);
+
+        Random random = new Random(1);
+        for (int i = 0; i < 5000; i++) {
+            String fileName = createFileName(random);
+            Script expected = createScript(regexpScriptFactory, fileName);
+            Script actual = createScript(parserScriptFactory, fileName);
+            if (expected == null || actual == null) {
+                assertEquals(fileName, expected, actual);
+                continue;
+            }
+            assertEquals(fileName, expected.getScriptIndexes(), actual.getScriptIndexes());
+            assertEquals(fileName, expected.getTargetDatabaseName(), actual.getTargetDatabaseName());
+            assertEquals(fileName, expected.getQualifiers(), actual.getQualifiers());
+            assertEquals(fileName, expected.isPatchScript(), actual.isPatchScript());
+            assertEquals(fileName, expected.isPostProcessingScript(), actual.isPostProcessingScript());
+        }
+    }
+
+    @Test
+    public void parsedNamesAreSharedBetweenFactoriesWithTheSameConfiguration() {
+        ScriptFactory scriptFactory1 = createScriptFactory(DEFAULT_SCRIPT_INDEX_REGEXP, DEFAULT_TARGET_DATABASE_REGEXP, DEFAULT_QUALIFIER_REGEXP, null);
+        ScriptFactory scriptFactory2 = createScriptFactory(DEFAULT_SCRIPT_INDEX_REGEXP, DEFAULT_TARGET_DATABASE_REGEXP, DEFAULT_QUALIFIER_REGEXP, null);
+        ScriptFactory otherScriptFactory = createScriptFactory(DEFAULT_SCRIPT_INDEX_REGEXP, DEFAULT_TARGET_DATABASE_REGEXP, DEFAULT_QUALIFIER_REGEXP, new ScriptIndexes("2"));
+
+        Script script1 = scriptFactory1.createScriptWithoutContent("01_folder/01_#q_script.sql", 1L, null);
+        Script script2 = scriptFactory2.createScriptWithoutContent("01_folder/01_#q_script.sql", 2L, "checksum");
+        Script otherScript = otherScriptFactory.createScriptWithoutContent("01_folder/01_#q_script.sql", 1L, null);
+
+        assertSame(script1.getScriptIndexes(), script2.getScriptIndexes());
+        assertEquals(Long.valueOf(2), script2.getFileLastModifiedAt());
+        assertEquals("checksum", script2.getCheckSum());
+        assertNotSame(script1.getScriptIndexes(), otherScript.getScriptIndexes());
+        assertFalse(script1.isIgnored());
+        assertTrue(otherScript.isIgnored());
+    }
+
+    @Test
+    public void invalidNameIsNotKept() {
+        ScriptFactory scriptFactory = createScriptFactory(DEFAULT_SCRIPT_INDEX_REGEXP, DEFAULT_TARGET_DATABASE_REGEXP, DEFAULT_QUALIFIER_REGEXP, null);
+        for (int i = 0; i < 2; i++) {
+            try {
+                scriptFactory.createScriptWithoutContent("01_#unknown_script.sql", null, null);
+                fail("DbMaintainException expected");
+            } catch (DbMaintainException e) {
+                assertTrue(e.getMessage().contains("Qualifier \"unknown\" has not been registered"));
+            }
+        }
+    }
+
+
+    private String createFileName(Random random) {
+        StringBuilder fileName = new StringBuilder();
+        if (random.nextInt(5) == 0) {
+            fileName.append("postprocessing/");
+        }
+        int nrOfParts = 1 + random.nextInt(3);
+        for (int i = 0; i < nrOfParts; i++) {
+            if (i > 0) {
+                fileName.append(random.nextBoolean() ? '/' : '\\');
+            }
+            int nrOfTokens = 1 + random.nextInt(3);
+            for (int j = 0; j < nrOfTokens; j++) {
+                if (j > 0) {
+                    fileName.append('_');
+                }
+                fileName.append(PARTS[random.nextInt(PARTS.length)]);
+            }
+        }
+        if (random.nextInt(4) > 0) {
+            fileName.append(".sql");
+        }
+        return fileName.toString();
+    }
+
+    private Script createScript(ScriptFactory scriptFactory, String fileName) {
+        try {
+            return scriptFactory.createScriptWithoutContent(fileName, null, null);
+        } catch (DbMaintainException e) {
+            return null;
+        }
+    }
+
+    private ScriptFactory createScriptFactory(String scriptIndexRegexp, String targetDatabaseRegexp, String qualifierRegexp, ScriptIndexes baseLineRevision) {
+        return new ScriptFactory(scriptIndexRegexp, targetDatabaseRegexp, qualifierRegexp, qualifiers("q"), qualifiers("patch"), "postprocessing", baseLineRevision, scriptNameCache);
+    }
+}
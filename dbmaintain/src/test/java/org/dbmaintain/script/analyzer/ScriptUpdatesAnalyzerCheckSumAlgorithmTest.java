@@ -0,0 +1,115 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.analyzer;
+
+import org.dbmaintain.script.ExecutedScript;
+import org.dbmaintain.script.Script;
+import org.dbmaintain.script.checksum.CheckSumAlgorithms;
+import org.dbmaintain.script.checksum.impl.Crc32CheckSumAlgorithm;
+import org.dbmaintain.script.checksum.impl.Md5CheckSumAlgorithm;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static java.util.Arrays.asList;
+import static org.dbmaintain.script.analyzer.ScriptUpdateType.INDEXED_SCRIPT_RENAMED;
+import static org.dbmaintain.script.analyzer.ScriptUpdateType.INDEXED_SCRIPT_UPDATED;
+import static org.dbmaintain.util.TestUtils.*;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verifies that scripts that were registered using another check sum algorithm than the current one are not seen as
+ * modified.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ScriptUpdatesAnalyzerCheckSumAlgorithmTest {
+
+    private CheckSumAlgorithms crc32CheckSumAlgorithms;
+
+    private SortedSet<Script> scripts = new TreeSet<Script>();
+    private SortedSet<ExecutedScript> executedScripts = new TreeSet<ExecutedScript>();
+
+
+    @Before
+    public void initialize() {
+        crc32CheckSumAlgorithms = new CheckSumAlgorithms(Crc32CheckSumAlgorithm.NAME, asList(new Md5CheckSumAlgorithm(), new Crc32CheckSumAlgorithm()));
+    }
+
+
+    @Test
+    public void legacyCheckSum() {
+        executedScript("1_script.sql", getLegacyCheckSum("content"));
+        script("1_script.sql", "content");
+
+        ScriptUpdates scriptUpdates = calculateScriptUpdates();
+        assertTrue(scriptUpdates.isEmpty());
+    }
+
+    @Test
+    public void md5CheckSum() {
+        executedScript("1_script.sql", "MD5:" + getLegacyCheckSum("content"));
+        script("1_script.sql", "content");
+
+        ScriptUpdates scriptUpdates = calculateScriptUpdates();
+        assertTrue(scriptUpdates.isEmpty());
+    }
+
+    @Test
+    public void modifiedScript() {
+        executedScript("1_script.sql", getLegacyCheckSum("content"));
+        Script script = script("1_script.sql", "modified content");
+
+        ScriptUpdates scriptUpdates = calculateScriptUpdates();
+        assertTrue(scriptUpdates.getIrregularScriptUpdates().contains(new ScriptUpdate(INDEXED_SCRIPT_UPDATED, script)));
+    }
+
+    @Test
+    public void renamedScript() {
+        Script executedScript = executedScript("1_script.sql", getLegacyCheckSum("content"));
+        Script renamedScript = script("1_script_renamed.sql", "content");
+
+        ScriptUpdates scriptUpdates = calculateScriptUpdates();
+        assertTrue(scriptUpdates.getRegularlyRenamedScripts().contains(new ScriptUpdate(INDEXED_SCRIPT_RENAMED, executedScript, renamedScript)));
+    }
+
+
+    private Script script(String fileName, String content) {
+        Script script = createScriptWithContent(fileName, content);
+        script.getScriptContentHandle().setCheckSumAlgorithms(crc32CheckSumAlgorithms);
+        scripts.add(script);
+        return script;
+    }
+
+    private Script executedScript(String fileName, String checkSum) {
+        // different modification date, to force a check sum comparison
+        Script script = createScriptWithModificationDateAndCheckSum(fileName, 1L, checkSum);
+        executedScripts.add(new ExecutedScript(script, new Date(), true));
+        return script;
+    }
+
+    private String getLegacyCheckSum(String content) {
+        return CheckSumAlgorithms.getValue(createScriptWithContent("script.sql", content).getCheckSum());
+    }
+
+    private ScriptUpdates calculateScriptUpdates() {
+        return new ScriptUpdatesAnalyzer(getScriptRepository(scripts), getExecutedScriptInfoSource(executedScripts), true, false, false).calculateScriptUpdates();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.analyzer;
+
+import org.dbmaintain.script.ExecutedScript;
+import org.dbmaintain.script.Script;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.dbmaintain.script.analyzer.ScriptUpdateType.*;
+import static org.dbmaintain.util.TestUtils.*;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verifies that only the check sums of the scripts to which a missing executed script could have been renamed are
+ * calculated.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ScriptUpdatesAnalyzerRenameCandidatesTest {
+
+    private SortedSet<Script> scripts = new TreeSet<Script>();
+    private SortedSet<ExecutedScript> executedScripts = new TreeSet<ExecutedScript>();
+
+
+    @Test
+    public void deletedRepeatableScript() {
+        Script script1 = script("1_script1.sql", "content1", true);
+        Script script2 = script("2_script2.sql", "content2", false);
+        Script deletedScript = executedScript("repeatable_deleted.sql", "deleted content");
+        Script otherRepeatableScript = script("repeatable_other.sql", "other content", false);
+
+        ScriptUpdates scriptUpdates = calculateScriptUpdates();
+        assertTrue(scriptUpdates.getRegularlyDeletedRepeatableScripts().contains(new ScriptUpdate(REPEATABLE_SCRIPT_DELETED, deletedScript)));
+        assertFalse(script1.isCheckSumCalculated());
+        assertFalse(script2.isCheckSumCalculated());
+        assertTrue(otherRepeatableScript.isCheckSumCalculated());
+    }
+
+    @Test
+    public void renamedRepeatableScript() {
+        script("1_script1.sql", "content1", true);
+        Script executedScript = executedScript("repeatable.sql", "content");
+        Script renamedScript = script("repeatable_renamed.sql", "content", false);
+        // an incremental script cannot be the renamed repeatable script
+        Script incrementalScript = script("2_script2.sql", "content", false);
+
+        ScriptUpdates scriptUpdates = calculateScriptUpdates();
+        assertTrue(scriptUpdates.getRegularlyRenamedScripts().contains(new ScriptUpdate(REPEATABLE_SCRIPT_RENAMED, executedScript, renamedScript)));
+        assertTrue(scriptUpdates.getRegularlyAddedOrModifiedScripts().contains(new ScriptUpdate(HIGHER_INDEX_SCRIPT_ADDED, incrementalScript)));
+        assertFalse(incrementalScript.isCheckSumCalculated());
+    }
+
+    @Test
+    public void renamedIncrementalScript() {
+        script("1_script1.sql", "content1", true);
+        Script executedScript = executedScript("2_script2.sql", "content2");
+        Script renamedScript = script("2_script2_renamed.sql", "content2", false);
+
+        ScriptUpdates scriptUpdates = calculateScriptUpdates();
+        assertTrue(scriptUpdates.getRegularlyRenamedScripts().contains(new ScriptUpdate(INDEXED_SCRIPT_RENAMED, executedScript, renamedScript)));
+    }
+
+
+    private Script script(String fileName, String content, boolean executed) {
+        Script script = createScriptWithContent(fileName, content);
+        scripts.add(script);
+        if (executed) {
+            executedScript(fileName, content);
+        }
+        return script;
+    }
+
+    private Script executedScript(String fileName, String content) {
+        // same modification date as the script, the content is only read when needed
+        Script script = createScriptWithModificationDateAndCheckSum(fileName, 0L, createScriptWithContent(fileName, content).getCheckSum());
+        executedScripts.add(new ExecutedScript(script, new Date(), true));
+        return script;
+    }
+
+    private ScriptUpdates calculateScriptUpdates() {
+        return new ScriptUpdatesAnalyzer(getScriptRepository(scripts), getExecutedScriptInfoSource(executedScripts), true, false, false).calculateScriptUpdates();
+    }
+}
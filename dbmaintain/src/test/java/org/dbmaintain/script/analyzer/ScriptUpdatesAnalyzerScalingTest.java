@@ -0,0 +1,76 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.analyzer;
+
+import org.dbmaintain.script.ExecutedScript;
+import org.dbmaintain.script.Script;
+import org.dbmaintain.script.ScriptFactory;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.dbmaintain.util.TestUtils.*;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Verifies that the analysis scales with the nr of scripts: the executed scripts are only iterated a fixed nr of
+ * times, however many scripts were added.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ScriptUpdatesAnalyzerScalingTest {
+
+    private ScriptFactory scriptFactory = createScriptFactory();
+
+
+    @Test
+    public void nrOfIterationsDoesNotDependOnNrOfAddedScripts() {
+        assertEquals(getNrOfIterations(100, 10), getNrOfIterations(100, 10000));
+    }
+
+    @Test
+    public void largeNrOfScripts() {
+        int nrOfIterations = getNrOfIterations(2000, 2000);
+        assertEquals(getNrOfIterations(10, 10), nrOfIterations);
+    }
+
+
+    /**
+     * @param nrOfExecutedScripts The nr of scripts that were executed before
+     * @param nrOfAddedScripts    The nr of scripts with a higher index that were added since
+     * @return The nr of times the executed scripts were iterated during the analysis
+     */
+    private int getNrOfIterations(int nrOfExecutedScripts, int nrOfAddedScripts) {
+        SortedSet<Script> scripts = new TreeSet<Script>();
+        CountingSet executedScripts = new CountingSet();
+        for (int i = 1; i <= nrOfExecutedScripts + nrOfAddedScripts; i++) {
+            Script script = scriptFactory.createScriptWithoutContent(i + "_script.sql", 0L, "checksum");
+            scripts.add(script);
+            if (i <= nrOfExecutedScripts) {
+                executedScripts.add(new ExecutedScript(script, new Date(), true));
+            }
+        }
+        ScriptUpdatesAnalyzer scriptUpdatesAnalyzer = new ScriptUpdatesAnalyzer(getScriptRepository(scripts), getExecutedScriptInfoSource(executedScripts), true, false, false);
+        executedScripts.resetNrOfIterations();
+
+        ScriptUpdates scriptUpdates = scriptUpdatesAnalyzer.calculateScriptUpdates();
+        assertEquals(nrOfAddedScripts, scriptUpdates.getRegularlyAddedOrModifiedScripts().size());
+        return executedScripts.getNrOfIterations();
+    }
+}
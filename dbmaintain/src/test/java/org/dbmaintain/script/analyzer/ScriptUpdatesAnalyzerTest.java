@@ -17,6 +17,7 @@ package org.dbmaintain.script.analyzer;
 
 import org.dbmaintain.script.ExecutedScript;
 import org.dbmaintain.script.Script;
+import org.dbmaintain.script.executedscriptinfo.ScriptIndexes;
 import org.junit.Test;
 
 import java.util.Arrays;
@@ -26,6 +27,7 @@ import java.util.TreeSet;
 
 import static org.dbmaintain.script.analyzer.ScriptUpdateType.*;
 import static org.dbmaintain.util.TestUtils.*;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -54,6 +56,8 @@ public class ScriptUpdatesAnalyzerTest {
     private static final Script POSTPROCESSING_1_UPDATED = createScript("postprocessing/1_postprocessing1.sql", true);
 
     private ScriptUpdates scriptUpdates;
+    private ScriptIndexes checkpointRevision;
+    private long nrOfCheckpointScripts;
 
     private SortedSet<Script> scripts = new TreeSet<Script>();
     private SortedSet<ExecutedScript> executedScripts = new TreeSet<ExecutedScript>();
@@ -102,6 +106,53 @@ public class ScriptUpdatesAnalyzerTest {
 
     }
 
+    @Test
+    public void scriptsBelowCheckpointAreNotAnalyzed() {
+        checkpointRevision = new ScriptIndexes("2");
+        nrOfCheckpointScripts = 1;
+        executedScripts(INDEXED_2);
+        scripts(INDEXED_1, INDEXED_2_UPDATED, INDEXED_3);
+        calculateScriptUpdates();
+        assertIrregularScriptUpdate(INDEXED_SCRIPT_UPDATED, INDEXED_2);
+        assertRegularScriptUpdate(HIGHER_INDEX_SCRIPT_ADDED, INDEXED_3);
+        assertEquals(1, scriptUpdates.getIrregularScriptUpdates().size());
+        assertEquals(1, scriptUpdates.getRegularlyAddedOrModifiedScripts().size());
+    }
+
+    @Test
+    public void scriptWithCheckpointRevisionIsNotCompacted() {
+        checkpointRevision = new ScriptIndexes("3");
+        nrOfCheckpointScripts = 2;
+        executedScripts(REPEATABLE_1);
+        scripts(INDEXED_1, INDEXED_2, INDEXED_3, REPEATABLE_1);
+        calculateScriptUpdates();
+        assertRegularScriptUpdate(HIGHER_INDEX_SCRIPT_ADDED, INDEXED_3);
+        assertEquals(1, scriptUpdates.getRegularlyAddedOrModifiedScripts().size());
+        assertNoIrregularScriptUpdates();
+    }
+
+    @Test
+    public void scriptAddedBelowCheckpoint() {
+        checkpointRevision = new ScriptIndexes("3");
+        nrOfCheckpointScripts = 1;
+        executedScripts(INDEXED_3);
+        scripts(INDEXED_1, INDEXED_2, INDEXED_3);
+        calculateScriptUpdates();
+        assertEquals(1, scriptUpdates.getIrregularScriptUpdates().size());
+        assertEquals(INDEXED_SCRIPTS_BELOW_CHECKPOINT_CHANGED, scriptUpdates.getIrregularScriptUpdates().first().getType());
+    }
+
+    @Test
+    public void newPatchScriptBelowCheckpoint() {
+        checkpointRevision = new ScriptIndexes("3");
+        nrOfCheckpointScripts = 1;
+        executedScripts(INDEXED_3);
+        scripts(PATCH_1, INDEXED_2, INDEXED_3);
+        calculateScriptUpdates(true, false);
+        assertRegularPatchScriptUpdate(LOWER_INDEX_PATCH_SCRIPT_ADDED, PATCH_1);
+        assertNoIrregularScriptUpdates();
+    }
+
     @Test
     public void newRepeatableScript() {
         executedScripts(REPEATABLE_1);
@@ -281,7 +332,7 @@ public class ScriptUpdatesAnalyzerTest {
     }
 
     private void calculateScriptUpdates(boolean allowOutOfSequenceExecutionOfPatchScripts, boolean ignoreDeletions) {
-        scriptUpdates = new ScriptUpdatesAnalyzer(getScriptRepository(scripts), getExecutedScriptInfoSource(executedScripts), true,
+        scriptUpdates = new ScriptUpdatesAnalyzer(getScriptRepository(scripts), getExecutedScriptInfoSource(executedScripts, checkpointRevision, nrOfCheckpointScripts), true,
                 allowOutOfSequenceExecutionOfPatchScripts, ignoreDeletions).calculateScriptUpdates();
     }
 
@@ -0,0 +1,91 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.checksum;
+
+import org.dbmaintain.script.ScriptContentHandle;
+import org.dbmaintain.util.DbMaintainException;
+import org.junit.Test;
+
+import java.util.zip.CRC32;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class CheckSumAlgorithmsTest {
+
+    @Test
+    public void algorithmName() {
+        assertEquals("CRC32", CheckSumAlgorithms.getAlgorithmName("CRC32:1234abcd"));
+        assertEquals("MD5", CheckSumAlgorithms.getAlgorithmName("d41d8cd98f00b204e9800998ecf8427e"));
+    }
+
+    @Test
+    public void value() {
+        assertEquals("1234abcd", CheckSumAlgorithms.getValue("CRC32:1234abcd"));
+        assertEquals("d41d8cd98f00b204e9800998ecf8427e", CheckSumAlgorithms.getValue("d41d8cd98f00b204e9800998ecf8427e"));
+    }
+
+    @Test
+    public void isEqual() {
+        assertTrue(CheckSumAlgorithms.isEqual("MD5:abc", "abc"));
+        assertTrue(CheckSumAlgorithms.isEqual("CRC32:abc", "CRC32:abc"));
+        assertFalse(CheckSumAlgorithms.isEqual("CRC32:abc", "abc"));
+        assertFalse(CheckSumAlgorithms.isEqual("MD5:abc", "MD5:def"));
+        assertFalse(CheckSumAlgorithms.isEqual(null, "MD5:abc"));
+    }
+
+    @Test
+    public void crc32CheckSum() throws Exception {
+        CRC32 crc32 = new CRC32();
+        crc32.update("script content".getBytes("ISO-8859-1"));
+        String expected = "CRC32:" + String.format("%08x", crc32.getValue());
+
+        ScriptContentHandle scriptContentHandle = new ScriptContentHandle.StringScriptContentHandle("script content", "ISO-8859-1", false);
+        scriptContentHandle.setCheckSumAlgorithms(new CheckSumAlgorithms("CRC32", CheckSumAlgorithms.createDefault().algorithms.values()));
+        assertEquals(expected, scriptContentHandle.getCheckSum());
+    }
+
+    @Test
+    public void checkSumUsingOtherAlgorithm() {
+        ScriptContentHandle scriptContentHandle = new ScriptContentHandle.StringScriptContentHandle("script content", "ISO-8859-1", false);
+        String md5CheckSum = scriptContentHandle.getCheckSum();
+        String sha256CheckSum = scriptContentHandle.getCheckSum("SHA-256");
+
+        assertTrue(md5CheckSum.startsWith("MD5:"));
+        assertTrue(sha256CheckSum.startsWith("SHA-256:"));
+        assertEquals(72, sha256CheckSum.length());
+        assertEquals(md5CheckSum, scriptContentHandle.getCheckSum("MD5"));
+    }
+
+    @Test
+    public void unknownDefaultAlgorithm() {
+        try {
+            new CheckSumAlgorithms("xxx", CheckSumAlgorithms.createDefault().algorithms.values());
+            fail("DbMaintainException expected");
+        } catch (DbMaintainException e) {
+            assertEquals("Unknown check sum algorithm xxx. Available algorithms: [CRC32, MD5, SHA-256]", e.getMessage());
+        }
+    }
+
+    @Test(expected = DbMaintainException.class)
+    public void invalidAlgorithmName() {
+        new CheckSumAlgorithms("a:b", asList((CheckSumAlgorithm) new org.dbmaintain.script.checksum.impl.MessageDigestCheckSumAlgorithm("a:b")));
+    }
+}
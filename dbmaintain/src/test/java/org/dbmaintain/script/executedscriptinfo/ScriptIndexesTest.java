@@ -0,0 +1,139 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.executedscriptinfo;
+
+import org.dbmaintain.util.DbMaintainException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ScriptIndexesTest {
+
+
+    @Test
+    public void ordering() {
+        assertOrdered("", "1", "1.1", "1.2", "1.x.1", "2", "2.1.3", "10", "x", "x.x");
+    }
+
+    @Test
+    public void sameOrderingAsBoxedIndexes() {
+        Random random = new Random(5);
+        for (int i = 0; i < 5000; i++) {
+            List<Long> indexes1 = createRandomIndexes(random);
+            List<Long> indexes2 = createRandomIndexes(random);
+            ScriptIndexes scriptIndexes1 = new ScriptIndexes(indexes1);
+            ScriptIndexes scriptIndexes2 = new ScriptIndexes(indexes2);
+
+            assertEquals(signum(compareBoxed(indexes1, indexes2)), signum(scriptIndexes1.compareTo(scriptIndexes2)));
+            assertEquals(indexes1.equals(indexes2), scriptIndexes1.equals(scriptIndexes2));
+            assertEquals(indexes1, scriptIndexes1.getIndexes());
+        }
+    }
+
+    @Test
+    public void moreThan64Levels() {
+        List<Long> indexes = new ArrayList<>();
+        for (int i = 0; i < 70; i++) {
+            indexes.add((long) i);
+        }
+        indexes.set(66, null);
+        ScriptIndexes scriptIndexes = new ScriptIndexes(indexes);
+
+        assertEquals(indexes, scriptIndexes.getIndexes());
+        assertTrue(scriptIndexes.isIncrementalScript());
+        assertTrue(scriptIndexes.getIndexesString().contains(".65.x.67."));
+    }
+
+    @Test
+    public void equalIndexesHaveEqualHashCodes() {
+        ScriptIndexes scriptIndexes1 = new ScriptIndexes("1.x.3");
+        ScriptIndexes scriptIndexes2 = new ScriptIndexes(asList(1L, null, 3L));
+
+        assertEquals(scriptIndexes1, scriptIndexes2);
+        assertEquals(scriptIndexes1.hashCode(), scriptIndexes2.hashCode());
+        assertFalse(scriptIndexes1.equals(new ScriptIndexes("1.0.3")));
+    }
+
+    @Test(expected = DbMaintainException.class)
+    public void repeatableScriptInIndexedFolder() {
+        new ScriptIndexes(asList(1L, null));
+    }
+
+
+    private void assertOrdered(String... indexStrings) {
+        for (int i = 0; i < indexStrings.length; i++) {
+            for (int j = 0; j < indexStrings.length; j++) {
+                int result = new ScriptIndexes(indexStrings[i]).compareTo(new ScriptIndexes(indexStrings[j]));
+                assertEquals(indexStrings[i] + " <-> " + indexStrings[j], Integer.signum(i - j), signum(result));
+            }
+        }
+    }
+
+    private List<Long> createRandomIndexes(Random random) {
+        List<Long> indexes = new ArrayList<>();
+        int nrOfLevels = random.nextInt(4);
+        for (int i = 0; i < nrOfLevels; i++) {
+            indexes.add(random.nextInt(4) == 0 ? null : (long) random.nextInt(3));
+        }
+        // repeatable scripts cannot be located inside an indexed folder
+        if (!indexes.isEmpty() && indexes.get(indexes.size() - 1) == null) {
+            for (int i = 0; i < indexes.size(); i++) {
+                indexes.set(i, null);
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * The ordering as it was implemented on boxed indexes.
+     */
+    private int compareBoxed(List<Long> indexes, List<Long> otherIndexes) {
+        if (indexes.isEmpty()) {
+            return otherIndexes.isEmpty() ? 0 : -1;
+        } else if (otherIndexes.isEmpty()) {
+            return 1;
+        }
+        int length = Math.min(indexes.size(), otherIndexes.size());
+        for (int i = 0; i < length; i++) {
+            Long thisIndex = indexes.get(i);
+            Long otherIndex = otherIndexes.get(i);
+            if (thisIndex != null && otherIndex != null) {
+                int result = thisIndex.compareTo(otherIndex);
+                if (result != 0) {
+                    return result;
+                }
+            } else if (thisIndex != null) {
+                return -1;
+            } else if (otherIndex != null) {
+                return 1;
+            }
+        }
+        return Integer.compare(indexes.size(), otherIndexes.size());
+    }
+
+    private int signum(int value) {
+        return Integer.signum(value);
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.executedscriptinfo.impl;
+
+import org.dbmaintain.database.Database;
+import org.dbmaintain.database.impl.DefaultSQLHandler;
+import org.dbmaintain.script.ExecutedScript;
+import org.dbmaintain.util.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import static org.dbmaintain.util.SQLTestUtils.executeUpdate;
+import static org.dbmaintain.util.SQLTestUtils.executeUpdateQuietly;
+import static org.dbmaintain.util.TestUtils.createScript;
+import static org.junit.Assert.*;
+
+/**
+ * Tests reloading only the changed rows of the executed scripts table using a change sequence column.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DefaultExecutedScriptInfoSourceChangeSequenceTest {
+
+    /* The tested instance */
+    private DefaultExecutedScriptInfoSource executedScriptInfoSource;
+    /* Another instance that modifies the same table */
+    private DefaultExecutedScriptInfoSource otherExecutedScriptInfoSource;
+
+    private DataSource dataSource;
+
+
+    @Before
+    public void initialize() {
+        Database defaultDatabase = TestUtils.getDatabases().getDefaultDatabase();
+        dataSource = defaultDatabase.getDataSource();
+        dropExecutedScriptsTable();
+
+        executedScriptInfoSource = createExecutedScriptInfoSource(defaultDatabase, "change_seq");
+        otherExecutedScriptInfoSource = createExecutedScriptInfoSource(defaultDatabase, "change_seq");
+
+        executedScriptInfoSource.registerExecutedScript(new ExecutedScript(createScript("1_script1.sql"), new Date(), true));
+        executedScriptInfoSource.registerExecutedScript(new ExecutedScript(createScript("2_script2.sql"), new Date(), false));
+        assertEquals(2, otherExecutedScriptInfoSource.getExecutedScripts().size());
+        assertEquals(1, executedScriptInfoSource.getNrOfFullLoads());
+    }
+
+    @After
+    public void cleanUp() {
+        dropExecutedScriptsTable();
+    }
+
+
+    @Test
+    public void onlyChangedRowsAreReloaded() {
+        otherExecutedScriptInfoSource.registerExecutedScript(new ExecutedScript(createScript("3_script3.sql"), new Date(), true));
+        otherExecutedScriptInfoSource.updateExecutedScript(new ExecutedScript(createScript("2_script2.sql"), new Date(), true));
+
+        executedScriptInfoSource.resetCachedState();
+
+        assertEquals(3, executedScriptInfoSource.getExecutedScripts().size());
+        for (ExecutedScript executedScript : executedScriptInfoSource.getExecutedScripts()) {
+            assertTrue(executedScript.isSuccessful());
+        }
+        assertEquals(1, executedScriptInfoSource.getNrOfFullLoads());
+    }
+
+    @Test
+    public void changesAfterIncrementalReload() {
+        otherExecutedScriptInfoSource.registerExecutedScript(new ExecutedScript(createScript("3_script3.sql"), new Date(), true));
+        executedScriptInfoSource.resetCachedState();
+        assertEquals(3, executedScriptInfoSource.getExecutedScripts().size());
+
+        executedScriptInfoSource.registerExecutedScript(new ExecutedScript(createScript("4_script4.sql"), new Date(), true));
+        otherExecutedScriptInfoSource.resetCachedState();
+        executedScriptInfoSource.resetCachedState();
+
+        assertEquals(4, otherExecutedScriptInfoSource.getExecutedScripts().size());
+        assertEquals(4, executedScriptInfoSource.getExecutedScripts().size());
+        assertEquals(1, executedScriptInfoSource.getNrOfFullLoads());
+        assertEquals(1, otherExecutedScriptInfoSource.getNrOfFullLoads());
+    }
+
+    @Test
+    public void rowStoredByOtherInstanceAfterOwnRowsIsReloaded() {
+        executedScriptInfoSource.registerExecutedScript(new ExecutedScript(createScript("3_script3.sql"), new Date(), true));
+        executedScriptInfoSource.registerExecutedScript(new ExecutedScript(createScript("4_script4.sql"), new Date(), true));
+        executedScriptInfoSource.resetCachedState();
+        assertEquals(4, executedScriptInfoSource.getExecutedScripts().size());
+
+        otherExecutedScriptInfoSource.registerExecutedScript(new ExecutedScript(createScript("5_script5.sql"), new Date(), true));
+        executedScriptInfoSource.resetCachedState();
+
+        assertEquals(5, executedScriptInfoSource.getExecutedScripts().size());
+        assertEquals(1, executedScriptInfoSource.getNrOfFullLoads());
+    }
+
+    @Test
+    public void highestChangeSequenceIsReadOncePerReset() {
+        CountingSQLHandler sqlHandler = new CountingSQLHandler();
+        DefaultExecutedScriptInfoSource countingExecutedScriptInfoSource = createExecutedScriptInfoSource(TestUtils.getDatabases().getDefaultDatabase(), "change_seq", sqlHandler);
+        countingExecutedScriptInfoSource.registerExecutedScript(new ExecutedScript(createScript("3_script3.sql"), new Date(), false));
+        countingExecutedScriptInfoSource.updateExecutedScript(new ExecutedScript(createScript("3_script3.sql"), new Date(), true));
+        countingExecutedScriptInfoSource.registerExecutedScript(new ExecutedScript(createScript("4_script4.sql"), new Date(), true));
+        assertEquals(1, sqlHandler.nrOfChangeSequenceQueries);
+
+        countingExecutedScriptInfoSource.resetCachedState();
+        countingExecutedScriptInfoSource.registerExecutedScript(new ExecutedScript(createScript("5_script5.sql"), new Date(), true));
+        assertEquals(2, sqlHandler.nrOfChangeSequenceQueries);
+    }
+
+    @Test
+    public void markErrorScriptsAsSuccessful() {
+        otherExecutedScriptInfoSource.markErrorScriptsAsSuccessful();
+        executedScriptInfoSource.resetCachedState();
+
+        for (ExecutedScript executedScript : executedScriptInfoSource.getExecutedScripts()) {
+            assertTrue(executedScript.isSuccessful());
+        }
+        assertEquals(1, executedScriptInfoSource.getNrOfFullLoads());
+    }
+
+    @Test
+    public void deletedRowsCauseFullReload() {
+        otherExecutedScriptInfoSource.deleteExecutedScript(new ExecutedScript(createScript("1_script1.sql"), new Date(), true));
+
+        executedScriptInfoSource.resetCachedState();
+
+        assertEquals(1, executedScriptInfoSource.getExecutedScripts().size());
+        assertEquals(2, executedScriptInfoSource.getNrOfFullLoads());
+    }
+
+    @Test
+    public void tableWithoutChangeSequenceColumn() {
+        executeUpdate("alter table dbmaintain_scripts drop column change_seq", dataSource);
+        DefaultExecutedScriptInfoSource executedScriptInfoSourceWithoutColumn = createExecutedScriptInfoSource(TestUtils.getDatabases().getDefaultDatabase(), "change_seq");
+        assertEquals(2, executedScriptInfoSourceWithoutColumn.getExecutedScripts().size());
+
+        executedScriptInfoSourceWithoutColumn.registerExecutedScript(new ExecutedScript(createScript("3_script3.sql"), new Date(), true));
+        executedScriptInfoSourceWithoutColumn.resetCachedState();
+
+        assertEquals(3, executedScriptInfoSourceWithoutColumn.getExecutedScripts().size());
+        assertEquals(2, executedScriptInfoSourceWithoutColumn.getNrOfFullLoads());
+    }
+
+    @Test
+    public void missingChangeSequenceColumnIsAdded() {
+        executeUpdate("drop index dbmaintain_scripts_seq", dataSource);
+        executeUpdate("alter table dbmaintain_scripts drop column change_seq", dataSource);
+        DefaultExecutedScriptInfoSource executedScriptInfoSourceWithoutColumn = createExecutedScriptInfoSource(TestUtils.getDatabases().getDefaultDatabase(), "change_seq");
+        executedScriptInfoSourceWithoutColumn.upgradeExecutedScriptsTable();
+        assertTrue(executedScriptInfoSourceWithoutColumn.getIndexedColumnNames().contains("CHANGE_SEQ"));
+        assertEquals(2, executedScriptInfoSourceWithoutColumn.getExecutedScripts().size());
+
+        executedScriptInfoSourceWithoutColumn.registerExecutedScript(new ExecutedScript(createScript("3_script3.sql"), new Date(), true));
+        executedScriptInfoSourceWithoutColumn.resetCachedState();
+
+        assertEquals(3, executedScriptInfoSourceWithoutColumn.getExecutedScripts().size());
+        assertEquals(1, executedScriptInfoSourceWithoutColumn.getNrOfFullLoads());
+    }
+
+
+    private DefaultExecutedScriptInfoSource createExecutedScriptInfoSource(Database database, String changeSequenceColumnName) {
+        return createExecutedScriptInfoSource(database, changeSequenceColumnName, new DefaultSQLHandler());
+    }
+
+    private DefaultExecutedScriptInfoSource createExecutedScriptInfoSource(Database database, String changeSequenceColumnName, DefaultSQLHandler sqlHandler) {
+        return new DefaultExecutedScriptInfoSource(true, "dbmaintain_scripts", "file_name", 150, "file_last_modified_at", "checksum", 50,
+                "executed_at", 50, "succeeded", changeSequenceColumnName, new SimpleDateFormat("dd/MM/yyyy"), database, sqlHandler,
+                TestUtils.createScriptFactory());
+    }
+
+    private void dropExecutedScriptsTable() {
+        executeUpdateQuietly("drop table dbmaintain_scripts", dataSource);
+    }
+
+
+    private static class CountingSQLHandler extends DefaultSQLHandler {
+
+        private int nrOfChangeSequenceQueries;
+
+        @Override
+        public long getItemAsLong(String sql, DataSource dataSource) {
+            if (sql.contains("max(")) {
+                nrOfChangeSequenceQueries++;
+            }
+            return super.getItemAsLong(sql, dataSource);
+        }
+    }
+}
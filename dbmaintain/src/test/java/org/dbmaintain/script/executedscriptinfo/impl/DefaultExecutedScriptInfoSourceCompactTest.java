@@ -0,0 +1,175 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.executedscriptinfo.impl;
+
+import org.dbmaintain.database.Database;
+import org.dbmaintain.database.impl.DefaultSQLHandler;
+import org.dbmaintain.script.ExecutedScript;
+import org.dbmaintain.script.checksum.CheckSumAlgorithm;
+import org.dbmaintain.script.checksum.CheckSumAlgorithms;
+import org.dbmaintain.script.checksum.impl.Md5CheckSumAlgorithm;
+import org.dbmaintain.script.checksum.impl.Sha256CheckSumAlgorithm;
+import org.dbmaintain.script.executedscriptinfo.ScriptIndexes;
+import org.dbmaintain.util.DbMaintainException;
+import org.dbmaintain.util.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.SortedSet;
+
+import static org.dbmaintain.util.SQLTestUtils.executeUpdate;
+import static org.dbmaintain.util.SQLTestUtils.executeUpdateQuietly;
+import static org.dbmaintain.util.TestUtils.createScript;
+import static org.junit.Assert.*;
+
+/**
+ * Tests compacting the executed scripts below a checkpoint revision.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DefaultExecutedScriptInfoSourceCompactTest {
+
+    /* The tested instance */
+    private DefaultExecutedScriptInfoSource executedScriptInfoSource;
+
+    private Database defaultDatabase;
+    private DataSource dataSource;
+
+
+    @Before
+    public void initialize() {
+        defaultDatabase = TestUtils.getDatabases().getDefaultDatabase();
+        dataSource = defaultDatabase.getDataSource();
+        dropExecutedScriptsTable();
+
+        executedScriptInfoSource = TestUtils.getDefaultExecutedScriptInfoSource(defaultDatabase, true);
+        executedScriptInfoSource.registerExecutedScript(new ExecutedScript(createScript("1_script1.sql"), new Date(), true));
+        executedScriptInfoSource.registerExecutedScript(new ExecutedScript(createScript("2_script2.sql"), new Date(), true));
+        executedScriptInfoSource.registerExecutedScript(new ExecutedScript(createScript("3_script3.sql"), new Date(), true));
+        executedScriptInfoSource.registerExecutedScript(new ExecutedScript(createScript("repeatable.sql"), new Date(), true));
+    }
+
+    @After
+    public void cleanUp() {
+        dropExecutedScriptsTable();
+    }
+
+
+    @Test
+    public void compactExecutedScripts() {
+        executedScriptInfoSource.compactExecutedScripts(new ScriptIndexes("2"));
+
+        assertCompacted(executedScriptInfoSource, "2", "2_script2.sql", "3_script3.sql", "repeatable.sql");
+        assertCompacted(TestUtils.getDefaultExecutedScriptInfoSource(defaultDatabase, false), "2", "2_script2.sql", "3_script3.sql", "repeatable.sql");
+        assertEquals(1, TestUtils.getDefaultExecutedScriptInfoSource(defaultDatabase, false).getNrOfCheckpointScripts());
+    }
+
+    @Test
+    public void compactAgainWithHigherRevision() {
+        executedScriptInfoSource.compactExecutedScripts(new ScriptIndexes("2"));
+        executedScriptInfoSource.compactExecutedScripts(new ScriptIndexes("3"));
+
+        assertCompacted(TestUtils.getDefaultExecutedScriptInfoSource(defaultDatabase, false), "3", "3_script3.sql", "repeatable.sql");
+        assertEquals(2, TestUtils.getDefaultExecutedScriptInfoSource(defaultDatabase, false).getNrOfCheckpointScripts());
+    }
+
+    @Test
+    public void patchScriptsAreNotCompacted() {
+        executedScriptInfoSource.registerExecutedScript(new ExecutedScript(createScript("2_#patch_script2.sql"), new Date(), true));
+        executedScriptInfoSource.compactExecutedScripts(new ScriptIndexes("3"));
+
+        assertCompacted(TestUtils.getDefaultExecutedScriptInfoSource(defaultDatabase, false), "3", "2_#patch_script2.sql", "3_script3.sql", "repeatable.sql");
+        assertEquals(2, TestUtils.getDefaultExecutedScriptInfoSource(defaultDatabase, false).getNrOfCheckpointScripts());
+    }
+
+    @Test
+    public void noCheckpointRevision() {
+        assertNull(executedScriptInfoSource.getCheckpointRevision());
+    }
+
+    @Test(expected = DbMaintainException.class)
+    public void lowerRevisionThanCurrentCheckpoint() {
+        executedScriptInfoSource.compactExecutedScripts(new ScriptIndexes("3"));
+        executedScriptInfoSource.compactExecutedScripts(new ScriptIndexes("2"));
+    }
+
+    @Test(expected = DbMaintainException.class)
+    public void revisionHigherThanLastExecutedScript() {
+        executedScriptInfoSource.compactExecutedScripts(new ScriptIndexes("4"));
+    }
+
+    @Test
+    public void failedScriptBelowRevision() {
+        executedScriptInfoSource.updateExecutedScript(new ExecutedScript(createScript("2_script2.sql"), new Date(), false));
+        try {
+            executedScriptInfoSource.compactExecutedScripts(new ScriptIndexes("3"));
+            fail("DbMaintainException expected");
+        } catch (DbMaintainException e) {
+            // expected
+        }
+        assertEquals(4, TestUtils.getDefaultExecutedScriptInfoSource(defaultDatabase, false).getExecutedScripts().size());
+    }
+
+    @Test
+    public void scriptWithoutCheckSumBelowRevision() {
+        executeUpdate("update dbmaintain_scripts set checksum = null where file_name = '1_script1.sql'", dataSource);
+        DefaultExecutedScriptInfoSource executedScriptInfoSource = TestUtils.getDefaultExecutedScriptInfoSource(defaultDatabase, false);
+        try {
+            executedScriptInfoSource.compactExecutedScripts(new ScriptIndexes("2"));
+            fail("DbMaintainException expected");
+        } catch (DbMaintainException e) {
+            assertTrue(e.getMessage().contains("check sum is unknown"));
+        }
+        assertNull(TestUtils.getDefaultExecutedScriptInfoSource(defaultDatabase, false).getCheckpointRevision());
+    }
+
+    @Test
+    public void checkpointCheckSumIsCalculatedWithConfiguredAlgorithm() {
+        executeUpdate("alter table dbmaintain_scripts alter column checksum varchar(100)", dataSource);
+        CheckSumAlgorithms checkSumAlgorithms = new CheckSumAlgorithms(Sha256CheckSumAlgorithm.NAME, Arrays.<CheckSumAlgorithm>asList(new Md5CheckSumAlgorithm(), new Sha256CheckSumAlgorithm()));
+        DefaultExecutedScriptInfoSource executedScriptInfoSource = new DefaultExecutedScriptInfoSource(false, "dbmaintain_scripts", "file_name", 150,
+                "file_last_modified_at", "checksum", 100, checkSumAlgorithms, "executed_at", 50, "succeeded", null, new SimpleDateFormat("dd/MM/yyyy"),
+                defaultDatabase, new DefaultSQLHandler(), TestUtils.createScriptFactory());
+        executedScriptInfoSource.compactExecutedScripts(new ScriptIndexes("2"));
+
+        DefaultExecutedScriptInfoSource reloadedExecutedScriptInfoSource = TestUtils.getDefaultExecutedScriptInfoSource(defaultDatabase, false);
+        assertEquals(new ScriptIndexes("2"), reloadedExecutedScriptInfoSource.getCheckpointRevision());
+        String checkpointCheckSum = reloadedExecutedScriptInfoSource.checkpointCheckSum;
+        assertEquals(Sha256CheckSumAlgorithm.NAME, CheckSumAlgorithms.getAlgorithmName(checkpointCheckSum));
+        assertEquals(64, CheckSumAlgorithms.getValue(checkpointCheckSum).length());
+    }
+
+
+    private void assertCompacted(DefaultExecutedScriptInfoSource executedScriptInfoSource, String expectedCheckpointRevision, String... expectedFileNames) {
+        assertEquals(new ScriptIndexes(expectedCheckpointRevision), executedScriptInfoSource.getCheckpointRevision());
+        SortedSet<ExecutedScript> executedScripts = executedScriptInfoSource.getExecutedScripts();
+        assertEquals(expectedFileNames.length, executedScripts.size());
+        int i = 0;
+        for (ExecutedScript executedScript : executedScripts) {
+            assertEquals(expectedFileNames[i++], executedScript.getScript().getFileName());
+        }
+    }
+
+    private void dropExecutedScriptsTable() {
+        executeUpdateQuietly("drop table dbmaintain_scripts", dataSource);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.executedscriptinfo.impl;
+
+import org.dbmaintain.database.Database;
+import org.dbmaintain.script.ExecutedScript;
+import org.dbmaintain.util.DbMaintainException;
+import org.dbmaintain.util.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.util.Date;
+
+import static org.apache.commons.lang3.time.DateUtils.parseDate;
+import static org.dbmaintain.util.SQLTestUtils.executeUpdate;
+import static org.dbmaintain.util.SQLTestUtils.executeUpdateQuietly;
+import static org.dbmaintain.util.TestUtils.createScript;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the layout of the executed scripts table: the created table and the migration of tables that were created
+ * by older versions.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DefaultExecutedScriptInfoSourceTableLayoutTest {
+
+    private DataSource dataSource;
+    private Database defaultDatabase;
+
+    private Date executedAt;
+
+
+    @Before
+    public void initialize() throws Exception {
+        defaultDatabase = TestUtils.getDatabases().getDefaultDatabase();
+        dataSource = defaultDatabase.getDataSource();
+        executedAt = parseDate("20/05/2008 10:20:30", "dd/MM/yyyy HH:mm:ss");
+
+        dropExecutedScriptsTable();
+    }
+
+    @After
+    public void cleanUp() {
+        dropExecutedScriptsTable();
+    }
+
+
+    @Test
+    public void createdTableIsKeyedOnFileName() {
+        DefaultExecutedScriptInfoSource executedScriptInfoSource = TestUtils.getDefaultExecutedScriptInfoSource(defaultDatabase, true);
+        executedScriptInfoSource.registerExecutedScript(new ExecutedScript(createScript("1_script1.sql"), executedAt, true));
+
+        assertTrue(executedScriptInfoSource.getIndexedColumnNames().contains("FILE_NAME"));
+        try {
+            executeUpdate("insert into dbmaintain_scripts (file_name, succeeded) values ('1_script1.sql', 1)", dataSource);
+            fail("DbMaintainException expected");
+        } catch (DbMaintainException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void executedAtIsStoredAsTimestamp() {
+        TestUtils.getDefaultExecutedScriptInfoSource(defaultDatabase, true).registerExecutedScript(new ExecutedScript(createScript("1_script1.sql"), executedAt, true));
+
+        // the timestamp format dd/MM/yyyy is not used, the time is kept
+        ExecutedScript executedScript = TestUtils.getDefaultExecutedScriptInfoSource(defaultDatabase, false).getExecutedScripts().first();
+        assertEquals(executedAt, executedScript.getExecutedAt());
+    }
+
+    @Test
+    public void existingTableIsIndexed() throws Exception {
+        createTableOfOlderVersion();
+
+        DefaultExecutedScriptInfoSource executedScriptInfoSource = TestUtils.getDefaultExecutedScriptInfoSource(defaultDatabase, true);
+        assertEquals(parseDate("20/05/2008", "dd/MM/yyyy"), executedScriptInfoSource.getExecutedScripts().first().getExecutedAt());
+        // validating the table does not change it
+        assertFalse(executedScriptInfoSource.getIndexedColumnNames().contains("FILE_NAME"));
+
+        executedScriptInfoSource.upgradeExecutedScriptsTable();
+        assertTrue(executedScriptInfoSource.getIndexedColumnNames().contains("FILE_NAME"));
+
+        // the executed at column still contains text
+        executedScriptInfoSource.registerExecutedScript(new ExecutedScript(createScript("2_script2.sql"), executedAt, true));
+        assertEquals(2, TestUtils.getDefaultExecutedScriptInfoSource(defaultDatabase, false).getExecutedScripts().size());
+    }
+
+    @Test
+    public void existingTableIsNotIndexedWhenAutoCreateIsDisabled() {
+        createTableOfOlderVersion();
+
+        DefaultExecutedScriptInfoSource executedScriptInfoSource = TestUtils.getDefaultExecutedScriptInfoSource(defaultDatabase, false);
+        executedScriptInfoSource.upgradeExecutedScriptsTable();
+        assertEquals(1, executedScriptInfoSource.getExecutedScripts().size());
+        assertFalse(executedScriptInfoSource.getIndexedColumnNames().contains("FILE_NAME"));
+    }
+
+    @Test
+    public void existingTableWithDuplicateFileNamesIsNotIndexed() {
+        createTableOfOlderVersion();
+        executeUpdate("insert into dbmaintain_scripts values ('1_script1.sql', 0, 'checksum', '21/05/2008', 1)", dataSource);
+
+        DefaultExecutedScriptInfoSource executedScriptInfoSource = TestUtils.getDefaultExecutedScriptInfoSource(defaultDatabase, true);
+        executedScriptInfoSource.upgradeExecutedScriptsTable();
+        assertFalse(executedScriptInfoSource.getIndexedColumnNames().contains("FILE_NAME"));
+    }
+
+    @Test
+    public void upgradeIsNotRetried() {
+        createTableOfOlderVersion();
+        executeUpdate("insert into dbmaintain_scripts values ('1_script1.sql', 0, 'checksum', '21/05/2008', 1)", dataSource);
+        DefaultExecutedScriptInfoSource executedScriptInfoSource = TestUtils.getDefaultExecutedScriptInfoSource(defaultDatabase, true);
+        executedScriptInfoSource.upgradeExecutedScriptsTable();
+
+        executeUpdate("delete from dbmaintain_scripts where executed_at = '21/05/2008'", dataSource);
+        executedScriptInfoSource.upgradeExecutedScriptsTable();
+        assertFalse(executedScriptInfoSource.getIndexedColumnNames().contains("FILE_NAME"));
+    }
+
+
+    private void createTableOfOlderVersion() {
+        executeUpdate("create table dbmaintain_scripts (file_name varchar(150), file_last_modified_at bigint, checksum varchar(50), " +
+                "executed_at varchar(50), succeeded bigint)", dataSource);
+        executeUpdate("insert into dbmaintain_scripts values ('1_script1.sql', 0, 'checksum', '20/05/2008', 1)", dataSource);
+    }
+
+    private void dropExecutedScriptsTable() {
+        executeUpdateQuietly("drop table dbmaintain_scripts", dataSource);
+    }
+}
@@ -15,9 +15,18 @@
  */
 package org.dbmaintain.script.executedscriptinfo.impl;
 
+import org.apache.commons.lang3.StringUtils;
 import org.dbmaintain.database.Database;
+import org.dbmaintain.database.DatabaseConnection;
+import org.dbmaintain.database.IdentifierProcessor;
+import org.dbmaintain.database.impl.DefaultSQLHandler;
+import org.dbmaintain.database.impl.HsqldbDatabase;
 import org.dbmaintain.script.ExecutedScript;
 import org.dbmaintain.script.Script;
+import org.dbmaintain.script.checksum.CheckSumAlgorithm;
+import org.dbmaintain.script.checksum.CheckSumAlgorithms;
+import org.dbmaintain.script.checksum.impl.Md5CheckSumAlgorithm;
+import org.dbmaintain.script.checksum.impl.Sha256CheckSumAlgorithm;
 import org.dbmaintain.util.DbMaintainException;
 import org.dbmaintain.util.TestUtils;
 import org.junit.After;
@@ -26,13 +35,22 @@ import org.junit.Test;
 
 import javax.sql.DataSource;
 import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 
+import static java.util.Arrays.asList;
 import static junit.framework.Assert.*;
 import static org.apache.commons.lang3.time.DateUtils.parseDate;
+import static org.dbmaintain.database.StoredIdentifierCase.UPPER_CASE;
 import static org.dbmaintain.util.SQLTestUtils.executeUpdate;
 import static org.dbmaintain.util.SQLTestUtils.executeUpdateQuietly;
 import static org.dbmaintain.util.TestUtils.createScript;
+import static org.dbmaintain.util.TestUtils.createScriptFactory;
+import static org.dbmaintain.util.TestUtils.createScriptWithCheckSum;
+import static org.dbmaintain.util.TestUtils.createScriptWithContent;
 
 /**
  * Test class for {@link org.dbmaintain.script.executedscriptinfo.impl.DefaultExecutedScriptInfoSource}. The implementation is tested using a
@@ -105,6 +123,16 @@ public class DefaultExecutedScriptInfoSourceTest {
         assertTrue(executedScripts2.contains(executedScript2));
     }
 
+    @Test
+    public void registerExecutedScriptWithQuoteInFileName() {
+        ExecutedScript executedScript = new ExecutedScript(createScript("1_it's.sql"), executedScript1.getExecutedAt(), true);
+        executedScriptInfoSource.registerExecutedScript(executedScript);
+        executedScriptInfoSource.updateExecutedScript(executedScript);
+
+        initExecutedScriptInfoSource();
+        assertEquals("1_it's.sql", executedScriptInfoSource.getExecutedScripts().first().getScript().getFileName());
+    }
+
     @Test(expected = DbMaintainException.class)
     public void registerExecutedScript_NoExecutedScriptsTable() {
         dropExecutedScriptsTable();
@@ -121,6 +149,35 @@ public class DefaultExecutedScriptInfoSourceTest {
         assertEquals(executedScript1, executedScriptInfoSource.getExecutedScripts().first());
     }
 
+    @Test
+    public void tableIsValidatedOnceWithoutListingTheTablesOfTheSchema() {
+        final int[] nrOfLookups = new int[2];
+        Database database = new HsqldbDatabase(new DatabaseConnection(defaultDatabase.getDatabaseInfo(), defaultDatabase.getSQLHandler(), dataSource),
+                new IdentifierProcessor(UPPER_CASE, "\"", defaultDatabase.getDefaultSchemaName())) {
+
+            @Override
+            public Set<String> getTableNames(String schemaName) {
+                nrOfLookups[0]++;
+                return super.getTableNames(schemaName);
+            }
+
+            @Override
+            public Set<String> getColumnNames(String schemaName, String tableName) {
+                nrOfLookups[1]++;
+                return super.getColumnNames(schemaName, tableName);
+            }
+        };
+        DefaultExecutedScriptInfoSource executedScriptInfoSource = TestUtils.getDefaultExecutedScriptInfoSource(database, false);
+
+        executedScriptInfoSource.registerExecutedScript(executedScript1);
+        executedScriptInfoSource.registerExecutedScript(executedScript2);
+        executedScriptInfoSource.resetCachedState();
+        assertEquals(2, executedScriptInfoSource.getExecutedScripts().size());
+
+        assertEquals(0, nrOfLookups[0]);
+        assertEquals(1, nrOfLookups[1]);
+    }
+
     @Test
     public void updateExecutedScript() {
         executedScriptInfoSource.registerExecutedScript(executedScript1);
@@ -132,6 +189,20 @@ public class DefaultExecutedScriptInfoSourceTest {
         assertTrue(executedScriptInfoSource.getExecutedScripts().first().isSuccessful());
     }
 
+    @Test
+    public void checkSumIsStoredWhenExecutionIsCompleted() {
+        Script script = createScriptWithContent("1_script1.sql", "content");
+        ExecutedScript executedScript = new ExecutedScript(script, executedScript1.getExecutedAt(), false);
+        executedScriptInfoSource.registerExecutedScript(executedScript);
+        initExecutedScriptInfoSource();
+        assertNull(executedScriptInfoSource.getExecutedScripts().first().getScript().getCheckSum());
+
+        executedScript.setSuccessful(true);
+        executedScriptInfoSource.updateExecutedScript(executedScript);
+        initExecutedScriptInfoSource();
+        assertEquals(script.getCheckSum(), executedScriptInfoSource.getExecutedScripts().first().getScript().getCheckSum());
+    }
+
     @Test
     public void renameExecutedScript() {
         executedScriptInfoSource.registerExecutedScript(executedScript1);
@@ -176,6 +247,69 @@ public class DefaultExecutedScriptInfoSourceTest {
         assertEquals(executedScript1, executedScriptInfoSource.getExecutedScripts().first());
     }
 
+    @Test
+    public void deleteAllExecutedPostprocessingScriptsWithOtherSeparatorsAndSimilarNames() {
+        ExecutedScript windowsPostprocessingScript = new ExecutedScript(createScript("postprocessing\\script.sql"), executedScript1.getExecutedAt(), true);
+        ExecutedScript similarlyNamedScript = new ExecutedScript(createScript("postprocessing_other/script.sql"), executedScript1.getExecutedAt(), true);
+        executedScriptInfoSource.registerExecutedScripts(asList(executedPostprocessingScript, windowsPostprocessingScript, similarlyNamedScript));
+
+        executedScriptInfoSource.deleteAllExecutedPostprocessingScripts();
+        assertEquals(1, executedScriptInfoSource.getExecutedScripts().size());
+        initExecutedScriptInfoSource();
+        assertEquals(1, executedScriptInfoSource.getExecutedScripts().size());
+        assertEquals(similarlyNamedScript, executedScriptInfoSource.getExecutedScripts().first());
+    }
+
+    @Test
+    public void registerExecutedScripts() {
+        executedScriptInfoSource.registerExecutedScript(executedScript1);
+
+        List<ExecutedScript> executedScripts = new ArrayList<ExecutedScript>();
+        executedScripts.add(new ExecutedScript(executedScript1.getScript(), executedScript1.getExecutedAt(), true));
+        for (int i = 0; i < 1500; i++) {
+            executedScripts.add(new ExecutedScript(createScript("repeatable/script" + i + ".sql"), executedScript1.getExecutedAt(), true));
+        }
+        executedScriptInfoSource.registerExecutedScripts(executedScripts);
+        assertEquals(1501, executedScriptInfoSource.getExecutedScripts().size());
+
+        initExecutedScriptInfoSource();
+        assertEquals(1501, executedScriptInfoSource.getExecutedScripts().size());
+        assertTrue(executedScriptInfoSource.getExecutedScripts().first().isSuccessful());
+    }
+
+
+    @Test
+    public void newTableIsLargeEnoughForCheckSums() {
+        dropExecutedScriptsTable();
+        String checkSum = "SHA-256:" + StringUtils.repeat('a', 64);
+
+        createExecutedScriptInfoSourceWithCheckSumAlgorithm(true, Sha256CheckSumAlgorithm.NAME).registerExecutedScript(
+                new ExecutedScript(createScriptWithCheckSum("1_script1.sql", checkSum), executedScript1.getExecutedAt(), true));
+
+        assertEquals(checkSum, executedScriptInfoSource.getExecutedScripts().first().getScript().getCheckSum());
+    }
+
+    @Test
+    public void checksumColumnTooSmallForCheckSums() {
+        try {
+            createExecutedScriptInfoSourceWithCheckSumAlgorithm(true, Sha256CheckSumAlgorithm.NAME).getExecutedScripts();
+            fail("DbMaintainException expected");
+        } catch (DbMaintainException e) {
+            assertTrue(e.getMessage().contains("too small for the check sums"));
+        }
+    }
+
+    @Test
+    public void checksumColumnLargeEnoughForCheckSums() {
+        createExecutedScriptInfoSourceWithCheckSumAlgorithm(false, Md5CheckSumAlgorithm.NAME).registerExecutedScript(executedScript1);
+    }
+
+
+    private DefaultExecutedScriptInfoSource createExecutedScriptInfoSourceWithCheckSumAlgorithm(boolean autoCreateExecutedScriptsTable, String checkSumAlgorithmName) {
+        CheckSumAlgorithms checkSumAlgorithms = new CheckSumAlgorithms(checkSumAlgorithmName, Arrays.<CheckSumAlgorithm>asList(new Md5CheckSumAlgorithm(), new Sha256CheckSumAlgorithm()));
+        return new DefaultExecutedScriptInfoSource(autoCreateExecutedScriptsTable, "dbmaintain_scripts", "file_name", 150, "file_last_modified_at", "checksum", 50, checkSumAlgorithms,
+                "executed_at", 50, "succeeded", null, new SimpleDateFormat("dd/MM/yyyy"), defaultDatabase, new DefaultSQLHandler(), createScriptFactory());
+    }
 
     private void createExecutedScriptsTable() {
         executeUpdate(executedScriptInfoSource.getCreateExecutedScriptTableStatement(), dataSource);
@@ -0,0 +1,252 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.executedscriptinfo.impl;
+
+import org.dbmaintain.script.ExecutedScript;
+import org.dbmaintain.script.executedscriptinfo.ScriptIndexes;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+
+import static java.util.Arrays.asList;
+import static org.dbmaintain.script.executedscriptinfo.impl.LazyExecutedScriptSet.NO_EXECUTED_AT;
+import static org.dbmaintain.util.TestUtils.createScript;
+import static org.dbmaintain.util.TestUtils.createScriptFactory;
+import static org.junit.Assert.*;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class LazyExecutedScriptSetTest {
+
+    /* Tested object */
+    private LazyExecutedScriptSet lazyExecutedScriptSet;
+
+
+    @Before
+    public void initialize() {
+        lazyExecutedScriptSet = new LazyExecutedScriptSet(createScriptFactory(), new SimpleDateFormat("dd/MM/yyyy"));
+    }
+
+
+    @Test
+    public void scriptOrder() {
+        addRows("postprocessing/1_post.sql", "10_script10.sql", "repeatable.sql", "2_script2.sql", "1_script1.sql");
+
+        assertFileNames("1_script1.sql", "2_script2.sql", "10_script10.sql", "repeatable.sql", "postprocessing/1_post.sql");
+        assertEquals("1_script1.sql", lazyExecutedScriptSet.first().getScript().getFileName());
+        assertEquals("postprocessing/1_post.sql", lazyExecutedScriptSet.last().getScript().getFileName());
+    }
+
+    @Test
+    public void scriptsAreCreatedWhenAccessed() {
+        addRows("1_script1.sql", "2_script2.sql");
+        assertTrue(lazyExecutedScriptSet.contains(executedScript("2_script2.sql")));
+        assertFalse(lazyExecutedScriptSet.contains(executedScript("3_script3.sql")));
+        assertEquals(0, lazyExecutedScriptSet.getNrOfCreatedExecutedScripts());
+
+        ExecutedScript executedScript = lazyExecutedScriptSet.first();
+        assertEquals(1, lazyExecutedScriptSet.getNrOfCreatedExecutedScripts());
+        assertSame(executedScript, lazyExecutedScriptSet.first());
+        assertEquals(1, lazyExecutedScriptSet.getNrOfCreatedExecutedScripts());
+    }
+
+    @Test
+    public void rowValues() {
+        lazyExecutedScriptSet.addRow("1_script1.sql", 5L, "checksum", 1000L, null, true);
+        lazyExecutedScriptSet.addRow("2_script2.sql", 6L, null, NO_EXECUTED_AT, "20/05/2008", false);
+        lazyExecutedScriptSet.addRow("3_script3.sql", 7L, null, NO_EXECUTED_AT, null, false);
+
+        Iterator<ExecutedScript> iterator = lazyExecutedScriptSet.iterator();
+        ExecutedScript executedScript1 = iterator.next();
+        assertEquals(5L, (long) executedScript1.getScript().getFileLastModifiedAt());
+        assertEquals("checksum", executedScript1.getScript().getCheckSum());
+        assertEquals(new Date(1000L), executedScript1.getExecutedAt());
+        assertTrue(executedScript1.isSuccessful());
+        ExecutedScript executedScript2 = iterator.next();
+        assertEquals(new Date(108, 4, 20), executedScript2.getExecutedAt());
+        assertFalse(executedScript2.isSuccessful());
+        assertNull(iterator.next().getExecutedAt());
+    }
+
+    @Test
+    public void addedRowReplacesRowWithSameFileName() {
+        lazyExecutedScriptSet.addRow("1_script1.sql", 0L, "checksum", NO_EXECUTED_AT, null, false);
+        lazyExecutedScriptSet.first();
+        lazyExecutedScriptSet.addRow("1_script1.sql", 0L, "checksum", NO_EXECUTED_AT, null, true);
+
+        assertEquals(1, lazyExecutedScriptSet.size());
+        assertTrue(lazyExecutedScriptSet.first().isSuccessful());
+    }
+
+    @Test
+    public void addAndRemove() {
+        addRows("1_script1.sql", "2_script2.sql");
+        ExecutedScript executedScript = executedScript("3_script3.sql");
+
+        assertTrue(lazyExecutedScriptSet.add(executedScript));
+        assertFalse(lazyExecutedScriptSet.add(executedScript("3_script3.sql")));
+        assertTrue(lazyExecutedScriptSet.remove(executedScript("1_script1.sql")));
+        assertFalse(lazyExecutedScriptSet.remove(executedScript("1_script1.sql")));
+
+        assertFileNames("2_script2.sql", "3_script3.sql");
+        assertSame(executedScript, lazyExecutedScriptSet.last());
+        assertEquals(2, lazyExecutedScriptSet.getNrOfRows());
+    }
+
+    @Test
+    public void removeUsingIterator() {
+        addRows("1_script1.sql", "2_script2.sql", "3_script3.sql");
+        Iterator<ExecutedScript> iterator = lazyExecutedScriptSet.iterator();
+        iterator.next();
+        iterator.next();
+        iterator.remove();
+
+        assertFileNames("1_script1.sql", "3_script3.sql");
+    }
+
+    @Test
+    public void rangeViews() {
+        addRows("1_script1.sql", "2_script2.sql", "3_script3.sql", "10_script10.sql", "repeatable.sql");
+
+        assertFileNames(lazyExecutedScriptSet.subSet(executedScript("2_script2.sql"), executedScript("10_script10.sql")), "2_script2.sql", "3_script3.sql");
+        assertFileNames(lazyExecutedScriptSet.headSet(executedScript("3_script3.sql")), "1_script1.sql", "2_script2.sql");
+        assertFileNames(lazyExecutedScriptSet.tailSet(executedScript("3_script3.sql")), "3_script3.sql", "10_script10.sql", "repeatable.sql");
+        assertEquals("10_script10.sql", lazyExecutedScriptSet.headSet(executedScript("repeatable.sql")).last().getScript().getFileName());
+        assertEquals(0, lazyExecutedScriptSet.subSet(executedScript("4_script4.sql"), executedScript("5_script5.sql")).size());
+    }
+
+    @Test
+    public void rangeViewIsBackedBySet() {
+        addRows("1_script1.sql", "2_script2.sql", "3_script3.sql", "10_script10.sql");
+        SortedSet<ExecutedScript> tailSet = lazyExecutedScriptSet.tailSet(executedScript("2_script2.sql"));
+
+        assertTrue(tailSet.remove(executedScript("3_script3.sql")));
+        assertFalse(tailSet.remove(executedScript("1_script1.sql")));
+        assertTrue(tailSet.add(executedScript("4_script4.sql")));
+        lazyExecutedScriptSet.add(executedScript("5_script5.sql"));
+        lazyExecutedScriptSet.add(executedScript("0_script0.sql"));
+
+        assertFileNames(tailSet, "2_script2.sql", "4_script4.sql", "5_script5.sql", "10_script10.sql");
+        assertTrue(tailSet.contains(executedScript("5_script5.sql")));
+        assertFalse(tailSet.contains(executedScript("0_script0.sql")));
+        assertFileNames(tailSet.headSet(executedScript("5_script5.sql")), "2_script2.sql", "4_script4.sql");
+        assertFileNames(lazyExecutedScriptSet, "0_script0.sql", "1_script1.sql", "2_script2.sql", "4_script4.sql", "5_script5.sql", "10_script10.sql");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addOutOfRangeOfView() {
+        addRows("1_script1.sql", "2_script2.sql");
+        lazyExecutedScriptSet.headSet(executedScript("2_script2.sql")).add(executedScript("3_script3.sql"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nestedViewOutOfRange() {
+        lazyExecutedScriptSet.headSet(executedScript("2_script2.sql")).tailSet(executedScript("3_script3.sql"));
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void addWhileIterating() {
+        addRows("1_script1.sql", "2_script2.sql");
+        Iterator<ExecutedScript> iterator = lazyExecutedScriptSet.iterator();
+        iterator.next();
+        lazyExecutedScriptSet.add(executedScript("3_script3.sql"));
+        iterator.next();
+    }
+
+    @Test
+    public void manyRowsAddedAndRemoved() {
+        for (int i = 0; i < 1000; i++) {
+            addRows(i + "_script.sql");
+            if (i % 3 == 0) {
+                lazyExecutedScriptSet.remove(executedScript(i + "_script.sql"));
+            }
+        }
+        addRows("0_script.sql");
+
+        assertEquals(667, lazyExecutedScriptSet.size());
+        assertTrue(lazyExecutedScriptSet.contains(executedScript("0_script.sql")));
+        assertFalse(lazyExecutedScriptSet.contains(executedScript("3_script.sql")));
+        assertTrue(lazyExecutedScriptSet.contains(executedScript("998_script.sql")));
+        assertEquals("998_script.sql", lazyExecutedScriptSet.last().getScript().getFileName());
+    }
+
+    @Test
+    public void ignoredRows() {
+        lazyExecutedScriptSet = new LazyExecutedScriptSet(createScriptFactory(new ScriptIndexes("2")), new SimpleDateFormat("dd/MM/yyyy"));
+        addRows("1_script1.sql", "2_script2.sql", "repeatable.sql");
+
+        assertFileNames("2_script2.sql", "repeatable.sql");
+        assertFalse(lazyExecutedScriptSet.contains(executedScript("1_script1.sql")));
+        assertEquals(3, lazyExecutedScriptSet.getNrOfRows());
+    }
+
+    @Test
+    public void clear() {
+        addRows("1_script1.sql", "2_script2.sql");
+        lazyExecutedScriptSet.clear();
+
+        assertTrue(lazyExecutedScriptSet.isEmpty());
+        assertEquals(0, lazyExecutedScriptSet.getNrOfRows());
+    }
+
+    /**
+     * Measures the footprint as the nr of script instances that is retained by a large nr of rows that are loaded
+     * and looked up, as is done when registering scripts.
+     */
+    @Test
+    public void footprint() {
+        for (int i = 0; i < 100000; i++) {
+            lazyExecutedScriptSet.addRow("01_tenant" + (i % 100) + "/" + i + "_script.sql", 0L, "checksum", i, null, true);
+        }
+        for (int i = 0; i < 100000; i += 10) {
+            assertTrue(lazyExecutedScriptSet.contains(executedScript("01_tenant" + (i % 100) + "/" + i + "_script.sql")));
+        }
+        assertEquals(100000, lazyExecutedScriptSet.size());
+        assertEquals(0, lazyExecutedScriptSet.getNrOfCreatedExecutedScripts());
+    }
+
+
+    private void addRows(String... fileNames) {
+        for (String fileName : fileNames) {
+            lazyExecutedScriptSet.addRow(fileName, 0L, "checksum", NO_EXECUTED_AT, null, true);
+        }
+    }
+
+    private ExecutedScript executedScript(String fileName) {
+        return new ExecutedScript(createScript(fileName), null, true);
+    }
+
+    private void assertFileNames(String... expectedFileNames) {
+        assertFileNames(lazyExecutedScriptSet, expectedFileNames);
+    }
+
+    private void assertFileNames(Iterable<ExecutedScript> executedScripts, String... expectedFileNames) {
+        List<String> fileNames = new ArrayList<>();
+        for (ExecutedScript executedScript : executedScripts) {
+            fileNames.add(executedScript.getScript().getFileName());
+        }
+        assertEquals(asList(expectedFileNames), fileNames);
+    }
+}
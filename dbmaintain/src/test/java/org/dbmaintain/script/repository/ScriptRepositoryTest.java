@@ -20,10 +20,14 @@ import org.dbmaintain.util.DbMaintainException;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.LinkedHashSet;
+
+import static java.util.Arrays.asList;
 import static org.dbmaintain.util.CollectionUtils.asSet;
 import static org.dbmaintain.util.CollectionUtils.asSortedSet;
 import static org.dbmaintain.util.TestUtils.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 /**
  * @author Filip Neven
@@ -71,4 +75,47 @@ public class ScriptRepositoryTest {
         new ScriptRepository(asSet(scriptLocation1, location), getTrivialQualifierEvaluator());
     }
 
+    @Test
+    public void allDuplicateScriptsAreReported() {
+        ScriptLocation location = createArchiveScriptLocation(asSortedSet(indexed2, repeatable1, postProcessing1), null);
+        try {
+            new ScriptRepository(asSet(scriptLocation1, location), getTrivialQualifierEvaluator());
+            fail("DbMaintainException expected");
+        } catch (DbMaintainException e) {
+            assertEquals("Duplicate scripts found:\n" +
+                    "- postprocessing/01_post1.sql at <undefined> and <undefined>\n" +
+                    "- repeatable1.sql at <undefined> and <undefined>\n", e.getMessage());
+        }
+    }
+
+    @Test
+    public void duplicateScriptsAreReportedAgainstTheFirstLocation() {
+        ScriptLocation location2 = createArchiveScriptLocation(asSortedSet(repeatable1), null);
+        ScriptLocation location3 = createArchiveScriptLocation(asSortedSet(repeatable1), null);
+        scriptLocation1.scriptLocationName = "location1";
+        location2.scriptLocationName = "location2";
+        location3.scriptLocationName = "location3";
+        try {
+            new ScriptRepository(new LinkedHashSet<>(asList(scriptLocation1, location2, location3)), getTrivialQualifierEvaluator());
+            fail("DbMaintainException expected");
+        } catch (DbMaintainException e) {
+            assertEquals("Duplicate scripts found:\n" +
+                    "- repeatable1.sql at location1 and location2\n" +
+                    "- repeatable1.sql at location1 and location3\n", e.getMessage());
+        }
+    }
+
+    @Test
+    public void allDuplicateIndexesAreReported() {
+        Script duplicateIndex2 = createScript("02_duplicateIndex2.sql");
+        ScriptLocation location = createArchiveScriptLocation(asSortedSet(indexed2, duplicateIndex, duplicateIndex2), null);
+        try {
+            new ScriptRepository(asSet(scriptLocation1, location), getTrivialQualifierEvaluator());
+            fail("DbMaintainException expected");
+        } catch (DbMaintainException e) {
+            assertEquals("Found 2 indexed scripts with the same index: 01_duplicateIndex.sql and 01_indexed1.sql: both scripts have index 1\n" +
+                    "Found 2 indexed scripts with the same index: 02_duplicateIndex2.sql and 02_indexed2.sql: both scripts have index 2", e.getMessage());
+        }
+    }
+
 }
@@ -0,0 +1,200 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.repository.impl;
+
+import org.dbmaintain.script.ExecutedScript;
+import org.dbmaintain.script.Script;
+import org.dbmaintain.script.analyzer.ScriptUpdate;
+import org.dbmaintain.script.analyzer.ScriptUpdates;
+import org.dbmaintain.script.analyzer.ScriptUpdatesAnalyzer;
+import org.dbmaintain.script.executedscriptinfo.ScriptIndexes;
+import org.dbmaintain.script.qualifier.Qualifier;
+import org.dbmaintain.util.DbMaintainException;
+import org.dbmaintain.util.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import static java.io.File.createTempFile;
+import static java.util.Collections.singleton;
+import static org.dbmaintain.script.analyzer.ScriptUpdateType.HIGHER_INDEX_SCRIPT_ADDED;
+import static org.dbmaintain.script.analyzer.ScriptUpdateType.REPEATABLE_SCRIPT_UPDATED;
+import static org.dbmaintain.util.CollectionUtils.asSet;
+import static org.dbmaintain.util.CollectionUtils.asSortedSet;
+import static org.dbmaintain.util.TestUtils.createScriptWithContent;
+import static org.junit.Assert.*;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ArchiveScriptLocationDeltaTest {
+
+    private File previousJarFile;
+    private File jarFile;
+
+    private SortedSet<Script> previousScripts;
+    private SortedSet<Script> scripts;
+
+
+    @Before
+    public void init() throws IOException {
+        previousScripts = asSortedSet(
+                createScriptWithContent("01_script1.sql", "Script 1 content"),
+                createScriptWithContent("02_script2.sql", "Script 2 content"),
+                createScriptWithContent("repeatable/script3.sql", "Script 3 content"),
+                createScriptWithContent("postprocessing/01_post.sql", "Post content"));
+        scripts = asSortedSet(
+                createScriptWithContent("01_script1.sql", "Script 1 content"),
+                createScriptWithContent("02_script2.sql", "Script 2 content"),
+                createScriptWithContent("repeatable/script3.sql", "Script 3 changed content"),
+                createScriptWithContent("03_script4.sql", "Script 4 content"),
+                createScriptWithContent("postprocessing/01_post.sql", "Post content"));
+
+        previousJarFile = createTempFile("scriptjar", ".jar");
+        jarFile = createTempFile("scriptjar", ".jar");
+        createArchiveScriptLocation(previousScripts, null).writeToJarFile(previousJarFile);
+    }
+
+    @After
+    public void cleanUp() {
+        previousJarFile.delete();
+        jarFile.delete();
+    }
+
+
+    @Test
+    public void onlyNewAndChangedScriptsAreStored() throws IOException {
+        createArchiveScriptLocation(scripts, null).writeToJarFile(jarFile, -1, 2, false, previousJarFile);
+
+        JarFile jar = new JarFile(jarFile);
+        try {
+            assertNull(jar.getEntry("01_script1.sql"));
+            assertNull(jar.getEntry("02_script2.sql"));
+            assertNotNull(jar.getEntry("repeatable/script3.sql"));
+            assertNotNull(jar.getEntry("03_script4.sql"));
+            // post processing scripts are executed after every update
+            assertNotNull(jar.getEntry("postprocessing/01_post.sql"));
+        } finally {
+            jar.close();
+        }
+    }
+
+    @Test
+    public void loadDeltaArchive() {
+        createArchiveScriptLocation(scripts, null).writeToJarFile(jarFile, -1, 2, false, previousJarFile);
+
+        SortedSet<Script> loadedScripts = loadArchiveScriptLocation(jarFile, null).getScripts();
+        assertEquals(5, loadedScripts.size());
+        Script script1 = getScript(loadedScripts, "01_script1.sql");
+        assertFalse(script1.getScriptContentHandle().isContentAvailable());
+        assertEquals(previousScripts.first().getCheckSum(), script1.getCheckSum());
+        assertEquals("Script 4 content", getScript(loadedScripts, "03_script4.sql").getScriptContentHandle().getScriptContentsAsString(100));
+        try {
+            script1.getScriptContentHandle().openScriptContentReader();
+            fail("DbMaintainException expected");
+        } catch (DbMaintainException e) {
+            assertTrue(e.getMessage().contains("The content of script 01_script1.sql is not available"));
+        }
+    }
+
+    @Test
+    public void deltaArchiveWithOtherConfiguration() {
+        createArchiveScriptLocation(scripts, null).writeToJarFile(jarFile, -1, 2, false, previousJarFile);
+
+        SortedSet<Script> loadedScripts = loadArchiveScriptLocation(jarFile, new ScriptIndexes("1")).getScripts();
+        Script script2 = getScript(loadedScripts, "02_script2.sql");
+        assertFalse(script2.getScriptContentHandle().isContentAvailable());
+        assertEquals(createScriptWithContent("02_script2.sql", "Script 2 content").getCheckSum(), script2.getCheckSum());
+    }
+
+    @Test
+    public void scriptUpdatesAreAnalyzedUsingTheManifest() {
+        createArchiveScriptLocation(scripts, null).writeToJarFile(jarFile, -1, 2, false, previousJarFile);
+        SortedSet<Script> loadedScripts = loadArchiveScriptLocation(jarFile, null).getScripts();
+        SortedSet<ExecutedScript> executedScripts = new TreeSet<>();
+        for (Script previousScript : previousScripts) {
+            executedScripts.add(new ExecutedScript(previousScript, new Date(), true));
+        }
+
+        ScriptUpdates scriptUpdates = new ScriptUpdatesAnalyzer(TestUtils.getScriptRepository(loadedScripts), TestUtils.getExecutedScriptInfoSource(executedScripts), false, false, false).calculateScriptUpdates();
+        assertTrue(scriptUpdates.getIrregularScriptUpdates().isEmpty());
+        assertEquals(asSortedSet(new ScriptUpdate(HIGHER_INDEX_SCRIPT_ADDED, getScript(loadedScripts, "03_script4.sql")),
+                new ScriptUpdate(REPEATABLE_SCRIPT_UPDATED, getScript(loadedScripts, "repeatable/script3.sql"))),
+                scriptUpdates.getRegularlyAddedOrModifiedScripts());
+    }
+
+    @Test
+    public void previousArchiveWithoutManifest() throws IOException {
+        JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(previousJarFile));
+        try {
+            jarOutputStream.putNextEntry(new JarEntry("01_script1.sql"));
+            jarOutputStream.write("Script 1 content".getBytes("ISO-8859-1"));
+            jarOutputStream.closeEntry();
+        } finally {
+            jarOutputStream.close();
+        }
+        try {
+            createArchiveScriptLocation(scripts, null).writeToJarFile(jarFile, -1, 2, false, previousJarFile);
+            fail("DbMaintainException expected");
+        } catch (DbMaintainException e) {
+            assertTrue(e.getMessage().contains("does not contain a script manifest"));
+        }
+    }
+
+    @Test
+    public void previousArchiveWithOtherConfiguration() {
+        try {
+            createArchiveScriptLocation(scripts, new ScriptIndexes("1")).writeToJarFile(jarFile, -1, 2, false, previousJarFile);
+            fail("DbMaintainException expected");
+        } catch (DbMaintainException e) {
+            assertTrue(e.getMessage().contains("was created with another configuration"));
+        }
+    }
+
+
+    private Script getScript(SortedSet<Script> scripts, String fileName) {
+        for (Script script : scripts) {
+            if (fileName.equals(script.getFileName())) {
+                return script;
+            }
+        }
+        fail("Script " + fileName + " not found");
+        return null;
+    }
+
+    private ArchiveScriptLocation createArchiveScriptLocation(SortedSet<Script> scripts, ScriptIndexes baseLineRevision) {
+        return new ArchiveScriptLocation(scripts, "ISO-8859-1", "postprocessing",
+                asSet(new Qualifier("qualifier1")), singleton(new Qualifier("patch")), "^([0-9]+)_",
+                "(?:\\\\G|_)#([a-zA-Z0-9]+)_", "(?:\\\\G|_)@([a-zA-Z0-9]+)_", asSet("sql"), baseLineRevision, false);
+    }
+
+    private ArchiveScriptLocation loadArchiveScriptLocation(File file, ScriptIndexes baseLineRevision) {
+        return new ArchiveScriptLocation(file, "ISO-8859-1", "postprocessing",
+                asSet(new Qualifier("qualifier1")), singleton(new Qualifier("patch")), "^([0-9]+)_",
+                "(?:\\\\G|_)#([a-zA-Z0-9]+)_", "(?:\\\\G|_)@([a-zA-Z0-9]+)_", asSet("sql"), baseLineRevision, false, true);
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.repository.impl;
+
+import org.apache.commons.io.IOUtils;
+import org.dbmaintain.script.Script;
+import org.dbmaintain.script.checksum.CheckSumAlgorithm;
+import org.dbmaintain.script.checksum.CheckSumAlgorithms;
+import org.dbmaintain.script.checksum.impl.Md5CheckSumAlgorithm;
+import org.dbmaintain.script.checksum.impl.Sha256CheckSumAlgorithm;
+import org.dbmaintain.script.executedscriptinfo.ScriptIndexes;
+import org.dbmaintain.script.qualifier.Qualifier;
+import org.dbmaintain.util.DbMaintainException;
+import org.dbmaintain.util.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.SortedSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import static java.io.File.createTempFile;
+import static java.util.Collections.singleton;
+import static org.dbmaintain.script.repository.impl.ScriptArchiveManifest.MANIFEST_FILENAME;
+import static org.dbmaintain.util.CollectionUtils.asSet;
+import static org.dbmaintain.util.CollectionUtils.asSortedSet;
+import static org.junit.Assert.*;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ArchiveScriptLocationManifestTest {
+
+    private File jarFile;
+    private File modifiedJarFile;
+
+    @Before
+    public void init() throws IOException {
+        Script script1 = TestUtils.createScriptWithContent("01_folder/01_@db1_#patch_script1.sql", "Script 1 content");
+        Script script2 = TestUtils.createScriptWithContent("repeatable/script2.sql", "Script 2 content");
+        Script script3 = TestUtils.createScriptWithContent("postprocessing/script3.sql", "Script 3 content");
+        SortedSet<Script> scripts = asSortedSet(script1, script2, script3);
+
+        jarFile = createTempFile("scriptjar", ".jar");
+        modifiedJarFile = createTempFile("scriptjar", ".jar");
+        createArchiveScriptLocation(scripts).writeToJarFile(jarFile);
+    }
+
+    @After
+    public void cleanUp() {
+        jarFile.delete();
+        modifiedJarFile.delete();
+    }
+
+
+    @Test
+    public void scriptsCreatedFromManifest() {
+        SortedSet<Script> scripts = loadArchiveScriptLocation(jarFile, null, false).getScripts();
+
+        Script script1 = getScript(scripts, "01_folder/01_@db1_#patch_script1.sql");
+        assertEquals("1.1", script1.getScriptIndexes().getIndexesString());
+        assertEquals("db1", script1.getTargetDatabaseName());
+        assertEquals(singleton(new Qualifier("patch")), script1.getQualifiers());
+        assertTrue(script1.isPatchScript());
+        assertTrue(script1.isIncremental());
+        assertTrue(script1.isCheckSumCalculated());
+        assertEquals(TestUtils.createScriptWithContent("script1.sql", "Script 1 content").getCheckSum(), script1.getCheckSum());
+
+        Script script2 = getScript(scripts, "repeatable/script2.sql");
+        assertTrue(script2.isRepeatable());
+        assertTrue(script2.isCheckSumCalculated());
+
+        Script script3 = getScript(scripts, "postprocessing/script3.sql");
+        assertTrue(script3.isPostProcessingScript());
+    }
+
+    @Test
+    public void qualifiersOfManifestAreShared() throws IOException {
+        Script script1 = TestUtils.createScriptWithContent("01_#patch_script1.sql", "Script 1 content");
+        Script script2 = TestUtils.createScriptWithContent("02_#patch_script2.sql", "Script 2 content");
+        createArchiveScriptLocation(asSortedSet(script1, script2)).writeToJarFile(modifiedJarFile);
+
+        SortedSet<Script> scripts = loadArchiveScriptLocation(modifiedJarFile, null, false).getScripts();
+
+        assertSame(scripts.first().getQualifiers(), scripts.last().getQualifiers());
+    }
+
+    @Test
+    public void manifestCheckSumOfOtherAlgorithmIsNotUsed() throws IOException {
+        Script script = TestUtils.createScriptWithContent("01_script1.sql", "Script 1 content");
+        script.getScriptContentHandle().setCheckSumAlgorithms(getCheckSumAlgorithms(Sha256CheckSumAlgorithm.NAME));
+        createArchiveScriptLocation(asSortedSet(script)).writeToJarFile(modifiedJarFile);
+
+        Script loadedScript = loadArchiveScriptLocation(modifiedJarFile, null, false).getScripts().first();
+        loadedScript.getScriptContentHandle().setCheckSumAlgorithms(getCheckSumAlgorithms(Md5CheckSumAlgorithm.NAME));
+
+        assertFalse(loadedScript.isCheckSumCalculated());
+        assertEquals(TestUtils.createScriptWithContent("01_script1.sql", "Script 1 content").getCheckSum(), loadedScript.getCheckSum());
+    }
+
+    @Test
+    public void manifestNotUsedWhenConfigurationDiffers() {
+        SortedSet<Script> scripts = loadArchiveScriptLocation(jarFile, new ScriptIndexes("1"), false).getScripts();
+
+        for (Script script : scripts) {
+            assertFalse(script.isCheckSumCalculated());
+        }
+    }
+
+    @Test
+    public void verifyManifest() {
+        SortedSet<Script> scripts = loadArchiveScriptLocation(jarFile, null, true).getScripts();
+        assertEquals(3, scripts.size());
+    }
+
+    @Test
+    public void verifyManifestWithModifiedCheckSum() throws IOException {
+        String checkSum = TestUtils.createScriptWithContent("script1.sql", "Script 1 content").getCheckSum();
+        String otherCheckSum = TestUtils.createScriptWithContent("script1.sql", "other content").getCheckSum();
+        copyJarWithModifiedManifest(CheckSumAlgorithms.getValue(checkSum), CheckSumAlgorithms.getValue(otherCheckSum));
+        try {
+            loadArchiveScriptLocation(modifiedJarFile, null, true);
+            fail("DbMaintainException expected");
+        } catch (DbMaintainException e) {
+            assertTrue(e.getMessage().contains("does not match the content of script 01_folder/01_@db1_#patch_script1.sql"));
+        }
+    }
+
+    @Test
+    public void verifyManifestWithModifiedMetadata() throws IOException {
+        copyJarWithModifiedManifest("targetDatabase=db1", "targetDatabase=db2");
+        try {
+            loadArchiveScriptLocation(modifiedJarFile, null, true);
+            fail("DbMaintainException expected");
+        } catch (DbMaintainException e) {
+            assertTrue(e.getMessage().contains("does not match the file name of script 01_folder/01_@db1_#patch_script1.sql"));
+        }
+    }
+
+
+    private CheckSumAlgorithms getCheckSumAlgorithms(String defaultAlgorithmName) {
+        return new CheckSumAlgorithms(defaultAlgorithmName, Arrays.<CheckSumAlgorithm>asList(new Md5CheckSumAlgorithm(), new Sha256CheckSumAlgorithm()));
+    }
+
+    private Script getScript(SortedSet<Script> scripts, String fileName) {
+        for (Script script : scripts) {
+            if (fileName.equals(script.getFileName())) {
+                return script;
+            }
+        }
+        fail("Script " + fileName + " not found");
+        return null;
+    }
+
+    private ArchiveScriptLocation createArchiveScriptLocation(SortedSet<Script> scripts) {
+        return new ArchiveScriptLocation(scripts, "ISO-8859-1", "postprocessing",
+                asSet(new Qualifier("qualifier1"), new Qualifier("qualifier2")), singleton(new Qualifier("patch")), "^([0-9]+)_",
+                "(?:\\\\G|_)#([a-zA-Z0-9]+)_", "(?:\\\\G|_)@([a-zA-Z0-9]+)_", asSet("sql", "ddl"), null, false);
+    }
+
+    private ArchiveScriptLocation loadArchiveScriptLocation(File file, ScriptIndexes baseLineRevision, boolean verifyManifest) {
+        return new ArchiveScriptLocation(file, "ISO-8859-1", "postprocessing",
+                asSet(new Qualifier("qualifier1"), new Qualifier("qualifier2")), singleton(new Qualifier("patch")), "^([0-9]+)_",
+                "(?:\\\\G|_)#([a-zA-Z0-9]+)_", "(?:\\\\G|_)@([a-zA-Z0-9]+)_", asSet("sql", "ddl"), baseLineRevision, false, verifyManifest);
+    }
+
+    private void copyJarWithModifiedManifest(String text, String replacement) throws IOException {
+        JarFile jar = new JarFile(jarFile);
+        JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(modifiedJarFile));
+        try {
+            for (Enumeration<JarEntry> jarEntries = jar.entries(); jarEntries.hasMoreElements();) {
+                JarEntry jarEntry = jarEntries.nextElement();
+                byte[] content = IOUtils.toByteArray(jar.getInputStream(jarEntry));
+                if (MANIFEST_FILENAME.equals(jarEntry.getName())) {
+                    content = new String(content, "ISO-8859-1").replace(text, replacement).getBytes("ISO-8859-1");
+                }
+                jarOutputStream.putNextEntry(new JarEntry(jarEntry.getName()));
+                jarOutputStream.write(content);
+                jarOutputStream.closeEntry();
+            }
+        } finally {
+            jarOutputStream.close();
+            jar.close();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.repository.impl;
+
+import org.dbmaintain.script.Script;
+import org.dbmaintain.script.ScriptContentHandle;
+import org.dbmaintain.script.ScriptContentHandle.StringScriptContentHandle;
+import org.dbmaintain.script.ScriptFactory;
+import org.dbmaintain.script.executedscriptinfo.ScriptIndexes;
+import org.dbmaintain.script.qualifier.Qualifier;
+import org.dbmaintain.util.DbMaintainException;
+import org.dbmaintain.util.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+
+import static java.io.File.createTempFile;
+import static java.util.Collections.singleton;
+import static org.apache.commons.io.IOUtils.toByteArray;
+import static org.dbmaintain.script.repository.impl.ArchiveScriptLocation.LOCATION_PROPERTIES_FILENAME;
+import static org.dbmaintain.util.CollectionUtils.asSet;
+import static org.dbmaintain.util.CollectionUtils.asSortedSet;
+import static org.junit.Assert.*;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ArchiveScriptLocationWriteTest {
+
+    private File jarFile;
+    private File otherJarFile;
+
+    @Before
+    public void init() throws IOException {
+        jarFile = createTempFile("scriptjar", ".jar");
+        otherJarFile = createTempFile("scriptjar", ".jar");
+    }
+
+    @After
+    public void cleanUp() {
+        jarFile.delete();
+        otherJarFile.delete();
+    }
+
+
+    @Test
+    public void scriptsStoredWithoutCompression() throws IOException {
+        Script script = TestUtils.createScriptWithContent("01_script1.sql", "Script 1 content");
+        createArchiveScriptLocation(asSortedSet(script), "ISO-8859-1").writeToJarFile(jarFile, 0, 2);
+
+        JarFile jar = new JarFile(jarFile);
+        try {
+            JarEntry jarEntry = jar.getJarEntry("01_script1.sql");
+            assertEquals(ZipEntry.STORED, jarEntry.getMethod());
+            assertEquals("Script 1 content", new String(toByteArray(jar.getInputStream(jarEntry)), "ISO-8859-1"));
+        } finally {
+            jar.close();
+        }
+        Script loadedScript = loadArchiveScriptLocation(jarFile, "ISO-8859-1").getScripts().first();
+        assertEquals(script.getCheckSum(), loadedScript.getCheckSum());
+    }
+
+    @Test
+    public void rawBytesAreCopiedWhenEncodingIsEqual() throws IOException {
+        byte[] content = "select 'é€中' from dual;".getBytes("UTF-8");
+        Script script = createScript("01_script1.sql", content, "UTF-8");
+        createArchiveScriptLocation(asSortedSet(script), "UTF-8").writeToJarFile(jarFile, 6, 2);
+
+        assertArrayEquals(content, readEntry(jarFile, "01_script1.sql"));
+        Script loadedScript = loadArchiveScriptLocation(jarFile, "UTF-8").getScripts().first();
+        assertEquals(script.getCheckSum(), loadedScript.getCheckSum());
+    }
+
+    @Test
+    public void scriptIsConvertedToEncodingOfArchive() throws IOException {
+        Script script = createScript("01_script1.sql", "éè".getBytes("ISO-8859-1"), "ISO-8859-1");
+        createArchiveScriptLocation(asSortedSet(script), "UTF-8").writeToJarFile(jarFile, 6, 2);
+
+        assertArrayEquals("éè".getBytes("UTF-8"), readEntry(jarFile, "01_script1.sql"));
+    }
+
+    @Test
+    public void parallelWriteEqualsSerialWrite() throws IOException {
+        SortedSet<Script> scripts = new TreeSet<>();
+        for (int i = 1; i <= 100; i++) {
+            scripts.add(TestUtils.createScriptWithContent(i + "_script" + i + ".sql", "Script " + i + " content"));
+        }
+        createArchiveScriptLocation(scripts, "ISO-8859-1").writeToJarFile(jarFile, 6, 1);
+        createArchiveScriptLocation(scripts, "ISO-8859-1").writeToJarFile(otherJarFile, 6, 4);
+
+        List<String> entryNames = getEntryNames(jarFile);
+        assertEquals(entryNames, getEntryNames(otherJarFile));
+        for (String entryName : entryNames) {
+            if (!LOCATION_PROPERTIES_FILENAME.equals(entryName) && !ScriptArchiveManifest.MANIFEST_FILENAME.equals(entryName)) {
+                assertArrayEquals(readEntry(jarFile, entryName), readEntry(otherJarFile, entryName));
+            }
+        }
+    }
+
+    @Test
+    public void sameContentIsStoredOnce() throws IOException {
+        SortedSet<Script> scripts = createScriptsWithDuplicateContent();
+        createArchiveScriptLocation(scripts, "ISO-8859-1").writeToJarFile(jarFile, 6, 2, true);
+
+        List<String> entryNames = getEntryNames(jarFile);
+        assertFalse(entryNames.contains("repeatable/db1/script.sql"));
+        int nrOfContentEntries = 0;
+        for (String entryName : entryNames) {
+            if (entryName.startsWith(ScriptArchiveManifest.CONTENT_DIRNAME)) {
+                nrOfContentEntries++;
+            }
+        }
+        assertEquals(2, nrOfContentEntries);
+    }
+
+    @Test
+    public void loadDeduplicatedArchive() throws IOException {
+        SortedSet<Script> scripts = createScriptsWithDuplicateContent();
+        createArchiveScriptLocation(scripts, "ISO-8859-1").writeToJarFile(jarFile, 6, 2, true);
+
+        SortedSet<Script> loadedScripts = loadArchiveScriptLocation(jarFile, "ISO-8859-1").getScripts();
+        assertEquals(3, loadedScripts.size());
+        Script script1 = getScript(loadedScripts, "repeatable/db1/script.sql");
+        Script script2 = getScript(loadedScripts, "repeatable/db2/script.sql");
+        assertSame(script1.getScriptContentHandle(), script2.getScriptContentHandle());
+        assertEquals(Long.valueOf(2), script2.getFileLastModifiedAt());
+        assertEquals("same content", script2.getScriptContentHandle().getScriptContentsAsString(100));
+        assertEquals(scripts.first().getCheckSum(), loadedScripts.first().getCheckSum());
+    }
+
+    @Test
+    public void loadDeduplicatedArchiveWithOtherConfiguration() throws IOException {
+        SortedSet<Script> scripts = createScriptsWithDuplicateContent();
+        createArchiveScriptLocation(scripts, "ISO-8859-1").writeToJarFile(jarFile, 6, 2, true);
+
+        SortedSet<Script> loadedScripts = new ArchiveScriptLocation(jarFile, "ISO-8859-1", "postprocessing",
+                asSet(new Qualifier("qualifier1")), singleton(new Qualifier("patch")), "^([0-9]+)_",
+                "(?:\\G|_)#([a-zA-Z0-9]+)_", "(?:\\G|_)@([a-zA-Z0-9]+)_", asSet("sql"), new ScriptIndexes("1"), false, true).getScripts();
+        assertEquals(3, loadedScripts.size());
+        Script script = getScript(loadedScripts, "01_script1.sql");
+        assertFalse(script.isCheckSumCalculated());
+        assertEquals(scripts.first().getCheckSum(), script.getCheckSum());
+    }
+
+    @Test(expected = DbMaintainException.class)
+    public void invalidCompressionLevel() {
+        Script script = TestUtils.createScriptWithContent("01_script1.sql", "Script 1 content");
+        createArchiveScriptLocation(asSortedSet(script), "ISO-8859-1").writeToJarFile(jarFile, 10, 1);
+    }
+
+
+    private SortedSet<Script> createScriptsWithDuplicateContent() {
+        ScriptFactory scriptFactory = TestUtils.createScriptFactory();
+        Script script1 = scriptFactory.createScriptWithContent("01_script1.sql", 1L, new StringScriptContentHandle("Script 1 content", "ISO-8859-1", false));
+        Script script2 = scriptFactory.createScriptWithContent("repeatable/db1/script.sql", 1L, new StringScriptContentHandle("same content", "ISO-8859-1", false));
+        Script script3 = scriptFactory.createScriptWithContent("repeatable/db2/script.sql", 2L, new StringScriptContentHandle("same content", "ISO-8859-1", false));
+        return asSortedSet(script1, script2, script3);
+    }
+
+    private Script getScript(SortedSet<Script> scripts, String fileName) {
+        for (Script script : scripts) {
+            if (fileName.equals(script.getFileName())) {
+                return script;
+            }
+        }
+        fail("Script " + fileName + " not found");
+        return null;
+    }
+
+    private Script createScript(String fileName, final byte[] content, String encoding) {
+        ScriptContentHandle scriptContentHandle = new ScriptContentHandle(encoding, false) {
+            @Override
+            protected InputStream getScriptInputStream() {
+                return new ByteArrayInputStream(content);
+            }
+        };
+        return TestUtils.createScriptFactory().createScriptWithContent(fileName, 0L, scriptContentHandle);
+    }
+
+    private byte[] readEntry(File file, String entryName) throws IOException {
+        JarFile jar = new JarFile(file);
+        try {
+            return toByteArray(jar.getInputStream(jar.getEntry(entryName)));
+        } finally {
+            jar.close();
+        }
+    }
+
+    private List<String> getEntryNames(File file) throws IOException {
+        List<String> entryNames = new ArrayList<>();
+        JarFile jar = new JarFile(file);
+        try {
+            for (Enumeration<JarEntry> jarEntries = jar.entries(); jarEntries.hasMoreElements();) {
+                entryNames.add(jarEntries.nextElement().getName());
+            }
+        } finally {
+            jar.close();
+        }
+        return entryNames;
+    }
+
+    private ArchiveScriptLocation createArchiveScriptLocation(SortedSet<Script> scripts, String scriptEncoding) {
+        return new ArchiveScriptLocation(scripts, scriptEncoding, "postprocessing",
+                asSet(new Qualifier("qualifier1")), singleton(new Qualifier("patch")), "^([0-9]+)_",
+                "(?:\\\\G|_)#([a-zA-Z0-9]+)_", "(?:\\\\G|_)@([a-zA-Z0-9]+)_", asSet("sql"), null, false);
+    }
+
+    private ArchiveScriptLocation loadArchiveScriptLocation(File file, String scriptEncoding) {
+        return new ArchiveScriptLocation(file, scriptEncoding, "postprocessing",
+                asSet(new Qualifier("qualifier1")), singleton(new Qualifier("patch")), "^([0-9]+)_",
+                "(?:\\\\G|_)#([a-zA-Z0-9]+)_", "(?:\\\\G|_)@([a-zA-Z0-9]+)_", asSet("sql"), null, false, false);
+    }
+}
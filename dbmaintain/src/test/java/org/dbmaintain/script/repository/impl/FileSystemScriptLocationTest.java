@@ -15,16 +15,24 @@
  */
 package org.dbmaintain.script.repository.impl;
 
+import org.apache.commons.io.FileUtils;
 import org.dbmaintain.script.Script;
+import org.dbmaintain.util.DbMaintainException;
 import org.dbmaintain.util.TestUtils;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
 
+import static java.util.Arrays.asList;
 import static org.dbmaintain.util.CollectionUtils.asSet;
 import static org.dbmaintain.util.TestUtils.createScript;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 /**
  * @author Filip Neven
@@ -51,4 +59,52 @@ public class FileSystemScriptLocationTest {
     public void testGetAllFiles() {
         assertEquals(asSet(indexed1, repeatable1, postProcessing1), fileSystemScriptLocation.getScripts());
     }
+
+    @Test
+    public void nestedDirectories() throws Exception {
+        File rootDir = Files.createTempDirectory("scripts").toFile();
+        try {
+            createFile(rootDir, "01_a/01_a/01_script.sql", 1000L);
+            createFile(rootDir, "01_a/02_b/01_script.sql", 2000L);
+            createFile(rootDir, "01_a/02_script.sql", 3000L);
+            createFile(rootDir, "02_b/01_script.sql", 4000L);
+            createFile(rootDir, "02_b/readme.txt", 5000L);
+            createFile(rootDir, "repeatable/script.sql", 6000L);
+
+            SortedSet<Script> scripts = TestUtils.createFileSystemLocation(rootDir).getScripts();
+
+            List<String> fileNames = new ArrayList<String>();
+            for (Script script : scripts) {
+                fileNames.add(script.getFileName());
+            }
+            assertEquals(asList("01_a/01_a/01_script.sql", "01_a/02_script.sql", "01_a/02_b/01_script.sql", "02_b/01_script.sql", "repeatable/script.sql"), fileNames);
+            assertEquals(1000L, (long) scripts.first().getFileLastModifiedAt());
+            assertEquals(6000L, (long) scripts.last().getFileLastModifiedAt());
+        } finally {
+            FileUtils.deleteDirectory(rootDir);
+        }
+    }
+
+    @Test
+    public void invalidScriptName() throws Exception {
+        File rootDir = Files.createTempDirectory("scripts").toFile();
+        try {
+            createFile(rootDir, "01_a/01_script.sql", 1000L);
+            createFile(rootDir, "01_a/02_b/script.sql", 1000L);
+
+            TestUtils.createFileSystemLocation(rootDir);
+            fail("DbMaintainException expected");
+        } catch (DbMaintainException e) {
+            assertEquals("Error in script 01_a/02_b/script.sql: Repeatable scripts cannot be located inside an indexed folder.", e.getMessage());
+        } finally {
+            FileUtils.deleteDirectory(rootDir);
+        }
+    }
+
+
+    private void createFile(File rootDir, String fileName, long lastModified) throws Exception {
+        File file = new File(rootDir, fileName);
+        FileUtils.writeStringToFile(file, fileName, "ISO-8859-1");
+        file.setLastModified(lastModified);
+    }
 }
@@ -0,0 +1,124 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.repository.impl;
+
+import org.dbmaintain.util.DbMaintainException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import static java.io.File.createTempFile;
+import static org.apache.commons.io.IOUtils.toByteArray;
+import static org.apache.commons.lang3.StringUtils.repeat;
+import static org.junit.Assert.*;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ScriptArchiveHandleTest {
+
+    private File jarFile;
+    private ScriptArchiveHandle scriptArchiveHandle;
+
+    @Before
+    public void init() throws IOException {
+        jarFile = createTempFile("scriptjar", ".jar");
+        JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(jarFile));
+        try {
+            writeEntry(jarOutputStream, "small1.sql", "small 1");
+            writeEntry(jarOutputStream, "small2.sql", "small 2");
+            writeEntry(jarOutputStream, "large.sql", repeat('x', 100));
+        } finally {
+            jarOutputStream.close();
+        }
+        // entries up to 50 bytes are kept, with a total of 10 bytes
+        scriptArchiveHandle = new ScriptArchiveHandle(jarFile, 10, 50);
+    }
+
+    @After
+    public void cleanUp() {
+        scriptArchiveHandle.close();
+        jarFile.delete();
+    }
+
+
+    @Test
+    public void jarIsOpenedOnce() {
+        JarFile jar = scriptArchiveHandle.getJarFile();
+        assertSame(jar, scriptArchiveHandle.getJarFile());
+    }
+
+    @Test
+    public void smallEntryIsKeptInMemory() throws IOException {
+        assertEquals("small 1", read("small1.sql"));
+        assertNotNull(scriptArchiveHandle.getCachedEntry("small1.sql"));
+        assertEquals("small 1", read("small1.sql"));
+    }
+
+    @Test
+    public void largeEntryIsNotKeptInMemory() throws IOException {
+        assertEquals(repeat('x', 100), read("large.sql"));
+        assertNull(scriptArchiveHandle.getCachedEntry("large.sql"));
+    }
+
+    @Test
+    public void entriesAreNotKeptWhenBudgetIsExceeded() throws IOException {
+        read("small1.sql");
+        assertEquals("small 2", read("small2.sql"));
+        assertNull(scriptArchiveHandle.getCachedEntry("small2.sql"));
+    }
+
+    @Test
+    public void jarIsOpenedAgainAfterClose() throws IOException {
+        JarFile jar = scriptArchiveHandle.getJarFile();
+        read("small1.sql");
+        scriptArchiveHandle.close();
+
+        assertNull(scriptArchiveHandle.getCachedEntry("small1.sql"));
+        assertNotSame(jar, scriptArchiveHandle.getJarFile());
+        assertEquals("small 1", read("small1.sql"));
+    }
+
+    @Test(expected = DbMaintainException.class)
+    public void unknownEntry() throws IOException {
+        scriptArchiveHandle.getInputStream("xxx.sql");
+    }
+
+
+    private String read(String entryName) throws IOException {
+        InputStream inputStream = scriptArchiveHandle.getInputStream(entryName);
+        try {
+            return new String(toByteArray(inputStream), "ISO-8859-1");
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private void writeEntry(JarOutputStream jarOutputStream, String name, String content) throws IOException {
+        jarOutputStream.putNextEntry(new JarEntry(name));
+        jarOutputStream.write(content.getBytes("ISO-8859-1"));
+        jarOutputStream.closeEntry();
+    }
+}
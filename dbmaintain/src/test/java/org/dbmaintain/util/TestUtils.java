@@ -22,6 +22,7 @@ import org.dbmaintain.script.ExecutedScript;
 import org.dbmaintain.script.Script;
 import org.dbmaintain.script.ScriptContentHandle;
 import org.dbmaintain.script.ScriptFactory;
+import org.dbmaintain.script.ScriptNameCache;
 import org.dbmaintain.script.executedscriptinfo.ExecutedScriptInfoSource;
 import org.dbmaintain.script.executedscriptinfo.ScriptIndexes;
 import org.dbmaintain.script.executedscriptinfo.impl.DefaultExecutedScriptInfoSource;
@@ -71,15 +72,23 @@ public abstract class TestUtils {
     }
 
     public static DefaultExecutedScriptInfoSource getDefaultExecutedScriptInfoSource(Database database, boolean autoCreateExecutedScriptsTable) {
-        return getDefaultExecutedScriptInfoSource(database, autoCreateExecutedScriptsTable, null);
+        return getDefaultExecutedScriptInfoSource(database, autoCreateExecutedScriptsTable, (ScriptIndexes) null);
+    }
+
+    public static DefaultExecutedScriptInfoSource getDefaultExecutedScriptInfoSource(Database database, boolean autoCreateExecutedScriptsTable, SQLHandler sqlHandler) {
+        return getDefaultExecutedScriptInfoSource(database, autoCreateExecutedScriptsTable, null, sqlHandler);
     }
 
     public static DefaultExecutedScriptInfoSource getDefaultExecutedScriptInfoSource(Database database, boolean autoCreateExecutedScriptsTable, ScriptIndexes baselineRevision) {
+        return getDefaultExecutedScriptInfoSource(database, autoCreateExecutedScriptsTable, baselineRevision, new DefaultSQLHandler());
+    }
+
+    public static DefaultExecutedScriptInfoSource getDefaultExecutedScriptInfoSource(Database database, boolean autoCreateExecutedScriptsTable, ScriptIndexes baselineRevision, SQLHandler sqlHandler) {
         ScriptFactory scriptFactory = new ScriptFactory("^([0-9]+)_", "(?:\\\\G|_)@([a-zA-Z0-9]+)_", "(?:\\\\G|_)#([a-zA-Z0-9]+)_", Collections.<Qualifier>emptySet(),
                 asSet(new Qualifier("patch")), "postprocessing", baselineRevision);
         return new DefaultExecutedScriptInfoSource(autoCreateExecutedScriptsTable,
                 "dbmaintain_scripts", "file_name", 150, "file_last_modified_at", "checksum", 50, "executed_at", 50, "succeeded",
-                new SimpleDateFormat("dd/MM/yyyy"), database, new DefaultSQLHandler(), scriptFactory);
+                new SimpleDateFormat("dd/MM/yyyy"), database, sqlHandler, scriptFactory);
     }
 
     public static Script createScript(String fileName) {
@@ -105,7 +114,11 @@ public abstract class TestUtils {
     }
 
     public static ScriptFactory createScriptFactory(ScriptIndexes baseLineRevision) {
-        return new ScriptFactory("^([0-9]+)_", "(?:\\\\G|_)@([a-zA-Z0-9]+)_", "(?:\\\\G|_)#([a-zA-Z0-9]+)_", new HashSet<Qualifier>(), qualifiers("patch"), "postprocessing", baseLineRevision);
+        return createScriptFactory(baseLineRevision, new ScriptNameCache());
+    }
+
+    public static ScriptFactory createScriptFactory(ScriptIndexes baseLineRevision, ScriptNameCache scriptNameCache) {
+        return new ScriptFactory("^([0-9]+)_", "(?:\\\\G|_)@([a-zA-Z0-9]+)_", "(?:\\\\G|_)#([a-zA-Z0-9]+)_", new HashSet<Qualifier>(), qualifiers("patch"), "postprocessing", baseLineRevision, scriptNameCache);
     }
 
     public static FileSystemScriptLocation createFileSystemLocation(File scriptRootLocation) {
@@ -142,11 +155,19 @@ public abstract class TestUtils {
 
 
     public static ExecutedScriptInfoSource getExecutedScriptInfoSource(final SortedSet<ExecutedScript> executedScripts) {
+        return getExecutedScriptInfoSource(executedScripts, null, 0);
+    }
+
+    public static ExecutedScriptInfoSource getExecutedScriptInfoSource(final SortedSet<ExecutedScript> executedScripts, final ScriptIndexes checkpointRevision,
+                                                                       final long nrOfCheckpointScripts) {
         return new ExecutedScriptInfoSource() {
 
             public void registerExecutedScript(ExecutedScript executedScript) {
             }
 
+            public void registerExecutedScripts(Collection<ExecutedScript> executedScripts) {
+            }
+
             public void updateExecutedScript(ExecutedScript executedScript) {
             }
 
@@ -168,12 +189,50 @@ public abstract class TestUtils {
             public void removeErrorScripts() {
             }
 
+            public void compactExecutedScripts(ScriptIndexes checkpointRevision) {
+            }
+
+            public ScriptIndexes getCheckpointRevision() {
+                return checkpointRevision;
+            }
+
+            public long getNrOfCheckpointScripts() {
+                return nrOfCheckpointScripts;
+            }
+
             public void resetCachedState() {
             }
 
+            public void upgradeExecutedScriptsTable() {
+            }
+
             public Set<ExecutedScript> getExecutedScripts() {
                 return executedScripts;
             }
         };
     }
+
+
+    /**
+     * Set of executed scripts that counts how many times it is iterated, e.g. to verify that an operation scans the
+     * executed scripts a fixed nr of times.
+     */
+    public static class CountingSet extends TreeSet<ExecutedScript> {
+
+        private int nrOfIterations;
+
+        @Override
+        public Iterator<ExecutedScript> iterator() {
+            nrOfIterations++;
+            return super.iterator();
+        }
+
+        public int getNrOfIterations() {
+            return nrOfIterations;
+        }
+
+        public void resetNrOfIterations() {
+            nrOfIterations = 0;
+        }
+    }
 }